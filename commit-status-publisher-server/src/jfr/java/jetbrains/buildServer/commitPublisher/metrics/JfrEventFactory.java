@@ -0,0 +1,106 @@
+/*
+ * Copyright 2000-2024 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jetbrains.buildServer.commitPublisher.metrics;
+
+import jdk.jfr.*;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * JDK Flight Recorder backed factory of publishing events.
+ * It is the only class referencing the jdk.jfr API, it is compiled separately from the main sources
+ * and is instantiated by {@link PublishingEvents} reflectively only when the API is available.
+ */
+class JfrEventFactory implements PublishingEvents.EventFactory {
+
+  @Nullable
+  @Override
+  public PublishingEvents.EventHandle begin(@NotNull PublishingEvents.Kind kind) {
+    final PublishingEvent event = create(kind);
+    if (!event.isEnabled()) return null;
+    event.begin();
+    return event;
+  }
+
+  @NotNull
+  private static PublishingEvent create(@NotNull PublishingEvents.Kind kind) {
+    switch (kind) {
+      case EVENT_ACCEPTED: return new EventAccepted();
+      case STATUS_CACHE_LOOKUP: return new StatusCacheLookup();
+      case STATUS_READ: return new StatusRead();
+      case STATUS_POST: return new StatusPost();
+      case RETRY_SCHEDULED: return new RetryScheduled();
+      default: throw new IllegalArgumentException("Unknown publishing event kind: " + kind);
+    }
+  }
+
+  @Category({"TeamCity", "Commit Status Publisher"})
+  @StackTrace(false)
+  abstract static class PublishingEvent extends Event implements PublishingEvents.EventHandle {
+    @Label("Event Type")
+    String eventType;
+
+    @Label("Publisher")
+    String publisherId;
+
+    @Label("Host")
+    String host;
+
+    @Label("Outcome")
+    String outcome;
+
+    @Override
+    public void finish(@Nullable String eventType, @Nullable String publisherId, @Nullable String host, @Nullable String outcome) {
+      end();
+      if (!shouldCommit()) return;
+      this.eventType = eventType;
+      this.publisherId = publisherId;
+      this.host = host;
+      this.outcome = outcome;
+      commit();
+    }
+  }
+
+  @Name("jetbrains.teamcity.commitStatusPublisher.EventAccepted")
+  @Label("Publishing Event Accepted")
+  @Description("Time an accepted publishing event waited for a worker thread")
+  static class EventAccepted extends PublishingEvent {
+  }
+
+  @Name("jetbrains.teamcity.commitStatusPublisher.StatusCacheLookup")
+  @Label("Commit Status Cache Lookup")
+  @Description("Lookup of a commit status in the cache, including the load on a miss")
+  static class StatusCacheLookup extends PublishingEvent {
+  }
+
+  @Name("jetbrains.teamcity.commitStatusPublisher.StatusRead")
+  @Label("Commit Status Read")
+  @Description("Read of the current commit status from the VCS hosting")
+  static class StatusRead extends PublishingEvent {
+  }
+
+  @Name("jetbrains.teamcity.commitStatusPublisher.StatusPost")
+  @Label("Commit Status Post")
+  @Description("Publishing of a commit status to the VCS hosting")
+  static class StatusPost extends PublishingEvent {
+  }
+
+  @Name("jetbrains.teamcity.commitStatusPublisher.RetryScheduled")
+  @Label("Publishing Retry Scheduled")
+  static class RetryScheduled extends PublishingEvent {
+  }
+}
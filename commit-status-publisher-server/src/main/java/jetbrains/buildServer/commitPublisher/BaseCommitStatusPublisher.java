@@ -101,14 +101,22 @@ public abstract class BaseCommitStatusPublisher implements CommitStatusPublisher
     return false;
   }
 
-  protected int getConnectionTimeout() {
-    return myConnectionTimeout;
+  protected int getConnectionTimeout() throws PublisherException {
+    return getDeadline().limitTimeout(myConnectionTimeout, "the next request");
   }
 
   public void setConnectionTimeout(int timeout) {
     myConnectionTimeout = timeout;
   }
 
+  /**
+   * @return time budget of the status being published, remote calls made by the publisher should not outlive it
+   */
+  @NotNull
+  protected PublishingDeadline getDeadline() {
+    return PublishingContext.current().getDeadline();
+  }
+
   @NotNull
   @Override
   public Collection<BuildRevision> getFallbackRevisions(@Nullable SBuild build) {
@@ -167,6 +175,14 @@ public abstract class BaseCommitStatusPublisher implements CommitStatusPublisher
     return null;
   }
 
+  /**
+   * Tells whether the status of the build type should be requested by its key instead of loading all statuses of the revision.
+   * Statuses of a build chain are loaded all at once, as statuses of its other build types are going to be requested soon.
+   */
+  protected static boolean isStatusLookupByKeyPreferred(@NotNull BuildPromotion promotion) {
+    return TeamCityProperties.getBooleanOrTrue(Constants.STATUS_LOOKUP_BY_KEY_TOGGLE) && !promotion.isPartOfBuildChain() && promotion.getBuildType() != null;
+  }
+
   @Nullable
   protected String getViewUrl(@NotNull BuildPromotion buildPromotion) {
     SBuild build = buildPromotion.getAssociatedBuild();
@@ -182,7 +198,7 @@ public abstract class BaseCommitStatusPublisher implements CommitStatusPublisher
 
   @NotNull
   protected String getViewUrl(@NotNull SBuild build) {
-    return getLinks().getViewResultsUrl(build);
+    return BuildEventPayload.of(build).getViewUrl(getLinks());
   }
 
   protected Long getBuildIdFromViewUrl(@Nullable String url) {
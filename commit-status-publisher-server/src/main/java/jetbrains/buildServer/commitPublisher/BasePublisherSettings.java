@@ -19,12 +19,22 @@
 package jetbrains.buildServer.commitPublisher;
 
 import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.security.KeyStore;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import jetbrains.buildServer.commitPublisher.CommitStatusPublisher.Event;
 import jetbrains.buildServer.serverSide.*;
+import jetbrains.buildServer.serverSide.executors.ExecutorServices;
 import jetbrains.buildServer.serverSide.oauth.OAuthConnectionDescriptor;
 import jetbrains.buildServer.users.SUser;
 import jetbrains.buildServer.util.ssl.SSLTrustStoreProvider;
@@ -37,6 +47,8 @@ import jetbrains.buildServer.web.openapi.PluginDescriptor;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import static jetbrains.buildServer.commitPublisher.LoggerUtil.LOG;
+
 public abstract class BasePublisherSettings implements CommitStatusPublisherSettings {
 
   public static final String PARAM_PUBLISH_BUILD_QUEUED_STATUS = "commitStatusPublisher.publishQueuedBuildStatus";
@@ -46,6 +58,10 @@ public abstract class BasePublisherSettings implements CommitStatusPublisherSett
   protected final CommitStatusPublisherProblems myProblems;
   private final SSLTrustStoreProvider myTrustStoreProvider;
   private final ConcurrentHashMap<String, TimestampedServerVersion> myServerVersions;
+  private final Set<String> myServerVersionsRefreshing = ConcurrentHashMap.newKeySet();
+  private volatile File myServerVersionsFile;
+  private final AtomicBoolean myServerVersionsSaveScheduled = new AtomicBoolean();
+  private volatile ExecutorServices myServerVersionsRefreshExecutors;
   protected final Gson myGson = new Gson();
   protected final Comparator<OAuthConnectionDescriptor> CONNECTION_DESCRIPTOR_NAME_COMPARATOR = Comparator.comparing(desc -> desc.getConnectionDisplayName());
 
@@ -56,7 +72,7 @@ public abstract class BasePublisherSettings implements CommitStatusPublisherSett
     myDescriptor = descriptor;
     myLinks= links;
     myProblems = problems;
-    myTrustStoreProvider = trustStoreProvider;
+    myTrustStoreProvider = CachingSSLTrustStoreProvider.cached(trustStoreProvider);
     myServerVersions = new ConcurrentHashMap<>();
   }
 
@@ -143,12 +159,45 @@ public abstract class BasePublisherSettings implements CommitStatusPublisherSett
     throw new IllegalStateException("Unexpected build type implementation: can not determine if queued build statuses publishing is enabled");
   }
 
+  /**
+   * Returns the known server version right away, an obsolete version is refreshed in background if the settings {@link #refreshServerVersionsInBackground refresh versions in background}.
+   * The caller waits for the version to be retrieved when it is not known at all, or when it is obsolete and there is no background refresh.
+   */
   @Override
   @Nullable
   public String getServerVersion(@NotNull String url) {
     TimestampedServerVersion version = myServerVersions.get(url);
-    if (version != null && !version.isObsolete())
-      return version.get();
+    if (version != null) {
+      if (!version.isObsolete()) {
+        return version.get();
+      }
+      if (myServerVersionsRefreshExecutors != null) {
+        refreshServerVersionAsync(myServerVersionsRefreshExecutors, url);
+        return version.get();
+      }
+    }
+    return refreshServerVersion(url);
+  }
+
+  private void refreshServerVersionAsync(@NotNull ExecutorServices executorServices, @NotNull String url) {
+    if (!myServerVersionsRefreshing.add(url)) return;
+    try {
+      executorServices.getLowPriorityExecutorService().submit(() -> {
+        try {
+          refreshServerVersion(url);
+        } finally {
+          myServerVersionsRefreshing.remove(url);
+        }
+      });
+    } catch (RuntimeException e) {
+      myServerVersionsRefreshing.remove(url);
+      LOG.warnAndDebugDetails("Failed to schedule server version refresh for " + url, e);
+    }
+  }
+
+  @Nullable
+  private String refreshServerVersion(@NotNull String url) {
+    TimestampedServerVersion version = myServerVersions.get(url);
     final String v;
     try {
        v = retrieveServerVersion(url);
@@ -163,11 +212,83 @@ public abstract class BasePublisherSettings implements CommitStatusPublisherSett
     if (v != null) {
       version = new TimestampedServerVersion(v);
       myServerVersions.put(url, version);
+      scheduleServerVersionsSave();
       return v;
     }
     return null;
   }
 
+  /**
+   * Makes obsolete server versions be refreshed on the server executor, while the callers keep using the known ones
+   */
+  protected void refreshServerVersionsInBackground(@NotNull ExecutorServices executorServices) {
+    myServerVersionsRefreshExecutors = executorServices;
+  }
+
+  /**
+   * Makes known server versions survive server restarts: they are loaded from the file now and saved to it in background once updated,
+   * the versions are saved only if the settings {@link #refreshServerVersionsInBackground refresh versions in background}
+   */
+  protected void persistServerVersions(@NotNull File file) {
+    myServerVersionsFile = file;
+    if (!file.isFile()) return;
+    try {
+      final Map<String, TimestampedServerVersion> versions = myGson.fromJson(new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8),
+                                                                             new TypeToken<Map<String, TimestampedServerVersion>>() {}.getType());
+      if (versions != null) {
+        versions.forEach((url, version) -> {
+          if (version != null && version.myServerVersion != null) {
+            myServerVersions.putIfAbsent(url, version);
+          }
+        });
+      }
+    } catch (Exception e) {
+      LOG.warnAndDebugDetails("Failed to load known server versions from " + file, e);
+    }
+  }
+
+  private void scheduleServerVersionsSave() {
+    final ExecutorServices executorServices = myServerVersionsRefreshExecutors;
+    if (myServerVersionsFile == null || executorServices == null) return;
+    // updates made while the save is pending are written by it
+    if (!myServerVersionsSaveScheduled.compareAndSet(false, true)) return;
+    try {
+      executorServices.getLowPriorityExecutorService().submit(() -> {
+        myServerVersionsSaveScheduled.set(false);
+        saveServerVersions();
+      });
+    } catch (RuntimeException e) {
+      myServerVersionsSaveScheduled.set(false);
+      LOG.warnAndDebugDetails("Failed to schedule saving of known server versions", e);
+    }
+  }
+
+  private void saveServerVersions() {
+    final File file = myServerVersionsFile;
+    if (file == null) return;
+    synchronized (myServerVersions) {
+      Path tmp = null;
+      try {
+        final Path dir = Files.createDirectories(file.getParentFile().toPath());
+        tmp = Files.createTempFile(dir, file.getName(), ".tmp");
+        Files.write(tmp, myGson.toJson(new TreeMap<>(myServerVersions)).getBytes(StandardCharsets.UTF_8));
+        try {
+          Files.move(tmp, file.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+          Files.move(tmp, file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+      } catch (IOException e) {
+        LOG.warnAndDebugDetails("Failed to save known server versions to " + file, e);
+        if (tmp != null) {
+          try {
+            Files.deleteIfExists(tmp);
+          } catch (IOException ignored) {
+          }
+        }
+      }
+    }
+  }
+
   @Nullable
   protected String retrieveServerVersion(@NotNull String url) throws PublisherException {
     return null;
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2000-2024 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jetbrains.buildServer.commitPublisher;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import jetbrains.buildServer.serverSide.BuildStatistics;
+import jetbrains.buildServer.serverSide.BuildStatisticsOptions;
+import jetbrains.buildServer.serverSide.SBuild;
+import jetbrains.buildServer.serverSide.WebLinks;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Build data put into the payloads of published statuses, e.g. test counts, duration, view URL and build name.
+ * The data is computed lazily, at most once per build event, and is shared by all publishers and revisions handling the event.
+ * The listener creates the payload once per event and makes it a part of the {@link PublishingContext},
+ * so the tasks the publishers run on other threads via {@link PublishingContext#bind} get the same payload.
+ * Outside of event processing every call of {@link #of(SBuild)} returns new data, so nothing is kept longer than a single publishing.
+ */
+public class BuildEventPayload {
+  private final SBuild myBuild;
+  private final Map<StatusPublisherBuildNameProvider, String> myBuildNames = new ConcurrentHashMap<>();
+  private volatile BuildStatistics myStatistics;
+  private volatile String myViewUrl;
+  private volatile Long myDurationMs;
+
+  BuildEventPayload(@NotNull SBuild build) {
+    myBuild = build;
+  }
+
+  /**
+   * @return payload of the build event being processed by the current thread, or new payload if the thread processes no event of the build
+   */
+  @NotNull
+  public static BuildEventPayload of(@NotNull SBuild build) {
+    final BuildEventPayload current = PublishingContext.current().getPayload();
+    if (current != null && current.myBuild.getBuildId() == build.getBuildId()) {
+      return current;
+    }
+    return new BuildEventPayload(build);
+  }
+
+  @NotNull
+  public BuildStatistics getStatistics() {
+    BuildStatistics statistics = myStatistics;
+    if (statistics == null) {
+      synchronized (this) {
+        statistics = myStatistics;
+        if (statistics == null) {
+          statistics = myBuild.getBuildStatistics(BuildStatisticsOptions.ALL_TESTS_NO_DETAILS);
+          myStatistics = statistics;
+        }
+      }
+    }
+    return statistics;
+  }
+
+  public long getDurationMs() {
+    Long durationMs = myDurationMs;
+    if (durationMs == null) {
+      durationMs = myBuild.getDuration() * 1000;
+      myDurationMs = durationMs;
+    }
+    return durationMs;
+  }
+
+  @NotNull
+  public String getViewUrl(@NotNull WebLinks links) {
+    String viewUrl = myViewUrl;
+    if (viewUrl == null) {
+      viewUrl = links.getViewResultsUrl(myBuild);
+      myViewUrl = viewUrl;
+    }
+    return viewUrl;
+  }
+
+  @NotNull
+  public String getBuildName(@NotNull StatusPublisherBuildNameProvider buildNameProvider) {
+    return myBuildNames.computeIfAbsent(buildNameProvider, provider -> provider.getBuildName(myBuild.getBuildPromotion()));
+  }
+}
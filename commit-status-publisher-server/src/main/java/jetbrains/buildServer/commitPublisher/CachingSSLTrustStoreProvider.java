@@ -0,0 +1,81 @@
+/*
+ * Copyright 2000-2024 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jetbrains.buildServer.commitPublisher;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import java.security.KeyStore;
+import java.util.concurrent.ExecutionException;
+import jetbrains.buildServer.serverSide.TeamCityProperties;
+import jetbrains.buildServer.util.ssl.SSLTrustStoreProvider;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Keeps the trust store loaded by the server provider for a short period of time.
+ * Loading the trust material for every request is expensive, while the server trust store changes rarely.
+ * There is no notification about trust store changes, so a changed trust store is picked up only once the cached one expires.
+ * All the wrappers of the same provider share the cached trust store.
+ */
+public class CachingSSLTrustStoreProvider implements SSLTrustStoreProvider {
+  static final String TRUST_STORE_CACHE_TTL_PARAMETER = "teamcity.commitStatusPublisher.trustStoreCache.ttl";
+  static final long TRUST_STORE_CACHE_TTL_DEFAULT_VALUE_MS = 60_000L;
+
+  // weak keys make the providers compared by identity and do not prevent their collection
+  private static final Cache<SSLTrustStoreProvider, CachingSSLTrustStoreProvider> ourInstances = CacheBuilder.newBuilder().weakKeys().build();
+
+  private final SSLTrustStoreProvider myDelegate;
+  private volatile ValueWithTTL<KeyStore> myTrustStore;
+
+  private CachingSSLTrustStoreProvider(@NotNull SSLTrustStoreProvider delegate) {
+    myDelegate = delegate;
+  }
+
+  @NotNull
+  public static SSLTrustStoreProvider cached(@NotNull SSLTrustStoreProvider delegate) {
+    if (delegate instanceof CachingSSLTrustStoreProvider) {
+      return delegate;
+    }
+    try {
+      return ourInstances.get(delegate, () -> new CachingSSLTrustStoreProvider(delegate));
+    } catch (ExecutionException e) {
+      // never happens, the instance creation does not throw
+      return new CachingSSLTrustStoreProvider(delegate);
+    }
+  }
+
+  @Nullable
+  @Override
+  public KeyStore getTrustStore() {
+    long ttl = TeamCityProperties.getIntervalMilliseconds(TRUST_STORE_CACHE_TTL_PARAMETER, TRUST_STORE_CACHE_TTL_DEFAULT_VALUE_MS);
+    if (ttl <= 0) {
+      return myDelegate.getTrustStore();
+    }
+    ValueWithTTL<KeyStore> trustStore = myTrustStore;
+    if (trustStore != null && trustStore.isAlive()) {
+      return trustStore.getValue();
+    }
+    synchronized (this) {
+      trustStore = myTrustStore;
+      if (trustStore == null || !trustStore.isAlive()) {
+        trustStore = new ValueWithTTL<>(myDelegate.getTrustStore(), System.currentTimeMillis() + ttl);
+        myTrustStore = trustStore;
+      }
+      return trustStore.getValue();
+    }
+  }
+}
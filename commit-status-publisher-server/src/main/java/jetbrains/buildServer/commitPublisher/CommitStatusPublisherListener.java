@@ -25,6 +25,7 @@ import com.intellij.openapi.util.Pair;
 import java.time.Instant;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.Lock;
 import java.util.function.Consumer;
 import java.util.function.Function;
@@ -34,6 +35,10 @@ import jetbrains.buildServer.BuildProblemTypes;
 import jetbrains.buildServer.BuildType;
 import jetbrains.buildServer.Used;
 import jetbrains.buildServer.commitPublisher.CommitStatusPublisher.Event;
+import jetbrains.buildServer.commitPublisher.metrics.CommitStatusPublisherMetrics;
+import jetbrains.buildServer.commitPublisher.metrics.PublishingEvents;
+import jetbrains.buildServer.commitPublisher.metrics.PublishingTrace;
+import jetbrains.buildServer.commitPublisher.metrics.PublishingTraces;
 import jetbrains.buildServer.commitPublisher.processor.FavoriteBuildProcessor;
 import jetbrains.buildServer.commitPublisher.processor.strategy.BuildOwnerSupplier;
 import jetbrains.buildServer.messages.Status;
@@ -76,6 +81,9 @@ public class CommitStatusPublisherListener extends BuildServerAdapter implements
   private final static String FINALIZED_EVENT_CACHE_TTL_PROPERTY = "teamcity.commitStatusPublisher.finalizedEventCacheTtlSeconds";
   private final static int DEFAULT_FINALIZED_EVENTS_CACHE_TTL = 60 * 60; // 1 hour
 
+  final static String PUBLISHER_DEADLINE_PROPERTY_NAME = "teamcity.commitStatusPublisher.publisherDeadlineMs";
+  private final static long DEFAULT_PUBLISHER_DEADLINE_MS = 0; // non-positive value means unlimited
+
 
   private final PublisherManager myPublisherManager;
   private final BuildHistory myBuildHistory;
@@ -105,6 +113,10 @@ public class CommitStatusPublisherListener extends BuildServerAdapter implements
   private final Cache<Long, Boolean> myFinalizedEventReceived; // builds for which finalized event was received before changes collection
   private final Striped<Lock> myFinalizedEventLocks = Striped.lock(256);
 
+  private final CommitStatusPublisherMetrics myMetrics;
+  private final AtomicInteger myQueueDepth = new AtomicInteger();
+  private final PublishingTraces myTraces;
+
   private Consumer<Event> myEventProcessedCallback = null;
 
   public CommitStatusPublisherListener(@NotNull EventDispatcher<BuildServerListener> events,
@@ -120,7 +132,9 @@ public class CommitStatusPublisherListener extends BuildServerAdapter implements
                                        @NotNull UserModel userModel,
                                        @NotNull MultiNodeTasks multiNodeTasks,
                                        @NotNull FavoriteBuildProcessor favoriteBuildProcessor,
-                                       @NotNull BuildOwnerSupplier buildOwnerStrategy) {
+                                       @NotNull BuildOwnerSupplier buildOwnerStrategy,
+                                       @NotNull CommitStatusPublisherMetrics metrics,
+                                       @NotNull PublishingTraces traces) {
     myPublisherManager = voterManager;
     myBuildHistory = buildHistory;
     myBuildsManager = buildsManager;
@@ -134,6 +148,8 @@ public class CommitStatusPublisherListener extends BuildServerAdapter implements
     myUserModel = userModel;
     myFavoriteBuildProcessor = favoriteBuildProcessor;
     myBuildOwnerSupplier = buildOwnerStrategy;
+    myMetrics = metrics;
+    myTraces = traces;
     myEventTypes.putAll(Arrays.stream(Event.values()).collect(Collectors.toMap(Event::getName, et -> et)));
     myPublishingLocks = Striped.lazyWeakLock(TeamCityProperties.getInteger(LOCKS_STRIPES, LOCKS_STRIPES_DEFAULT));
 
@@ -142,6 +158,7 @@ public class CommitStatusPublisherListener extends BuildServerAdapter implements
                                            .build();
 
     events.addListener(this);
+    myMetrics.registerGauge(CommitStatusPublisherMetrics.QUEUE_DEPTH, "", () -> Collections.singletonMap("", myQueueDepth.get()));
 
     myMultiNodeTasks.subscribeOnSingletonTask(Event.STARTED.getName(), new BuildPublisherTaskConsumer (
       build -> new PublishTask() {
@@ -464,9 +481,12 @@ public class CommitStatusPublisherListener extends BuildServerAdapter implements
     if (!canNodeProcessRemovedFromQueue(promotion)) return;
     if (((BuildPromotionEx)promotion).isChangeCollectingNeeded(false)) return;
 
-    runAsync(() -> {
+    myMetrics.increment(CommitStatusPublisherMetrics.EVENTS_RECEIVED, "event", Event.REMOVED_FROM_QUEUE.getName());
+    myMetrics.increment(CommitStatusPublisherMetrics.EVENTS_ACCEPTED, "event", Event.REMOVED_FROM_QUEUE.getName());
+    PublishingTrace trace = startTrace(Event.REMOVED_FROM_QUEUE, promotion, System.currentTimeMillis());
+    runAsync(Event.REMOVED_FROM_QUEUE, () -> {
       proccessRemovedFromQueueBuild(build, user, comment);
-    }, null);
+    }, null, trace);
   }
 
   private boolean canNodeProcessRemovedFromQueue(BuildPromotion buildPromotion) {
@@ -565,6 +585,10 @@ public class CommitStatusPublisherListener extends BuildServerAdapter implements
     return TeamCityProperties.getLong(RETRY_MAX_TIME_BEFORE_DISABLING, DEFAULT_MAX_TIME_BEFORE_DISABLING_RETRY);
   }
 
+  private long publisherDeadline() {
+    return TeamCityProperties.getLong(PUBLISHER_DEADLINE_PROPERTY_NAME, DEFAULT_PUBLISHER_DEADLINE_MS);
+  }
+
   private void logStatusNotPublished(@NotNull Event event, @NotNull String buildDescription, @NotNull CommitStatusPublisher publisher, @NotNull String message) {
     LOG.info(String.format("Event: %s, build %s, publisher %s: %s", event.getName(), buildDescription, publisher, message));
   }
@@ -588,17 +612,32 @@ public class CommitStatusPublisherListener extends BuildServerAdapter implements
     }
 
     long buildId = build.getBuildId();
+    if (delay == null) {
+      // retries are counted separately once they are scheduled
+      myMetrics.increment(CommitStatusPublisherMetrics.EVENTS_RECEIVED, "event", event.getName());
+    }
     myMultiNodeTasks.submit(new MultiNodeTasks.TaskData(event.getName(), getTaskIdentity(event, buildId, delay), buildId, delay, (String)null));
   }
 
   private void submitTaskForQueuedBuild(@NotNull Event event, @NotNull BuildPromotion buildPromotion, @Nullable Long delay) {
     long promotionId = buildPromotion.getId();
+    if (delay == null) {
+      // retries are counted separately once they are scheduled
+      myMetrics.increment(CommitStatusPublisherMetrics.EVENTS_RECEIVED, "event", Event.QUEUED.getName());
+    }
     myMultiNodeTasks.submit(new MultiNodeTasks.TaskData(Event.QUEUED.getName(), getTaskIdentity(event, promotionId, delay), promotionId, delay, DefaultStatusMessages.BUILD_QUEUED));
   }
 
   private boolean isCurrentRevisionSuitable(Event event, BuildPromotion buildPromotion, BuildRevision revision, CommitStatusPublisher publisher) throws PublisherException {
     if (TeamCityProperties.getBooleanOrTrue(CHECK_STATUS_BEFORE_PUBLISHING)) {
-      RevisionStatus revisionStatus = publisher.getRevisionStatus(buildPromotion, revision);
+      final PublishingEvents.Span span = PublishingEvents.begin(PublishingEvents.Kind.STATUS_READ, event.getName(), publisher.getId());
+      RevisionStatus revisionStatus;
+      try {
+        revisionStatus = publisher.getRevisionStatus(buildPromotion, revision);
+      } finally {
+        span.end();
+      }
+      PublishingTraces.stage("status read by " + publisher.getId());
       return revisionStatus == null || revisionStatus.isEventAllowed(event, buildPromotion.getId());
     }
     return true;
@@ -618,11 +657,16 @@ public class CommitStatusPublisherListener extends BuildServerAdapter implements
         if (!publisher.isAvailable(buildPromotion)) return new RetryInfo();
 
         Lock lock = myPublishingLocks.get(getLockKey(buildType, revision));
-        lock.lock();
+        lockPublishing(lock);
         try {
-          publisher.buildRemovedFromQueue(buildPromotion, revision, additionalTaskInfo);
-        } catch (PublisherException e) {
-          LOG.warn("Cannot publish removed build status to VCS for " + publisher.getBuildType() + ", commit: " + revision.getRevision(), e);
+          PublishingContext.current().withDeadline(PublishingDeadline.after(publisherDeadline())).call(() -> {
+            try {
+              publisher.buildRemovedFromQueue(buildPromotion, revision, additionalTaskInfo);
+            } catch (PublisherException e) {
+              LOG.warn("Cannot publish removed build status to VCS for " + publisher.getBuildType() + ", commit: " + revision.getRevision(), e);
+            }
+            return null;
+          });
         } finally {
           lock.unlock();
         }
@@ -637,6 +681,13 @@ public class CommitStatusPublisherListener extends BuildServerAdapter implements
     proccessPublishing(Event.REMOVED_FROM_QUEUE, buildPromotion, publishingProcessor);
   }
 
+  private void lockPublishing(@NotNull Lock lock) {
+    final long start = System.currentTimeMillis();
+    lock.lock();
+    myMetrics.observe(CommitStatusPublisherMetrics.LOCK_WAIT_DURATION, System.currentTimeMillis() - start);
+    PublishingTraces.stage("lock acquired");
+  }
+
   private String getLockKey(SBuildType buildType, BuildRevision revision) {
     return buildType.getBuildTypeId() + ":" + revision.getRevision();
   }
@@ -794,9 +845,28 @@ public class CommitStatusPublisherListener extends BuildServerAdapter implements
     Collection<BuildRevision> getRevisions(BuildType buildType, CommitStatusPublisher publisher);
   }
 
-  private void runAsync(@NotNull Runnable action, @Nullable Runnable postAction) {
+  @Nullable
+  private PublishingTrace startTrace(@NotNull Event event, @NotNull BuildPromotion promotion, long submitTime) {
+    PublishingTrace trace = myTraces.start(event.getName(), promotion.getBuildTypeExternalId(), promotion.getId(), submitTime);
+    if (trace != null) {
+      trace.stage("accepted");
+    }
+    return trace;
+  }
+
+  private void runAsync(@NotNull Event event, @NotNull Runnable action, @Nullable Runnable postAction, @Nullable PublishingTrace trace) {
+    myQueueDepth.incrementAndGet();
+    final PublishingEvents.Span acceptedSpan = PublishingEvents.beginDetached(PublishingEvents.Kind.EVENT_ACCEPTED, event.getName(), null);
+    final Runnable trackedAction = () -> {
+      acceptedSpan.end();
+      try {
+        myTraces.run(trace, action);
+      } finally {
+        myQueueDepth.decrementAndGet();
+      }
+    };
     try {
-      CompletableFuture<Void> future = CompletableFuture.runAsync(action, myExecutorServices.getLowPriorityExecutorService());
+      CompletableFuture<Void> future = CompletableFuture.runAsync(trackedAction, myExecutorServices.getLowPriorityExecutorService());
       if (postAction != null) {
         future.handle((r, t) -> {
           postAction.run();
@@ -805,7 +875,7 @@ public class CommitStatusPublisherListener extends BuildServerAdapter implements
       }
     } catch (RejectedExecutionException ex) {
       LOG.warnAndDebugDetails("CommitStatusPublisherListener has failed to run an action asynchronously. Executing in the same thread instead", ex);
-      action.run();
+      trackedAction.run();
       if (postAction != null)
         postAction.run();
     }
@@ -864,7 +934,9 @@ public class CommitStatusPublisherListener extends BuildServerAdapter implements
       if (lastDelay != null && eventType == Event.STARTED && build.isFinished()) {
         return;
       }
-      runAsync(() -> runForEveryPublisher(eventType, build, lastDelay), () -> { eventProcessed(eventType); });
+      myMetrics.increment(CommitStatusPublisherMetrics.EVENTS_ACCEPTED, "event", eventType.getName());
+      PublishingTrace trace = startTrace(eventType, build.getBuildPromotion(), task.getCreateTime().getTime());
+      runAsync(eventType, () -> runForEveryPublisher(eventType, build, lastDelay), () -> { eventProcessed(eventType); }, trace);
     }
 
     @Nullable
@@ -889,31 +961,37 @@ public class CommitStatusPublisherListener extends BuildServerAdapter implements
       PublishingProcessor publishingProcessor = new PublishingProcessor() {
         @Override
         public RetryInfo publish(Event event, BuildRevision revision, CommitStatusPublisher publisher) {
-          RetryInfo retryInfo = new RetryInfo();
-          if (!publisher.isAvailable(buildPromotion)) return retryInfo;
+          if (!publisher.isAvailable(buildPromotion)) return new RetryInfo();
 
           Lock lock = myPublishingLocks.get(revision.getRevision());
-          lock.lock();
+          lockPublishing(lock);
 
           try {
-            boolean isEventSuitableForRevision = true;
-            if (event.canOverrideStatus()) {
-              try {
-                isEventSuitableForRevision = isCurrentRevisionSuitable(event, buildPromotion, revision, publisher);
-              } catch (PublisherException e) {
-                retryInfo = getRetryInfo(e, buildPromotion, event, lastDelay);
-                LOG.warnAndDebugDetails("Cannot determine if event \"" + event + "\" can be published for current revision state in VCS. " + retryInfo.message, e);
-                return retryInfo;
-              }
-            }
-            if (isEventSuitableForRevision) {
-              retryInfo = runTask(event, buildPromotion, LogUtil.describe(build), task, publisher, revision, null, lastDelay);
-            } else {
-              LOG.debug(() -> "Event \"" + event + "\" is not suitable to be published to root \"" + publisher.getVcsRootId() + "\" for revision " + revision.getRevision());
-            }
+            // the time spent waiting for the lock does not count against the publisher time budget
+            final PublishingDeadline deadline = PublishingDeadline.after(publisherDeadline());
+            return PublishingContext.current().withDeadline(deadline).call(() -> doPublish(revision, publisher, deadline));
           } finally {
             lock.unlock();
           }
+        }
+
+        private RetryInfo doPublish(BuildRevision revision, CommitStatusPublisher publisher, PublishingDeadline deadline) {
+          RetryInfo retryInfo = new RetryInfo();
+          boolean isEventSuitableForRevision = true;
+          if (event.canOverrideStatus()) {
+            try {
+              isEventSuitableForRevision = isCurrentRevisionSuitable(event, buildPromotion, revision, publisher);
+            } catch (PublisherException e) {
+              retryInfo = getRetryInfo(e, buildPromotion, event, lastDelay);
+              LOG.warnAndDebugDetails("Cannot determine if event \"" + event + "\" can be published for current revision state in VCS. " + retryInfo.message, e);
+              return retryInfo;
+            }
+          }
+          if (isEventSuitableForRevision) {
+            retryInfo = runTask(event, buildPromotion, LogUtil.describe(build), task, publisher, revision, null, lastDelay, deadline);
+          } else {
+            LOG.debug(() -> "Event \"" + event + "\" is not suitable to be published to root \"" + publisher.getVcsRootId() + "\" for revision " + revision.getRevision());
+          }
           return retryInfo;
         }
 
@@ -924,7 +1002,7 @@ public class CommitStatusPublisherListener extends BuildServerAdapter implements
         }
       };
 
-      proccessPublishing(event, buildPromotion, publishingProcessor);
+      PublishingContext.current().withPayload(new BuildEventPayload(build)).run(() -> proccessPublishing(event, buildPromotion, publishingProcessor));
     }
 
   }
@@ -969,7 +1047,9 @@ public class CommitStatusPublisherListener extends BuildServerAdapter implements
         // we do not retry publishing queued status if the build is no longer in queue
         return;
       }
-      runAsync(() -> runForEveryPublisher(eventType, promotion, additionalTaskInfo, lastDelay), () -> { eventProcessed(eventType); });
+      myMetrics.increment(CommitStatusPublisherMetrics.EVENTS_ACCEPTED, "event", eventType.getName());
+      PublishingTrace trace = startTrace(eventType, promotion, task.getCreateTime().getTime());
+      runAsync(eventType, () -> runForEveryPublisher(eventType, promotion, additionalTaskInfo, lastDelay), () -> { eventProcessed(eventType); }, trace);
     }
 
     @Nullable
@@ -1011,16 +1091,18 @@ public class CommitStatusPublisherListener extends BuildServerAdapter implements
           if (!publisher.isAvailable(buildPromotion)) return retryInfo;
 
           Lock lock = myPublishingLocks.get(revision.getRevision());
-          lock.lock();
+          lockPublishing(lock);
           try {
-            retryInfo = doPublish(revision, publisher);
+            // the time spent waiting for the lock does not count against the publisher time budget
+            final PublishingDeadline deadline = PublishingDeadline.after(publisherDeadline());
+            retryInfo = PublishingContext.current().withDeadline(deadline).call(() -> doPublish(revision, publisher, deadline));
           } finally {
             lock.unlock();
           }
           return retryInfo;
         }
 
-        private RetryInfo doPublish(BuildRevision revision, CommitStatusPublisher publisher) {
+        private RetryInfo doPublish(BuildRevision revision, CommitStatusPublisher publisher, PublishingDeadline deadline) {
           boolean isEventSuitableForRevision;
           RetryInfo retryInfo = new RetryInfo();
           try {
@@ -1031,7 +1113,7 @@ public class CommitStatusPublisherListener extends BuildServerAdapter implements
             return retryInfo;
           }
           if (isEventSuitableForRevision) {
-            retryInfo = runTask(event, buildPromotion, LogUtil.describe(buildPromotion), publishTask, publisher, revision, additionalTaskInfo, lastDelay);
+            retryInfo = runTask(event, buildPromotion, LogUtil.describe(buildPromotion), publishTask, publisher, revision, additionalTaskInfo, lastDelay, deadline);
           } else {
             LOG.debug(() -> "Event \"" + event + "\" is not suitable to be published to root \"" + publisher.getVcsRootId() + "\" for revision " + revision.getRevision());
           }
@@ -1073,6 +1155,7 @@ public class CommitStatusPublisherListener extends BuildServerAdapter implements
       long timeNow = Instant.now().toEpochMilli();
       if (firstRetry != null) {
         if (timeNow - firstRetry > maxBeforeDisablingRetry()) {
+          myMetrics.increment(CommitStatusPublisherMetrics.RETRIES, "event", event.getName(), "outcome", "abandoned");
           return new RetryInfo(false, "Retry will not be attempted, because problem occurs for too long", 0);
         }
       } else {
@@ -1081,8 +1164,12 @@ public class CommitStatusPublisherListener extends BuildServerAdapter implements
 
       final long newDelay = lastDelay == null ? initialRetryDelay() : lastDelay * 2;
       if (newDelay > maxRetryDelay()) {
+        myMetrics.increment(CommitStatusPublisherMetrics.RETRIES, "event", event.getName(), "outcome", "abandoned");
         return new RetryInfo(false, "Retry will not be attempted, becuase max retry delay is reached", 0);
       }
+      myMetrics.increment(CommitStatusPublisherMetrics.RETRIES, "event", event.getName(), "outcome", "scheduled");
+      PublishingTraces.stage("retry scheduled");
+      PublishingEvents.instant(PublishingEvents.Kind.RETRY_SCHEDULED, String.format("in %d s", newDelay / 1000));
       return new RetryInfo(true, String.format("Will retry in %d seconds", newDelay / 1000), newDelay);
     }
     return new RetryInfo();
@@ -1105,11 +1192,18 @@ public class CommitStatusPublisherListener extends BuildServerAdapter implements
                            @NotNull CommitStatusPublisher publisher,
                            @NotNull BuildRevision revision,
                            @Nullable AdditionalTaskInfo additionalTaskInfo,
-                           @Nullable Long lastDelay) {
+                           @Nullable Long lastDelay,
+                           @NotNull PublishingDeadline deadline) {
       RetryInfo retryInfo = new RetryInfo();
+      final long start = System.currentTimeMillis();
+      final PublishingEvents.Span span = PublishingEvents.begin(PublishingEvents.Kind.STATUS_POST, event.getName(), publisher.getId());
+      String outcome = "failure";
       try {
         LOG.info(String.format("Publishing status to %s: build id %d, revision %s, event %s", publisher.getSettings().getName(), promotion.getId(), revision.getRevision(), event.getName()));
+        deadline.check("publishing " + event.getName() + " status");
         doRunTask(publishTask, publisher, revision, additionalTaskInfo);
+        PublishingTraces.stage("published by " + publisher.getId());
+        outcome = "success";
         myBuildTypeToFirstPublishFailure.remove(promotion.getBuildTypeId());
       } catch (Throwable t) {
         retryInfo = getRetryInfo(t, promotion, event, lastDelay);
@@ -1124,8 +1218,22 @@ public class CommitStatusPublisherListener extends BuildServerAdapter implements
           BuildProblemData buildProblem = BuildProblemData.createBuildProblem(problemId, "commitStatusPublisherProblem", problemDescription);
           ((BuildPromotionEx)promotion).addBuildProblem(buildProblem);
         }
+      } finally {
+        myMetrics.observe(CommitStatusPublisherMetrics.PUBLISH_DURATION, System.currentTimeMillis() - start,
+                          "publisher", publisher.getId(), "host", getPublishingHost(publisher, revision));
+        span.end(outcome);
       }
       return retryInfo;
     }
+
+    /**
+     * @return host the statuses of the VCS root are published to, the same as the host label of HTTP requests for the hostings with a guessable API URL
+     */
+    @NotNull
+    private String getPublishingHost(@NotNull CommitStatusPublisher publisher, @NotNull BuildRevision revision) {
+      final String vcsRootUrl = revision.getRoot().getProperty("url");
+      final String apiUrl = vcsRootUrl == null ? null : publisher.getSettings().guessApiURL(vcsRootUrl);
+      return apiUrl == null ? "unknown" : HostConcurrencyLimiter.getHost(apiUrl);
+    }
   }
 }
\ No newline at end of file
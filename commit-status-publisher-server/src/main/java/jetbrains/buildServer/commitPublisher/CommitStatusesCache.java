@@ -24,6 +24,8 @@ import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.function.Function;
 import java.util.function.Supplier;
+import jetbrains.buildServer.commitPublisher.metrics.CommitStatusPublisherMetrics;
+import jetbrains.buildServer.commitPublisher.metrics.PublishingEvents;
 import jetbrains.buildServer.serverSide.BuildRevision;
 import jetbrains.buildServer.serverSide.TeamCityProperties;
 import org.jetbrains.annotations.NotNull;
@@ -43,6 +45,11 @@ public class CommitStatusesCache<T> {
   private final Striped<Lock> myCacheLocks = Striped.lazyWeakLock(256);
   private final ReentrantReadWriteLock myWholeCacheLock = new ReentrantReadWriteLock();
   private volatile long myLastCleanupTimestamp = -1;
+  private final CommitStatusPublisherMetrics myMetrics;
+
+  public CommitStatusesCache(@NotNull CommitStatusPublisherMetrics metrics) {
+    myMetrics = metrics;
+  }
 
   @Nullable
   private ValueWithTTL<T> getStatusFromCache(@NotNull BuildRevision revision, @Nullable String prefix) {
@@ -71,22 +78,66 @@ public class CommitStatusesCache<T> {
   @Nullable
   public T getStatusFromCache(@NotNull BuildRevision revision, @Nullable String prefix,
                               @NotNull Supplier<Collection<T>> batchStatusLoader, @NotNull Function<T, String> prefixProvider) {
+    return getStatusFromCache(revision, prefix, batchStatusLoader, prefixProvider, false);
+  }
+
+  /**
+   * The same as {@link #getStatusFromCache(BuildRevision, String, Supplier, Function)}
+   * @param filteredLoader true if the loader requests only some of the revision statuses (e.g. filters them by name on the VCS hosting side),
+   *                       so that no statuses loaded do not mean there are no statuses for other prefixes
+   */
+  @Nullable
+  public T getStatusFromCache(@NotNull BuildRevision revision, @Nullable String prefix,
+                              @NotNull Supplier<Collection<T>> batchStatusLoader, @NotNull Function<T, String> prefixProvider,
+                              boolean filteredLoader) {
     if (!TeamCityProperties.getBooleanOrTrue(CACHE_FEATURE_TOGGLE_PARAMETER)) return null;
 
+    final PublishingEvents.Span span = PublishingEvents.begin(PublishingEvents.Kind.STATUS_CACHE_LOOKUP, null, null);
+    try {
+      return getStatusFromCacheOrLoad(revision, prefix, batchStatusLoader, prefixProvider, filteredLoader, span);
+    } finally {
+      span.end();
+    }
+  }
+
+  @Nullable
+  private T getStatusFromCacheOrLoad(@NotNull BuildRevision revision, @Nullable String prefix,
+                                     @NotNull Supplier<Collection<T>> batchStatusLoader, @NotNull Function<T, String> prefixProvider,
+                                     boolean filteredLoader, @NotNull PublishingEvents.Span span) {
     ValueWithTTL<T> value = getStatusFromCache(revision, prefix);
-    if (value != null && value.isAlive()) return value.getValue();
+    if (value != null && value.isAlive()) {
+      myMetrics.increment(CommitStatusPublisherMetrics.STATUS_CACHE_REQUESTS, "result", "hit");
+      span.setOutcome("hit");
+      return value.getValue();
+    }
     Lock lock = myCacheLocks.get(revision.getRevision());
     lock.lock();
     try {
       value = getStatusFromCache(revision, prefix);
-      if (value != null && value.isAlive()) return value.getValue();
+      if (value != null && value.isAlive()) {
+        myMetrics.increment(CommitStatusPublisherMetrics.STATUS_CACHE_REQUESTS, "result", "hit");
+        span.setOutcome("hit");
+        return value.getValue();
+      }
 
-      Collection<T> loadedStatuses = batchStatusLoader.get();
+      myMetrics.increment(CommitStatusPublisherMetrics.STATUS_CACHE_REQUESTS, "result", "miss");
+      span.setOutcome("miss");
+      final long loadStart = System.currentTimeMillis();
+      Collection<T> loadedStatuses;
+      try {
+        loadedStatuses = batchStatusLoader.get();
+      } finally {
+        myMetrics.observe(CommitStatusPublisherMetrics.STATUS_CACHE_LOAD_DURATION, System.currentTimeMillis() - loadStart);
+      }
       if (loadedStatuses != null) {
         if (!loadedStatuses.isEmpty()) {
           putStatusesToCache(revision, loadedStatuses, prefixProvider);
-        } else {
+        } else if (!filteredLoader) {
           putStatusToCache(revision, PREFIX_WILDCARD, null);
+        } else {
+          // keep the missing status as short as a missing wildcard, other nodes may publish it any moment
+          putStatusToCache(revision, prefix, null, true);
+          return null;
         }
       }
       value = getStatusFromCache(revision, prefix);
@@ -100,6 +151,30 @@ public class CommitStatusesCache<T> {
     }
   }
 
+  /**
+   * Returns status from the cache without loading statuses if it is missing
+   * @param revision key for the cache
+   * @param prefix business logic related key prefix for the cache
+   * @return cached status or null if it is not cached or known to be missing
+   */
+  @Nullable
+  public T getCachedStatus(@NotNull BuildRevision revision, @Nullable String prefix) {
+    if (!TeamCityProperties.getBooleanOrTrue(CACHE_FEATURE_TOGGLE_PARAMETER)) return null;
+
+    ValueWithTTL<T> value = getStatusFromCache(revision, prefix);
+    return value != null && value.isAlive() ? value.getValue() : null;
+  }
+
+  /**
+   * Replaces the cached status with the one which has just been published
+   * @param revision key for the cache
+   * @param prefix business logic related key prefix for the cache
+   * @param status published status
+   */
+  public void updateStatusInCache(@NotNull BuildRevision revision, @Nullable String prefix, @NotNull T status) {
+    putStatusToCache(revision, prefix, status);
+  }
+
   /**
    * Puts new value to the cache
    *
@@ -110,12 +185,16 @@ public class CommitStatusesCache<T> {
    * @return previous value in cache or null
    */
   private void putStatusToCache(@NotNull BuildRevision revision, @Nullable String prefix, @Nullable T status) {
+    putStatusToCache(revision, prefix, status, PREFIX_WILDCARD.equals(prefix));
+  }
+
+  private void putStatusToCache(@NotNull BuildRevision revision, @Nullable String prefix, @Nullable T status, boolean shortLived) {
     if (!TeamCityProperties.getBooleanOrTrue(CACHE_FEATURE_TOGGLE_PARAMETER)) return;
 
     ReentrantReadWriteLock.WriteLock lock = myWholeCacheLock.writeLock();
     lock.lock();
     try {
-      myCache.put(buildKey(revision, prefix), new ValueWithTTL<>(status, getExpirationTime(PREFIX_WILDCARD.equals(prefix))));
+      myCache.put(buildKey(revision, prefix), new ValueWithTTL<>(status, getExpirationTime(shortLived)));
     } finally {
       lock.unlock();
     }
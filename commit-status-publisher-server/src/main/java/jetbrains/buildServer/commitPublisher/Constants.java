@@ -91,6 +91,7 @@ public class Constants {
   public static final String GITLAB_TOKEN = "secure:gitlabAccessToken";
   public static final String STATUSES_TO_LOAD_THRESHOLD_PROPERTY = "teamcity.commitStatusPubliser.statusesToLoad.threshold";
   public static final int STATUSES_TO_LOAD_THRESHOLD_DEFAULT_VAL = 50;
+  public static final String STATUS_LOOKUP_BY_KEY_TOGGLE = "teamcity.commitStatusPublisher.statusLookupByKey.enabled";
   public static final String GITLAB_FEATURE_TOGGLE_MERGE_RESULTS = "commitStatusPubliser.gitlab.supportMergeResults";
 
   /**
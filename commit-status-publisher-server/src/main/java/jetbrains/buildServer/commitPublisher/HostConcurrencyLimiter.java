@@ -0,0 +1,282 @@
+/*
+ * Copyright 2000-2024 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jetbrains.buildServer.commitPublisher;
+
+import java.io.InterruptedIOException;
+import java.net.ConnectException;
+import java.net.NoRouteToHostException;
+import java.net.URI;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import jetbrains.buildServer.commitPublisher.metrics.CommitStatusPublisherMetrics;
+import jetbrains.buildServer.commitPublisher.metrics.PublishingEvents;
+import jetbrains.buildServer.commitPublisher.metrics.PublishingTrace;
+import jetbrains.buildServer.commitPublisher.metrics.PublishingTraces;
+import jetbrains.buildServer.serverSide.TeamCityProperties;
+import jetbrains.buildServer.util.http.HttpMethod;
+import org.apache.http.HttpStatus;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import static jetbrains.buildServer.commitPublisher.LoggerUtil.LOG;
+
+/**
+ * Limits the number of in-flight requests to every VCS hosting.
+ * The limit is adjusted with AIMD: it grows additively while the host responds fast and without errors,
+ * and is decreased multiplicatively when the host fails to connect, times out, throttles or responds with server errors,
+ * as well as when the response time grows noticeably above the observed baseline, i.e. before requests start to time out.
+ * Requests of different methods take different time, e.g. reads and status updates, so baselines are tracked per method.
+ * Responses to conditional requests which did not transfer the body are much faster than the regular ones of the same method,
+ * so they are not taken into account at all.
+ * The default limits are high enough not to restrict a healthy host, the limit only goes down when the host shows signs of overload.
+ */
+public class HostConcurrencyLimiter {
+  static final String ENABLED_PARAMETER = "teamcity.commitStatusPublisher.adaptiveConcurrency.enabled";
+  static final String INITIAL_LIMIT_PARAMETER = "teamcity.commitStatusPublisher.adaptiveConcurrency.initialLimit";
+  static final String MAX_LIMIT_PARAMETER = "teamcity.commitStatusPublisher.adaptiveConcurrency.maxLimit";
+  static final String MAX_WAIT_PARAMETER = "teamcity.commitStatusPublisher.adaptiveConcurrency.maxWaitMs";
+  private static final int INITIAL_LIMIT_DEFAULT_VALUE = 64;
+  private static final int MAX_LIMIT_DEFAULT_VALUE = 128;
+  private static final long MAX_WAIT_DEFAULT_VALUE_MS = 30_000L;
+
+  private static final double ERROR_BACKOFF_RATIO = 0.5;
+  private static final double LATENCY_BACKOFF_RATIO = 0.9;
+  private static final double LATENCY_TOLERANCE = 2.0;
+  private static final long MIN_LATENCY_TO_BACKOFF_MS = 100;
+  private static final double BASELINE_ADAPTATION_RATE = 0.05;
+
+  private final ConcurrentMap<String, HostLimit> myLimits = new ConcurrentHashMap<>();
+  private final CommitStatusPublisherMetrics myMetrics;
+
+  public HostConcurrencyLimiter(@NotNull CommitStatusPublisherMetrics metrics) {
+    myMetrics = metrics;
+    metrics.registerGauge(CommitStatusPublisherMetrics.CONCURRENCY_LIMIT, "host", this::getLimits);
+    metrics.registerGauge(CommitStatusPublisherMetrics.IN_FLIGHT_REQUESTS, "host", this::getInFlight);
+  }
+
+  /**
+   * Waits for a free slot for the host of the provided URL
+   * @param url request URL
+   * @param method request method, response times are compared only to the ones of the requests of the same method
+   * @param deadline deadline of the publishing event, the method never waits longer than it allows
+   * @return permit which must be released once the request is completed
+   * @throws PublisherException with retry flag set, if no slot became available in time
+   */
+  @NotNull
+  public Permit acquire(@NotNull String url, @NotNull HttpMethod method, @NotNull PublishingDeadline deadline) throws PublisherException {
+    if (!TeamCityProperties.getBooleanOrTrue(ENABLED_PARAMETER)) {
+      return new Permit(null, null, deadline, null, myMetrics);
+    }
+    final String host = getHost(url);
+    final HostLimit hostLimit = myLimits.computeIfAbsent(host, h -> new HostLimit());
+    final long waitMs = Math.min(TeamCityProperties.getLong(MAX_WAIT_PARAMETER, MAX_WAIT_DEFAULT_VALUE_MS), deadline.getRemainingMs());
+    if (!hostLimit.tryAcquire(waitMs)) {
+      throw new PublisherException(String.format("Too many concurrent requests to %s (current limit is %d), the request will be retried later", host, hostLimit.getLimit()))
+        .setShouldRetry();
+    }
+    return new Permit(host, method, deadline, hostLimit, myMetrics);
+  }
+
+  /**
+   * @return current in-flight request limits by host
+   */
+  @NotNull
+  public Map<String, Integer> getLimits() {
+    final Map<String, Integer> result = new TreeMap<>();
+    myLimits.forEach((host, limit) -> result.put(host, limit.getLimit()));
+    return Collections.unmodifiableMap(result);
+  }
+
+  /**
+   * @return current number of in-flight requests by host
+   */
+  @NotNull
+  public Map<String, Integer> getInFlight() {
+    final Map<String, Integer> result = new TreeMap<>();
+    myLimits.forEach((host, limit) -> result.put(host, limit.getInFlight()));
+    return Collections.unmodifiableMap(result);
+  }
+
+  /**
+   * Tells whether the outcome of a request indicates that the host is overloaded or unavailable,
+   * as opposed to errors like missing permissions, reached publishing deadline or throttling on our side which say nothing about the host health
+   * @param statusCode response status code, or -1 if the response has not been received or is not known
+   * @param error request failure, if any
+   * @param deadline deadline the request timeout was limited with. The timeout of a request reached together with the deadline
+   *                 may have been shortened to fit it, so only timeouts before the deadline mean the host did not respond within the full timeout
+   */
+  static boolean isOverloadSignal(int statusCode, @Nullable Throwable error, @NotNull PublishingDeadline deadline) {
+    if (isOverloadStatus(statusCode)) return true;
+    for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+      if (cause instanceof HttpPublisherException && ((HttpPublisherException)cause).getStatusCode() != null) {
+        return isOverloadStatus(((HttpPublisherException)cause).getStatusCode());
+      }
+      if (cause instanceof ConnectException || cause instanceof NoRouteToHostException) {
+        return true;
+      }
+      // both socket and connect timeouts
+      if (cause instanceof InterruptedIOException) {
+        return !deadline.isExpired();
+      }
+    }
+    return false;
+  }
+
+  private static boolean isOverloadStatus(int statusCode) {
+    return statusCode == 429 || statusCode >= HttpStatus.SC_INTERNAL_SERVER_ERROR;
+  }
+
+  @NotNull
+  static String getHost(@NotNull String url) {
+    try {
+      final URI uri = new URI(url);
+      if (uri.getHost() != null) {
+        return uri.getPort() == -1 ? uri.getHost() : uri.getHost() + ":" + uri.getPort();
+      }
+    } catch (Exception ignored) {
+    }
+    return url;
+  }
+
+  public static class Permit {
+    private final String myHost;
+    private final HttpMethod myMethod;
+    private final PublishingDeadline myDeadline;
+    private final HostLimit myHostLimit;
+    private final CommitStatusPublisherMetrics myMetrics;
+    private final long myStartNanos = System.nanoTime();
+    private final AtomicBoolean myReleased = new AtomicBoolean();
+    private volatile int myStatusCode = -1;
+
+    private Permit(@Nullable String host,
+                   @Nullable HttpMethod method,
+                   @NotNull PublishingDeadline deadline,
+                   @Nullable HostLimit hostLimit,
+                   @NotNull CommitStatusPublisherMetrics metrics) {
+      myHost = host;
+      myMethod = method;
+      myDeadline = deadline;
+      myHostLimit = hostLimit;
+      myMetrics = metrics;
+    }
+
+    /**
+     * Records the status code of the response, must be called for every response received with the permit
+     */
+    public void responseReceived(int statusCode) {
+      myStatusCode = statusCode;
+      myMetrics.increment(CommitStatusPublisherMetrics.HTTP_RESPONSES, "code", String.valueOf(statusCode));
+    }
+
+    /**
+     * @param error request failure, if any
+     */
+    public void release(@Nullable Throwable error) {
+      if (myHostLimit == null || !myReleased.compareAndSet(false, true)) return;
+      final boolean overloaded = isOverloadSignal(myStatusCode, error, myDeadline);
+      final long latencyMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - myStartNanos);
+      myMetrics.observe(CommitStatusPublisherMetrics.HTTP_REQUEST_DURATION, latencyMs, "host", myHost);
+      PublishingEvents.host(myHost);
+      final PublishingTrace trace = PublishingTraces.current();
+      if (trace != null) {
+        trace.host(myHost);
+        trace.stage(String.format("request to %s (%d ms)", myHost, latencyMs));
+      }
+      if (myStatusCode == HttpStatus.SC_NOT_MODIFIED) {
+        myHostLimit.releaseNotMeasured();
+        return;
+      }
+      final int oldLimit = myHostLimit.getLimit();
+      myHostLimit.release(myMethod, latencyMs, overloaded);
+      final int newLimit = myHostLimit.getLimit();
+      if (oldLimit != newLimit) {
+        LOG.debug(() -> String.format("Concurrent requests limit for %s has been changed from %d to %d (latency: %d ms, overloaded: %s)", myHost, oldLimit, newLimit, latencyMs, overloaded));
+      }
+    }
+  }
+
+  static class HostLimit {
+    private double myLimit = Math.max(1, TeamCityProperties.getInteger(INITIAL_LIMIT_PARAMETER, INITIAL_LIMIT_DEFAULT_VALUE));
+    private int myInFlight = 0;
+    private final Map<HttpMethod, Double> myBaselineLatenciesMs = new HashMap<>();
+
+    synchronized boolean tryAcquire(long waitMs) {
+      final long waitUntil = System.currentTimeMillis() + waitMs;
+      while (myInFlight >= getLimit()) {
+        final long remaining = waitUntil - System.currentTimeMillis();
+        if (remaining <= 0) return false;
+        try {
+          wait(remaining);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          return false;
+        }
+      }
+      myInFlight++;
+      return true;
+    }
+
+    synchronized void release(@NotNull HttpMethod method, long latencyMs, boolean overloaded) {
+      final boolean saturated = myInFlight * 2 >= getLimit();
+      myInFlight--;
+      final Double baselineLatencyMs = myBaselineLatenciesMs.get(method);
+      if (overloaded) {
+        myLimit = Math.max(1, myLimit * ERROR_BACKOFF_RATIO);
+      } else if (baselineLatencyMs != null && latencyMs > MIN_LATENCY_TO_BACKOFF_MS && latencyMs > baselineLatencyMs * LATENCY_TOLERANCE) {
+        myLimit = Math.max(1, myLimit * LATENCY_BACKOFF_RATIO);
+      } else if (saturated) {
+        // grow only if the current limit is actually used, otherwise it would grow unbounded under a light load
+        myLimit = Math.min(TeamCityProperties.getInteger(MAX_LIMIT_PARAMETER, MAX_LIMIT_DEFAULT_VALUE), myLimit + 1 / myLimit);
+      }
+      if (!overloaded) {
+        updateBaseline(method, baselineLatencyMs, latencyMs);
+      }
+      notifyAll();
+    }
+
+    /**
+     * Frees the slot of a request whose response time says nothing about the host load
+     */
+    synchronized void releaseNotMeasured() {
+      myInFlight--;
+      notifyAll();
+    }
+
+    private void updateBaseline(@NotNull HttpMethod method, @Nullable Double baselineLatencyMs, long latencyMs) {
+      if (baselineLatencyMs == null || latencyMs < baselineLatencyMs) {
+        myBaselineLatenciesMs.put(method, (double)latencyMs);
+      } else {
+        // let the baseline slowly follow latency growth, so that a permanently slower host does not keep the limit at minimum
+        myBaselineLatenciesMs.put(method, baselineLatencyMs + (latencyMs - baselineLatencyMs) * BASELINE_ADAPTATION_RATE);
+      }
+    }
+
+    synchronized int getLimit() {
+      return Math.max(1, (int)myLimit);
+    }
+
+    synchronized int getInFlight() {
+      return myInFlight;
+    }
+  }
+}
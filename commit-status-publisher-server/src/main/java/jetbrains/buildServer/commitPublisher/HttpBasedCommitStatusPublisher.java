@@ -42,14 +42,17 @@ import static jetbrains.buildServer.commitPublisher.LoggerUtil.LOG;
 public abstract class HttpBasedCommitStatusPublisher<Status> extends BaseCommitStatusPublisher implements HttpResponseProcessor<HttpPublisherException> {
 
   private final HttpResponseProcessor<HttpPublisherException> myHttpResponseProcessor;
+  private final HostConcurrencyLimiter myConcurrencyLimiter;
   protected final WebLinks myLinks;
 
   public HttpBasedCommitStatusPublisher(@NotNull CommitStatusPublisherSettings settings,
                                         @NotNull SBuildType buildType, @NotNull String buildFeatureId,
                                         @NotNull Map<String, String> params,
-                                        @NotNull CommitStatusPublisherProblems problems, WebLinks links) {
+                                        @NotNull CommitStatusPublisherProblems problems, WebLinks links,
+                                        @NotNull HostConcurrencyLimiter concurrencyLimiter) {
     super(settings, buildType, buildFeatureId, params, problems);
     myLinks = links;
+    myConcurrencyLimiter = concurrencyLimiter;
     myHttpResponseProcessor = new DefaultHttpResponseProcessor();
   }
 
@@ -63,15 +66,22 @@ public abstract class HttpBasedCommitStatusPublisher<Status> extends BaseCommitS
                           @Nullable final String data,
                           @Nullable final Map<String, String> headers,
                           @NotNull final String buildDescription) throws PublisherException {
+    getDeadline().check("POST request to " + url);
+    final HostConcurrencyLimiter.Permit permit = myConcurrencyLimiter.acquire(url, HttpMethod.POST, getDeadline());
+    final int timeout = limitTimeout(permit);
+    PublisherException error = null;
     try {
       LoggerUtil.logRequest(getId(), HttpMethod.POST, url, data);
       IOGuard.allowNetworkCall(
-        () -> HttpHelper.post(url, credentials, data, ContentType.APPLICATION_JSON, headers, getConnectionTimeout(), getSettings().trustStore(), new RetryResponseProcessor(this))
+        () -> HttpHelper.post(url, credentials, data, ContentType.APPLICATION_JSON, headers, timeout, getSettings().trustStore(), new RetryResponseProcessor(this, permit))
       );
     } catch (Exception ex) {
       PublisherException e = new PublisherException("Commit Status Publisher POST HTTP request has failed. " + ex, ex);
       RetryResponseProcessor.processNetworkException(ex, e);
+      error = e;
       throw e;
+    } finally {
+      permit.release(error);
     }
   }
 
@@ -80,13 +90,32 @@ public abstract class HttpBasedCommitStatusPublisher<Status> extends BaseCommitS
                      @Nullable final HttpCredentials credentials,
                      @Nullable final Map<String, String> headers,
                      @NotNull final ResponseEntityProcessor<T> responseProcessor) throws PublisherException {
+    getDeadline().check("GET request to " + url);
+    final HostConcurrencyLimiter.Permit permit = myConcurrencyLimiter.acquire(url, HttpMethod.GET, getDeadline());
+    final int timeout = limitTimeout(permit);
+    PublisherException error = null;
     try {
       LoggerUtil.logRequest(getId(), HttpMethod.GET, url, null);
-      IOGuard.allowNetworkCall(() -> HttpHelper.get(url, credentials, headers, getConnectionTimeout(), getSettings().trustStore(), new RetryResponseProcessor(responseProcessor)));
+      IOGuard.allowNetworkCall(() -> HttpHelper.get(url, credentials, headers, timeout, getSettings().trustStore(), new RetryResponseProcessor(responseProcessor, permit)));
       return responseProcessor.getProcessingResult();
     } catch (Exception ex) {
       PublisherException e = new PublisherException("Commit Status Publisher HTTP request has failed", ex);
       RetryResponseProcessor.processNetworkException(ex, e);
+      error = e;
+      throw e;
+    } finally {
+      permit.release(error);
+    }
+  }
+
+  /**
+   * Waiting for the permit may take the rest of the publishing time budget, the request is not made then
+   */
+  private int limitTimeout(@NotNull HostConcurrencyLimiter.Permit permit) throws PublisherException {
+    try {
+      return getConnectionTimeout();
+    } catch (PublisherException e) {
+      permit.release(e);
       throw e;
     }
   }
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2000-2024 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jetbrains.buildServer.commitPublisher;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import jetbrains.buildServer.serverSide.TeamCityProperties;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Keeps HTTP validators (ETags) of previously read resources together with their already parsed bodies.
+ * Allows to turn repeated reads into conditional requests and to reuse the parsed body on 304 Not Modified.
+ * Entries are keyed by request URL and a fingerprint of the credentials, so responses are never shared between different credentials.
+ */
+public class HttpValidatorCache {
+  static final String CACHE_FEATURE_TOGGLE_PARAMETER = "teamcity.commitStatusPublisher.etagCache.enabled";
+  static final String CACHE_MAX_SIZE_PARAMETER = "teamcity.commitStatusPublisher.etagCache.maxSize";
+  static final String CACHE_VALUE_TTL_PARAMETER = "teamcity.commitStatusPublisher.etagCache.ttl";
+  static final int CACHE_MAX_SIZE_DEFAULT_VALUE = 1000;
+  static final long CACHE_VALUE_TTL_DEFAULT_VALUE_MS = 600_000L;
+
+  private final Cache<String, CachedResponse<?>> myCache;
+
+  public HttpValidatorCache() {
+    myCache = CacheBuilder.newBuilder()
+                          .maximumSize(TeamCityProperties.getInteger(CACHE_MAX_SIZE_PARAMETER, CACHE_MAX_SIZE_DEFAULT_VALUE))
+                          .expireAfterWrite(TeamCityProperties.getIntervalMilliseconds(CACHE_VALUE_TTL_PARAMETER, CACHE_VALUE_TTL_DEFAULT_VALUE_MS), TimeUnit.MILLISECONDS)
+                          .build();
+  }
+
+  /**
+   * @param url request URL
+   * @param credentialsFingerprint fingerprint of the credentials the request is made with, see {@link #fingerprint(String...)}
+   * @param type expected type of the parsed body
+   * @return cached validator with the parsed body or null if there is no suitable entry
+   */
+  @Nullable
+  public <T> CachedResponse<T> get(@NotNull String url, @NotNull String credentialsFingerprint, @NotNull Class<T> type) {
+    if (!isEnabled()) return null;
+
+    CachedResponse<?> response = myCache.getIfPresent(buildKey(url, credentialsFingerprint));
+    if (response == null || !type.isInstance(response.getBody())) {
+      return null;
+    }
+    //noinspection unchecked
+    return (CachedResponse<T>)response;
+  }
+
+  public <T> void put(@NotNull String url, @NotNull String credentialsFingerprint, @Nullable String eTag, @NotNull T body) {
+    if (!isEnabled()) return;
+
+    String key = buildKey(url, credentialsFingerprint);
+    if (eTag == null || eTag.isEmpty()) {
+      myCache.invalidate(key);
+      return;
+    }
+    myCache.put(key, new CachedResponse<>(eTag, body));
+  }
+
+  public void invalidate(@NotNull String url, @NotNull String credentialsFingerprint) {
+    myCache.invalidate(buildKey(url, credentialsFingerprint));
+  }
+
+  /**
+   * Builds a one-way fingerprint of the credentials parts, so that secrets are not kept in cache keys as is
+   */
+  @NotNull
+  public static String fingerprint(@Nullable String... parts) {
+    Hasher hasher = Hashing.sha256().newHasher();
+    for (String part : parts) {
+      hasher.putString(part == null ? "" : part, StandardCharsets.UTF_8).putByte((byte)0);
+    }
+    return hasher.hash().toString();
+  }
+
+  private static boolean isEnabled() {
+    return TeamCityProperties.getBooleanOrTrue(CACHE_FEATURE_TOGGLE_PARAMETER);
+  }
+
+  @NotNull
+  private static String buildKey(@NotNull String url, @NotNull String credentialsFingerprint) {
+    return credentialsFingerprint + ":" + url;
+  }
+
+  public static class CachedResponse<T> {
+    private final String myETag;
+    private final T myBody;
+
+    CachedResponse(@NotNull String eTag, @NotNull T body) {
+      myETag = eTag;
+      myBody = body;
+    }
+
+    @NotNull
+    public String getETag() {
+      return myETag;
+    }
+
+    @NotNull
+    public T getBody() {
+      return myBody;
+    }
+  }
+}
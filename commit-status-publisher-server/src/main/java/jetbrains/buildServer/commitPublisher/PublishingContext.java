@@ -0,0 +1,159 @@
+/*
+ * Copyright 2000-2024 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package jetbrains.buildServer.commitPublisher;
+
+import java.util.concurrent.Callable;
+import java.util.function.Supplier;
+import jetbrains.buildServer.commitPublisher.metrics.PublishingEvents;
+import jetbrains.buildServer.commitPublisher.metrics.PublishingTrace;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * State of the publishing performed by the current thread: the time budget of the publisher, the trace of the event,
+ * the open flight recorder span and the build data shared by the publishers handling the event.
+ * The state is kept in a single thread local, so that it is applied and restored in one place
+ * and is carried as a whole to the tasks run by other threads via {@link #bind(Callable)}.
+ * Contexts are immutable, a modified copy is made current for the duration of {@link #call(Supplier)}.
+ */
+public class PublishingContext {
+  private static final PublishingContext EMPTY = new PublishingContext(PublishingDeadline.unlimited(), null, null, null);
+  private static final ThreadLocal<PublishingContext> ourCurrentContext = new ThreadLocal<>();
+
+  private final PublishingDeadline myDeadline;
+  private final PublishingTrace myTrace;
+  private final PublishingEvents.Span mySpan;
+  private final BuildEventPayload myPayload;
+
+  private PublishingContext(@NotNull PublishingDeadline deadline,
+                            @Nullable PublishingTrace trace,
+                            @Nullable PublishingEvents.Span span,
+                            @Nullable BuildEventPayload payload) {
+    myDeadline = deadline;
+    myTrace = trace;
+    mySpan = span;
+    myPayload = payload;
+  }
+
+  /**
+   * @return context of the publishing performed by the current thread, or an empty one if the thread publishes nothing
+   */
+  @NotNull
+  public static PublishingContext current() {
+    final PublishingContext context = ourCurrentContext.get();
+    return context == null ? EMPTY : context;
+  }
+
+  /**
+   * Captures the context of the publishing performed by the calling thread
+   * @return the task which runs with the captured context, for tasks submitted to executors on behalf of the publisher
+   */
+  @NotNull
+  public static <T> Callable<T> bind(@NotNull Callable<T> task) {
+    final PublishingContext context = current();
+    if (context == EMPTY) return task;
+    return () -> {
+      final PublishingContext previous = ourCurrentContext.get();
+      set(context);
+      try {
+        return task.call();
+      } finally {
+        set(previous);
+      }
+    };
+  }
+
+  /**
+   * Runs the action with this context being current for the calling thread
+   */
+  public <T> T call(@NotNull Supplier<T> action) {
+    final PublishingContext previous = ourCurrentContext.get();
+    set(this);
+    try {
+      return action.get();
+    } finally {
+      set(previous);
+    }
+  }
+
+  public void run(@NotNull Runnable action) {
+    call(() -> {
+      action.run();
+      return null;
+    });
+  }
+
+  /**
+   * Makes the span current for the calling thread, spans are opened and ended by the same thread without a block to run
+   */
+  public static void setSpan(@Nullable PublishingEvents.Span span) {
+    set(current().withSpan(span));
+  }
+
+  @NotNull
+  public PublishingDeadline getDeadline() {
+    return myDeadline;
+  }
+
+  @Nullable
+  public PublishingTrace getTrace() {
+    return myTrace;
+  }
+
+  @Nullable
+  public PublishingEvents.Span getSpan() {
+    return mySpan;
+  }
+
+  @Nullable
+  public BuildEventPayload getPayload() {
+    return myPayload;
+  }
+
+  @NotNull
+  public PublishingContext withDeadline(@NotNull PublishingDeadline deadline) {
+    return new PublishingContext(deadline, myTrace, mySpan, myPayload);
+  }
+
+  @NotNull
+  public PublishingContext withTrace(@Nullable PublishingTrace trace) {
+    return new PublishingContext(myDeadline, trace, mySpan, myPayload);
+  }
+
+  @NotNull
+  public PublishingContext withSpan(@Nullable PublishingEvents.Span span) {
+    return new PublishingContext(myDeadline, myTrace, span, myPayload);
+  }
+
+  @NotNull
+  public PublishingContext withPayload(@Nullable BuildEventPayload payload) {
+    return new PublishingContext(myDeadline, myTrace, mySpan, payload);
+  }
+
+  private boolean isEmpty() {
+    return myDeadline.isUnlimited() && myTrace == null && mySpan == null && myPayload == null;
+  }
+
+  private static void set(@Nullable PublishingContext context) {
+    if (context == null || context.isEmpty()) {
+      ourCurrentContext.remove();
+    } else {
+      ourCurrentContext.set(context);
+    }
+  }
+}
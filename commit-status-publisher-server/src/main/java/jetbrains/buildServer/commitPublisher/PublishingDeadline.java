@@ -0,0 +1,92 @@
+/*
+ * Copyright 2000-2024 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jetbrains.buildServer.commitPublisher;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Time budget of a single publisher publishing a status to a single revision.
+ * It is shared by all the remote calls made by the publisher for the revision,
+ * so that the time spent by a worker is capped regardless of the number of calls and their individual timeouts.
+ * The budget is provided to the publisher for the duration of the call as a part of the {@link PublishingContext}.
+ */
+public class PublishingDeadline {
+  private static final PublishingDeadline UNLIMITED = new PublishingDeadline(Long.MAX_VALUE);
+
+  private final long myDeadlineTimestamp;
+
+  private PublishingDeadline(long deadlineTimestamp) {
+    myDeadlineTimestamp = deadlineTimestamp;
+  }
+
+  @NotNull
+  public static PublishingDeadline unlimited() {
+    return UNLIMITED;
+  }
+
+  /**
+   * @param budgetMs time budget in milliseconds, non-positive value means no limit
+   */
+  @NotNull
+  public static PublishingDeadline after(long budgetMs) {
+    if (budgetMs <= 0) {
+      return UNLIMITED;
+    }
+    return new PublishingDeadline(System.currentTimeMillis() + budgetMs);
+  }
+
+  public boolean isUnlimited() {
+    return myDeadlineTimestamp == Long.MAX_VALUE;
+  }
+
+  public long getRemainingMs() {
+    if (isUnlimited()) {
+      return Long.MAX_VALUE;
+    }
+    return Math.max(0, myDeadlineTimestamp - System.currentTimeMillis());
+  }
+
+  public boolean isExpired() {
+    return getRemainingMs() == 0;
+  }
+
+  /**
+   * @param timeoutMs timeout configured for a single remote call
+   * @param operation description of the operation for the error message
+   * @return the provided timeout shrunk to the time remaining before the deadline
+   * @throws PublisherException with retry flag set, if the deadline has been reached
+   */
+  public int limitTimeout(int timeoutMs, @NotNull String operation) throws PublisherException {
+    check(operation);
+    long remaining = getRemainingMs();
+    if (remaining >= timeoutMs) {
+      return timeoutMs;
+    }
+    return (int)remaining;
+  }
+
+  /**
+   * Makes sure there is time left for the next remote call
+   * @param operation description of the operation for the error message
+   * @throws PublisherException with retry flag set, if the deadline has been reached
+   */
+  public void check(@NotNull String operation) throws PublisherException {
+    if (isExpired()) {
+      throw new PublisherException("Publishing deadline has been reached before " + operation + ", the work will be rescheduled").setShouldRetry();
+    }
+  }
+}
@@ -24,6 +24,7 @@ import jetbrains.buildServer.util.stream.Collectors;
 import jetbrains.buildServer.vcshostings.http.HttpHelper;
 import jetbrains.buildServer.vcshostings.http.HttpResponseProcessor;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 public class RetryResponseProcessor implements HttpResponseProcessor<HttpPublisherException> {
 
@@ -40,6 +41,8 @@ public class RetryResponseProcessor implements HttpResponseProcessor<HttpPublish
   ));
   @NotNull
   private final HttpResponseProcessor<HttpPublisherException> myDelegate;
+  @Nullable
+  private final HostConcurrencyLimiter.Permit myPermit;
 
   public static boolean shouldRetryOnCode(int statusCode) {
     String statusCodesString = TeamCityProperties.getPropertyOrNull(RETRY_STATUS_CODES_PROPERTY_NAME);
@@ -60,11 +63,22 @@ public class RetryResponseProcessor implements HttpResponseProcessor<HttpPublish
   }
 
   public RetryResponseProcessor(@NotNull HttpResponseProcessor<HttpPublisherException> httpResponseProcessor) {
+    this(httpResponseProcessor, null);
+  }
+
+  /**
+   * @param permit permit the request is made with, it is notified about the response status code
+   */
+  public RetryResponseProcessor(@NotNull HttpResponseProcessor<HttpPublisherException> httpResponseProcessor, @Nullable HostConcurrencyLimiter.Permit permit) {
     myDelegate = httpResponseProcessor;
+    myPermit = permit;
   }
 
   @Override
   public void processResponse(HttpHelper.HttpResponse response) throws IOException, HttpPublisherException {
+    if (myPermit != null) {
+      myPermit.responseReceived(response.getStatusCode());
+    }
     try {
       myDelegate.processResponse(response);
     } catch (PublisherException ex) {
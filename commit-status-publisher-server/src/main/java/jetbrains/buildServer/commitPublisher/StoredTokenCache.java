@@ -0,0 +1,158 @@
+/*
+ * Copyright 2000-2024 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jetbrains.buildServer.commitPublisher;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+import jetbrains.buildServer.serverSide.SProject;
+import jetbrains.buildServer.serverSide.TeamCityProperties;
+import jetbrains.buildServer.serverSide.executors.ExecutorServices;
+import jetbrains.buildServer.serverSide.oauth.OAuthToken;
+import jetbrains.buildServer.serverSide.oauth.OAuthTokensStorage;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import static jetbrains.buildServer.commitPublisher.LoggerUtil.LOG;
+
+/**
+ * Keeps stored (refreshable) tokens in memory by project and token id, so that the token storage is not asked for a token
+ * on every request. A token is used until it expires. Shortly before the expiration the token storage is asked for the token
+ * again in background, while the callers keep using the current token, tokens without expiration are revalidated periodically.
+ * When a token has to be loaded, concurrent requests for it wait for the same load instead of asking the storage each.
+ */
+public class StoredTokenCache {
+  static final String ENABLED_PARAMETER = "teamcity.commitStatusPublisher.tokenCache.enabled";
+  static final String MIN_RENEWAL_MARGIN_PARAMETER = "teamcity.commitStatusPublisher.tokenCache.minRenewalMargin";
+  static final String RENEWAL_MARGIN_PERCENT_PARAMETER = "teamcity.commitStatusPublisher.tokenCache.renewalMarginPercent";
+  static final String RENEWAL_RETRY_INTERVAL_PARAMETER = "teamcity.commitStatusPublisher.tokenCache.renewalRetryInterval";
+  private static final long MIN_RENEWAL_MARGIN_DEFAULT_MS = 60_000;
+  private static final int RENEWAL_MARGIN_PERCENT_DEFAULT = 10;
+  private static final long RENEWAL_RETRY_INTERVAL_DEFAULT_MS = 60_000;
+  private static final long NON_EXPIRING_TOKEN_REVALIDATION_MS = 60_000;
+  private static final long UNUSED_ENTRY_EXPIRATION_HOURS = 1;
+
+  private final OAuthTokensStorage myTokensStorage;
+  private final ExecutorServices myExecutorServices;
+  private final Cache<String, Entry> myEntries = CacheBuilder.newBuilder().expireAfterAccess(UNUSED_ENTRY_EXPIRATION_HOURS, TimeUnit.HOURS).build();
+
+  public StoredTokenCache(@NotNull OAuthTokensStorage tokensStorage, @NotNull ExecutorServices executorServices) {
+    myTokensStorage = tokensStorage;
+    myExecutorServices = executorServices;
+  }
+
+  @Nullable
+  public OAuthToken getToken(@NotNull SProject project, @NotNull String tokenId) {
+    final Supplier<OAuthToken> loader = () -> myTokensStorage.getToken(project, tokenId, true, true);
+    if (!TeamCityProperties.getBooleanOrTrue(ENABLED_PARAMETER)) {
+      return loader.get();
+    }
+    return myEntries.asMap().computeIfAbsent(project.getProjectId() + ":" + tokenId, k -> new Entry()).get(loader);
+  }
+
+  /**
+   * @return time before the token expiration when the token starts being renewed in background: the larger of the minimal margin and the share of the token lifetime
+   */
+  static long getRenewalMargin(long lifetimeMs) {
+    final long minMarginMs = TeamCityProperties.getIntervalMilliseconds(MIN_RENEWAL_MARGIN_PARAMETER, MIN_RENEWAL_MARGIN_DEFAULT_MS);
+    final int percent = TeamCityProperties.getInteger(RENEWAL_MARGIN_PERCENT_PARAMETER, RENEWAL_MARGIN_PERCENT_DEFAULT);
+    return Math.max(minMarginMs, lifetimeMs * Math.max(0, percent) / 100);
+  }
+
+  private static class CachedToken {
+    private final OAuthToken myToken;
+    private final long myExpirationTime;
+    private final long myRenewalTime;
+
+    CachedToken(@NotNull OAuthToken token, long expirationTime, long renewalTime) {
+      myToken = token;
+      myExpirationTime = expirationTime;
+      myRenewalTime = renewalTime;
+    }
+  }
+
+  private class Entry {
+    private volatile CachedToken myToken;
+    private volatile long myNextRenewalAttemptTime;
+    private final AtomicBoolean myRenewing = new AtomicBoolean();
+
+    @Nullable
+    OAuthToken get(@NotNull Supplier<OAuthToken> loader) {
+      final CachedToken token = myToken;
+      final long now = System.currentTimeMillis();
+      if (token != null && now < token.myExpirationTime) {
+        if (now >= token.myRenewalTime) {
+          renewInBackground(loader, now);
+        }
+        return token.myToken;
+      }
+      // concurrent requests of the token wait for the single load
+      synchronized (this) {
+        final CachedToken loaded = myToken;
+        if (loaded != null && System.currentTimeMillis() < loaded.myExpirationTime) {
+          return loaded.myToken;
+        }
+        final OAuthToken result = loader.get();
+        store(result);
+        return result;
+      }
+    }
+
+    /**
+     * The storage may return the same token until it really expires, so the renewal is attempted at most once per retry interval
+     */
+    private void renewInBackground(@NotNull Supplier<OAuthToken> loader, long now) {
+      if (now < myNextRenewalAttemptTime || !myRenewing.compareAndSet(false, true)) return;
+      myNextRenewalAttemptTime = now + TeamCityProperties.getIntervalMilliseconds(RENEWAL_RETRY_INTERVAL_PARAMETER, RENEWAL_RETRY_INTERVAL_DEFAULT_MS);
+      try {
+        myExecutorServices.getLowPriorityExecutorService().execute(() -> {
+          try {
+            final OAuthToken renewed = loader.get();
+            // the current token stays in use until it expires if the storage has none
+            if (renewed != null) {
+              store(renewed);
+            }
+          } catch (RuntimeException e) {
+            LOG.warnAndDebugDetails("Failed to renew stored token", e);
+          } finally {
+            myRenewing.set(false);
+          }
+        });
+      } catch (RejectedExecutionException e) {
+        myRenewing.set(false);
+        LOG.debug("Failed to schedule stored token renewal: " + e.getMessage());
+      }
+    }
+
+    private void store(@Nullable OAuthToken token) {
+      final long now = System.currentTimeMillis();
+      if (token == null) {
+        myToken = null;
+      } else if (token.getExpiresIn() > 0) {
+        final long lifetimeMs = TimeUnit.SECONDS.toMillis(token.getExpiresIn());
+        final long expirationTime = token.getCreateDate() + lifetimeMs;
+        // a token the storage failed to renew may be already expired, it is never kept and is requested again then
+        myToken = expirationTime > now ? new CachedToken(token, expirationTime, expirationTime - getRenewalMargin(lifetimeMs)) : null;
+      } else {
+        myToken = new CachedToken(token, now + NON_EXPIRING_TOKEN_REVALIDATION_MS, Long.MAX_VALUE);
+      }
+    }
+  }
+}
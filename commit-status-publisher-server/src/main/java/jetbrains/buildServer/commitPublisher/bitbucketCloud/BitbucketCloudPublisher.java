@@ -19,6 +19,9 @@
 package jetbrains.buildServer.commitPublisher.bitbucketCloud;
 
 import com.google.gson.*;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
@@ -56,9 +59,10 @@ class BitbucketCloudPublisher extends HttpBasedCommitStatusPublisher<BitbucketCl
                           @NotNull Map<String, String> params,
                           @NotNull CommitStatusPublisherProblems problems,
                           @NotNull CommitStatusesCache<BitbucketCloudCommitBuildStatus> statusesCache,
-                          @NotNull StatusPublisherBuildNameProvider buildNameProvider
+                          @NotNull StatusPublisherBuildNameProvider buildNameProvider,
+                          @NotNull HostConcurrencyLimiter concurrencyLimiter
   ) {
-    super(settings, buildType, buildFeatureId, params, problems, links);
+    super(settings, buildType, buildFeatureId, params, problems, links, concurrencyLimiter);
     myStatusesCache = statusesCache;
     myBuildNameProvider = buildNameProvider;
   }
@@ -156,14 +160,19 @@ class BitbucketCloudPublisher extends HttpBasedCommitStatusPublisher<BitbucketCl
 
   private BitbucketCloudCommitBuildStatus loadCommitStatusesAndGetMatching(Repository repository, BuildRevision revision, BuildPromotion promotion) throws PublisherException {
     AtomicReference<PublisherException> exception = new AtomicReference<>(null);
+    final boolean lookupByKey = isStatusLookupByKeyPreferred(promotion);
     BitbucketCloudCommitBuildStatus status = myStatusesCache.getStatusFromCache(revision, buildKey(promotion), () -> {
       try {
+        if (lookupByKey) {
+          BitbucketCloudCommitBuildStatus buildStatus = loadCommitStatus(repository, revision, buildKey(promotion));
+          return buildStatus == null ? Collections.emptyList() : Collections.singletonList(buildStatus);
+        }
         return loadCommitStatuses(repository, revision, promotion);
       } catch (PublisherException e) {
         exception.set(e);
       }
       return Collections.emptyList();
-    }, buildStatus -> buildStatus.key);
+    }, buildStatus -> buildStatus.key, lookupByKey);
 
     if (exception.get() != null) {
       throw exception.get();
@@ -172,6 +181,26 @@ class BitbucketCloudPublisher extends HttpBasedCommitStatusPublisher<BitbucketCl
     return status;
   }
 
+  @Nullable
+  private BitbucketCloudCommitBuildStatus loadCommitStatus(Repository repository, BuildRevision revision, String key) throws PublisherException {
+    final String url = String.format("%s2.0/repositories/%s/%s/commit/%s/statuses/build/%s",
+                                     getBaseUrl(), repository.owner(), repository.repositoryName(), revision.getRevision(), encodePathSegment(key));
+    return get(url, getCredentials(revision.getRoot()), null, new BitbucketCloudResponseEntityProcessor<>(BitbucketCloudCommitBuildStatus.class));
+  }
+
+  /**
+   * Status keys may contain characters not allowed in the URL path, URLEncoder encodes spaces as '+' which is not a space in the path
+   */
+  @NotNull
+  static String encodePathSegment(@NotNull String value) {
+    try {
+      return URLEncoder.encode(value, StandardCharsets.UTF_8.name()).replace("+", "%20");
+    } catch (UnsupportedEncodingException e) {
+      LOG.warn(String.format("Failed to encode URL path segment: \"%s\"", value), e);
+      return value;
+    }
+  }
+
   private Collection<BitbucketCloudCommitBuildStatus> loadCommitStatuses(Repository repository, BuildRevision revision, BuildPromotion promotion) throws PublisherException {
     Collection<BitbucketCloudCommitBuildStatus> result = new ArrayList<>();
     boolean shouldContinue;
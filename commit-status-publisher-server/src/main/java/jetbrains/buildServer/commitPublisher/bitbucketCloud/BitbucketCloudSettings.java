@@ -27,6 +27,7 @@ import jetbrains.buildServer.commitPublisher.*;
 import jetbrains.buildServer.commitPublisher.CommitStatusPublisher.Event;
 import jetbrains.buildServer.commitPublisher.bitbucketCloud.data.BitbucketCloudCommitBuildStatus;
 import jetbrains.buildServer.commitPublisher.bitbucketCloud.data.BitbucketCloudRepoInfo;
+import jetbrains.buildServer.commitPublisher.metrics.CommitStatusPublisherMetrics;
 import jetbrains.buildServer.serverSide.*;
 import jetbrains.buildServer.serverSide.auth.SecurityContext;
 import jetbrains.buildServer.serverSide.oauth.OAuthConnectionDescriptor;
@@ -77,6 +78,8 @@ public class BitbucketCloudSettings extends AuthTypeAwareSettings implements Com
 
   private final ProjectManager myProjectManager;
 
+  private final HostConcurrencyLimiter myConcurrencyLimiter;
+
   public BitbucketCloudSettings(@NotNull PluginDescriptor descriptor,
                                 @NotNull WebLinks links,
                                 @NotNull CommitStatusPublisherProblems problems,
@@ -86,12 +89,15 @@ public class BitbucketCloudSettings extends AuthTypeAwareSettings implements Com
                                 @NotNull UserModel userModel,
                                 @NotNull SecurityContext securityContext,
                                 @NotNull ProjectManager projectManager,
-                                @NotNull BitbucketCloudBuildNameProvider buildNameProvider
+                                @NotNull BitbucketCloudBuildNameProvider buildNameProvider,
+                                @NotNull HostConcurrencyLimiter concurrencyLimiter,
+                                @NotNull CommitStatusPublisherMetrics metrics
   ) {
     super(descriptor, links, problems, trustStoreProvider, oAuthTokensStorage, userModel, oAuthConnectionsManager, securityContext);
-    myStatusesCache = new CommitStatusesCache<>();
+    myStatusesCache = new CommitStatusesCache<>(metrics);
     myProjectManager = projectManager;
     myBuildNameProvider = buildNameProvider;
+    myConcurrencyLimiter = concurrencyLimiter;
   }
 
   protected String getDefaultApiUrl() {
@@ -116,7 +122,7 @@ public class BitbucketCloudSettings extends AuthTypeAwareSettings implements Com
 
   @Nullable
   public CommitStatusPublisher createPublisher(@NotNull SBuildType buildType, @NotNull String buildFeatureId, @NotNull Map<String, String> params) {
-    return new BitbucketCloudPublisher(this, buildType, buildFeatureId, myLinks, params, myProblems, myStatusesCache, myBuildNameProvider);
+    return new BitbucketCloudPublisher(this, buildType, buildFeatureId, myLinks, params, myProblems, myStatusesCache, myBuildNameProvider, myConcurrencyLimiter);
   }
 
   @Nullable
@@ -18,8 +18,11 @@
 
 package jetbrains.buildServer.commitPublisher.github;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicBoolean;
 import jetbrains.buildServer.commitPublisher.*;
 import jetbrains.buildServer.commitPublisher.github.api.GitHubApi;
@@ -33,6 +36,8 @@ import jetbrains.buildServer.messages.Status;
 import jetbrains.buildServer.serverSide.*;
 import jetbrains.buildServer.serverSide.impl.LogUtil;
 import jetbrains.buildServer.util.StringUtil;
+import jetbrains.buildServer.util.executors.ExecutorsFactory;
+import jetbrains.buildServer.vcs.SVcsModification;
 import jetbrains.buildServer.vcs.VcsModificationHistory;
 import jetbrains.buildServer.vcs.VcsModificationOrder;
 import jetbrains.buildServer.vcs.VcsRoot;
@@ -49,8 +54,35 @@ import static jetbrains.buildServer.commitPublisher.LoggerUtil.LOG;
 public class ChangeStatusUpdater {
   private static final UpdateChangesConstants C = new UpdateChangesConstants();
   private static final GitRepositoryParser VCS_URL_PARSER = new GitRepositoryParser();
+  private static final int PARSED_REPOSITORIES_MAX_SIZE = 1000;
+  static final String PULL_REQUEST_HEAD_CACHE_TTL_PARAMETER = "teamcity.commitStatusPublisher.github.pullRequestHeadCache.ttl";
+  private static final long PULL_REQUEST_HEAD_CACHE_TTL_DEFAULT_VALUE_MS = 60_000L;
+  private static final int PULL_REQUEST_CACHES_MAX_SIZE = 10_000;
+  static final String PARALLEL_STATUS_PAGES_PARAMETER = "teamcity.commitStatusPublisher.github.parallelStatusPages";
+  private static final int PARALLEL_STATUS_PAGES_DEFAULT_VALUE = 4;
+  static final String STATUS_PAGES_LOADER_THREADS_PARAMETER = "teamcity.commitStatusPublisher.github.statusPagesLoaderThreads";
+  private static final int STATUS_PAGES_LOADER_THREADS_DEFAULT_VALUE = 8;
+  private static final int STATUSES_PAGE_SIZE = 100;
 
   private final VcsModificationHistory myModificationHistory;
+  private final Cache<String, Repository> myParsedRepositories = CacheBuilder.newBuilder().maximumSize(PARSED_REPOSITORIES_MAX_SIZE).build();
+  /**
+   * Pull request heads resolved via GitHub API, by repository and merge branch.
+   * An entry is valid only for the merge branch revision it was resolved for, so new commits in the pull request invalidate it.
+   */
+  private final Cache<String, PullRequestHead> myPullRequestHeads;
+  /**
+   * Pairs of commits known to precede each other, the order of existing commits never changes
+   */
+  private final Cache<String, Boolean> myPrecedingCommits = CacheBuilder.newBuilder().maximumSize(PULL_REQUEST_CACHES_MAX_SIZE).build();
+  private final GitHubStatusBatchReader myBatchReader = new GitHubStatusBatchReader();
+  /**
+   * Loads status pages beyond the first one, shared by all publishers, so that the number of threads doing it is bounded
+   * and status reads do not occupy the threads of the server executors
+   */
+  private final ExecutorService myStatusPagesLoader =
+    ExecutorsFactory.newFixedDaemonExecutor("GitHub commit statuses loader",
+                                            Math.max(1, TeamCityProperties.getInteger(STATUS_PAGES_LOADER_THREADS_PARAMETER, STATUS_PAGES_LOADER_THREADS_DEFAULT_VALUE)));
 
   @NotNull
   private final GitHubApiFactory myFactory;
@@ -59,6 +91,57 @@ public class ChangeStatusUpdater {
                              @NotNull final VcsModificationHistory vcsModificationHistory) {
     myFactory = factory;
     myModificationHistory = vcsModificationHistory;
+    myPullRequestHeads = CacheBuilder.newBuilder()
+                                     .maximumSize(PULL_REQUEST_CACHES_MAX_SIZE)
+                                     .expireAfterWrite(TeamCityProperties.getIntervalMilliseconds(PULL_REQUEST_HEAD_CACHE_TTL_PARAMETER, PULL_REQUEST_HEAD_CACHE_TTL_DEFAULT_VALUE_MS), TimeUnit.MILLISECONDS)
+                                     .build();
+  }
+
+  public void dispose() {
+    myStatusPagesLoader.shutdownNow();
+  }
+
+  /**
+   * Finds the pull request head resolved via GitHub API for the same merge commit recently.
+   * The head is not taken from the merge commit itself: the pull request could get new commits since the build started,
+   * then the head returned by GitHub does not precede the merge commit, and the status of the stale build is not published.
+   */
+  @Nullable
+  private String findKnownPullRequestHead(@NotNull String pullRequestKey, @NotNull String mergeVersion) {
+    final PullRequestHead cached = myPullRequestHeads.getIfPresent(pullRequestKey);
+    if (cached != null && cached.myMergeVersion.equals(mergeVersion)) {
+      return cached.myHeadVersion;
+    }
+    return null;
+  }
+
+  /**
+   * The merge commit GitHub creates for a pull request has the target branch head as the first parent and the pull request head as the second one,
+   * so the order of the merge commit and its pull request head is known without asking the modification history
+   */
+  private void rememberMergeCommitParents(@NotNull VcsRootInstance root, @NotNull String mergeVersion) {
+    final SVcsModification mergeCommit = myModificationHistory.findModificationByVersion(root, mergeVersion);
+    if (mergeCommit == null) return;
+    final List<String> parents = new ArrayList<>(mergeCommit.getParentRevisions());
+    if (parents.size() == 2) {
+      myPrecedingCommits.put(getCommitPairKey(root, parents.get(1), mergeVersion), Boolean.TRUE);
+    }
+  }
+
+  private boolean isCommitBefore(@NotNull VcsRootInstance root, @NotNull String commit, @NotNull String laterCommit) {
+    final String key = getCommitPairKey(root, commit, laterCommit);
+    if (myPrecedingCommits.getIfPresent(key) != null) return true;
+    // only the positive answer is remembered: commits may be not yet collected by TeamCity, so other answers can change
+    if (VcsModificationOrder.BEFORE == myModificationHistory.getModificationsOrder(root, commit, laterCommit)) {
+      myPrecedingCommits.put(key, Boolean.TRUE);
+      return true;
+    }
+    return false;
+  }
+
+  @NotNull
+  private static String getCommitPairKey(@NotNull VcsRootInstance root, @NotNull String commit, @NotNull String laterCommit) {
+    return root.getId() + ":" + commit + ":" + laterCommit;
   }
 
 
@@ -132,7 +215,13 @@ public class ChangeStatusUpdater {
     if (null == url) {
       repo = null;
     } else {
-      repo = VCS_URL_PARSER.parseRepositoryUrl(url);
+      repo = myParsedRepositories.getIfPresent(url);
+      if (repo == null) {
+        repo = VCS_URL_PARSER.parseRepositoryUrl(url);
+        if (repo != null) {
+          myParsedRepositories.put(url, repo);
+        }
+      }
     }
     if (null == repo)
       throw new PublisherException("Cannot parse repository URL from VCS root " + root.getName());
@@ -226,31 +315,26 @@ public class ChangeStatusUpdater {
         Repository repo = parseRepository(root);
         GitHubStatusClient statusClient = new GitHubStatusClient(params, publisher, root);
 
-        final int perPage = 25;
-        int page = 1;
-        Collection<CommitStatus> result = new ArrayList<>();
-        boolean keepLoading;
-        final int statusesThreshold = TeamCityProperties.getInteger(Constants.STATUSES_TO_LOAD_THRESHOLD_PROPERTY, Constants.STATUSES_TO_LOAD_THRESHOLD_DEFAULT_VAL);
-
-        do {
-          Collection<CommitStatus> statuses;
+        if (GitHubStatusBatchReader.isEnabled()) {
           try {
-            statuses = statusClient.getStatuses(revision, repo, perPage, page);
-          } catch (IOException | PublisherException e) {
-            publisher.getProblems().reportProblem(String.format("Commit Status Publisher error. Can not receive status for revision: %s", revision.getRevision()), publisher,
-                                                  buildContext, publisher.getServerUrl(), e, LOG);
-            if (e instanceof PublisherException) {
-              throw (PublisherException)e;
-            }
-            return Collections.emptyList();
+            final Collection<CommitStatus> statuses = statusClient.getStatusesBatched(revision, repo);
+            return statuses == null ? Collections.emptyList() : statuses;
+          } catch (PublisherException e) {
+            LOG.debug("Failed to read statuses with GraphQL request, falling back to REST API: " + e.getMessage());
+          }
+        }
+
+        try {
+          final Collection<CommitStatus> statuses = statusClient.getStatuses(revision, repo);
+          return statuses == null ? Collections.emptyList() : statuses;
+        } catch (IOException | PublisherException e) {
+          publisher.getProblems().reportProblem(String.format("Commit Status Publisher error. Can not receive status for revision: %s", revision.getRevision()), publisher,
+                                                buildContext, publisher.getServerUrl(), e, LOG);
+          if (e instanceof PublisherException) {
+            throw (PublisherException)e;
           }
-          if (statuses == null) return result;
-          result.addAll(statuses);
-          keepLoading = !statuses.isEmpty() &&
-                        result.size() < statusesThreshold &&
-                        statuses.stream().noneMatch(status -> buildContext.equals(status.context));
-        } while (keepLoading);
-        return result;
+          return Collections.emptyList();
+        }
       }
 
       private void doChangeUpdate(@NotNull final BuildRevision revision,
@@ -287,6 +371,12 @@ public class ChangeStatusUpdater {
         Repository repo = parseRepository(root);
 
         GitHubQueuedStatusClient statusClient = new GitHubQueuedStatusClient(params, publisher, root);
+        if (!deletedFromQueue && statusClient.myApi.isRateLimitBudgetAtRisk()) {
+          // the status is skipped rather than deferred: the build will publish its status once it starts, keep the budget for that
+          LOG.info(String.format("GitHub API rate limit budget for %s is about to run out, skipping queued build status for hash %s",
+                                 repo.url(), version.getVersion()));
+          return false;
+        }
         return statusClient.update(revision, buildPromotion, targetStatus, repo, additionalTaskInfo, viewUrl);
       }
     };
@@ -298,23 +388,33 @@ public class ChangeStatusUpdater {
     protected final GitHubPublisher myPublisher;
     protected final GitHubApi myApi;
     protected final String myContext;
+    protected final PublishingDeadline myDeadline;
 
     GitHubCommonStatusClient(Map<String, String> params, GitHubPublisher publisher, @NotNull VcsRoot root) {
       myPublisher = publisher;
+      myDeadline = PublishingContext.current().getDeadline();
       String ctx = params.get(Constants.GITHUB_CONTEXT);
       myContext = StringUtil.isEmpty(ctx) ? DEFAULT_CONTEXT : ctx;
       myApi = getGitHubApi(params, publisher.getBuildType().getProject(), root);
     }
 
     @NotNull
-    protected String resolveCommitHash(RepositoryVersion myVersion, Repository repo, GitHubChangeState myTargetStatus, String buildIdentificator, @Nullable AtomicBoolean shouldRetry) {
+    protected String resolveCommitHash(RepositoryVersion myVersion, VcsRootInstance root, Repository repo, GitHubChangeState myTargetStatus, String buildIdentificator, @Nullable AtomicBoolean shouldRetry) {
       final String vcsBranch = myVersion.getVcsBranch();
       if (vcsBranch != null && myApi.isPullRequestMergeBranch(vcsBranch)) {
+        final String pullRequestKey = repo.url() + ":" + vcsBranch;
+        final String knownHash = findKnownPullRequestHead(pullRequestKey, myVersion.getVersion());
+        if (knownHash != null) {
+          LOG.debug("Resolved GitHub change commit for " + vcsBranch + " to point to known pull request head " + knownHash + " (" + buildIdentificator + ")");
+          return knownHash;
+        }
         try {
-          final String hash = myApi.findPullRequestCommit(repo.owner(), repo.repositoryName(), vcsBranch);
+          final String hash = myApi.findPullRequestCommit(repo.owner(), repo.repositoryName(), vcsBranch, myDeadline);
           if (hash == null) {
             throw new IOException("Failed to find head hash for commit from " + vcsBranch);
           }
+          myPullRequestHeads.put(pullRequestKey, new PullRequestHead(myVersion.getVersion(), hash));
+          rememberMergeCommitParents(root, myVersion.getVersion());
           LOG.debug("Resolved GitHub change commit for " + vcsBranch + " to point to pull request head for " +
                    "hash: " + myVersion.getVersion() + ", " +
                    "newHash: " + hash + ", " +
@@ -345,9 +445,7 @@ public class ChangeStatusUpdater {
                                     @NotNull RepositoryVersion version,
                                     @NotNull VcsRootInstance root,
                                     @NotNull String buildIdentificator) {
-      if (!(hash.equals(version.getVersion()) ||
-            myModificationHistory.getModificationsOrder(root, hash, version.getVersion())
-                                 .equals(VcsModificationOrder.BEFORE))) {
+      if (!(hash.equals(version.getVersion()) || isCommitBefore(root, hash, version.getVersion()))) {
         LOG.info("GitHub status for pull request commit has not been updated. The head branch hash: " + hash
                  + " does not correspond to the merge branch hash " + version.getVersion() + " any longer (" + buildIdentificator + ")");
         return true;
@@ -358,54 +456,120 @@ public class ChangeStatusUpdater {
     @Nullable
     public CommitStatus getStatus(@NotNull BuildRevision revision,  @NotNull Repository repo) throws IOException, PublisherException {
       final RepositoryVersion version = revision.getRepositoryVersion();
-      final String hash = resolveCommitHash(version, repo, null, myContext, null);
+      final String hash = resolveCommitHash(version, revision.getRoot(), repo, null, myContext, null);
       if (isHashInvalid(hash, version, revision.getRoot(), myContext)) {
         return null;
       }
-      final int perPage = 30;
-      int page = 0;
-      int totalStatuses;
-
-      do {
-        page++;
-        CombinedCommitStatus combinedCommitStatus = myApi.readChangeCombinedStatus(repo.owner(), repo.repositoryName(), hash, perPage, page);
-        if (combinedCommitStatus.statuses == null || combinedCommitStatus.statuses.isEmpty()) {
-          LOG.debug(String.format("No statuses received from GitHub for repository \"%s/%s\" hash %s", repo.owner(), repo.repositoryName(), hash));
-          break;
-        }
-        Optional<CommitStatus> requiredStatus = combinedCommitStatus.statuses.stream().filter(status -> myContext.equals(status.context)).findAny();
-        if (requiredStatus.isPresent()) {
-          return requiredStatus.get();
+      final List<CommitStatus> statuses = loadStatusesUntilContextFound(repo, hash, Integer.MAX_VALUE);
+      if (statuses == null) return null;
+      return statuses.stream().filter(status -> myContext.equals(status.context)).findAny().orElse(null);
+    }
+
+    /**
+     * Reads all statuses of the revision, the read may be batched with concurrent reads of other commits of the same repository
+     */
+    @Nullable
+    public Collection<CommitStatus> getStatusesBatched(@NotNull BuildRevision revision, @NotNull Repository repo) throws PublisherException {
+      final RepositoryVersion version = revision.getRepositoryVersion();
+      final AtomicBoolean shouldRetry = new AtomicBoolean();
+      final String hash = resolveCommitHash(version, revision.getRoot(), repo, null, myContext, shouldRetry);
+      if (isHashInvalid(hash, version, revision.getRoot(), myContext)) {
+        if (shouldRetry.get()) {
+          throw new PublisherException("Failed to resolve commit hash for GitHub").setShouldRetry();
         }
-        totalStatuses = combinedCommitStatus.total_count != null ? combinedCommitStatus.total_count : 0;
-      } while (totalStatuses > page * perPage);
-      return null;
+        return null;
+      }
+      return myBatchReader.read(myApi, repo, hash, myDeadline);
     }
 
+    /**
+     * @return statuses of the revision loaded until the one with the publisher context was found, null if there are no statuses
+     */
     @Nullable
-    public Collection<CommitStatus> getStatuses(@NotNull BuildRevision revision, @NotNull Repository repo,
-                                                @NotNull int perPage, @NotNull int page) throws IOException, PublisherException {
+    public Collection<CommitStatus> getStatuses(@NotNull BuildRevision revision, @NotNull Repository repo) throws IOException, PublisherException {
       final RepositoryVersion version = revision.getRepositoryVersion();
       final AtomicBoolean shouldRetry = new AtomicBoolean();
-      final String hash = resolveCommitHash(version, repo, null, myContext, shouldRetry);
+      final String hash = resolveCommitHash(version, revision.getRoot(), repo, null, myContext, shouldRetry);
       if (isHashInvalid(hash, version, revision.getRoot(), myContext)) {
         if (shouldRetry.get()) {
           throw new PublisherException("Failed to resolve commit hash for GitHub").setShouldRetry();
         }
         return null;
       }
+      final int statusesThreshold = TeamCityProperties.getInteger(Constants.STATUSES_TO_LOAD_THRESHOLD_PROPERTY, Constants.STATUSES_TO_LOAD_THRESHOLD_DEFAULT_VAL);
+      return loadStatusesUntilContextFound(repo, hash, statusesThreshold);
+    }
 
-      CombinedCommitStatus combinedCommitStatus = myApi.readChangeCombinedStatus(repo.owner(), repo.repositoryName(), hash, perPage, page);
-      if (combinedCommitStatus.statuses == null || combinedCommitStatus.statuses.isEmpty()) {
+    /**
+     * Loads the first page of the maximum size and, if the status with the publisher context is not there,
+     * the remaining pages concurrently, stopping as soon as the status is found
+     * @param maxStatuses the number of statuses to load at most, the pages are loaded while there are fewer statuses loaded
+     */
+    @Nullable
+    private List<CommitStatus> loadStatusesUntilContextFound(@NotNull Repository repo, @NotNull String hash, int maxStatuses) throws IOException, PublisherException {
+      final CombinedCommitStatus firstPage = myApi.readChangeCombinedStatus(repo.owner(), repo.repositoryName(), hash, STATUSES_PAGE_SIZE, 1, myDeadline);
+      if (firstPage.statuses == null || firstPage.statuses.isEmpty()) {
         LOG.debug(String.format("No statuses received from GitHub for repository \"%s/%s\" hash %s", repo.owner(), repo.repositoryName(), hash));
         return null;
       }
+      final List<CommitStatus> result = new ArrayList<>(firstPage.statuses);
+      if (containsContext(firstPage.statuses)) return result;
+
+      final int totalCount = firstPage.total_count != null ? Math.min(firstPage.total_count, maxStatuses) : 0;
+      final int pagesCount = (int)((totalCount + (long)STATUSES_PAGE_SIZE - 1) / STATUSES_PAGE_SIZE);
+      if (pagesCount <= 1) return result;
 
-      for (CommitStatus status : combinedCommitStatus.statuses) {
-        if (myContext.equals(status.context))
-          return combinedCommitStatus.statuses;
+      // the number of pages loaded at once is limited, so that a single commit with many statuses does not take all the loader threads
+      final int parallelPages = Math.max(1, TeamCityProperties.getInteger(PARALLEL_STATUS_PAGES_PARAMETER, PARALLEL_STATUS_PAGES_DEFAULT_VALUE));
+      final CompletionService<CombinedCommitStatus> pages = new ExecutorCompletionService<>(myStatusPagesLoader);
+      final List<Future<CombinedCommitStatus>> futures = new ArrayList<>();
+      try {
+        int nextPage = 2;
+        while (nextPage <= pagesCount && futures.size() < parallelPages) {
+          futures.add(submitPage(pages, repo, hash, nextPage++));
+        }
+        for (int i = 0; i < pagesCount - 1; i++) {
+          final Future<CombinedCommitStatus> loaded = pages.poll(myDeadline.getRemainingMs(), TimeUnit.MILLISECONDS);
+          if (loaded == null) {
+            throw new PublisherException("Timed out loading statuses from GitHub for hash " + hash).setShouldRetry();
+          }
+          final CombinedCommitStatus page = getPage(loaded);
+          if (page.statuses != null) {
+            result.addAll(page.statuses);
+            if (containsContext(page.statuses)) return result;
+          }
+          if (nextPage <= pagesCount) {
+            futures.add(submitPage(pages, repo, hash, nextPage++));
+          }
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new PublisherException("Interrupted while loading statuses from GitHub", e);
+      } finally {
+        futures.forEach(f -> f.cancel(true));
       }
-      return Collections.emptyList();
+      return result;
+    }
+
+    @NotNull
+    private Future<CombinedCommitStatus> submitPage(@NotNull CompletionService<CombinedCommitStatus> pages, @NotNull Repository repo, @NotNull String hash, int page) {
+      return pages.submit(PublishingContext.bind(() -> myApi.readChangeCombinedStatus(repo.owner(), repo.repositoryName(), hash, STATUSES_PAGE_SIZE, page, myDeadline)));
+    }
+
+    @NotNull
+    private CombinedCommitStatus getPage(@NotNull Future<CombinedCommitStatus> loaded) throws IOException, PublisherException, InterruptedException {
+      try {
+        return loaded.get();
+      } catch (ExecutionException e) {
+        final Throwable cause = e.getCause();
+        if (cause instanceof PublisherException) throw (PublisherException)cause;
+        if (cause instanceof IOException) throw (IOException)cause;
+        throw new PublisherException("Failed to load statuses from GitHub: " + cause, cause);
+      }
+    }
+
+    private boolean containsContext(@NotNull Collection<CommitStatus> statuses) {
+      return statuses.stream().anyMatch(status -> myContext.equals(status.context));
     }
   }
 
@@ -425,7 +589,7 @@ public class ChangeStatusUpdater {
       SQueuedBuild queuedBuild = buildPromotion.getQueuedBuild();
       String buildIdentificator = queuedBuild != null ? "queuedBuildId: " + queuedBuild.getItemId() : "buildPromotionId: " + buildPromotion.getId();
       final AtomicBoolean shouldRetry = new AtomicBoolean();
-      final String hash = resolveCommitHash(version, repo, targetStatus, buildIdentificator, shouldRetry);
+      final String hash = resolveCommitHash(version, revision.getRoot(), repo, targetStatus, buildIdentificator, shouldRetry);
       if (isHashInvalid(hash, version, revision.getRoot(), buildIdentificator)) {
         if (shouldRetry.get()) {
           throw new PublisherException("Failed to resolve commit hash for GitHub").setShouldRetry();
@@ -443,7 +607,8 @@ public class ChangeStatusUpdater {
           targetStatus,
           viewUrl,
           compiledMessage,
-          prMergeBranch ? myContext + " - merge" : myContext
+          prMergeBranch ? myContext + " - merge" : myContext,
+          myDeadline
         );
         LOG.debug("Updated GitHub status for hash: " + hash + ", buildId: " + buildPromotion.getAssociatedBuildId() + ", status: " + targetStatus);
       } catch (PublisherException | IOException e) {
@@ -464,7 +629,7 @@ public class ChangeStatusUpdater {
       final RepositoryVersion version = revision.getRepositoryVersion();
       String buildIdentififcator = "buildId: " + build.getBuildId();
       final AtomicBoolean shouldRetry = new AtomicBoolean();
-      final String hash = resolveCommitHash(version, repo, targetStatus, buildIdentififcator, shouldRetry);
+      final String hash = resolveCommitHash(version, revision.getRoot(), repo, targetStatus, buildIdentififcator, shouldRetry);
       if (isHashInvalid(hash, version, revision.getRoot(), buildIdentififcator)) {
         if (shouldRetry.get()) {
           throw new PublisherException("Failed to resolve commit hash for GitHub").setShouldRetry();
@@ -483,7 +648,7 @@ public class ChangeStatusUpdater {
         String comment = getComment(build, targetStatus != GitHubChangeState.Pending, viewUrl);
         try {
           addComment(repo, hash, comment, build.getBuildId(), targetStatus);
-        } catch (IOException e) {
+        } catch (IOException | PublisherException e) {
           problems.reportProblem("Commit Status Publisher has failed to add a comment", myPublisher, LogUtil.describe(build), null, e, LOG);
         }
       }
@@ -504,7 +669,8 @@ public class ChangeStatusUpdater {
         targetStatus,
         viewUrl,
         message,
-        prMergeBranch ? myContext + " - merge" : myContext
+        prMergeBranch ? myContext + " - merge" : myContext,
+        myDeadline
       );
       LOG.debug("Updated GitHub status for hash: " + hash + ", buildId: " + build.getBuildId() + ", status: " + targetStatus);
     }
@@ -540,7 +706,7 @@ public class ChangeStatusUpdater {
 
         if (build.getBuildStatus() != Status.NORMAL) {
 
-          BuildStatistics stats = build.getBuildStatistics(BuildStatisticsOptions.ALL_TESTS_NO_DETAILS);
+          BuildStatistics stats = BuildEventPayload.of(build).getStatistics();
           final List<STestRun> failedTests = stats.getFailedTests();
           if (!failedTests.isEmpty()) {
             comment.append("\n### Failed tests\n");
@@ -566,17 +732,28 @@ public class ChangeStatusUpdater {
       return comment.toString();
     }
 
-    private void addComment(@NotNull Repository repo, @NotNull String hash, @NotNull String comment, Long buildId, GitHubChangeState targetStatus) throws IOException {
+    private void addComment(@NotNull Repository repo, @NotNull String hash, @NotNull String comment, Long buildId, GitHubChangeState targetStatus) throws IOException, PublisherException {
       myApi.postComment(
         repo.owner(),
         repo.repositoryName(),
         hash,
-        comment
+        comment,
+        myDeadline
       );
       LOG.debug("Added comment to GitHub commit: " + hash + ", buildId: " + buildId + ", status: " + targetStatus);
     }
   }
 
+  private static class PullRequestHead {
+    private final String myMergeVersion;
+    private final String myHeadVersion;
+
+    PullRequestHead(@NotNull String mergeVersion, @NotNull String headVersion) {
+      myMergeVersion = mergeVersion;
+      myHeadVersion = headVersion;
+    }
+  }
+
   interface Handler {
     void changeStarted(@NotNull final BuildRevision revision, @NotNull final SBuild build, @NotNull String viewUrl) throws PublisherException;
     void changeCompleted(@NotNull final BuildRevision revision, @NotNull final SBuild build, @NotNull String viewUrl) throws PublisherException;
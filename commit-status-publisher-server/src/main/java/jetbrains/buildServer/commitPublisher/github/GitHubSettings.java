@@ -26,8 +26,10 @@ import jetbrains.buildServer.commitPublisher.CommitStatusPublisher.Event;
 import jetbrains.buildServer.commitPublisher.github.api.GitHubApiAuthenticationType;
 import jetbrains.buildServer.commitPublisher.github.api.GitHubApiFactory;
 import jetbrains.buildServer.commitPublisher.github.api.SupportedVcsRootAuthentificationType;
+import jetbrains.buildServer.commitPublisher.github.api.impl.GitHubPermissionsCache;
 import jetbrains.buildServer.commitPublisher.github.api.impl.data.CommitStatus;
 import jetbrains.buildServer.commitPublisher.github.ui.UpdateChangesConstants;
+import jetbrains.buildServer.commitPublisher.metrics.CommitStatusPublisherMetrics;
 import jetbrains.buildServer.parameters.ReferencesResolverUtil;
 import jetbrains.buildServer.serverSide.*;
 import jetbrains.buildServer.serverSide.auth.AuthUtil;
@@ -52,6 +54,7 @@ public class GitHubSettings extends BasePublisherSettings implements CommitStatu
   private final SecurityContext mySecurityContext;
   private final CommitStatusesCache<CommitStatus> myStatusesCache;
   private final StatusPublisherBuildNameProvider myBuildNameProvider;
+  private final GitHubPermissionsCache myPermissionsCache;
 
   private static final Set<Event> mySupportedEvents = new HashSet<Event>() {{
     add(Event.STARTED);
@@ -86,7 +89,9 @@ public class GitHubSettings extends BasePublisherSettings implements CommitStatu
                         @NotNull OAuthTokensStorage oauthTokensStorage,
                         @NotNull SecurityContext securityContext,
                         @NotNull SSLTrustStoreProvider trustStoreProvider,
-                        @NotNull GitHubBuildContextProvider buildNameProvider
+                        @NotNull GitHubBuildContextProvider buildNameProvider,
+                        @NotNull GitHubPermissionsCache permissionsCache,
+                        @NotNull CommitStatusPublisherMetrics metrics
   ) {
     super(descriptor, links, problems, trustStoreProvider);
     myUpdater = updater;
@@ -94,7 +99,8 @@ public class GitHubSettings extends BasePublisherSettings implements CommitStatu
     myOAuthTokensStorage = oauthTokensStorage;
     mySecurityContext = securityContext;
     myBuildNameProvider = buildNameProvider;
-    myStatusesCache = new CommitStatusesCache<>();
+    myPermissionsCache = permissionsCache;
+    myStatusesCache = new CommitStatusesCache<>(metrics);
   }
 
   @NotNull
@@ -343,8 +349,13 @@ public class GitHubSettings extends BasePublisherSettings implements CommitStatu
         return healthItemData("has authentication type set to GitHub App access token, but no token id is configured");
       }
 
-      final OAuthToken token = myOAuthTokensStorage.getToken(buildType.getProject(), tokenId, true, false);
-      if (token == null) {
+      // many build configurations usually share the same token, do not look it up for every one of them
+      Boolean tokenAvailable = myPermissionsCache.isTokenAvailable(buildType.getProjectId(), tokenId);
+      if (tokenAvailable == null) {
+        tokenAvailable = myOAuthTokensStorage.getToken(buildType.getProject(), tokenId, true, false) != null;
+        myPermissionsCache.tokenChecked(buildType.getProjectId(), tokenId, tokenAvailable);
+      }
+      if (!tokenAvailable) {
         return healthItemData("refers to a missing or invalid authentication token (token id: " +
                               tokenId +
                               "). Please check connection and authentication settings or try to acquire a new token.");
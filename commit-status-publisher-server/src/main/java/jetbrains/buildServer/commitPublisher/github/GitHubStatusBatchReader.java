@@ -0,0 +1,170 @@
+/*
+ * Copyright 2000-2024 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jetbrains.buildServer.commitPublisher.github;
+
+import java.util.*;
+import java.util.concurrent.*;
+import jetbrains.buildServer.commitPublisher.PublisherException;
+import jetbrains.buildServer.commitPublisher.PublishingDeadline;
+import jetbrains.buildServer.commitPublisher.Repository;
+import jetbrains.buildServer.commitPublisher.github.api.GitHubApi;
+import jetbrains.buildServer.commitPublisher.github.api.impl.data.CommitStatus;
+import jetbrains.buildServer.serverSide.TeamCityProperties;
+import org.jetbrains.annotations.NotNull;
+
+import static jetbrains.buildServer.commitPublisher.LoggerUtil.LOG;
+
+/**
+ * Collects status reads of different commits of the same repository issued within a short window
+ * and reads them all with a single GraphQL request.
+ * The first caller of a batch waits for the window to pass and performs the request, the others wait for its result.
+ */
+class GitHubStatusBatchReader {
+  static final String ENABLED_PARAMETER = "teamcity.commitStatusPublisher.github.graphQL.enabled";
+  static final String BATCH_WINDOW_PARAMETER = "teamcity.commitStatusPublisher.github.graphQL.batchWindowMs";
+  static final String BATCH_SIZE_PARAMETER = "teamcity.commitStatusPublisher.github.graphQL.batchSize";
+  private static final long BATCH_WINDOW_DEFAULT_VALUE_MS = 50;
+  private static final int BATCH_SIZE_DEFAULT_VALUE = 50;
+
+  private final ConcurrentMap<BatchKey, Batch> myOpenBatches = new ConcurrentHashMap<>();
+
+  static boolean isEnabled() {
+    return TeamCityProperties.getBoolean(ENABLED_PARAMETER);
+  }
+
+  /**
+   * @return statuses of the commit, empty if the commit has no statuses
+   * @throws PublisherException if the batch request has failed, the caller may read the statuses via REST API then
+   */
+  @NotNull
+  Collection<CommitStatus> read(@NotNull GitHubApi api, @NotNull Repository repo, @NotNull String hash, @NotNull PublishingDeadline deadline) throws PublisherException {
+    final BatchKey key = new BatchKey(api, repo.owner(), repo.repositoryName());
+    final int maxSize = Math.max(1, TeamCityProperties.getInteger(BATCH_SIZE_PARAMETER, BATCH_SIZE_DEFAULT_VALUE));
+    Batch batch;
+    CompletableFuture<Collection<CommitStatus>> future;
+    while (true) {
+      batch = myOpenBatches.computeIfAbsent(key, k -> new Batch());
+      future = batch.add(hash, maxSize);
+      if (future != null) break;
+      // the batch is already being executed, start a new one
+      myOpenBatches.remove(key, batch);
+    }
+
+    if (batch.claimExecution()) {
+      execute(key, batch, deadline);
+    }
+
+    try {
+      return future.get(deadline.getRemainingMs(), TimeUnit.MILLISECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new PublisherException("Interrupted while waiting for GitHub statuses", e);
+    } catch (TimeoutException e) {
+      throw new PublisherException("Timed out waiting for GitHub statuses", e).setShouldRetry();
+    } catch (ExecutionException e) {
+      final Throwable cause = e.getCause();
+      if (cause instanceof PublisherException) throw (PublisherException)cause;
+      throw new PublisherException("Failed to read GitHub statuses: " + cause, cause);
+    }
+  }
+
+  private void execute(@NotNull BatchKey key, @NotNull Batch batch, @NotNull PublishingDeadline deadline) {
+    batch.awaitWindow(Math.min(deadline.getRemainingMs(), TeamCityProperties.getLong(BATCH_WINDOW_PARAMETER, BATCH_WINDOW_DEFAULT_VALUE_MS)));
+    myOpenBatches.remove(key, batch);
+    final Map<String, List<CompletableFuture<Collection<CommitStatus>>>> waiters = batch.close();
+    try {
+      LOG.debug(() -> String.format("Reading statuses of %d commits of %s/%s with a single request", waiters.size(), key.myOwner, key.myRepo));
+      final Map<String, Collection<CommitStatus>> statuses = key.myApi.readCommitsStatuses(key.myOwner, key.myRepo, waiters.keySet(), deadline);
+      waiters.forEach((hash, futures) -> {
+        final Collection<CommitStatus> commitStatuses = statuses.getOrDefault(hash, Collections.emptyList());
+        futures.forEach(f -> f.complete(commitStatuses));
+      });
+    } catch (Throwable e) {
+      waiters.values().forEach(futures -> futures.forEach(f -> f.completeExceptionally(e)));
+    }
+  }
+
+  private static class Batch {
+    private final Map<String, List<CompletableFuture<Collection<CommitStatus>>>> myWaiters = new LinkedHashMap<>();
+    private boolean myClosed;
+    private boolean myFull;
+    private boolean myExecutionClaimed;
+
+    /**
+     * @return future of the commit statuses or null if the batch does not accept new commits anymore
+     */
+    synchronized CompletableFuture<Collection<CommitStatus>> add(@NotNull String hash, int maxSize) {
+      if (myClosed || myWaiters.size() >= maxSize && !myWaiters.containsKey(hash)) return null;
+      final CompletableFuture<Collection<CommitStatus>> future = new CompletableFuture<>();
+      myWaiters.computeIfAbsent(hash, h -> new ArrayList<>()).add(future);
+      if (myWaiters.size() >= maxSize) {
+        myFull = true;
+        notifyAll();
+      }
+      return future;
+    }
+
+    synchronized boolean claimExecution() {
+      if (myExecutionClaimed) return false;
+      myExecutionClaimed = true;
+      return true;
+    }
+
+    synchronized void awaitWindow(long windowMs) {
+      final long until = System.currentTimeMillis() + windowMs;
+      long remaining;
+      while (!myFull && (remaining = until - System.currentTimeMillis()) > 0) {
+        try {
+          wait(remaining);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          return;
+        }
+      }
+    }
+
+    synchronized Map<String, List<CompletableFuture<Collection<CommitStatus>>>> close() {
+      myClosed = true;
+      return new LinkedHashMap<>(myWaiters);
+    }
+  }
+
+  private static class BatchKey {
+    private final GitHubApi myApi;
+    private final String myOwner;
+    private final String myRepo;
+
+    BatchKey(@NotNull GitHubApi api, @NotNull String owner, @NotNull String repo) {
+      myApi = api;
+      myOwner = owner;
+      myRepo = repo;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) return true;
+      if (!(o instanceof BatchKey)) return false;
+      final BatchKey other = (BatchKey)o;
+      return myApi == other.myApi && myOwner.equals(other.myOwner) && myRepo.equals(other.myRepo);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(System.identityHashCode(myApi), myOwner, myRepo);
+    }
+  }
+}
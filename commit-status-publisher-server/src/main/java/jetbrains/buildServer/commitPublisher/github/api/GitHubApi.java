@@ -20,9 +20,12 @@ package jetbrains.buildServer.commitPublisher.github.api;
 
 import java.io.IOException;
 import java.util.Collection;
+import java.util.Map;
 import jetbrains.buildServer.commitPublisher.PublisherException;
+import jetbrains.buildServer.commitPublisher.PublishingDeadline;
 import jetbrains.buildServer.commitPublisher.Repository;
 import jetbrains.buildServer.commitPublisher.github.api.impl.data.CombinedCommitStatus;
+import jetbrains.buildServer.commitPublisher.github.api.impl.data.CommitStatus;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
@@ -38,7 +41,18 @@ public interface GitHubApi {
                                                 @NotNull String repositoryName,
                                                 @NotNull String hash,
                                                 @Nullable final Integer perPage,
-                                                @Nullable final Integer page) throws IOException, PublisherException;
+                                                @Nullable final Integer page,
+                                                @NotNull PublishingDeadline deadline) throws IOException, PublisherException;
+
+  /**
+   * Reads statuses of several commits with a single GraphQL request
+   * @return statuses by commit hash, the map contains all requested hashes
+   */
+  @NotNull
+  Map<String, Collection<CommitStatus>> readCommitsStatuses(@NotNull String repoOwner,
+                                                            @NotNull String repositoryName,
+                                                            @NotNull Collection<String> hashes,
+                                                            @NotNull PublishingDeadline deadline) throws IOException, PublisherException;
 
   void setChangeStatus(@NotNull String repoOwner,
                        @NotNull String repositoryName,
@@ -46,9 +60,16 @@ public interface GitHubApi {
                        @NotNull GitHubChangeState status,
                        @NotNull String targetUrl,
                        @NotNull String description,
-                       @Nullable String context) throws IOException, PublisherException;
+                       @Nullable String context,
+                       @NotNull PublishingDeadline deadline) throws IOException, PublisherException;
 
 
+  /**
+   * @return true if the API rate limit budget of the credentials is forecast to run out before it is reset,
+   * so requests which can be skipped should not be sent
+   */
+  boolean isRateLimitBudgetAtRisk();
+
   /**
    * checks if specified branch represents GitHub pull request merge branch,
    * i.e. /refs/pull/X/merge
@@ -67,26 +88,30 @@ public interface GitHubApi {
    * @param repoOwner repository owner name (who owns repo where you see pull request)
    * @param repoName repository name (where you see pull request)
    * @param branchName detected branch name in TeamCity, i.e. /refs/pull/X/merge
+   * @param deadline time budget of the publishing event
    * @return found /refs/pull/X/head or null
    * @throws IOException on communication error
    */
   @Nullable
   String findPullRequestCommit(@NotNull String repoOwner,
                                @NotNull String repoName,
-                               @NotNull String branchName) throws IOException, PublisherException;
+                               @NotNull String branchName,
+                               @NotNull PublishingDeadline deadline) throws IOException, PublisherException;
 
   /**
    * return parent commits for given commit
    * @param repoOwner repo owner
    * @param repoName repo name
    * @param hash commit hash
+   * @param deadline time budget of the publishing event
    * @return colleciton of commit parents
    * @throws IOException
    */
   @NotNull
   Collection<String> getCommitParents(@NotNull String repoOwner,
                                       @NotNull String repoName,
-                                      @NotNull String hash) throws IOException, PublisherException;
+                                      @NotNull String hash,
+                                      @NotNull PublishingDeadline deadline) throws IOException, PublisherException;
    /* Post comment to pull request
    * @param repoName
    * @param hash
@@ -96,5 +121,6 @@ public interface GitHubApi {
   public void postComment(@NotNull final String ownerName,
                           @NotNull final String repoName,
                           @NotNull final String hash,
-                          @NotNull final String comment) throws IOException;
+                          @NotNull final String comment,
+                          @NotNull final PublishingDeadline deadline) throws IOException, PublisherException;
 }
\ No newline at end of file
@@ -0,0 +1,153 @@
+/*
+ * Copyright 2000-2024 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jetbrains.buildServer.commitPublisher.github.api.impl;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import jetbrains.buildServer.commitPublisher.PublisherException;
+import jetbrains.buildServer.commitPublisher.PublishingDeadline;
+import jetbrains.buildServer.serverSide.TeamCityProperties;
+import org.jetbrains.annotations.NotNull;
+
+import static jetbrains.buildServer.commitPublisher.LoggerUtil.LOG;
+
+/**
+ * Paces GitHub requests which create content, like commit statuses and comments, to stay below the secondary rate limits.
+ * Such requests are sent one at a time per token with a minimum interval between them, as GitHub recommends.
+ * The interval grows when GitHub reports that a secondary rate limit has been hit and shrinks back while requests succeed.
+ * Until the time GitHub asked to wait for, requests of the limited token fail fast with the retry flag set instead of being sent.
+ */
+class ContentCreationPacer {
+  static final String ENABLED_PARAMETER = "teamcity.commitStatusPublisher.github.contentCreationPacing.enabled";
+  static final String MIN_INTERVAL_PARAMETER = "teamcity.commitStatusPublisher.github.contentCreationPacing.minIntervalMs";
+  static final String MAX_INTERVAL_PARAMETER = "teamcity.commitStatusPublisher.github.contentCreationPacing.maxIntervalMs";
+  static final String MAX_WAIT_PARAMETER = "teamcity.commitStatusPublisher.github.contentCreationPacing.maxWaitMs";
+  private static final long MIN_INTERVAL_DEFAULT_VALUE_MS = 1_000;
+  private static final long MAX_INTERVAL_DEFAULT_VALUE_MS = 10_000;
+  private static final long MAX_WAIT_DEFAULT_VALUE_MS = 30_000;
+  /**
+   * GitHub asks to wait at least a minute when a secondary rate limit response has no retry-after header
+   */
+  static final long DEFAULT_LIMITED_PERIOD_MS = 60_000;
+  private static final double INTERVAL_RECOVERY_RATIO = 0.9;
+
+  private final ConcurrentMap<String, TokenPace> myPaces = new ConcurrentHashMap<>();
+
+  ContentCreationPacer() {
+  }
+
+  /**
+   * Waits until a content-creating request may be sent with the token
+   * @param tokenKey identifies the server and the credentials the request is sent with
+   * @param deadline deadline of the publishing event, the method never waits longer than it allows
+   * @return permit which must be released once the request is completed
+   * @throws PublisherException with retry flag set, if the request could not be sent in time or the token is currently limited
+   */
+  @NotNull
+  Permit acquire(@NotNull String tokenKey, @NotNull PublishingDeadline deadline) throws PublisherException {
+    if (!TeamCityProperties.getBooleanOrTrue(ENABLED_PARAMETER)) {
+      return Permit.NONE;
+    }
+    final TokenPace pace = myPaces.computeIfAbsent(tokenKey, k -> new TokenPace());
+    final long waitMs = Math.min(TeamCityProperties.getLong(MAX_WAIT_PARAMETER, MAX_WAIT_DEFAULT_VALUE_MS), deadline.getRemainingMs());
+    pace.acquire(waitMs);
+    return new Permit(pace);
+  }
+
+  static class Permit {
+    private static final Permit NONE = new Permit(null);
+
+    private final TokenPace myPace;
+    private final AtomicBoolean myReleased = new AtomicBoolean();
+    private volatile long myLimitedPeriodMs = -1;
+
+    private Permit(TokenPace pace) {
+      myPace = pace;
+    }
+
+    /**
+     * Reports that GitHub has rejected the request due to a secondary rate limit
+     * @param retryAfterMs time GitHub asked to wait before sending new requests, or a non-positive value if it is not known
+     */
+    void limited(long retryAfterMs) {
+      myLimitedPeriodMs = retryAfterMs > 0 ? retryAfterMs : DEFAULT_LIMITED_PERIOD_MS;
+    }
+
+    void release() {
+      if (myPace == null || !myReleased.compareAndSet(false, true)) return;
+      myPace.release(myLimitedPeriodMs);
+    }
+  }
+
+  static class TokenPace {
+    private boolean myBusy;
+    private long myNextRequestAt;
+    private long myLimitedUntil;
+    private long myIntervalMs = getMinInterval();
+
+    synchronized void acquire(long waitMs) throws PublisherException {
+      final long waitUntil = System.currentTimeMillis() + waitMs;
+      while (true) {
+        final long now = System.currentTimeMillis();
+        if (myLimitedUntil > waitUntil) {
+          throw new PublisherException(String.format("GitHub secondary rate limit has been reached, requests creating content are postponed for %d seconds", (myLimitedUntil - now) / 1000))
+            .setShouldRetry();
+        }
+        final long sendAt = Math.max(myNextRequestAt, myLimitedUntil);
+        if (!myBusy && now >= sendAt) break;
+        final long remaining = waitUntil - now;
+        if (remaining <= 0) {
+          throw new PublisherException("Too many requests creating content in GitHub with the same credentials, the request will be retried later").setShouldRetry();
+        }
+        try {
+          wait(myBusy ? remaining : Math.min(remaining, sendAt - now));
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new PublisherException("Interrupted while waiting to send a request to GitHub").setShouldRetry();
+        }
+      }
+      myBusy = true;
+    }
+
+    synchronized void release(long limitedPeriodMs) {
+      final long now = System.currentTimeMillis();
+      myBusy = false;
+      if (limitedPeriodMs > 0) {
+        myIntervalMs = Math.min(getMaxInterval(), Math.max(MIN_INTERVAL_DEFAULT_VALUE_MS, myIntervalMs * 2));
+        myLimitedUntil = Math.max(myLimitedUntil, now + limitedPeriodMs);
+        LOG.info(String.format("GitHub secondary rate limit has been reached, requests creating content are postponed for %d ms and then sent at least %d ms apart", limitedPeriodMs, myIntervalMs));
+      } else {
+        myIntervalMs = Math.max(getMinInterval(), (long)(myIntervalMs * INTERVAL_RECOVERY_RATIO));
+      }
+      myNextRequestAt = now + myIntervalMs;
+      notifyAll();
+    }
+
+    synchronized long getIntervalMs() {
+      return myIntervalMs;
+    }
+
+    private static long getMinInterval() {
+      return Math.max(0, TeamCityProperties.getLong(MIN_INTERVAL_PARAMETER, MIN_INTERVAL_DEFAULT_VALUE_MS));
+    }
+
+    private static long getMaxInterval() {
+      return Math.max(getMinInterval(), TeamCityProperties.getLong(MAX_INTERVAL_PARAMETER, MAX_INTERVAL_DEFAULT_VALUE_MS));
+    }
+  }
+}
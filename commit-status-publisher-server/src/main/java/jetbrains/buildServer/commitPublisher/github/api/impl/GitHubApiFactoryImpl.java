@@ -18,15 +18,24 @@
 
 package jetbrains.buildServer.commitPublisher.github.api.impl;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import java.io.IOException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import jetbrains.buildServer.commitPublisher.HostConcurrencyLimiter;
+import jetbrains.buildServer.commitPublisher.HttpValidatorCache;
 import jetbrains.buildServer.commitPublisher.PublisherException;
 import jetbrains.buildServer.commitPublisher.Repository;
+import jetbrains.buildServer.commitPublisher.StoredTokenCache;
 import jetbrains.buildServer.commitPublisher.github.api.GitHubApi;
 import jetbrains.buildServer.commitPublisher.github.api.GitHubApiFactory;
 import jetbrains.buildServer.commitPublisher.github.api.impl.data.RepoInfo;
 import jetbrains.buildServer.http.SimpleCredentials;
 import jetbrains.buildServer.serverSide.ProjectManager;
 import jetbrains.buildServer.serverSide.SProject;
+import jetbrains.buildServer.serverSide.TeamCityProperties;
 import jetbrains.buildServer.serverSide.oauth.*;
 import jetbrains.buildServer.users.SUser;
 import jetbrains.buildServer.vcs.SVcsRoot;
@@ -37,7 +46,22 @@ import org.jetbrains.annotations.NotNull;
  * Date: 06.09.12 2:54
  */
 public class GitHubApiFactoryImpl implements GitHubApiFactory {
+  static final String API_CACHE_TOGGLE_PARAMETER = "teamcity.commitStatusPublisher.github.apiCache.enabled";
+  static final String API_CACHE_MAX_SIZE_PARAMETER = "teamcity.commitStatusPublisher.github.apiCache.maxSize";
+  private static final int API_CACHE_MAX_SIZE_DEFAULT_VALUE = 1000;
+  private static final long API_CACHE_EXPIRATION_MINUTES = 30;
+
   private final HttpClientWrapper myWrapper;
+  private final HttpValidatorCache myValidatorCache = new HttpValidatorCache();
+  private final ContentCreationPacer myContentCreationPacer = new ContentCreationPacer();
+  /**
+   * API instances are stateless apart from their configuration, so they are shared between publishers and threads.
+   * Keyed by server URL, authentication type and credentials identity; secrets are kept in keys only as fingerprints.
+   */
+  private final Cache<String, GitHubApi> myApis = CacheBuilder.newBuilder()
+                                                              .maximumSize(TeamCityProperties.getInteger(API_CACHE_MAX_SIZE_PARAMETER, API_CACHE_MAX_SIZE_DEFAULT_VALUE))
+                                                              .expireAfterAccess(API_CACHE_EXPIRATION_MINUTES, TimeUnit.MINUTES)
+                                                              .build();
 
   @NotNull
   protected final OAuthTokensStorage myOAuthTokensStorage;
@@ -48,23 +72,62 @@ public class GitHubApiFactoryImpl implements GitHubApiFactory {
   @NotNull
   protected final ProjectManager myProjectManager;
 
+  @NotNull
+  private final StoredTokenCache myTokenCache;
+
+  @NotNull
+  private final HostConcurrencyLimiter myConcurrencyLimiter;
+
+  @NotNull
+  private final GitHubPermissionsCache myPermissionsCache;
+
+  @NotNull
+  private final GitHubRateLimits myRateLimits;
+
   public GitHubApiFactoryImpl(@NotNull final HttpClientWrapper wrapper,
                               @NotNull OAuthTokensStorage oAuthTokensStorage,
                               @NotNull OAuthConnectionsManager connectionsManager,
-                              @NotNull ProjectManager projectManager) {
+                              @NotNull ProjectManager projectManager,
+                              @NotNull HostConcurrencyLimiter concurrencyLimiter,
+                              @NotNull GitHubPermissionsCache permissionsCache,
+                              @NotNull GitHubRateLimits rateLimits,
+                              @NotNull StoredTokenCache tokenCache) {
     myWrapper = wrapper;
     myOAuthTokensStorage = oAuthTokensStorage;
     myConnectionsManager = connectionsManager;
     myProjectManager = projectManager;
+    myConcurrencyLimiter = concurrencyLimiter;
+    myPermissionsCache = permissionsCache;
+    myRateLimits = rateLimits;
+    myTokenCache = tokenCache;
   }
 
 
+  @NotNull
+  private GitHubApi getOrCreate(@NotNull String url, @NotNull String authType, @NotNull String credentialsId, @NotNull Supplier<GitHubApi> factory) {
+    if (!TeamCityProperties.getBooleanOrTrue(API_CACHE_TOGGLE_PARAMETER)) {
+      return factory.get();
+    }
+    try {
+      return myApis.get(url + "\u0000" + authType + "\u0000" + credentialsId, factory::get);
+    } catch (ExecutionException e) {
+      throw new IllegalStateException("Failed to create GitHub API client for " + url, e.getCause());
+    }
+  }
+
   @NotNull
   @Override
   public GitHubApi openGitHubForUser(@NotNull final String url,
                                      @NotNull final String username,
                                      @NotNull final String password) {
-    return new GitHubApiImpl(myWrapper, new GitHubApiPaths(url)){
+    return getOrCreate(url, "password", HttpValidatorCache.fingerprint(username, password), () -> createGitHubForUser(url, username, password));
+  }
+
+  @NotNull
+  private GitHubApi createGitHubForUser(@NotNull final String url,
+                                        @NotNull final String username,
+                                        @NotNull final String password) {
+    return new GitHubApiImpl(myWrapper, new GitHubApiPaths(url), myValidatorCache, myConcurrencyLimiter, myContentCreationPacer, myPermissionsCache, myRateLimits){
       @Override
       protected SimpleCredentials authenticationCredentials() {
         return new SimpleCredentials(username, password);
@@ -76,7 +139,13 @@ public class GitHubApiFactoryImpl implements GitHubApiFactory {
   @Override
   public GitHubApi openGitHubForToken(@NotNull final String url,
                                       @NotNull final String token) {
-    return new GitHubApiImpl(myWrapper, new GitHubApiPaths(url)){
+    return getOrCreate(url, "token", HttpValidatorCache.fingerprint(token), () -> createGitHubForToken(url, token));
+  }
+
+  @NotNull
+  private GitHubApi createGitHubForToken(@NotNull final String url,
+                                         @NotNull final String token) {
+    return new GitHubApiImpl(myWrapper, new GitHubApiPaths(url), myValidatorCache, myConcurrencyLimiter, myContentCreationPacer, myPermissionsCache, myRateLimits){
       @Override
       protected SimpleCredentials authenticationCredentials() {
         return new SimpleCredentials("x-oauth-basic", token);
@@ -89,11 +158,17 @@ public class GitHubApiFactoryImpl implements GitHubApiFactory {
   public GitHubApi openGitHubForStoredToken(@NotNull final String url,
                                             @NotNull final String tokenId,
                                             @NotNull final SProject project) {
+    return getOrCreate(url, "storedToken", project.getProjectId() + ":" + tokenId, () -> createGitHubForStoredToken(url, tokenId, project));
+  }
 
-    return new GitHubApiImpl(myWrapper, new GitHubApiPaths(url)){
+  @NotNull
+  private GitHubApi createGitHubForStoredToken(@NotNull final String url,
+                                               @NotNull final String tokenId,
+                                               @NotNull final SProject project) {
+    return new GitHubApiImpl(myWrapper, new GitHubApiPaths(url), myValidatorCache, myConcurrencyLimiter, myContentCreationPacer, myPermissionsCache, myRateLimits){
       @Override
       protected SimpleCredentials authenticationCredentials() throws IOException {
-        final OAuthToken gitHubOAuthToken = myOAuthTokensStorage.getToken(project, tokenId, true, true);
+        final OAuthToken gitHubOAuthToken = myTokenCache.getToken(project, tokenId);
         if (gitHubOAuthToken != null) {
           //todo: must be refactored to use Bearer token TW-76091
           return new SimpleCredentials("oauth2", gitHubOAuthToken.getAccessToken());
@@ -103,13 +178,21 @@ public class GitHubApiFactoryImpl implements GitHubApiFactory {
         }
       }
 
+      @NotNull
+      @Override
+      protected String getCredentialsId() {
+        // installation tokens are renewed every hour, while their permissions stay the same
+        return "storedToken:" + project.getProjectId() + ":" + tokenId;
+      }
+
       @Override
       protected void checkPermissions(@NotNull Repository repo, @NotNull RepoInfo repoInfo) throws PublisherException {
         if (null == repoInfo.name || null == repoInfo.permissions) {
           throw new PublisherException(String.format("Repository \"%s\" is inaccessible", repo.url()));
         }
 
-        final OAuthToken gitHubOAuthToken = myOAuthTokensStorage.getToken(project, tokenId, true, true);
+        final OAuthToken gitHubOAuthToken = myTokenCache.getToken(project, tokenId);
+        myPermissionsCache.tokenChecked(project.getProjectId(), tokenId, gitHubOAuthToken != null);
         if (gitHubOAuthToken == null) {
           throw new PublisherException("Failed to retrieve configured token from storage (tokenId: " + tokenId + ")");
         }
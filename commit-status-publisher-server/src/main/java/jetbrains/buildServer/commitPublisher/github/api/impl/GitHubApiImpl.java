@@ -59,16 +59,37 @@ public abstract class GitHubApiImpl implements GitHubApi {
   private static final Pattern PULL_REQUEST_BRANCH = Pattern.compile("/?refs/pull/(\\d+)/(.*)");
   private static final String MSG_PROXY_OR_PERMISSIONS = "Please check if the error is not returned by a proxy or caused by the lack of permissions.";
   private static final String MSG_NOT_FOUND = "Repository not found. Make sure the repository exists and the URL is correct.";
+  /**
+   * Requests creating content are subject to secondary rate limits and immediate retries only make throttling worse,
+   * so they are paced by ContentCreationPacer and retried later by the publisher instead of the HTTP client
+   */
+  private static final boolean RETRY_CONTENT_CREATION_REQUESTS = false;
 
   private final HttpClientWrapper myClient;
   private final GitHubApiPaths myUrls;
   private final Gson myGson;
-
-  public GitHubApiImpl(@NotNull final HttpClientWrapper client,
-                       @NotNull final GitHubApiPaths urls
+  private final HttpValidatorCache myValidatorCache;
+  private final HostConcurrencyLimiter myConcurrencyLimiter;
+  private final ContentCreationPacer myContentCreationPacer;
+  private final GitHubPermissionsCache myPermissionsCache;
+  private final GitHubRateLimits myRateLimits;
+  private volatile CredentialsFingerprint myCredentialsFingerprint;
+
+  GitHubApiImpl(@NotNull final HttpClientWrapper client,
+                @NotNull final GitHubApiPaths urls,
+                @NotNull final HttpValidatorCache validatorCache,
+                @NotNull final HostConcurrencyLimiter concurrencyLimiter,
+                @NotNull final ContentCreationPacer contentCreationPacer,
+                @NotNull final GitHubPermissionsCache permissionsCache,
+                @NotNull final GitHubRateLimits rateLimits
   ) {
     myClient = client;
     myUrls = urls;
+    myValidatorCache = validatorCache;
+    myConcurrencyLimiter = concurrencyLimiter;
+    myContentCreationPacer = contentCreationPacer;
+    myPermissionsCache = permissionsCache;
+    myRateLimits = rateLimits;
     myGson = new GsonBuilder().setDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'").create();
   }
 
@@ -90,10 +111,19 @@ public abstract class GitHubApiImpl implements GitHubApi {
   }
 
   public void testConnection(@NotNull final Repository repo) throws PublisherException {
+    final String credentialsId = getCredentialsId();
+    if (credentialsId == null) {
+      doTestConnection(repo);
+    } else {
+      myPermissionsCache.checkRepository(myUrls.getUrl(), repo.url(), credentialsId, () -> doTestConnection(repo));
+    }
+  }
+
+  private void doTestConnection(@NotNull final Repository repo) throws PublisherException {
     final String uri = myUrls.getRepoInfo(repo.owner(), repo.repositoryName());
     RepoInfo repoInfo;
     try {
-      repoInfo = processResponse(uri, RepoInfo.class, true);
+      repoInfo = processResponse(uri, RepoInfo.class, true, PublishingDeadline.unlimited());
     } catch (Throwable ex) {
       String gitHubUrlHint = validateAndAddHintForGitHubUrl(myUrls.getUrl());
       String hintMessage = gitHubUrlHint.isEmpty() ? "" : " (" + gitHubUrlHint + ")";
@@ -151,47 +181,68 @@ public abstract class GitHubApiImpl implements GitHubApi {
                                                        @NotNull final String repoName,
                                                        @NotNull final String hash,
                                                        @Nullable final Integer perPage,
-                                                       @Nullable final Integer page) throws IOException, PublisherException {
+                                                       @Nullable final Integer page,
+                                                       @NotNull final PublishingDeadline deadline) throws IOException, PublisherException {
     final String statusUrl = myUrls.getCombinedStatusUrl(repoOwner, repoName, hash, perPage, page);
+    deadline.check("reading statuses from " + statusUrl);
 
     final HttpMethod method = HttpMethod.GET;
     LoggerUtil.logRequest(Constants.GITHUB_PUBLISHER_ID, method, statusUrl, null);
 
     final AtomicReference<CombinedCommitStatus> status = new AtomicReference<>();
     final AtomicReference<Exception> exceptionRef = new AtomicReference<>();
-    IOGuard.allowNetworkCall(() -> {
-      myClient.get(statusUrl, authenticationCredentials(), defaultHeaders(),
-                   success -> {
-                     String json = success.getBodyAsString();
-                     if (StringUtil.isEmptyOrSpaces(json)) {
-                       logFailedResponse(HttpMethod.GET, statusUrl, null, success);
-                       exceptionRef.set(new IOException(getErrorMessage(success, "Empty response.")));
-                       return;
-                     }
-                     CombinedCommitStatus combinedCommitStatus;
-                     try {
-                       combinedCommitStatus = myGson.fromJson(json, CombinedCommitStatus.class);
-                     } catch (JsonSyntaxException e) {
-                       exceptionRef.set(new PublisherException("GitHub publisher can not parse malformed json", e));
-                       return;
-                     }
-                     if (null == combinedCommitStatus) {
-                       exceptionRef.set(new PublisherException("GitHub publisher fails to parse a response"));
-                     } else {
-                       status.set(combinedCommitStatus);
-                     }
-                   },
-                   response -> {
-                     String responseBody = logFailedResponse(method, statusUrl, null, response);
-                     String additionalErrorsMessage = parseErrorsFromResponse(responseBody);
-                     PublisherException ex = new PublisherException(getErrorMessage(response, additionalErrorsMessage));
-                     if (RetryResponseProcessor.shouldRetryOnCode(response.getStatusCode())) {
-                       ex.setShouldRetry();
-                     }
-                     exceptionRef.set(ex);
-                   },
-                   e -> exceptionRef.set(e));
-    });
+    final HostConcurrencyLimiter.Permit permit = myConcurrencyLimiter.acquire(statusUrl, method, deadline);
+    try {
+      IOGuard.allowNetworkCall(() -> {
+        final SimpleCredentials credentials = authenticationCredentials();
+        final String credentialsFingerprint = fingerprint(credentials);
+        final HttpValidatorCache.CachedResponse<CombinedCommitStatus> cached = myValidatorCache.get(statusUrl, credentialsFingerprint, CombinedCommitStatus.class);
+        myClient.get(statusUrl, credentials, conditionalHeaders(cached), deadline,
+                     success -> {
+                       recordResponse(success, credentials, permit);
+                       if (isNotModified(success, cached)) {
+                         status.set(cached.getBody());
+                         return;
+                       }
+                       String json = success.getBodyAsString();
+                       if (StringUtil.isEmptyOrSpaces(json)) {
+                         logFailedResponse(HttpMethod.GET, statusUrl, null, success);
+                         exceptionRef.set(new IOException(getErrorMessage(success, "Empty response.")));
+                         return;
+                       }
+                       CombinedCommitStatus combinedCommitStatus;
+                       try {
+                         combinedCommitStatus = myGson.fromJson(json, CombinedCommitStatus.class);
+                       } catch (JsonSyntaxException e) {
+                         exceptionRef.set(new PublisherException("GitHub publisher can not parse malformed json", e));
+                         return;
+                       }
+                       if (null == combinedCommitStatus) {
+                         exceptionRef.set(new PublisherException("GitHub publisher fails to parse a response"));
+                       } else {
+                         status.set(combinedCommitStatus);
+                         myValidatorCache.put(statusUrl, credentialsFingerprint, success.getHeader(HttpHeaders.ETAG), combinedCommitStatus);
+                       }
+                     },
+                     response -> {
+                       recordResponse(response, credentials, permit);
+                       if (isNotModified(response, cached)) {
+                         status.set(cached.getBody());
+                         return;
+                       }
+                       String responseBody = logFailedResponse(method, statusUrl, null, response);
+                       String additionalErrorsMessage = parseErrorsFromResponse(responseBody);
+                       PublisherException ex = new PublisherException(getErrorMessage(response, additionalErrorsMessage));
+                       if (RetryResponseProcessor.shouldRetryOnCode(response.getStatusCode())) {
+                         ex.setShouldRetry();
+                       }
+                       exceptionRef.set(ex);
+                     },
+                     e -> exceptionRef.set(e));
+      });
+    } finally {
+      permit.release(exceptionRef.get());
+    }
 
     final Exception ex;
     if ((ex = exceptionRef.get()) != null) {
@@ -207,6 +258,104 @@ public abstract class GitHubApiImpl implements GitHubApi {
     return status.get();
   }
 
+  @NotNull
+  public Map<String, Collection<CommitStatus>> readCommitsStatuses(@NotNull final String repoOwner,
+                                                                   @NotNull final String repoName,
+                                                                   @NotNull final Collection<String> hashes,
+                                                                   @NotNull final PublishingDeadline deadline) throws IOException, PublisherException {
+    final String url = myUrls.getGraphQLUrl();
+    deadline.check("reading statuses from " + url);
+
+    final List<String> requestedHashes = new ArrayList<>(new LinkedHashSet<>(hashes));
+    final StringBuilder query = new StringBuilder("query($owner: String!, $name: String!");
+    final Map<String, Object> variables = new LinkedHashMap<>();
+    variables.put("owner", repoOwner);
+    variables.put("name", repoName);
+    for (int i = 0; i < requestedHashes.size(); i++) {
+      query.append(", $oid").append(i).append(": GitObjectID!");
+      variables.put("oid" + i, requestedHashes.get(i));
+    }
+    query.append(") { repository(owner: $owner, name: $name) {");
+    for (int i = 0; i < requestedHashes.size(); i++) {
+      query.append(" c").append(i).append(": object(oid: $oid").append(i).append(") { ... on Commit { status { contexts { context state description targetUrl } } } }");
+    }
+    query.append(" } }");
+    final String entity = myGson.toJson(new GraphQLRequest(query.toString(), variables));
+
+    final HttpMethod method = HttpMethod.POST;
+    LoggerUtil.logRequest(Constants.GITHUB_PUBLISHER_ID, method, url, entity);
+
+    final AtomicReference<GraphQLCommitStatuses> resultRef = new AtomicReference<>();
+    final AtomicReference<Exception> exceptionRef = new AtomicReference<>();
+    final HostConcurrencyLimiter.Permit permit = myConcurrencyLimiter.acquire(url, method, deadline);
+    try {
+      IOGuard.allowNetworkCall(() -> {
+        final SimpleCredentials credentials = authenticationCredentials();
+        myClient.post(
+          url, credentials, defaultHeaders(),
+          entity, ContentType.APPLICATION_JSON.getMimeType(), ContentType.APPLICATION_JSON.getCharset(), deadline, true,
+          response -> {
+            recordResponse(response, credentials, permit);
+            final String json = response.getBodyAsString();
+            try {
+              final GraphQLCommitStatuses result = StringUtil.isEmptyOrSpaces(json) ? null : myGson.fromJson(json, GraphQLCommitStatuses.class);
+              if (result == null) {
+                exceptionRef.set(new PublisherException("GitHub publisher fails to parse a GraphQL response"));
+              } else {
+                resultRef.set(result);
+              }
+            } catch (JsonSyntaxException e) {
+              exceptionRef.set(new PublisherException("GitHub publisher can not parse malformed json", e));
+            }
+          },
+          response -> {
+            recordResponse(response, credentials, permit);
+            String responseBody = logFailedResponse(method, url, entity, response);
+            PublisherException ex = new PublisherException(getErrorMessage(response, parseErrorsFromResponse(responseBody)));
+            if (RetryResponseProcessor.shouldRetryOnCode(response.getStatusCode())) {
+              ex.setShouldRetry();
+            }
+            exceptionRef.set(ex);
+          },
+          e -> exceptionRef.set(e));
+      });
+    } finally {
+      permit.release(exceptionRef.get());
+    }
+
+    final Exception ex;
+    if ((ex = exceptionRef.get()) != null) {
+      if (ex instanceof PublisherException) {
+        throw (PublisherException)ex;
+      } else {
+        PublisherException e = new PublisherException(ex.getMessage(), ex);
+        RetryResponseProcessor.processNetworkException(ex, e);
+        throw e;
+      }
+    }
+
+    final GraphQLCommitStatuses result = resultRef.get();
+    if (result.errors != null && !result.errors.isEmpty()) {
+      throw new PublisherException("GitHub GraphQL request has failed: " + result.errors.stream().map(e -> e.message).collect(Collectors.joining("; ")));
+    }
+    if (result.data == null || result.data.repository == null) {
+      throw new PublisherException(String.format("Repository \"%s/%s\" is inaccessible", repoOwner, repoName));
+    }
+    final Map<String, Collection<CommitStatus>> statuses = new LinkedHashMap<>();
+    for (int i = 0; i < requestedHashes.size(); i++) {
+      final GraphQLCommitStatuses.CommitObject commit = result.data.repository.get("c" + i);
+      final List<CommitStatus> commitStatuses = new ArrayList<>();
+      if (commit != null && commit.status != null && commit.status.contexts != null) {
+        for (GraphQLCommitStatuses.StatusContext context : commit.status.contexts) {
+          final String state = context.state == null ? null : context.state.toLowerCase(Locale.ENGLISH);
+          commitStatuses.add(new CommitStatus(state, context.targetUrl, context.description, context.context));
+        }
+      }
+      statuses.put(requestedHashes.get(i), commitStatuses);
+    }
+    return statuses;
+  }
+
   private Map<String, String> defaultHeaders() {
     final Map<String, String> result = new LinkedHashMap<String, String>();
     result.put(HttpHeaders.ACCEPT_ENCODING, "UTF-8");
@@ -215,39 +364,125 @@ public abstract class GitHubApiImpl implements GitHubApi {
     return result;
   }
 
+  private Map<String, String> conditionalHeaders(@Nullable HttpValidatorCache.CachedResponse<?> cached) {
+    final Map<String, String> result = defaultHeaders();
+    if (cached != null) {
+      result.put(HttpHeaders.IF_NONE_MATCH, cached.getETag());
+    }
+    return result;
+  }
+
+  private static boolean isNotModified(@NotNull HTTPRequestBuilder.Response response, @Nullable HttpValidatorCache.CachedResponse<?> cached) {
+    return cached != null && response.getStatusCode() == HttpStatus.SC_NOT_MODIFIED;
+  }
+
+  private void recordResponse(@NotNull HTTPRequestBuilder.Response response, @NotNull SimpleCredentials credentials, @NotNull HostConcurrencyLimiter.Permit permit) {
+    permit.responseReceived(response.getStatusCode());
+    myRateLimits.record(myUrls.getUrl(), fingerprint(credentials), response);
+  }
+
+  @Override
+  public boolean isRateLimitBudgetAtRisk() {
+    try {
+      return myRateLimits.isAtRisk(myUrls.getUrl(), fingerprint(guardedCredentials()));
+    } catch (IOException e) {
+      return false;
+    }
+  }
+
+  /**
+   * Every response is recorded with the fingerprint of the credentials, which stay the same until a token is renewed,
+   * so the last fingerprint is kept instead of hashing the credentials again
+   */
+  @NotNull
+  private String fingerprint(@NotNull SimpleCredentials credentials) {
+    final CredentialsFingerprint last = myCredentialsFingerprint;
+    if (last != null && last.isOf(credentials)) {
+      return last.myFingerprint;
+    }
+    final CredentialsFingerprint fingerprint = new CredentialsFingerprint(credentials);
+    myCredentialsFingerprint = fingerprint;
+    return fingerprint.myFingerprint;
+  }
+
+  @NotNull
+  private String tokenKey(@NotNull SimpleCredentials credentials) {
+    return myUrls.getUrl() + "\u0000" + fingerprint(credentials);
+  }
+
+  /**
+   * @return time in ms GitHub asked to wait if the response reports a secondary rate limit, 0 if it has not said how long to wait,
+   * or -1 if the response is not a secondary rate limit one
+   */
+  static long getSecondaryRateLimitRetryAfter(@NotNull HTTPRequestBuilder.Response response, @Nullable String responseBody) {
+    final int code = response.getStatusCode();
+    if (code != HttpStatus.SC_FORBIDDEN && code != 429) return -1;
+    final String retryAfter = response.getHeader(HttpHeaders.RETRY_AFTER);
+    if (retryAfter != null) {
+      try {
+        return Math.max(0, Long.parseLong(retryAfter.trim()) * 1000);
+      } catch (NumberFormatException e) {
+        return 0;
+      }
+    }
+    return responseBody != null && responseBody.toLowerCase(Locale.ENGLISH).contains("secondary rate limit") ? 0 : -1;
+  }
+
   public void setChangeStatus(@NotNull final String repoOwner,
                               @NotNull final String repoName,
                               @NotNull final String hash,
                               @NotNull final GitHubChangeState status,
                               @NotNull final String targetUrl,
                               @NotNull final String description,
-                              @Nullable final String context) throws PublisherException, IOException {
+                              @Nullable final String context,
+                              @NotNull final PublishingDeadline deadline) throws PublisherException, IOException {
 
     final String url = myUrls.getStatusUrl(repoOwner, repoName, hash);
+    deadline.check("publishing status to " + url);
     final String entity = myGson.toJson(new CommitStatus(status.getState(), targetUrl, description, context));
 
     final HttpMethod method = HttpMethod.POST;
     LoggerUtil.logRequest(Constants.GITHUB_PUBLISHER_ID, method, url, entity);
 
     final AtomicReference<Exception> exceptionRef = new AtomicReference<>();
-    IOGuard.allowNetworkCall(() -> {
-      myClient.post(
-        url, authenticationCredentials(), defaultHeaders(),
-        entity, ContentType.APPLICATION_JSON.getMimeType(), ContentType.APPLICATION_JSON.getCharset(),
-        response -> {
-        },
-        response -> {
-          String responseBody = logFailedResponse(method, url, entity, response);
-          String githubError = parseErrorsFromResponse(responseBody);
-          String additionalComment = githubError != null ? githubError : response.getStatusCode() == HttpStatus.SC_NOT_FOUND ? MSG_NOT_FOUND : MSG_PROXY_OR_PERMISSIONS;
-          PublisherException ex = new PublisherException(getErrorMessage(response, additionalComment));
-          if (RetryResponseProcessor.shouldRetryOnCode(response.getStatusCode())) {
-            ex.setShouldRetry();
-          }
-          exceptionRef.set(ex);
-        },
-        e -> exceptionRef.set(e));
-    });
+    final SimpleCredentials credentials = guardedCredentials();
+    final ContentCreationPacer.Permit pacerPermit = myContentCreationPacer.acquire(tokenKey(credentials), deadline);
+    final HostConcurrencyLimiter.Permit permit;
+    try {
+      permit = myConcurrencyLimiter.acquire(url, method, deadline);
+    } catch (PublisherException e) {
+      pacerPermit.release();
+      throw e;
+    }
+    try {
+      IOGuard.allowNetworkCall(() -> {
+        myClient.post(
+          url, credentials, defaultHeaders(),
+          entity, ContentType.APPLICATION_JSON.getMimeType(), ContentType.APPLICATION_JSON.getCharset(), deadline, RETRY_CONTENT_CREATION_REQUESTS,
+          response -> {
+            recordResponse(response, credentials, permit);
+          },
+          response -> {
+            recordResponse(response, credentials, permit);
+            String responseBody = logFailedResponse(method, url, entity, response);
+            String githubError = parseErrorsFromResponse(responseBody);
+            String additionalComment = githubError != null ? githubError : response.getStatusCode() == HttpStatus.SC_NOT_FOUND ? MSG_NOT_FOUND : MSG_PROXY_OR_PERMISSIONS;
+            PublisherException ex = new PublisherException(getErrorMessage(response, additionalComment));
+            final long retryAfterMs = getSecondaryRateLimitRetryAfter(response, responseBody);
+            if (retryAfterMs >= 0) {
+              pacerPermit.limited(retryAfterMs);
+              ex.setShouldRetry();
+            } else if (RetryResponseProcessor.shouldRetryOnCode(response.getStatusCode())) {
+              ex.setShouldRetry();
+            }
+            exceptionRef.set(ex);
+          },
+          e -> exceptionRef.set(e));
+      });
+    } finally {
+      permit.release(exceptionRef.get());
+      pacerPermit.release();
+    }
 
     final Exception ex;
     if ((ex = exceptionRef.get()) != null) {
@@ -269,7 +504,8 @@ public abstract class GitHubApiImpl implements GitHubApi {
   @Nullable
   public String findPullRequestCommit(@NotNull String repoOwner,
                                       @NotNull String repoName,
-                                      @NotNull String branchName) throws IOException, PublisherException {
+                                      @NotNull String branchName,
+                                      @NotNull PublishingDeadline deadline) throws IOException, PublisherException {
 
     final String pullRequestId = getPullRequestId(repoName, branchName);
     if (pullRequestId == null) return null;
@@ -277,7 +513,7 @@ public abstract class GitHubApiImpl implements GitHubApi {
     //  /repos/:owner/:repo/pulls/:number
 
     final String requestUrl = myUrls.getPullRequestInfo(repoOwner, repoName, pullRequestId);
-    final PullRequestInfo pullRequestInfo = processResponse(requestUrl, PullRequestInfo.class, false);
+    final PullRequestInfo pullRequestInfo = processResponse(requestUrl, PullRequestInfo.class, false, deadline);
 
     final RepoRefInfo head = pullRequestInfo.head;
     if (head != null) {
@@ -287,11 +523,14 @@ public abstract class GitHubApiImpl implements GitHubApi {
   }
 
   @NotNull
-  public Collection<String> getCommitParents(@NotNull String repoOwner, @NotNull String repoName, @NotNull String hash) throws IOException, PublisherException {
+  public Collection<String> getCommitParents(@NotNull String repoOwner,
+                                             @NotNull String repoName,
+                                             @NotNull String hash,
+                                             @NotNull PublishingDeadline deadline) throws IOException, PublisherException {
 
     final String requestUrl = myUrls.getCommitInfo(repoOwner, repoName, hash);
 
-    final CommitInfo infos = processResponse(requestUrl, CommitInfo.class, false);
+    final CommitInfo infos = processResponse(requestUrl, CommitInfo.class, false, deadline);
     if (infos.parents != null) {
       final Set<String> parents = new HashSet<String>();
       for (CommitInfo p : infos.parents) {
@@ -306,43 +545,66 @@ public abstract class GitHubApiImpl implements GitHubApi {
   }
 
   @NotNull
-  private <T> T processResponse(@NotNull String uri, @NotNull final Class<T> clazz, boolean logErrorsDebugOnly) throws IOException, PublisherException {
+  private <T> T processResponse(@NotNull String uri,
+                                @NotNull final Class<T> clazz,
+                                boolean logErrorsDebugOnly,
+                                @NotNull PublishingDeadline deadline) throws IOException, PublisherException {
+    deadline.check("request to " + uri);
     LoggerUtil.logRequest(Constants.GITHUB_PUBLISHER_ID, HttpMethod.GET, uri, null);
 
     final AtomicReference<Exception> exceptionRef = new AtomicReference<>();
     final AtomicReference<T> resultRef = new AtomicReference<>();
-    IOGuard.allowNetworkCall(() -> {
-      myClient.get(uri, authenticationCredentials(), defaultHeaders(),
-                   success -> {
-                     final String json = success.getBodyAsString();
-                     if (StringUtil.isEmptyOrSpaces(json)) {
-                       logFailedResponse(HttpMethod.GET, uri, null, success, logErrorsDebugOnly);
-                       exceptionRef.set(new IOException(getErrorMessage(success, "Empty response.")));
-                     } else {
-                       LOG.debug("Parsing json for " + uri + ": " + json);
-                       T result = myGson.fromJson(json, clazz);
-                       if (null == result) {
-                         exceptionRef.set(new PublisherException("GitHub publisher fails to parse a response"));
+    final HostConcurrencyLimiter.Permit permit = myConcurrencyLimiter.acquire(uri, HttpMethod.GET, deadline);
+    try {
+      IOGuard.allowNetworkCall(() -> {
+        final SimpleCredentials credentials = authenticationCredentials();
+        final String credentialsFingerprint = fingerprint(credentials);
+        final HttpValidatorCache.CachedResponse<T> cached = myValidatorCache.get(uri, credentialsFingerprint, clazz);
+        myClient.get(uri, credentials, conditionalHeaders(cached), deadline,
+                     success -> {
+                       recordResponse(success, credentials, permit);
+                       if (isNotModified(success, cached)) {
+                         resultRef.set(cached.getBody());
+                         return;
+                       }
+                       final String json = success.getBodyAsString();
+                       if (StringUtil.isEmptyOrSpaces(json)) {
+                         logFailedResponse(HttpMethod.GET, uri, null, success, logErrorsDebugOnly);
+                         exceptionRef.set(new IOException(getErrorMessage(success, "Empty response.")));
                        } else {
-                         resultRef.set(result);
+                         LOG.debug("Parsing json for " + uri + ": " + json);
+                         T result = myGson.fromJson(json, clazz);
+                         if (null == result) {
+                           exceptionRef.set(new PublisherException("GitHub publisher fails to parse a response"));
+                         } else {
+                           resultRef.set(result);
+                           myValidatorCache.put(uri, credentialsFingerprint, success.getHeader(HttpHeaders.ETAG), result);
+                         }
                        }
+                     },
+                     error -> {
+                       recordResponse(error, credentials, permit);
+                       if (isNotModified(error, cached)) {
+                         resultRef.set(cached.getBody());
+                         return;
+                       }
+                       String responseBody = logFailedResponse(HttpMethod.GET, uri, null, error, logErrorsDebugOnly);
+                       String githubError = parseErrorsFromResponse(responseBody);
+                       String additionalComment = githubError != null ? githubError :  error.getStatusCode() == HttpStatus.SC_NOT_FOUND ? MSG_NOT_FOUND : MSG_PROXY_OR_PERMISSIONS;
+                       PublisherException ex = new PublisherException(getErrorMessage(error, additionalComment));
+                       if (RetryResponseProcessor.shouldRetryOnCode(error.getStatusCode())) {
+                         ex.setShouldRetry();
+                       }
+                       exceptionRef.set(ex);
+                     },
+                     e -> {
+                       exceptionRef.set(e);
                      }
-                   },
-                   error -> {
-                     String responseBody = logFailedResponse(HttpMethod.GET, uri, null, error, logErrorsDebugOnly);
-                     String githubError = parseErrorsFromResponse(responseBody);
-                     String additionalComment = githubError != null ? githubError :  error.getStatusCode() == HttpStatus.SC_NOT_FOUND ? MSG_NOT_FOUND : MSG_PROXY_OR_PERMISSIONS;
-                     PublisherException ex = new PublisherException(getErrorMessage(error, additionalComment));
-                     if (RetryResponseProcessor.shouldRetryOnCode(error.getStatusCode())) {
-                       ex.setShouldRetry();
-                     }
-                     exceptionRef.set(ex);
-                   },
-                   e -> {
-                     exceptionRef.set(e);
-                   }
-      );
-    });
+        );
+      });
+    } finally {
+      permit.release(exceptionRef.get());
+    }
 
     final Exception ex;
     if ((ex = exceptionRef.get()) != null) {
@@ -390,6 +652,28 @@ public abstract class GitHubApiImpl implements GitHubApi {
 
   protected abstract SimpleCredentials authenticationCredentials() throws IOException;
 
+  /**
+   * Obtaining the credentials may require a network call, e.g. to renew a token, so it is allowed outside the request calls too
+   */
+  @NotNull
+  private SimpleCredentials guardedCredentials() throws IOException {
+    return IOGuard.allowNetworkCall(() -> {
+      return authenticationCredentials();
+    });
+  }
+
+  /**
+   * @return identifies the credentials in caches without revealing them, or null if the credentials are not available
+   */
+  @Nullable
+  protected String getCredentialsId() {
+    try {
+      return fingerprint(guardedCredentials());
+    } catch (IOException e) {
+      return null;
+    }
+  }
+
   @Nullable
   private String logFailedResponse(@NotNull HttpMethod method,
                                  @NotNull String uri,
@@ -431,28 +715,51 @@ public abstract class GitHubApiImpl implements GitHubApi {
   public void postComment(@NotNull final String ownerName,
                           @NotNull final String repoName,
                           @NotNull final String hash,
-                          @NotNull final String comment) throws IOException {
+                          @NotNull final String comment,
+                          @NotNull final PublishingDeadline deadline) throws IOException, PublisherException {
 
     final String url = myUrls.getAddCommentUrl(ownerName, repoName, hash);
+    deadline.check("posting comment to " + url);
     final String entity = myGson.toJson(new IssueComment(comment));
 
     final HttpMethod method = HttpMethod.POST;
     LoggerUtil.logRequest(Constants.GITHUB_PUBLISHER_ID, method, url, entity);
 
     final AtomicReference<Exception> exceptionRef = new AtomicReference<>();
-    IOGuard.allowNetworkCall(() -> {
-      myClient.post(
-        url, authenticationCredentials(), defaultHeaders(),
-        entity, ContentType.APPLICATION_JSON.getMimeType(), ContentType.APPLICATION_JSON.getCharset(),
-        response -> {
-        },
-        response -> {
-          String responseBody = logFailedResponse(method, url, entity, response);
-          String githubError = parseErrorsFromResponse(responseBody);
-          exceptionRef.set(new IOException(getErrorMessage(response, githubError)));
-        },
-        e -> exceptionRef.set(e));
-    });
+    final SimpleCredentials credentials = guardedCredentials();
+    final ContentCreationPacer.Permit pacerPermit;
+    final HostConcurrencyLimiter.Permit permit;
+    pacerPermit = myContentCreationPacer.acquire(tokenKey(credentials), deadline);
+    try {
+      permit = myConcurrencyLimiter.acquire(url, method, deadline);
+    } catch (PublisherException e) {
+      pacerPermit.release();
+      throw e;
+    }
+    try {
+      IOGuard.allowNetworkCall(() -> {
+        myClient.post(
+          url, credentials, defaultHeaders(),
+          entity, ContentType.APPLICATION_JSON.getMimeType(), ContentType.APPLICATION_JSON.getCharset(), deadline, RETRY_CONTENT_CREATION_REQUESTS,
+          response -> {
+            recordResponse(response, credentials, permit);
+          },
+          response -> {
+            recordResponse(response, credentials, permit);
+            String responseBody = logFailedResponse(method, url, entity, response);
+            String githubError = parseErrorsFromResponse(responseBody);
+            final long retryAfterMs = getSecondaryRateLimitRetryAfter(response, responseBody);
+            if (retryAfterMs >= 0) {
+              pacerPermit.limited(retryAfterMs);
+            }
+            exceptionRef.set(new IOException(getErrorMessage(response, githubError)));
+          },
+          e -> exceptionRef.set(e));
+      });
+    } finally {
+      permit.release(exceptionRef.get());
+      pacerPermit.release();
+    }
 
     final Exception ex;
     if ((ex = exceptionRef.get()) != null) {
@@ -463,4 +770,20 @@ public abstract class GitHubApiImpl implements GitHubApi {
       }
     }
   }
+
+  private static class CredentialsFingerprint {
+    private final String myUsername;
+    private final String myPassword;
+    private final String myFingerprint;
+
+    CredentialsFingerprint(@NotNull SimpleCredentials credentials) {
+      myUsername = credentials.getUsername();
+      myPassword = credentials.getPassword();
+      myFingerprint = HttpValidatorCache.fingerprint(myUsername, myPassword);
+    }
+
+    boolean isOf(@NotNull SimpleCredentials credentials) {
+      return Objects.equals(myUsername, credentials.getUsername()) && Objects.equals(myPassword, credentials.getPassword());
+    }
+  }
 }
\ No newline at end of file
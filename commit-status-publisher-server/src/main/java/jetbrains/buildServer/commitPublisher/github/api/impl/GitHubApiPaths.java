@@ -71,6 +71,15 @@ public class GitHubApiPaths {
     return url.toString();
   }
 
+  @NotNull
+  public String getGraphQLUrl() {
+    // GitHub Enterprise serves REST API at /api/v3 and GraphQL at /api/graphql
+    if (myUrl.endsWith("/api/v3")) {
+      return myUrl.substring(0, myUrl.length() - "v3".length()) + "graphql";
+    }
+    return myUrl + "/graphql";
+  }
+
   @NotNull
   public String getStatusUrl(@NotNull final String ownerName,
                              @NotNull final String repoName,
@@ -0,0 +1,122 @@
+/*
+ * Copyright 2000-2024 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jetbrains.buildServer.commitPublisher.github.api.impl;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import java.util.concurrent.TimeUnit;
+import jetbrains.buildServer.commitPublisher.PublisherException;
+import jetbrains.buildServer.serverSide.TeamCityProperties;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Keeps results of GitHub repository permission checks and stored token lookups for a short time,
+ * so that test connection requests and health checks of many build configurations using the same repository and token
+ * do not repeat the same requests to GitHub and the same connection and token lookups.
+ * Failures caused by network problems or server errors are not kept.
+ */
+public class GitHubPermissionsCache {
+  static final String ENABLED_PARAMETER = "teamcity.commitStatusPublisher.github.permissionsCache.enabled";
+  static final String TTL_PARAMETER = "teamcity.commitStatusPublisher.github.permissionsCache.ttlSec";
+  private static final long TTL_DEFAULT_VALUE_SEC = 60;
+  private static final int MAX_SIZE = 10_000;
+
+  private final Cache<String, CheckResult> myRepositoryChecks = CacheBuilder.newBuilder().maximumSize(MAX_SIZE).expireAfterWrite(1, TimeUnit.HOURS).build();
+  private final Cache<String, CheckResult> myTokenChecks = CacheBuilder.newBuilder().maximumSize(MAX_SIZE).expireAfterWrite(1, TimeUnit.HOURS).build();
+
+  public GitHubPermissionsCache() {
+  }
+
+  /**
+   * Runs the permission check of the repository unless its result is already known
+   * @param serverUrl GitHub API URL
+   * @param repositoryUrl URL of the checked repository
+   * @param credentialsId identifies the credentials the check is done with, e.g. the stored token id
+   * @throws PublisherException if the check fails, or has recently failed
+   */
+  public void checkRepository(@NotNull String serverUrl,
+                              @NotNull String repositoryUrl,
+                              @NotNull String credentialsId,
+                              @NotNull RepositoryCheck check) throws PublisherException {
+    if (!isEnabled()) {
+      check.run();
+      return;
+    }
+    final String key = serverUrl + "\u0000" + repositoryUrl + "\u0000" + credentialsId;
+    final CheckResult cached = getValid(myRepositoryChecks, key);
+    if (cached != null) {
+      if (cached.myError != null) {
+        throw new PublisherException(cached.myError);
+      }
+      return;
+    }
+    try {
+      check.run();
+      myRepositoryChecks.put(key, new CheckResult(null));
+    } catch (PublisherException e) {
+      if (!e.shouldRetry()) {
+        myRepositoryChecks.put(key, new CheckResult(e.getMessage()));
+      }
+      throw e;
+    }
+  }
+
+  /**
+   * @return whether the stored token has recently been found in the project, or null if it is not known
+   */
+  @Nullable
+  public Boolean isTokenAvailable(@NotNull String projectId, @NotNull String tokenId) {
+    if (!isEnabled()) return null;
+    final CheckResult cached = getValid(myTokenChecks, projectId + "\u0000" + tokenId);
+    return cached == null ? null : cached.myError == null;
+  }
+
+  public void tokenChecked(@NotNull String projectId, @NotNull String tokenId, boolean available) {
+    if (!isEnabled()) return;
+    myTokenChecks.put(projectId + "\u0000" + tokenId, new CheckResult(available ? null : "token is not available"));
+  }
+
+  @Nullable
+  private static CheckResult getValid(@NotNull Cache<String, CheckResult> cache, @NotNull String key) {
+    final CheckResult result = cache.getIfPresent(key);
+    if (result == null) return null;
+    final long ttlMs = TimeUnit.SECONDS.toMillis(TeamCityProperties.getLong(TTL_PARAMETER, TTL_DEFAULT_VALUE_SEC));
+    if (System.currentTimeMillis() - result.myTimestamp >= ttlMs) {
+      cache.invalidate(key);
+      return null;
+    }
+    return result;
+  }
+
+  private static boolean isEnabled() {
+    return TeamCityProperties.getBooleanOrTrue(ENABLED_PARAMETER);
+  }
+
+  public interface RepositoryCheck {
+    void run() throws PublisherException;
+  }
+
+  private static class CheckResult {
+    private final String myError;
+    private final long myTimestamp = System.currentTimeMillis();
+
+    CheckResult(@Nullable String error) {
+      myError = error;
+    }
+  }
+}
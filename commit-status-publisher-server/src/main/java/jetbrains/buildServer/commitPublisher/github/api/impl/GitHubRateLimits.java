@@ -0,0 +1,232 @@
+/*
+ * Copyright 2000-2024 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jetbrains.buildServer.commitPublisher.github.api.impl;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import jetbrains.buildServer.serverSide.TeamCityProperties;
+import jetbrains.buildServer.util.HTTPRequestBuilder;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Tracks GitHub API rate limit budgets by server and credentials, as reported in the X-RateLimit-* headers of every response.
+ * The rate the budget is consumed at is estimated from consecutive responses, which allows to forecast whether the budget
+ * will run out before it is reset, and to skip requests which are not essential, like queued build statuses, in advance.
+ */
+public class GitHubRateLimits {
+  static final String ENABLED_PARAMETER = "teamcity.commitStatusPublisher.github.rateLimitTracking.enabled";
+  static final String RESERVE_PERCENT_PARAMETER = "teamcity.commitStatusPublisher.github.rateLimitTracking.reservePercent";
+  private static final int RESERVE_PERCENT_DEFAULT_VALUE = 10;
+  public static final String CORE_RESOURCE = "core";
+
+  private static final String LIMIT_HEADER = "X-RateLimit-Limit";
+  private static final String REMAINING_HEADER = "X-RateLimit-Remaining";
+  private static final String RESET_HEADER = "X-RateLimit-Reset";
+  private static final String RESOURCE_HEADER = "X-RateLimit-Resource";
+
+  private static final long MIN_RATE_SAMPLE_MS = 10_000;
+  private static final double RATE_SMOOTHING = 0.3;
+  private static final long STALE_BUDGET_MS = TimeUnit.HOURS.toMillis(1);
+  private static final long STALE_BUDGETS_EVICTION_INTERVAL_MS = TimeUnit.MINUTES.toMillis(10);
+
+  private final ConcurrentMap<String, Budget> myBudgets = new ConcurrentHashMap<>();
+  private volatile long myNextEvictionTime;
+
+  public GitHubRateLimits() {
+  }
+
+  /**
+   * Updates the budget of the credentials from the rate limit headers of the response, responses without them are ignored
+   * @param credentialsId identifies the credentials without revealing them, e.g. their fingerprint
+   */
+  void record(@NotNull String serverUrl, @NotNull String credentialsId, @NotNull HTTPRequestBuilder.Response response) {
+    if (!TeamCityProperties.getBooleanOrTrue(ENABLED_PARAMETER)) return;
+    final Integer limit = parseInt(response.getHeader(LIMIT_HEADER));
+    final Integer remaining = parseInt(response.getHeader(REMAINING_HEADER));
+    final Integer reset = parseInt(response.getHeader(RESET_HEADER));
+    if (limit == null || remaining == null || reset == null) return;
+    final String resourceHeader = response.getHeader(RESOURCE_HEADER);
+    final String resource = resourceHeader == null ? CORE_RESOURCE : resourceHeader.trim();
+    record(serverUrl, credentialsId, resource, limit, remaining, TimeUnit.SECONDS.toMillis(reset), System.currentTimeMillis());
+  }
+
+  void record(@NotNull String serverUrl, @NotNull String credentialsId, @NotNull String resource, int limit, int remaining, long resetAt, long now) {
+    myBudgets.computeIfAbsent(budgetKey(serverUrl, credentialsId, resource), k -> new Budget(serverUrl, credentialsId, resource))
+             .update(limit, remaining, resetAt, now);
+    evictStaleBudgets(now);
+  }
+
+  /**
+   * Budgets of credentials which are not used anymore, e.g. of renewed tokens, are dropped along with the updates of the used ones
+   */
+  private void evictStaleBudgets(long now) {
+    if (now < myNextEvictionTime) return;
+    myNextEvictionTime = now + STALE_BUDGETS_EVICTION_INTERVAL_MS;
+    myBudgets.values().removeIf(budget -> isStale(budget, now));
+  }
+
+  private static boolean isStale(@NotNull Budget budget, long now) {
+    return budget.getUpdatedAt() < now - STALE_BUDGET_MS;
+  }
+
+  /**
+   * @return true if the REST API budget of the credentials is forecast to run out before it is reset,
+   * other budgets, e.g. of the search or GraphQL API, are not used for publishing and are only reported
+   */
+  public boolean isAtRisk(@NotNull String serverUrl, @NotNull String credentialsId) {
+    if (!TeamCityProperties.getBooleanOrTrue(ENABLED_PARAMETER)) return false;
+    final Budget budget = myBudgets.get(budgetKey(serverUrl, credentialsId, CORE_RESOURCE));
+    return budget != null && budget.isAtRisk(System.currentTimeMillis());
+  }
+
+  /**
+   * @return budgets updated within the last hour, the least remaining first
+   */
+  @NotNull
+  public List<Budget> getBudgets() {
+    final long now = System.currentTimeMillis();
+    return myBudgets.values().stream()
+                    .filter(budget -> !isStale(budget, now))
+                    .sorted(Comparator.comparingDouble(Budget::getRemainingRatio))
+                    .collect(Collectors.toList());
+  }
+
+  @NotNull
+  private static String budgetKey(@NotNull String serverUrl, @NotNull String credentialsId, @NotNull String resource) {
+    return serverUrl + "\u0000" + credentialsId + "\u0000" + resource;
+  }
+
+  @Nullable
+  private static Integer parseInt(@Nullable String value) {
+    if (value == null) return null;
+    try {
+      return Integer.parseInt(value.trim());
+    } catch (NumberFormatException e) {
+      return null;
+    }
+  }
+
+  public static class Budget {
+    private final String myServerUrl;
+    private final String myCredentialsId;
+    private final String myResource;
+    private int myLimit;
+    private int myRemaining;
+    private long myResetAt;
+    private long myUpdatedAt;
+    private double myConsumptionPerMs = -1;
+    private long mySampleStart;
+    private int mySampleRemaining;
+
+    Budget(@NotNull String serverUrl, @NotNull String credentialsId, @NotNull String resource) {
+      myServerUrl = serverUrl;
+      myCredentialsId = credentialsId;
+      myResource = resource;
+    }
+
+    synchronized void update(int limit, int remaining, long resetAt, long now) {
+      if (myUpdatedAt > 0 && resetAt == myResetAt) {
+        if (now - mySampleStart >= MIN_RATE_SAMPLE_MS) {
+          final int consumed = mySampleRemaining - remaining;
+          // responses of concurrent requests may come out of order, such samples are skipped
+          if (consumed >= 0) {
+            final double rate = consumed / (double)(now - mySampleStart);
+            myConsumptionPerMs = myConsumptionPerMs < 0 ? rate : myConsumptionPerMs + (rate - myConsumptionPerMs) * RATE_SMOOTHING;
+          }
+          mySampleStart = now;
+          mySampleRemaining = remaining;
+        }
+      } else {
+        // a new rate limit window, the consumption rate estimated in the previous one is kept
+        mySampleStart = now;
+        mySampleRemaining = remaining;
+      }
+      myLimit = limit;
+      myRemaining = remaining;
+      myResetAt = resetAt;
+      myUpdatedAt = now;
+    }
+
+    synchronized boolean isAtRisk(long now) {
+      if (myResetAt <= now) return false;
+      final int reservePercent = TeamCityProperties.getInteger(RESERVE_PERCENT_PARAMETER, RESERVE_PERCENT_DEFAULT_VALUE);
+      if (myRemaining * 100L <= (long)myLimit * reservePercent) return true;
+      final long exhaustionTime = getForecastExhaustionTime();
+      return exhaustionTime >= 0 && exhaustionTime < myResetAt;
+    }
+
+    public boolean isAtRisk() {
+      return isAtRisk(System.currentTimeMillis());
+    }
+
+    /**
+     * @return time when the budget is expected to be exhausted at the current consumption rate, or -1 if it is not known
+     */
+    public synchronized long getForecastExhaustionTime() {
+      if (myRemaining <= 0) return myUpdatedAt;
+      if (myConsumptionPerMs <= 0) return -1;
+      return myUpdatedAt + (long)(myRemaining / myConsumptionPerMs);
+    }
+
+    @NotNull
+    public String getServerUrl() {
+      return myServerUrl;
+    }
+
+    @NotNull
+    public String getCredentialsId() {
+      return myCredentialsId;
+    }
+
+    @NotNull
+    public String getResource() {
+      return myResource;
+    }
+
+    public synchronized int getLimit() {
+      return myLimit;
+    }
+
+    public synchronized int getRemaining() {
+      return myRemaining;
+    }
+
+    public synchronized long getResetAt() {
+      return myResetAt;
+    }
+
+    public synchronized long getUpdatedAt() {
+      return myUpdatedAt;
+    }
+
+    /**
+     * @return estimated number of requests per hour made with the credentials
+     */
+    public synchronized long getConsumptionPerHour() {
+      return myConsumptionPerMs < 0 ? -1 : Math.round(myConsumptionPerMs * TimeUnit.HOURS.toMillis(1));
+    }
+
+    synchronized double getRemainingRatio() {
+      return myLimit <= 0 ? 1 : myRemaining / (double)myLimit;
+    }
+  }
+}
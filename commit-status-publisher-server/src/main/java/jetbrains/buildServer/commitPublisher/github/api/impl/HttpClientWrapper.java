@@ -21,6 +21,7 @@ package jetbrains.buildServer.commitPublisher.github.api.impl;
 import java.nio.charset.Charset;
 import java.util.Map;
 import java.util.function.Consumer;
+import jetbrains.buildServer.commitPublisher.PublishingDeadline;
 import jetbrains.buildServer.http.SimpleCredentials;
 import jetbrains.buildServer.util.HTTPRequestBuilder;
 import org.jetbrains.annotations.NotNull;
@@ -37,6 +38,7 @@ public interface HttpClientWrapper {
     @NotNull String uri,
     @NotNull SimpleCredentials simpleCredentials,
     @NotNull Map<String, String> headers,
+    @NotNull PublishingDeadline deadline,
     @NotNull HTTPRequestBuilder.ResponseConsumer success,
     @NotNull HTTPRequestBuilder.ResponseConsumer error,
     @NotNull Consumer<Exception> exception
@@ -49,6 +51,8 @@ public interface HttpClientWrapper {
     @NotNull String data,
     @NotNull String mimeType,
     @NotNull Charset charset,
+    @NotNull PublishingDeadline deadline,
+    boolean allowRetries,
     @NotNull HTTPRequestBuilder.ResponseConsumer success,
     @NotNull HTTPRequestBuilder.ResponseConsumer error,
     @NotNull Consumer<Exception> exception
@@ -22,6 +22,9 @@ import java.net.URISyntaxException;
 import java.nio.charset.Charset;
 import java.util.Map;
 import java.util.function.Consumer;
+import jetbrains.buildServer.commitPublisher.CachingSSLTrustStoreProvider;
+import jetbrains.buildServer.commitPublisher.PublisherException;
+import jetbrains.buildServer.commitPublisher.PublishingDeadline;
 import jetbrains.buildServer.http.SimpleCredentials;
 import jetbrains.buildServer.serverSide.TeamCityProperties;
 import jetbrains.buildServer.util.HTTPRequestBuilder;
@@ -43,7 +46,7 @@ public class HttpClientWrapperImpl implements HttpClientWrapper {
 
   public HttpClientWrapperImpl(final HTTPRequestBuilder.RequestHandler requestHandler, final SSLTrustStoreProvider sslTrustStoreProvider) {
     myRequestHandler = requestHandler;
-    mySSLTrustStoreProvider = sslTrustStoreProvider;
+    mySSLTrustStoreProvider = CachingSSLTrustStoreProvider.cached(sslTrustStoreProvider);
   }
 
   @Override
@@ -51,17 +54,18 @@ public class HttpClientWrapperImpl implements HttpClientWrapper {
     @NotNull final String uri,
     @NotNull final SimpleCredentials simpleCredentials,
     @NotNull final Map<String, String> headers,
+    @NotNull final PublishingDeadline deadline,
     @NotNull final HTTPRequestBuilder.ResponseConsumer success,
     @NotNull final HTTPRequestBuilder.ResponseConsumer error,
     @NotNull final Consumer<Exception> exception
   ) {
     try {
       final HTTPRequestBuilder.Request request =
-        constructBuilder(uri, simpleCredentials, headers, success, error, exception)
+        constructBuilder(uri, simpleCredentials, headers, deadline, true, success, error, exception)
           .withMethod(HttpMethod.GET)
           .build();
       myRequestHandler.doRequest(request);
-    } catch (URISyntaxException e) {
+    } catch (URISyntaxException | PublisherException e) {
       exception.accept(e);
     }
   }
@@ -74,18 +78,20 @@ public class HttpClientWrapperImpl implements HttpClientWrapper {
     @NotNull final String data,
     @NotNull final String mimeType,
     @NotNull final Charset charset,
+    @NotNull final PublishingDeadline deadline,
+    final boolean allowRetries,
     @NotNull final HTTPRequestBuilder.ResponseConsumer success,
     @NotNull final HTTPRequestBuilder.ResponseConsumer error,
     @NotNull final Consumer<Exception> exception
   ) {
     try {
       final HTTPRequestBuilder.Request request =
-        constructBuilder(uri, simpleCredentials, headers, success, error, exception)
+        constructBuilder(uri, simpleCredentials, headers, deadline, allowRetries, success, error, exception)
           .withMethod(HttpMethod.POST)
           .withPostStringEntity(data, mimeType, charset)
           .build();
       myRequestHandler.doRequest(request);
-    } catch (URISyntaxException e) {
+    } catch (URISyntaxException | PublisherException e) {
       exception.accept(e);
     }
   }
@@ -94,21 +100,35 @@ public class HttpClientWrapperImpl implements HttpClientWrapper {
     @NotNull final String uri,
     @NotNull final SimpleCredentials simpleCredentials,
     @NotNull final Map<String, String> headers,
+    @NotNull final PublishingDeadline deadline,
+    final boolean allowRetries,
     @NotNull final HTTPRequestBuilder.ResponseConsumer success,
     @NotNull final HTTPRequestBuilder.ResponseConsumer error,
     @NotNull final Consumer<Exception> exception
-  ) throws URISyntaxException {
+  ) throws URISyntaxException, PublisherException {
+    final int timeout = deadline.limitTimeout(TeamCityProperties.getInteger("teamcity.github.http.timeout", 10 * 1000), "request to " + uri);
     return new HTTPRequestBuilder(uri)
-      .withTimeout(TeamCityProperties.getInteger("teamcity.github.http.timeout", 10 * 1000))
+      .withTimeout(timeout)
       .withAuthenticateHeader(simpleCredentials)
       .withRedirectStrategy(RedirectStrategy.LAX)
       .withTrustStore(mySSLTrustStoreProvider.getTrustStore())
       .allowNonSecureConnection(true)
       .withEncodingInterceptor(true)
-      .withRetryCount(RETRY_COUNT)
+      .withRetryCount(allowRetries ? getRetryCount(deadline, timeout) : 0)
       .withHeader(headers)
       .onException(exception)
       .onErrorResponse(error)
       .onSuccess(success);
   }
+
+  /**
+   * Retries should not make the request outlive the deadline, so only as many attempts as fit into the remaining time are allowed
+   */
+  private static int getRetryCount(@NotNull PublishingDeadline deadline, int timeout) {
+    if (deadline.isUnlimited()) {
+      return RETRY_COUNT;
+    }
+    long attempts = deadline.getRemainingMs() / Math.max(1, timeout);
+    return (int)Math.max(0, Math.min(RETRY_COUNT, attempts - 1));
+  }
 }
\ No newline at end of file
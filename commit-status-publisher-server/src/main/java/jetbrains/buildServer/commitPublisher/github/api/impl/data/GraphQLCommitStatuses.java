@@ -0,0 +1,53 @@
+/*
+ * Copyright 2000-2024 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jetbrains.buildServer.commitPublisher.github.api.impl.data;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Response of the GraphQL query reading status contexts of several commits at once,
+ * commits are returned under the aliases they were requested with
+ */
+@SuppressWarnings("UnusedDeclaration")
+public class GraphQLCommitStatuses {
+  public Data data;
+  public List<Error> errors;
+
+  public static class Data {
+    public Map<String, CommitObject> repository;
+  }
+
+  public static class CommitObject {
+    public Status status;
+  }
+
+  public static class Status {
+    public List<StatusContext> contexts;
+  }
+
+  public static class StatusContext {
+    public String context;
+    public String state;
+    public String description;
+    public String targetUrl;
+  }
+
+  public static class Error {
+    public String message;
+  }
+}
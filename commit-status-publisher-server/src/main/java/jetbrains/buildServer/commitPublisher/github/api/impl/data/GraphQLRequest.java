@@ -0,0 +1,30 @@
+/*
+ * Copyright 2000-2024 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jetbrains.buildServer.commitPublisher.github.api.impl.data;
+
+import java.util.Map;
+
+@SuppressWarnings("UnusedDeclaration")
+public class GraphQLRequest {
+  public final String query;
+  public final Map<String, Object> variables;
+
+  public GraphQLRequest(String query, Map<String, Object> variables) {
+    this.query = query;
+    this.variables = variables;
+  }
+}
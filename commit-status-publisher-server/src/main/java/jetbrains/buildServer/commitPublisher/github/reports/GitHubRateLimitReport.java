@@ -0,0 +1,87 @@
+/*
+ * Copyright 2000-2024 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jetbrains.buildServer.commitPublisher.github.reports;
+
+import java.util.*;
+import jetbrains.buildServer.commitPublisher.github.api.impl.GitHubRateLimits;
+import jetbrains.buildServer.serverSide.TeamCityProperties;
+import jetbrains.buildServer.serverSide.healthStatus.*;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Reports GitHub credentials whose API rate limit budget is forecast to run out before it is reset
+ */
+public class GitHubRateLimitReport extends HealthStatusReport {
+
+  private static final String REPORT_TYPE = "githubRateLimitBudget";
+  private static final String DISPLAY_NAME = "GitHub API rate limit budget used by Commit Status Publisher is about to run out";
+  private static final ItemCategory CATEGORY = new ItemCategory(REPORT_TYPE + "Category", DISPLAY_NAME, ItemSeverity.WARN);
+
+  private final GitHubRateLimits myRateLimits;
+
+  public GitHubRateLimitReport(@NotNull GitHubRateLimits rateLimits) {
+    myRateLimits = rateLimits;
+  }
+
+  @NotNull
+  @Override
+  public String getType() {
+    return REPORT_TYPE;
+  }
+
+  @NotNull
+  @Override
+  public String getDisplayName() {
+    return DISPLAY_NAME;
+  }
+
+  @NotNull
+  @Override
+  public Collection<ItemCategory> getCategories() {
+    return Collections.singleton(CATEGORY);
+  }
+
+  @Override
+  public boolean canReportItemsFor(@NotNull HealthStatusScope healthStatusScope) {
+    return healthStatusScope.globalItems() && healthStatusScope.isItemWithSeverityAccepted(ItemSeverity.WARN);
+  }
+
+  @Override
+  public void report(@NotNull HealthStatusScope scope, @NotNull HealthStatusItemConsumer consumer) {
+    if (!TeamCityProperties.getBooleanOrTrue("teamcity.commitStatusPublisher.github.rateLimitReportEnabled"))
+      return;
+
+    for (GitHubRateLimits.Budget budget : myRateLimits.getBudgets()) {
+      if (!budget.isAtRisk())
+        continue;
+      Map<String, Object> data = new HashMap<>();
+      data.put("serverUrl", budget.getServerUrl());
+      data.put("credentialsId", budget.getCredentialsId().substring(0, Math.min(8, budget.getCredentialsId().length())));
+      data.put("resource", budget.getResource());
+      // only the REST API budget is checked before publishing queued build statuses
+      data.put("queuedStatusesSkipped", GitHubRateLimits.CORE_RESOURCE.equals(budget.getResource()));
+      data.put("limit", budget.getLimit());
+      data.put("remaining", budget.getRemaining());
+      data.put("resetTime", new Date(budget.getResetAt()));
+      final long exhaustionTime = budget.getForecastExhaustionTime();
+      data.put("exhaustionTime", exhaustionTime < 0 ? null : new Date(exhaustionTime));
+      data.put("consumptionPerHour", budget.getConsumptionPerHour());
+      String identity = REPORT_TYPE + "_" + budget.getServerUrl() + "_" + budget.getCredentialsId() + "_" + budget.getResource();
+      consumer.consumeGlobal(new HealthStatusItem(identity, CATEGORY, data));
+    }
+  }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2000-2024 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jetbrains.buildServer.commitPublisher.gitlab;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import jetbrains.buildServer.commitPublisher.gitlab.data.GitLabMergeRequest;
+import jetbrains.buildServer.serverSide.TeamCityProperties;
+import jetbrains.buildServer.serverSide.executors.ExecutorServices;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Keeps data required to find the commit to publish statuses of merge result builds (<code>refs/merge-requests/x/merge</code>) to,
+ * so that every publishing event of such builds does not request the merge request and branches of the merge commit parents again.
+ * Merge requests and branches containing commits may change, so they are kept for a short time only,
+ * while the commit resolved for a merge result revision does not change and is kept as long as the build may publish statuses.
+ * Parents of merge commits are checked concurrently on the server executor, if it is provided.
+ */
+class GitLabMergeResultsCache {
+  static final String TTL_PARAMETER = "teamcity.commitStatusPublisher.gitlab.mergeRequestCache.ttl";
+  static final String PARALLEL_PARENT_CHECKS_PARAMETER = "teamcity.commitStatusPublisher.gitlab.parallelParentChecks";
+  private static final long TTL_DEFAULT_VALUE_MS = 60_000L;
+  private static final int PARALLEL_PARENT_CHECKS_DEFAULT_VALUE = 4;
+  private static final int MAX_SIZE = 10_000;
+
+  private final Cache<String, GitLabMergeRequest> myMergeRequests;
+  private final Cache<String, Set<String>> myCommitBranches;
+  private final Cache<String, String> myStatusCommits = CacheBuilder.newBuilder()
+                                                                    .maximumSize(MAX_SIZE)
+                                                                    .expireAfterAccess(1, TimeUnit.DAYS)
+                                                                    .build();
+  @Nullable private final ExecutorServices myExecutorServices;
+
+  GitLabMergeResultsCache(@Nullable ExecutorServices executorServices) {
+    myExecutorServices = executorServices;
+    final long ttlMs = TeamCityProperties.getIntervalMilliseconds(TTL_PARAMETER, TTL_DEFAULT_VALUE_MS);
+    myMergeRequests = CacheBuilder.newBuilder().maximumSize(MAX_SIZE).expireAfterWrite(ttlMs, TimeUnit.MILLISECONDS).build();
+    myCommitBranches = CacheBuilder.newBuilder().maximumSize(MAX_SIZE).expireAfterWrite(ttlMs, TimeUnit.MILLISECONDS).build();
+  }
+
+  @Nullable
+  GitLabMergeRequest getMergeRequest(@NotNull String mergeRequestUrl) {
+    return myMergeRequests.getIfPresent(mergeRequestUrl);
+  }
+
+  void putMergeRequest(@NotNull String mergeRequestUrl, @NotNull GitLabMergeRequest mergeRequest) {
+    myMergeRequests.put(mergeRequestUrl, mergeRequest);
+  }
+
+  /**
+   * @return names of the branches containing the commit, or null if they are not known
+   */
+  @Nullable
+  Set<String> getCommitBranches(@NotNull String commitRefsUrl) {
+    return myCommitBranches.getIfPresent(commitRefsUrl);
+  }
+
+  void putCommitBranches(@NotNull String commitRefsUrl, @NotNull Set<String> branches) {
+    myCommitBranches.put(commitRefsUrl, branches);
+  }
+
+  @Nullable
+  String getStatusCommit(@NotNull String mergeRequestUrl, @NotNull String mergeRevision) {
+    return myStatusCommits.getIfPresent(mergeRequestUrl + "@" + mergeRevision);
+  }
+
+  void putStatusCommit(@NotNull String mergeRequestUrl, @NotNull String mergeRevision, @NotNull String statusCommit) {
+    myStatusCommits.put(mergeRequestUrl + "@" + mergeRevision, statusCommit);
+  }
+
+  boolean isParallelParentChecksEnabled() {
+    return myExecutorServices != null && getMaxParallelParentChecks() > 1;
+  }
+
+  /**
+   * @return how many parents of a single merge commit may be checked at the same time
+   */
+  int getMaxParallelParentChecks() {
+    return TeamCityProperties.getInteger(PARALLEL_PARENT_CHECKS_PARAMETER, PARALLEL_PARENT_CHECKS_DEFAULT_VALUE);
+  }
+
+  @NotNull
+  <T> Future<T> submitParentCheck(@NotNull Callable<T> check) {
+    if (myExecutorServices == null) {
+      throw new IllegalStateException("Parallel parent checks are not available without server executors");
+    }
+    return myExecutorServices.getNormalExecutorService().submit(check);
+  }
+}
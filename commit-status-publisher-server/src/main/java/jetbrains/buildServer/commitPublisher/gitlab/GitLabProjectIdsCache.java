@@ -0,0 +1,125 @@
+/*
+ * Copyright 2000-2024 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jetbrains.buildServer.commitPublisher.gitlab;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import jetbrains.buildServer.serverSide.TeamCityProperties;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Numeric ids of GitLab projects by their paths.
+ * Requests addressing a project by its id do not require GitLab to resolve the URL-encoded path every time,
+ * and keep working when the project is renamed or moved to another namespace.
+ * Ids are resolved when the connection is tested or on the first request to the project, and are forgotten if GitLab does not find the project by the id.
+ * A project may also be moved and another one created under its former path, while the id keeps addressing the moved project,
+ * so every id is periodically checked to still belong to the project at the path.
+ */
+public class GitLabProjectIdsCache {
+  static final String ENABLED_PARAMETER = "teamcity.commitStatusPublisher.gitlab.numericProjectIds.enabled";
+  static final String TTL_PARAMETER = "teamcity.commitStatusPublisher.gitlab.projectIdsCache.ttl";
+  private static final long TTL_DEFAULT_VALUE_MS = TimeUnit.DAYS.toMillis(1);
+  static final String VERIFICATION_INTERVAL_PARAMETER = "teamcity.commitStatusPublisher.gitlab.projectIdsCache.verificationInterval";
+  private static final long VERIFICATION_INTERVAL_DEFAULT_VALUE_MS = TimeUnit.MINUTES.toMillis(10);
+  private static final int MAX_SIZE = 10_000;
+
+  private final Cache<String, ProjectId> myProjectIds;
+
+  GitLabProjectIdsCache() {
+    myProjectIds = CacheBuilder.newBuilder()
+                               .maximumSize(MAX_SIZE)
+                               .expireAfterWrite(TeamCityProperties.getIntervalMilliseconds(TTL_PARAMETER, TTL_DEFAULT_VALUE_MS), TimeUnit.MILLISECONDS)
+                               .build();
+  }
+
+  public boolean isEnabled() {
+    return TeamCityProperties.getBooleanOrTrue(ENABLED_PARAMETER);
+  }
+
+  @Nullable
+  public String getProjectId(@NotNull String apiUrl, @NotNull String owner, @NotNull String repo) {
+    if (!isEnabled()) return null;
+    final ProjectId projectId = myProjectIds.getIfPresent(buildKey(apiUrl, owner, repo));
+    return projectId != null ? projectId.myId : null;
+  }
+
+  /**
+   * The id is known to be right when it is put, as it is resolved by the path then
+   * @return true if the id of the project is due to be checked against its path, the check is claimed by the caller then
+   */
+  public boolean claimVerification(@NotNull String apiUrl, @NotNull String owner, @NotNull String repo) {
+    if (!isEnabled()) return false;
+    final ProjectId projectId = myProjectIds.getIfPresent(buildKey(apiUrl, owner, repo));
+    return projectId != null && projectId.claimVerification(System.currentTimeMillis());
+  }
+
+  /**
+   * @param pathWithNamespace full path of the project found by the id, if GitLab reports it
+   */
+  public static boolean isAtPath(@Nullable String pathWithNamespace, @NotNull String owner, @NotNull String repo) {
+    return pathWithNamespace == null || pathWithNamespace.equalsIgnoreCase(owner + "/" + repo);
+  }
+
+  public void putProjectId(@NotNull String apiUrl, @NotNull String owner, @NotNull String repo, @Nullable String projectId) {
+    if (!isEnabled() || projectId == null || !isNumeric(projectId)) return;
+    myProjectIds.put(buildKey(apiUrl, owner, repo), new ProjectId(projectId, System.currentTimeMillis() + getVerificationInterval()));
+  }
+
+  public void invalidate(@NotNull String apiUrl, @NotNull String owner, @NotNull String repo) {
+    myProjectIds.invalidate(buildKey(apiUrl, owner, repo));
+  }
+
+  @NotNull
+  public static String getProjectUrl(@NotNull String apiUrl, @NotNull String projectId) {
+    return apiUrl + "/projects/" + projectId;
+  }
+
+  @NotNull
+  private static String buildKey(@NotNull String apiUrl, @NotNull String owner, @NotNull String repo) {
+    return apiUrl + "\u0000" + owner + "/" + repo;
+  }
+
+  private static long getVerificationInterval() {
+    return TeamCityProperties.getIntervalMilliseconds(VERIFICATION_INTERVAL_PARAMETER, VERIFICATION_INTERVAL_DEFAULT_VALUE_MS);
+  }
+
+  private static boolean isNumeric(@NotNull String projectId) {
+    if (projectId.isEmpty()) return false;
+    for (int i = 0; i < projectId.length(); i++) {
+      if (!Character.isDigit(projectId.charAt(i))) return false;
+    }
+    return true;
+  }
+
+  private static class ProjectId {
+    private final String myId;
+    private final AtomicLong myNextVerificationTime;
+
+    ProjectId(@NotNull String id, long nextVerificationTime) {
+      myId = id;
+      myNextVerificationTime = new AtomicLong(nextVerificationTime);
+    }
+
+    boolean claimVerification(long now) {
+      final long nextVerificationTime = myNextVerificationTime.get();
+      return now >= nextVerificationTime && myNextVerificationTime.compareAndSet(nextVerificationTime, now + getVerificationInterval());
+    }
+  }
+}
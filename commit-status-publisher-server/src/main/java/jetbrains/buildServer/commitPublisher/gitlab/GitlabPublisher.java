@@ -22,6 +22,10 @@ import com.google.common.collect.ImmutableSet;
 import com.google.gson.Gson;
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -31,6 +35,7 @@ import jetbrains.buildServer.commitPublisher.gitlab.data.GitLabCommitReference;
 import jetbrains.buildServer.commitPublisher.gitlab.data.GitLabMergeRequest;
 import jetbrains.buildServer.commitPublisher.gitlab.data.GitLabPublishCommitStatus;
 import jetbrains.buildServer.commitPublisher.gitlab.data.GitLabReceiveCommitStatus;
+import jetbrains.buildServer.commitPublisher.gitlab.data.GitLabRepoInfo;
 import jetbrains.buildServer.pullRequests.PullRequest;
 import jetbrains.buildServer.pullRequests.PullRequestManager;
 import jetbrains.buildServer.serverSide.*;
@@ -62,8 +67,15 @@ class GitlabPublisher extends HttpBasedCommitStatusPublisher<GitlabBuildStatus>
   @NotNull private final VcsModificationHistoryEx myVcsModificationHistory;
   @Nullable private final PullRequestManager myPullRequestManager;
   @NotNull private final StatusPublisherBuildNameProvider myBuildNameProvider;
+  @NotNull private final GitLabMergeResultsCache myMergeResultsCache;
+  @NotNull private final GitLabProjectIdsCache myProjectIdsCache;
+  @Nullable private final String myConfiguredApiUrl;
 
   private static final String USE_REF_WHEN_PUBLISHING_STATUS_ON_MERGE_COMMITS_INTERNAL_PROP = "teamcity.pullRequests.publishRefForMergeCommits";
+  static final String FILTER_STATUSES_BY_REF_PARAMETER = "teamcity.commitStatusPublisher.gitlab.filterStatusesByRef";
+  static final String SKIP_REJECTED_TRANSITIONS_PARAMETER = "teamcity.commitStatusPublisher.gitlab.skipRejectedTransitions";
+  private static final String SENT_STATUS_CACHE_PREFIX = "sent:";
+  private static final int STATUSES_PAGE_SIZE = 100;
 
   GitlabPublisher(@NotNull CommitStatusPublisherSettings settings,
                   @NotNull SBuildType buildType,
@@ -74,12 +86,34 @@ class GitlabPublisher extends HttpBasedCommitStatusPublisher<GitlabBuildStatus>
                   @NotNull CommitStatusesCache<GitLabReceiveCommitStatus> statusesCache,
                   @NotNull VcsModificationHistoryEx vcsModificationHistory,
                   @Nullable PullRequestManager pullRequestManager,
-                  @NotNull StatusPublisherBuildNameProvider buildNameProvider) {
-    super(settings, buildType, buildFeatureId, params, problems, links);
+                  @NotNull StatusPublisherBuildNameProvider buildNameProvider,
+                  @NotNull HostConcurrencyLimiter concurrencyLimiter) {
+    this(settings, buildType, buildFeatureId, links, params, problems, statusesCache, vcsModificationHistory, pullRequestManager, buildNameProvider,
+         new GitLabMergeResultsCache(null), new GitLabProjectIdsCache(), concurrencyLimiter);
+  }
+
+  GitlabPublisher(@NotNull CommitStatusPublisherSettings settings,
+                  @NotNull SBuildType buildType,
+                  @NotNull String buildFeatureId,
+                  @NotNull WebLinks links,
+                  @NotNull Map<String, String> params,
+                  @NotNull CommitStatusPublisherProblems problems,
+                  @NotNull CommitStatusesCache<GitLabReceiveCommitStatus> statusesCache,
+                  @NotNull VcsModificationHistoryEx vcsModificationHistory,
+                  @Nullable PullRequestManager pullRequestManager,
+                  @NotNull StatusPublisherBuildNameProvider buildNameProvider,
+                  @NotNull GitLabMergeResultsCache mergeResultsCache,
+                  @NotNull GitLabProjectIdsCache projectIdsCache,
+                  @NotNull HostConcurrencyLimiter concurrencyLimiter) {
+    super(settings, buildType, buildFeatureId, params, problems, links, concurrencyLimiter);
     myStatusesCache = statusesCache;
     myVcsModificationHistory = vcsModificationHistory;
     myPullRequestManager = pullRequestManager;
     myBuildNameProvider = buildNameProvider;
+    myMergeResultsCache = mergeResultsCache;
+    myProjectIdsCache = projectIdsCache;
+    final String apiUrl = params.get(Constants.GITLAB_API_URL);
+    myConfiguredApiUrl = StringUtil.isEmptyOrSpaces(apiUrl) ? null : HttpHelper.stripTrailingSlash(apiUrl);
   }
 
 
@@ -151,16 +185,18 @@ class GitlabPublisher extends HttpBasedCommitStatusPublisher<GitlabBuildStatus>
 
   private GitLabReceiveCommitStatus getLatestCommitStatusForBuild(@NotNull BuildRevision revision, @NotNull String buildName, @NotNull BuildPromotion promotion) throws PublisherException {
     AtomicReference<PublisherException> exception = new AtomicReference<>(null);
-    GitLabReceiveCommitStatus statusFromCache = myStatusesCache.getStatusFromCache(revision, buildName, () -> {
-      SBuildType exactBuildTypeToLoadStatuses = promotion.isPartOfBuildChain() ? null : promotion.getBuildType();
+    // statuses of a build chain are loaded all at once to serve its other build types from the cache,
+    // otherwise only the status of the build type is requested
+    final String nameFilter = promotion.isPartOfBuildChain() || promotion.getBuildType() == null ? null : buildName;
+    final String ref = getStatusesRef(revision);
+    GitLabReceiveCommitStatus statusFromCache = myStatusesCache.getStatusFromCache(revision, getStatusCachePrefix(ref, buildName), () -> {
       try {
-        GitLabReceiveCommitStatus[] commitStatuses = loadGitLabStatuses(revision, exactBuildTypeToLoadStatuses);
-        return Arrays.asList(commitStatuses);
+        return loadGitLabStatuses(revision, buildName, nameFilter, ref);
       } catch (PublisherException e) {
         exception.set(e);
         return Collections.emptyList();
       }
-    }, status -> status.name);
+    }, status -> getStatusCachePrefix(ref, status.name), nameFilter != null || ref != null);
 
     if (exception.get() != null) {
       throw exception.get();
@@ -169,15 +205,41 @@ class GitlabPublisher extends HttpBasedCommitStatusPublisher<GitlabBuildStatus>
     return statusFromCache;
   }
 
-  private GitLabReceiveCommitStatus[] loadGitLabStatuses(@NotNull BuildRevision revision, @Nullable SBuildType buildType) throws PublisherException {
-    String url = buildRevisionStatusesUrl(revision, buildType);
-    final HttpCredentials credentials = getSettings().getCredentials(myBuildType.getProject(), revision.getRoot(), myParams);
-    ResponseEntityProcessor<GitLabReceiveCommitStatus[]> processor = new ResponseEntityProcessor<>(GitLabReceiveCommitStatus[].class);
-    GitLabReceiveCommitStatus[] commitStatuses = get(url, credentials, null, processor);
-    if (commitStatuses == null || commitStatuses.length == 0) {
-      return new GitLabReceiveCommitStatus[0];
-    }
-    return commitStatuses;
+  @NotNull
+  private List<GitLabReceiveCommitStatus> loadGitLabStatuses(@NotNull BuildRevision revision,
+                                                             @NotNull String buildName,
+                                                             @Nullable String nameFilter,
+                                                             @Nullable String ref) throws PublisherException {
+    final VcsRootInstance root = revision.getRoot();
+    final String apiUrl = getApiUrl(root.getProperty("url"));
+    final Repository repository = parseRepository(root, GitlabSettings.getPathPrefix(apiUrl));
+    if (repository == null)
+      throw new PublisherException("Cannot parse repository URL from VCS root " + root.getName());
+    final HttpCredentials credentials = getSettings().getCredentials(myBuildType.getProject(), root, myParams);
+    return withProjectUrl(credentials, apiUrl, repository, projectUrl -> loadGitLabStatuses(credentials, buildRevisionStatusesUrl(projectUrl, revision, nameFilter, ref), buildName));
+  }
+
+  @NotNull
+  private List<GitLabReceiveCommitStatus> loadGitLabStatuses(@Nullable HttpCredentials credentials,
+                                                             @NotNull String baseUrl,
+                                                             @NotNull String buildName) throws PublisherException {
+    final int statusesThreshold = TeamCityProperties.getInteger(Constants.STATUSES_TO_LOAD_THRESHOLD_PROPERTY, Constants.STATUSES_TO_LOAD_THRESHOLD_DEFAULT_VAL);
+    final List<GitLabReceiveCommitStatus> result = new ArrayList<>();
+    boolean shouldContinue;
+    int page = 1;
+    do {
+      ResponseEntityProcessor<GitLabReceiveCommitStatus[]> processor = new ResponseEntityProcessor<>(GitLabReceiveCommitStatus[].class);
+      GitLabReceiveCommitStatus[] commitStatuses = get(baseUrl + "&page=" + page, credentials, null, processor);
+      if (commitStatuses == null || commitStatuses.length == 0) {
+        break;
+      }
+      result.addAll(Arrays.asList(commitStatuses));
+      shouldContinue = commitStatuses.length >= STATUSES_PAGE_SIZE &&
+                       result.size() < statusesThreshold &&
+                       Arrays.stream(commitStatuses).noneMatch(status -> buildName.equals(status.name));
+      page++;
+    } while (shouldContinue);
+    return result;
   }
 
   @Nullable
@@ -190,18 +252,58 @@ class GitlabPublisher extends HttpBasedCommitStatusPublisher<GitlabBuildStatus>
     return new RevisionStatus(event, commitStatus.description, isSameBuildType, getBuildIdFromViewUrl(commitStatus.target_url));
   }
 
-  private String buildRevisionStatusesUrl(@NotNull BuildRevision revision, @Nullable BuildType buildType) throws PublisherException {
-    VcsRootInstance root = revision.getRoot();
-    String apiUrl = getApiUrl(root.getProperty("url"));
-    String pathPrefix = GitlabSettings.getPathPrefix(apiUrl);
-    Repository repository = parseRepository(root, pathPrefix);
-    if (repository == null)
-      throw new PublisherException("Cannot parse repository URL from VCS root " + root.getName());
-    String statusesUrl = GitlabSettings.getProjectsUrl(apiUrl, repository.owner(), repository.repositoryName()) + "/repository/commits/" + revision.getRevision() + "/statuses";
-    if (buildType != null) {
-      statusesUrl += ("?" + encodeParameter("name", buildType.getFullName()));
+  /**
+   * Statuses are filtered on the GitLab side: by name if provided, and by the branch or tag the statuses are published for.
+   * Only the latest status of every name is returned, since the <code>all</code> parameter is never set.
+   */
+  @NotNull
+  private static String buildRevisionStatusesUrl(@NotNull String projectUrl, @NotNull BuildRevision revision, @Nullable String nameFilter, @Nullable String ref) {
+    StringBuilder statusesUrl = new StringBuilder(projectUrl)
+      .append("/repository/commits/").append(revision.getRevision()).append("/statuses")
+      .append("?per_page=").append(STATUSES_PAGE_SIZE);
+    if (nameFilter != null) {
+      statusesUrl.append("&").append(encodeParameter("name", nameFilter));
+    }
+    if (ref != null) {
+      statusesUrl.append("&").append(encodeParameter("ref", ref));
+    }
+    return statusesUrl.toString();
+  }
+
+  /**
+   * @return the branch or tag statuses of the revision are published for, if it does not depend on pull requests data
+   */
+  @Nullable
+  private static String getStatusesRef(@NotNull BuildRevision revision) {
+    if (!TeamCityProperties.getBooleanOrTrue(FILTER_STATUSES_BY_REF_PARAMETER)) {
+      return null;
+    }
+    return getBranchOrTagName(revision.getRepositoryVersion().getVcsBranch());
+  }
+
+  /**
+   * @return the short name of the branch or tag GitLab addresses by the ref, or null for other refs
+   */
+  @Nullable
+  private static String getBranchOrTagName(@Nullable String ref) {
+    if (ref == null) {
+      return null;
     }
-    return statusesUrl;
+    if (ref.startsWith(REFS_HEADS)) {
+      return ref.substring(REFS_HEADS.length());
+    }
+    if (ref.startsWith(REFS_TAGS)) {
+      return ref.substring(REFS_TAGS.length());
+    }
+    return null;
+  }
+
+  /**
+   * Statuses loaded for a branch or tag are cached separately from the statuses of the same commit loaded for other refs
+   */
+  @NotNull
+  private static String getStatusCachePrefix(@Nullable String ref, @NotNull String buildName) {
+    return ref == null ? buildName : ref + ":" + buildName;
   }
 
   private Event getTriggeredEvent(GitLabReceiveCommitStatus commitStatus) {
@@ -239,9 +341,8 @@ class GitlabPublisher extends HttpBasedCommitStatusPublisher<GitlabBuildStatus>
                        @NotNull GitlabBuildStatus status,
                        @NotNull String description) throws PublisherException {
     String buildName = myBuildNameProvider.getBuildName(build.getBuildPromotion());
-    String message = createMessage(status, buildName, build.getBuildType(), revision, getViewUrl(build), description);
-    publish(message, revision, LogUtil.describe(build));
-    myStatusesCache.removeStatusFromCache(revision, buildName);
+    GitLabPublishCommitStatus commitStatus = createCommitStatus(status, buildName, build.getBuildType(), revision, getViewUrl(build), description);
+    publish(commitStatus, revision, LogUtil.describe(build));
   }
 
   private void publish(@NotNull BuildPromotion buildPromotion,
@@ -256,14 +357,65 @@ class GitlabPublisher extends HttpBasedCommitStatusPublisher<GitlabBuildStatus>
     }
     String description = additionalTaskInfo.getComment();
     String buildName = myBuildNameProvider.getBuildName(buildPromotion);
-    String message = createMessage(status, buildName, buildPromotion.getBuildType(), revision, url, description);
-    publish(message, revision, LogUtil.describe(buildPromotion));
-    myStatusesCache.removeStatusFromCache(revision, buildName);
+    GitLabPublishCommitStatus commitStatus = createCommitStatus(status, buildName, buildPromotion.getBuildType(), revision, url, description);
+    publish(commitStatus, revision, LogUtil.describe(buildPromotion));
   }
 
-  private void publish(@NotNull String message,
+  private void publish(@NotNull GitLabPublishCommitStatus commitStatus,
                        @NotNull BuildRevision revision,
                        @NotNull String buildDescription) throws PublisherException {
+    final String cachePrefix = getStatusCachePrefix(getStatusesRef(revision), commitStatus.name);
+    final GitLabReceiveCommitStatus lastSentStatus = myStatusesCache.getCachedStatus(revision, SENT_STATUS_CACHE_PREFIX + cachePrefix);
+    final GitLabReceiveCommitStatus lastKnownStatus = lastSentStatus != null ? lastSentStatus : myStatusesCache.getCachedStatus(revision, cachePrefix);
+    if (isRejectedTransition(lastKnownStatus, commitStatus)) {
+      LOG.debug(() -> String.format("Status \"%s\" of %s won't be published: GitLab rejects transition from \"%s\"",
+                                    commitStatus.state, buildDescription, lastKnownStatus.status));
+      return;
+    }
+    boolean published = false;
+    try {
+      published = publish(myGson.toJson(commitStatus), revision, buildDescription);
+    } finally {
+      // the received status is reloaded on the next request, while the sent one is kept only to check the next transition
+      myStatusesCache.removeStatusFromCache(revision, cachePrefix);
+      if (published) {
+        myStatusesCache.updateStatusInCache(revision, SENT_STATUS_CACHE_PREFIX + cachePrefix,
+                                            new GitLabReceiveCommitStatus(null, commitStatus.state, commitStatus.description, commitStatus.name, commitStatus.target_url, commitStatus.ref));
+      } else {
+        myStatusesCache.removeStatusFromCache(revision, SENT_STATUS_CACHE_PREFIX + cachePrefix);
+      }
+    }
+  }
+
+  /**
+   * GitLab refuses to enqueue a pending or running status and to run a running one, such updates are skipped without a request.
+   * The last known status is either the one recently published by this server or the one received from GitLab, both are kept in the statuses cache.
+   */
+  static boolean isRejectedTransition(@Nullable GitLabReceiveCommitStatus lastKnownStatus, @NotNull GitLabPublishCommitStatus newStatus) {
+    if (lastKnownStatus == null || lastKnownStatus.status == null || !TeamCityProperties.getBooleanOrTrue(SKIP_REJECTED_TRANSITIONS_PARAMETER)) {
+      return false;
+    }
+    // statuses of different refs belong to different pipelines
+    if (!StringUtil.areEqual(lastKnownStatus.ref, newStatus.ref)) {
+      return false;
+    }
+    final GitlabBuildStatus lastState = GitlabBuildStatus.getByName(lastKnownStatus.status);
+    final GitlabBuildStatus newState = GitlabBuildStatus.getByName(newStatus.state);
+    if (newState == GitlabBuildStatus.PENDING) {
+      return lastState == GitlabBuildStatus.PENDING || lastState == GitlabBuildStatus.RUNNING;
+    }
+    if (newState == GitlabBuildStatus.RUNNING) {
+      return lastState == GitlabBuildStatus.RUNNING;
+    }
+    return false;
+  }
+
+  /**
+   * @return true if the status has been sent to GitLab
+   */
+  private boolean publish(@NotNull String message,
+                          @NotNull BuildRevision revision,
+                          @NotNull String buildDescription) throws PublisherException {
     VcsRootInstance root = revision.getRoot();
     String apiUrl = getApiUrl(root.getProperty("url"));
     String pathPrefix = GitlabSettings.getPathPrefix(apiUrl);
@@ -273,10 +425,14 @@ class GitlabPublisher extends HttpBasedCommitStatusPublisher<GitlabBuildStatus>
 
     final HttpCredentials credentials = getSettings().getCredentials(myBuildType.getProject(), root, myParams);
     try {
-      final String commit = determineStatusCommit(credentials, repository, revision);
-      if (commit != null) {
-        publish(credentials, commit, message, repository, buildDescription);
-      }
+      return withProjectUrl(credentials, apiUrl, repository, projectUrl -> {
+        final String commit = determineStatusCommit(credentials, projectUrl, revision);
+        if (commit == null) {
+          return false;
+        }
+        publish(credentials, commit, message, projectUrl, buildDescription);
+        return true;
+      });
     } catch (Exception e) {
       throw new PublisherException("Cannot publish status to GitLab(" + apiUrl + ") for VCS root " +
                                    revision.getRoot().getName() + ": " + e, e);
@@ -286,9 +442,9 @@ class GitlabPublisher extends HttpBasedCommitStatusPublisher<GitlabBuildStatus>
   private void publish(@Nullable HttpCredentials credentials,
                        @NotNull String commit,
                        @NotNull String data,
-                       @NotNull Repository repository,
+                       @NotNull String projectUrl,
                        @NotNull String buildDescription) throws PublisherException {
-    String url = GitlabSettings.getProjectsUrl(getApiUrl(repository.url()), repository.owner(), repository.repositoryName()) + "/statuses/" + commit;
+    String url = projectUrl + "/statuses/" + commit;
     LOG.debug("Request url: " + url + ", message: " + data);
     postJson(url, credentials, data, null, buildDescription);
   }
@@ -315,19 +471,18 @@ class GitlabPublisher extends HttpBasedCommitStatusPublisher<GitlabBuildStatus>
   }
 
   @NotNull
-  private String createMessage(@NotNull GitlabBuildStatus status,
-                               @NotNull String name,
-                               @Nullable SBuildType buildType,
-                               @NotNull BuildRevision revision,
-                               @NotNull String url,
-                               @NotNull String description) {
+  private GitLabPublishCommitStatus createCommitStatus(@NotNull GitlabBuildStatus status,
+                                                       @NotNull String name,
+                                                       @Nullable SBuildType buildType,
+                                                       @NotNull BuildRevision revision,
+                                                       @NotNull String url,
+                                                       @NotNull String description) {
 
     RepositoryVersion repositoryVersion = revision.getRepositoryVersion();
     String originalRef = repositoryVersion.getVcsBranch();
     String ref = getBranchRefForApi(originalRef, revision, buildType);
 
-    GitLabPublishCommitStatus data = new GitLabPublishCommitStatus(status.getName(), description, name, url, ref);
-    return myGson.toJson(data);
+    return new GitLabPublishCommitStatus(status.getName(), description, name, url, ref);
   }
 
   @Nullable
@@ -336,11 +491,9 @@ class GitlabPublisher extends HttpBasedCommitStatusPublisher<GitlabBuildStatus>
       return null;
     }
 
-    if (originalRef.startsWith(REFS_HEADS)) {
-      return originalRef.substring(REFS_HEADS.length());
-    }
-    if (originalRef.startsWith(REFS_TAGS)) {
-      return originalRef.substring(REFS_TAGS.length());
+    final String branchOrTag = getBranchOrTagName(originalRef);
+    if (branchOrTag != null) {
+      return branchOrTag;
     }
     if (TeamCityProperties.getBooleanOrTrue(USE_REF_WHEN_PUBLISHING_STATUS_ON_MERGE_COMMITS_INTERNAL_PROP) &&
                myPullRequestManager != null && buildType != null && originalRef.startsWith(REFS_MERGE_REQUESTS)) {
@@ -370,24 +523,112 @@ class GitlabPublisher extends HttpBasedCommitStatusPublisher<GitlabBuildStatus>
 
   @NotNull
   public String getApiUrl(@Nullable String vcsRootUrl) throws PublisherException {
-    if (!StringUtil.isEmptyOrSpaces(myParams.get(Constants.GITLAB_API_URL)))
-      return HttpHelper.stripTrailingSlash(myParams.get(Constants.GITLAB_API_URL));
+    if (myConfiguredApiUrl != null)
+      return myConfiguredApiUrl;
 
     return getApiUrlFromVcsRootUrl(vcsRootUrl);
   }
 
+  /**
+   * Runs requests to the project addressing it by the numeric id if it is known or can be resolved, and by the path otherwise.
+   * If a request fails with 404 and GitLab does not find the project by the id either, the id is resolved once again and the requests are repeated.
+   */
+  private <T> T withProjectUrl(@Nullable HttpCredentials credentials,
+                               @NotNull String apiUrl,
+                               @NotNull Repository repository,
+                               @NotNull ProjectRequests<T> requests) throws PublisherException {
+    final String projectId = resolveProjectId(credentials, apiUrl, repository);
+    if (projectId == null) {
+      return requests.run(GitlabSettings.getProjectsUrl(apiUrl, repository.owner(), repository.repositoryName()));
+    }
+    try {
+      return requests.run(GitLabProjectIdsCache.getProjectUrl(apiUrl, projectId));
+    } catch (PublisherException e) {
+      // other resources, e.g. commits or merge requests, may be missing in the project found by the id
+      if (!isNotFound(e) || !isProjectNotFound(credentials, apiUrl, projectId)) throw e;
+      LOG.info("GitLab project " + projectId + " (" + repository.url() + ") was not found by its id, the id will be resolved again");
+      myProjectIdsCache.invalidate(apiUrl, repository.owner(), repository.repositoryName());
+      final String newProjectId = resolveProjectId(credentials, apiUrl, repository);
+      if (newProjectId == null || newProjectId.equals(projectId)) throw e;
+      return requests.run(GitLabProjectIdsCache.getProjectUrl(apiUrl, newProjectId));
+    }
+  }
+
+  @Nullable
+  private String resolveProjectId(@Nullable HttpCredentials credentials, @NotNull String apiUrl, @NotNull Repository repository) throws PublisherException {
+    if (!myProjectIdsCache.isEnabled()) {
+      return null;
+    }
+    final String knownId = myProjectIdsCache.getProjectId(apiUrl, repository.owner(), repository.repositoryName());
+    if (knownId != null) {
+      if (!myProjectIdsCache.claimVerification(apiUrl, repository.owner(), repository.repositoryName()) || isProjectAtPath(credentials, apiUrl, knownId, repository)) {
+        return knownId;
+      }
+      LOG.info("GitLab project " + knownId + " is not at " + repository.url() + " anymore, the id will be resolved again");
+      myProjectIdsCache.invalidate(apiUrl, repository.owner(), repository.repositoryName());
+    }
+    final ResponseEntityProcessor<GitLabRepoInfo> processor = new ResponseEntityProcessor<>(GitLabRepoInfo.class);
+    final GitLabRepoInfo repoInfo;
+    try {
+      repoInfo = get(GitlabSettings.getProjectsUrl(apiUrl, repository.owner(), repository.repositoryName()), credentials, null, processor);
+    } catch (PublisherException e) {
+      // the project will be addressed by its path, the following requests will report the problem if it is not specific to the project info
+      LOG.debug("Failed to resolve id of GitLab project " + repository.url() + ": " + e.getMessage());
+      return null;
+    }
+    if (repoInfo == null) {
+      return null;
+    }
+    myProjectIdsCache.putProjectId(apiUrl, repository.owner(), repository.repositoryName(), repoInfo.id);
+    return myProjectIdsCache.getProjectId(apiUrl, repository.owner(), repository.repositoryName());
+  }
+
+  private boolean isProjectAtPath(@Nullable HttpCredentials credentials, @NotNull String apiUrl, @NotNull String projectId, @NotNull Repository repository) {
+    final GitLabRepoInfo repoInfo;
+    try {
+      repoInfo = get(GitLabProjectIdsCache.getProjectUrl(apiUrl, projectId), credentials, null, new ResponseEntityProcessor<>(GitLabRepoInfo.class));
+    } catch (PublisherException e) {
+      // the id is checked again later, unless GitLab does not find the project by it at all
+      return !isNotFound(e);
+    }
+    return repoInfo == null || GitLabProjectIdsCache.isAtPath(repoInfo.path_with_namespace, repository.owner(), repository.repositoryName());
+  }
+
+  private boolean isProjectNotFound(@Nullable HttpCredentials credentials, @NotNull String apiUrl, @NotNull String projectId) {
+    try {
+      get(GitLabProjectIdsCache.getProjectUrl(apiUrl, projectId), credentials, null, new ResponseEntityProcessor<>(GitLabRepoInfo.class));
+      return false;
+    } catch (PublisherException e) {
+      return isNotFound(e);
+    }
+  }
+
+  private static boolean isNotFound(@NotNull Throwable e) {
+    for (Throwable t = e; t != null; t = t.getCause()) {
+      if (t instanceof HttpPublisherException && Objects.equals(((HttpPublisherException)t).getStatusCode(), 404)) {
+        return true;
+      }
+      if (t.getCause() == t) break;
+    }
+    return false;
+  }
+
+  private interface ProjectRequests<T> {
+    T run(@NotNull String projectUrl) throws PublisherException;
+  }
+
   /**
    * Determines the commit to publish the status to.
    * By default, this is the build revision's revision.
    * For merge result commits (<code>refs/merge-requests/x/merge</code>) this is the parent that belongs to the merge request's source branch.
    * @param credentials HTTP credentials for GitLab Rest API
-   * @param repository repository coordinates
+   * @param projectUrl GitLab Rest API URL of the project
    * @param buildRevision the build revision
    * @return commit SHA or null if determining commit was not possible
    */
   @Nullable
   private String determineStatusCommit(@Nullable HttpCredentials credentials,
-                                       @NotNull Repository repository,
+                                       @NotNull String projectUrl,
                                        @NotNull BuildRevision buildRevision) throws PublisherException {
     final String revision = buildRevision.getRevision();
 
@@ -406,22 +647,37 @@ class GitlabPublisher extends HttpBasedCommitStatusPublisher<GitlabBuildStatus>
     }
 
     final String mergeRequestNumber = matcher.group(MERGE_REQUEST_GROUP_NO);
-    final GitLabMergeRequest mergeRequest = getMergeRequest(credentials, repository, mergeRequestNumber);
+    final String mergeRequestUrl = projectUrl + "/merge_requests/" + mergeRequestNumber;
+    final String knownStatusCommit = myMergeResultsCache.getStatusCommit(mergeRequestUrl, revision);
+    if (knownStatusCommit != null) {
+      return knownStatusCommit;
+    }
+
+    final GitLabMergeRequest mergeRequest = getMergeRequest(credentials, mergeRequestUrl, mergeRequestNumber);
     if (mergeRequest == null) {
       return null;
     }
 
     final Set<String> parentRevisions = getParentRevisions(buildRevision.getRoot(), revision);
-    return determineParentInSourceBranch(credentials, repository, mergeRequest, parentRevisions);
+    final String statusCommit = determineParentInSourceBranch(credentials, projectUrl, mergeRequest, parentRevisions);
+    if (statusCommit != null) {
+      myMergeResultsCache.putStatusCommit(mergeRequestUrl, revision, statusCommit);
+    }
+    return statusCommit;
   }
 
   @Nullable
-  private GitLabMergeRequest getMergeRequest(@Nullable HttpCredentials credentials, @NotNull Repository repository, @NotNull String mergeRequestNumber) throws PublisherException {
-    final String url = GitlabSettings.getProjectsUrl(getApiUrl(repository.url()), repository.owner(), repository.repositoryName()) + "/merge_requests/" + mergeRequestNumber;
+  private GitLabMergeRequest getMergeRequest(@Nullable HttpCredentials credentials, @NotNull String url, @NotNull String mergeRequestNumber) throws PublisherException {
+    final GitLabMergeRequest cached = myMergeResultsCache.getMergeRequest(url);
+    if (cached != null) {
+      return cached;
+    }
     final ResponseEntityProcessor<GitLabMergeRequest> processor = new ResponseEntityProcessor<>(GitLabMergeRequest.class);
     final GitLabMergeRequest mergeRequest = get(url, credentials, null, processor);
     if (mergeRequest == null) {
       LOG.warn("unable to retrieve Gitlab merge request " + mergeRequestNumber);
+    } else {
+      myMergeResultsCache.putMergeRequest(url, mergeRequest);
     }
     return mergeRequest;
   }
@@ -442,7 +698,7 @@ class GitlabPublisher extends HttpBasedCommitStatusPublisher<GitlabBuildStatus>
 
   @Nullable
   private String determineParentInSourceBranch(@Nullable HttpCredentials credentials,
-                                               @NotNull Repository repository,
+                                               @NotNull String projectUrl,
                                                @NotNull GitLabMergeRequest mergeRequest,
                                                @NotNull Set<String> parentRevisions) throws PublisherException {
     final String headSha = mergeRequest.sha;
@@ -450,39 +706,94 @@ class GitlabPublisher extends HttpBasedCommitStatusPublisher<GitlabBuildStatus>
       return headSha;
     }
 
-    for (String parentRevision : parentRevisions) {
-      if (isOnlyInSourceBranch(credentials, repository, mergeRequest, parentRevision)) {
-        return parentRevision;
+    if (parentRevisions.size() < 2 || !myMergeResultsCache.isParallelParentChecksEnabled()) {
+      for (String parentRevision : parentRevisions) {
+        if (isOnlyInSourceBranch(credentials, projectUrl, mergeRequest, parentRevision)) {
+          return parentRevision;
+        }
       }
+      return null;
     }
 
-    return null;
+    // parents are checked concurrently, but the first suitable one in the original order is chosen
+    final List<String> parents = new ArrayList<>(parentRevisions);
+    final int maxParallelChecks = myMergeResultsCache.getMaxParallelParentChecks();
+    final List<Future<Boolean>> checks = new ArrayList<>(parents.size());
+    try {
+      for (int i = 0; i < parents.size(); i++) {
+        while (checks.size() < parents.size() && checks.size() < i + maxParallelChecks) {
+          checks.add(submitParentCheck(credentials, projectUrl, mergeRequest, parents.get(checks.size())));
+        }
+        if (waitForParentCheck(checks.get(i))) {
+          return parents.get(i);
+        }
+      }
+      return null;
+    } finally {
+      // threads of the shared executor are not interrupted, the checks being run are bounded by the publishing deadline
+      checks.forEach(check -> check.cancel(false));
+    }
+  }
+
+  @NotNull
+  private Future<Boolean> submitParentCheck(@Nullable HttpCredentials credentials,
+                                            @NotNull String projectUrl,
+                                            @NotNull GitLabMergeRequest mergeRequest,
+                                            @NotNull String parentRevision) {
+    return myMergeResultsCache.submitParentCheck(PublishingContext.bind(() -> isOnlyInSourceBranch(credentials, projectUrl, mergeRequest, parentRevision)));
+  }
+
+  private boolean waitForParentCheck(@NotNull Future<Boolean> check) throws PublisherException {
+    try {
+      return check.get(getDeadline().getRemainingMs(), TimeUnit.MILLISECONDS);
+    } catch (ExecutionException e) {
+      final Throwable cause = e.getCause();
+      if (cause instanceof PublisherException) {
+        throw (PublisherException)cause;
+      }
+      throw new PublisherException("Failed to check GitLab merge result parent revision: " + cause, cause);
+    } catch (TimeoutException e) {
+      throw new PublisherException("Publishing deadline has been reached while checking GitLab merge result parent revisions").setShouldRetry();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new PublisherException("Interrupted while checking GitLab merge result parent revisions").setShouldRetry();
+    }
   }
 
   private boolean isOnlyInSourceBranch(HttpCredentials credentials,
-                                       @NotNull Repository repository,
+                                       @NotNull String projectUrl,
                                        @NotNull GitLabMergeRequest mergeRequest,
                                        @NotNull String revision) throws PublisherException {
-    final String url = GitlabSettings.getProjectsUrl(getApiUrl(repository.url()), repository.owner(), repository.repositoryName()) + "/repository/commits/" + revision + "/refs?type=branch";
+    final Set<String> branches = getCommitBranches(credentials, projectUrl, revision);
+    if (branches == null) {
+      return false;
+    }
+    return branches.contains(mergeRequest.source_branch) && !branches.contains(mergeRequest.target_branch);
+  }
+
+  @Nullable
+  private Set<String> getCommitBranches(HttpCredentials credentials,
+                                        @NotNull String projectUrl,
+                                        @NotNull String revision) throws PublisherException {
+    final String url = projectUrl + "/repository/commits/" + revision + "/refs?type=branch";
+    final Set<String> cached = myMergeResultsCache.getCommitBranches(url);
+    if (cached != null) {
+      return cached;
+    }
     final ResponseEntityProcessor<GitLabCommitReference[]> processor = new ResponseEntityProcessor<>(GitLabCommitReference[].class);
     final GitLabCommitReference[] references = get(url, credentials, null, processor);
     if (references == null) {
-      return false;
+      return null;
     }
 
-    boolean inSource = false;
-    boolean inTarget = false;
+    final Set<String> branches = new HashSet<>();
     for (GitLabCommitReference reference : references) {
-      if (REF_TYPE_BRANCH.equals(reference.type)) {
-        if (mergeRequest.source_branch.equals(reference.name)) {
-          inSource = true;
-        }
-        if (mergeRequest.target_branch.equals(reference.name)) {
-          inTarget = true;
-        }
+      if (REF_TYPE_BRANCH.equals(reference.type) && reference.name != null) {
+        branches.add(reference.name);
       }
     }
-    return inSource && !inTarget;
+    myMergeResultsCache.putCommitBranches(url, branches);
+    return branches;
   }
 
   private static boolean supportMergeResults(@NotNull BuildType buildType) {
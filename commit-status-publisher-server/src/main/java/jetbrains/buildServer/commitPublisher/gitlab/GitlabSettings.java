@@ -18,6 +18,8 @@
 
 package jetbrains.buildServer.commitPublisher.gitlab;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.gson.reflect.TypeToken;
 import java.io.IOException;
 import java.lang.reflect.Type;
@@ -31,9 +33,11 @@ import jetbrains.buildServer.commitPublisher.CommitStatusPublisher.Event;
 import jetbrains.buildServer.commitPublisher.gitlab.data.GitLabReceiveCommitStatus;
 import jetbrains.buildServer.commitPublisher.gitlab.data.GitLabRepoInfo;
 import jetbrains.buildServer.commitPublisher.gitlab.data.GitLabUserInfo;
+import jetbrains.buildServer.commitPublisher.metrics.CommitStatusPublisherMetrics;
 import jetbrains.buildServer.pullRequests.PullRequestManager;
 import jetbrains.buildServer.serverSide.*;
 import jetbrains.buildServer.serverSide.auth.SecurityContext;
+import jetbrains.buildServer.serverSide.executors.ExecutorServices;
 import jetbrains.buildServer.serverSide.oauth.OAuthConnectionDescriptor;
 import jetbrains.buildServer.serverSide.oauth.OAuthConnectionsManager;
 import jetbrains.buildServer.serverSide.oauth.OAuthToken;
@@ -57,6 +61,7 @@ import org.jetbrains.annotations.Nullable;
 public class GitlabSettings extends AuthTypeAwareSettings implements CommitStatusPublisherSettings {
 
   private static final Pattern URL_WITH_API_SUFFIX = Pattern.compile("(.*)/api/v.");
+  private static final int GUESSED_API_URLS_MAX_SIZE = 10_000;
 
   private static final Set<Event> mySupportedEvents = new HashSet<Event>() {{
     add(Event.STARTED);
@@ -76,6 +81,10 @@ public class GitlabSettings extends AuthTypeAwareSettings implements CommitStatu
   @NotNull private final VcsModificationHistoryEx myVcsModificationHistory;
   @NotNull private final ServiceLocator myServiceLocator;
   @NotNull private final GitLabBuildNameProvider myBuildNameProvider;
+  @NotNull private final GitLabMergeResultsCache myMergeResultsCache;
+  @NotNull private final GitLabProjectIdsCache myProjectIdsCache;
+  @NotNull private final Cache<String, String> myGuessedApiUrls = CacheBuilder.newBuilder().maximumSize(GUESSED_API_URLS_MAX_SIZE).build();
+  @NotNull private final HostConcurrencyLimiter myConcurrencyLimiter;
 
   public GitlabSettings(@NotNull PluginDescriptor descriptor,
                         @NotNull WebLinks links,
@@ -87,13 +96,19 @@ public class GitlabSettings extends AuthTypeAwareSettings implements CommitStatu
                         @NotNull UserModel userModel,
                         @NotNull SecurityContext securityContext,
                         @NotNull ServiceLocator serviceLocator,
-                        @NotNull GitLabBuildNameProvider buildNameProvider
+                        @NotNull GitLabBuildNameProvider buildNameProvider,
+                        @NotNull ExecutorServices executorServices,
+                        @NotNull HostConcurrencyLimiter concurrencyLimiter,
+                        @NotNull CommitStatusPublisherMetrics metrics
   ) {
     super(descriptor, links, problems, trustStoreProvider, oAuthTokensStorage, userModel, oAuthConnectionsManager, securityContext);
     myVcsModificationHistory = vcsModificationHistory;
-    myStatusesCache = new CommitStatusesCache<>();
+    myStatusesCache = new CommitStatusesCache<>(metrics);
     myServiceLocator = serviceLocator;
     myBuildNameProvider = buildNameProvider;
+    myMergeResultsCache = new GitLabMergeResultsCache(executorServices);
+    myProjectIdsCache = new GitLabProjectIdsCache();
+    myConcurrencyLimiter = concurrencyLimiter;
   }
 
   @NotNull
@@ -118,7 +133,7 @@ public class GitlabSettings extends AuthTypeAwareSettings implements CommitStatu
   @Override
   public GitlabPublisher createPublisher(@NotNull SBuildType buildType, @NotNull String buildFeatureId, @NotNull Map<String, String> params) {
     return new GitlabPublisher(this, buildType, buildFeatureId, myLinks, params, myProblems, myStatusesCache, myVcsModificationHistory,
-                               myServiceLocator.findSingletonService(PullRequestManager.class), myBuildNameProvider);
+                               myServiceLocator.findSingletonService(PullRequestManager.class), myBuildNameProvider, myMergeResultsCache, myProjectIdsCache, myConcurrencyLimiter);
   }
 
   @Override
@@ -143,6 +158,7 @@ public class GitlabSettings extends AuthTypeAwareSettings implements CommitStatu
         HttpHelper.get(getProjectsUrl(apiUrl, repository.owner(), repository.repositoryName()),
                        credentials, Collections.emptyMap(),
                        BaseCommitStatusPublisher.DEFAULT_CONNECTION_TIMEOUT, trustStore(), processorPrj);
+        myProjectIdsCache.putProjectId(HttpHelper.stripTrailingSlash(apiUrl), repository.owner(), repository.repositoryName(), processorPrj.getInfo().id);
         boolean tokenHasEnoughRights = true;
         if (processorPrj.isEmptyPermissions()) {
           MultipleProjectsInfoResponseProcessor mulProjectProcessorPrj = new MultipleProjectsInfoResponseProcessor();
@@ -282,10 +298,17 @@ public class GitlabSettings extends AuthTypeAwareSettings implements CommitStatu
   @Override
   @Nullable
   public String guessApiURL(@Nullable final String vcsRootUrl) {
+    if (vcsRootUrl == null)
+      return null;
+    String apiUrl = myGuessedApiUrls.getIfPresent(vcsRootUrl);
+    if (apiUrl != null)
+      return apiUrl;
     String hostUrl = super.guessApiURL(vcsRootUrl);
     if (hostUrl == null)
       return null;
-    return hostUrl + GitLabClientImpl.API_PATH;
+    apiUrl = hostUrl + GitLabClientImpl.API_PATH;
+    myGuessedApiUrls.put(vcsRootUrl, apiUrl);
+    return apiUrl;
   }
 
   @NotNull
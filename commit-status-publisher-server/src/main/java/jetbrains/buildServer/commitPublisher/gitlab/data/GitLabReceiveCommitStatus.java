@@ -19,10 +19,16 @@ package jetbrains.buildServer.commitPublisher.gitlab.data;
 public class GitLabReceiveCommitStatus extends GitLabCommitStatus {
   public final Long id;
   public final String status;
+  public final String ref;
 
   public GitLabReceiveCommitStatus(Long id, String status, String description, String name, String target_url) {
+    this(id, status, description, name, target_url, null);
+  }
+
+  public GitLabReceiveCommitStatus(Long id, String status, String description, String name, String target_url, String ref) {
     super(description, name, target_url);
     this.id = id;
     this.status = status;
+    this.ref = ref;
   }
 }
@@ -23,6 +23,7 @@ package jetbrains.buildServer.commitPublisher.gitlab.data;
  */
 public class GitLabRepoInfo {
   public String id;
+  public String path_with_namespace;
   public GitLabPermissions permissions;
 
   public GitLabRepoInfo(String id, GitLabPermissions permissions) {
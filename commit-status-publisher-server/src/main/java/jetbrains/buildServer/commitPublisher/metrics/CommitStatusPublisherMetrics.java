@@ -0,0 +1,259 @@
+/*
+ * Copyright 2000-2024 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jetbrains.buildServer.commitPublisher.metrics;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import jetbrains.buildServer.serverSide.TeamCityProperties;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Lightweight in-memory metrics of the commit status publishing pipeline.
+ * Counters and histograms are updated lock-free and are rendered in the OpenMetrics text format by {@link #render()}.
+ * The metrics are not registered in the server metrics, they are exposed by {@link CommitStatusPublisherMetricsController} only.
+ */
+public class CommitStatusPublisherMetrics {
+  static final String METRICS_ENABLED_PARAMETER = "teamcity.commitStatusPublisher.metrics.enabled";
+
+  public static final String EVENTS_RECEIVED = "commit_status_publisher_events_received";
+  public static final String EVENTS_ACCEPTED = "commit_status_publisher_events_accepted";
+  public static final String QUEUE_DEPTH = "commit_status_publisher_queue_depth";
+  public static final String PUBLISH_DURATION = "commit_status_publisher_publish_duration_seconds";
+  public static final String HTTP_REQUEST_DURATION = "commit_status_publisher_http_request_duration_seconds";
+  public static final String HTTP_RESPONSES = "commit_status_publisher_http_responses";
+  public static final String RETRIES = "commit_status_publisher_retries";
+  public static final String STATUS_CACHE_REQUESTS = "commit_status_publisher_status_cache_requests";
+  public static final String STATUS_CACHE_LOAD_DURATION = "commit_status_publisher_status_cache_load_duration_seconds";
+  public static final String LOCK_WAIT_DURATION = "commit_status_publisher_lock_wait_duration_seconds";
+  public static final String CONCURRENCY_LIMIT = "commit_status_publisher_concurrency_limit";
+  public static final String IN_FLIGHT_REQUESTS = "commit_status_publisher_in_flight_requests";
+
+  private final Map<String, MetricFamily> myFamilies = new LinkedHashMap<>();
+
+  public CommitStatusPublisherMetrics() {
+    register(EVENTS_RECEIVED, Type.COUNTER, "Publishing events received by the listener");
+    register(EVENTS_ACCEPTED, Type.COUNTER, "Publishing events accepted for processing by the current node");
+    register(QUEUE_DEPTH, Type.GAUGE, "Accepted publishing events waiting for or being processed");
+    register(PUBLISH_DURATION, Type.HISTOGRAM, "Time spent publishing a single status");
+    register(HTTP_REQUEST_DURATION, Type.HISTOGRAM, "Duration of HTTP requests to VCS hostings");
+    register(HTTP_RESPONSES, Type.COUNTER, "HTTP responses received from VCS hostings");
+    register(RETRIES, Type.COUNTER, "Publishing retries scheduled or abandoned");
+    register(STATUS_CACHE_REQUESTS, Type.COUNTER, "Commit statuses cache lookups");
+    register(STATUS_CACHE_LOAD_DURATION, Type.HISTOGRAM, "Time spent loading statuses on commit statuses cache miss");
+    register(LOCK_WAIT_DURATION, Type.HISTOGRAM, "Time spent waiting for the publishing lock");
+    register(CONCURRENCY_LIMIT, Type.GAUGE, "Current limit of concurrent requests to a VCS hosting");
+    register(IN_FLIGHT_REQUESTS, Type.GAUGE, "Current number of concurrent requests to a VCS hosting");
+  }
+
+  public void increment(@NotNull String name, @NotNull String... labels) {
+    if (!isEnabled()) return;
+    getFamily(name).myCounters.computeIfAbsent(Labels.of(labels), l -> new LongAdder()).increment();
+  }
+
+  public void observe(@NotNull String name, long durationMs, @NotNull String... labels) {
+    if (!isEnabled()) return;
+    getFamily(name).myHistograms.computeIfAbsent(Labels.of(labels), l -> new Histogram()).observe(durationMs);
+  }
+
+  /**
+   * Registers the gauge values supplier, values are requested only when metrics are rendered
+   * @param supplier provides gauge values by label values, e.g. host name, the key is ignored for gauges without labels
+   */
+  public void registerGauge(@NotNull String name, @NotNull String labelName, @NotNull Supplier<Map<String, ? extends Number>> supplier) {
+    MetricFamily family = getFamily(name);
+    family.myGaugeLabel = labelName;
+    family.myGauge = supplier;
+  }
+
+  @NotNull
+  public String render() {
+    final StringBuilder sb = new StringBuilder();
+    for (MetricFamily family : myFamilies.values()) {
+      family.render(sb);
+    }
+    sb.append("# EOF\n");
+    return sb.toString();
+  }
+
+  private void register(@NotNull String name, @NotNull Type type, @NotNull String help) {
+    myFamilies.put(name, new MetricFamily(name, type, help));
+  }
+
+  @NotNull
+  private MetricFamily getFamily(@NotNull String name) {
+    MetricFamily family = myFamilies.get(name);
+    if (family == null) {
+      throw new IllegalArgumentException("Unknown metric: " + name);
+    }
+    return family;
+  }
+
+  private boolean isEnabled() {
+    return TeamCityProperties.getBooleanOrTrue(METRICS_ENABLED_PARAMETER);
+  }
+
+  private enum Type {
+    COUNTER, GAUGE, HISTOGRAM;
+
+    @NotNull
+    String id() {
+      return name().toLowerCase(Locale.ENGLISH);
+    }
+  }
+
+  private static class MetricFamily {
+    private final String myName;
+    private final Type myType;
+    private final String myHelp;
+    private final ConcurrentMap<Labels, LongAdder> myCounters = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Labels, Histogram> myHistograms = new ConcurrentHashMap<>();
+    private volatile String myGaugeLabel;
+    private volatile Supplier<Map<String, ? extends Number>> myGauge;
+
+    MetricFamily(@NotNull String name, @NotNull Type type, @NotNull String help) {
+      myName = name;
+      myType = type;
+      myHelp = help;
+    }
+
+    void render(@NotNull StringBuilder sb) {
+      sb.append("# TYPE ").append(myName).append(' ').append(myType.id()).append('\n');
+      sb.append("# HELP ").append(myName).append(' ').append(myHelp).append('\n');
+      switch (myType) {
+        case COUNTER:
+          new TreeMap<>(myCounters).forEach((labels, value) -> sb.append(myName).append("_total").append(labels.render(null, null)).append(' ').append(value.sum()).append('\n'));
+          break;
+        case HISTOGRAM:
+          new TreeMap<>(myHistograms).forEach((labels, histogram) -> histogram.render(sb, myName, labels));
+          break;
+        case GAUGE:
+          final Supplier<Map<String, ? extends Number>> gauge = myGauge;
+          if (gauge == null) break;
+          new TreeMap<>(gauge.get()).forEach((labelValue, value) -> {
+            final Labels labels = myGaugeLabel.isEmpty() ? Labels.EMPTY : Labels.of(myGaugeLabel, labelValue);
+            sb.append(myName).append(labels.render(null, null)).append(' ').append(value).append('\n');
+          });
+          break;
+      }
+    }
+  }
+
+  static class Histogram {
+    private static final long[] BOUNDS_MS = {5, 10, 25, 50, 100, 250, 500, 1_000, 2_500, 5_000, 10_000, 30_000, 60_000, 120_000};
+
+    private final LongAdder[] myBuckets = new LongAdder[BOUNDS_MS.length + 1];
+    private final LongAdder mySumMs = new LongAdder();
+
+    Histogram() {
+      for (int i = 0; i < myBuckets.length; i++) {
+        myBuckets[i] = new LongAdder();
+      }
+    }
+
+    void observe(long durationMs) {
+      int idx = Arrays.binarySearch(BOUNDS_MS, durationMs);
+      if (idx < 0) {
+        idx = -idx - 1;
+      }
+      myBuckets[idx].increment();
+      mySumMs.add(durationMs);
+    }
+
+    void render(@NotNull StringBuilder sb, @NotNull String name, @NotNull Labels labels) {
+      long cumulative = 0;
+      for (int i = 0; i < myBuckets.length; i++) {
+        cumulative += myBuckets[i].sum();
+        final String le = i < BOUNDS_MS.length ? formatSeconds(BOUNDS_MS[i]) : "+Inf";
+        sb.append(name).append("_bucket").append(labels.render("le", le)).append(' ').append(cumulative).append('\n');
+      }
+      sb.append(name).append("_count").append(labels.render(null, null)).append(' ').append(cumulative).append('\n');
+      sb.append(name).append("_sum").append(labels.render(null, null)).append(' ').append(formatSeconds(mySumMs.sum())).append('\n');
+    }
+
+    @NotNull
+    private static String formatSeconds(long ms) {
+      return String.valueOf(ms / 1000.0);
+    }
+  }
+
+  static class Labels implements Comparable<Labels> {
+    static final Labels EMPTY = new Labels(new String[0]);
+
+    private final String[] myNamesAndValues;
+    private final String myKey;
+
+    private Labels(@NotNull String[] namesAndValues) {
+      myNamesAndValues = namesAndValues;
+      myKey = String.join("\u0000", namesAndValues);
+    }
+
+    @NotNull
+    static Labels of(@NotNull String... namesAndValues) {
+      if (namesAndValues.length % 2 != 0) {
+        throw new IllegalArgumentException("Labels must be provided as name and value pairs");
+      }
+      return namesAndValues.length == 0 ? EMPTY : new Labels(namesAndValues);
+    }
+
+    @NotNull
+    String render(@Nullable String extraName, @Nullable String extraValue) {
+      if (myNamesAndValues.length == 0 && extraName == null) return "";
+      final StringBuilder sb = new StringBuilder("{");
+      for (int i = 0; i < myNamesAndValues.length; i += 2) {
+        if (i > 0) sb.append(',');
+        appendLabel(sb, myNamesAndValues[i], myNamesAndValues[i + 1]);
+      }
+      if (extraName != null) {
+        if (myNamesAndValues.length > 0) sb.append(',');
+        appendLabel(sb, extraName, extraValue);
+      }
+      return sb.append('}').toString();
+    }
+
+    private static void appendLabel(@NotNull StringBuilder sb, @NotNull String name, @NotNull String value) {
+      sb.append(name).append("=\"");
+      for (char c : value.toCharArray()) {
+        switch (c) {
+          case '\\': sb.append("\\\\"); break;
+          case '"': sb.append("\\\""); break;
+          case '\n': sb.append("\\n"); break;
+          default: sb.append(c);
+        }
+      }
+      sb.append('"');
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      return this == o || o instanceof Labels && myKey.equals(((Labels)o).myKey);
+    }
+
+    @Override
+    public int hashCode() {
+      return myKey.hashCode();
+    }
+
+    @Override
+    public int compareTo(@NotNull Labels o) {
+      return myKey.compareTo(o.myKey);
+    }
+  }
+}
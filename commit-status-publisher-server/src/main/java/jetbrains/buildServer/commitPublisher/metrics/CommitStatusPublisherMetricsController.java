@@ -0,0 +1,55 @@
+/*
+ * Copyright 2000-2024 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jetbrains.buildServer.commitPublisher.metrics;
+
+import jetbrains.buildServer.commitPublisher.CommitStatusPublisherFeature;
+import jetbrains.buildServer.serverSide.auth.Permission;
+import jetbrains.buildServer.serverSide.auth.SecurityContext;
+import org.jetbrains.annotations.NotNull;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * Exposes commit status publishing metrics in the OpenMetrics text format, so they can be scraped by Prometheus
+ */
+@RestController
+@RequestMapping(path = CommitStatusPublisherFeature.TYPE)
+public class CommitStatusPublisherMetricsController {
+  private static final MediaType OPEN_METRICS = MediaType.parseMediaType("application/openmetrics-text; version=1.0.0; charset=utf-8");
+
+  private final SecurityContext mySecurityContext;
+  private final CommitStatusPublisherMetrics myMetrics;
+
+  public CommitStatusPublisherMetricsController(@NotNull SecurityContext securityContext,
+                                                @NotNull CommitStatusPublisherMetrics metrics) {
+    mySecurityContext = securityContext;
+    myMetrics = metrics;
+  }
+
+  @RequestMapping(method = RequestMethod.GET, path = "/metrics")
+  public ResponseEntity<String> metrics() {
+    if (!mySecurityContext.getAuthorityHolder().isPermissionGrantedGlobally(Permission.VIEW_USAGE_STATISTICS)) {
+      throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Not enough permissions to view commit status publisher metrics");
+    }
+    return ResponseEntity.ok().contentType(OPEN_METRICS).body(myMetrics.render());
+  }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2000-2024 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jetbrains.buildServer.commitPublisher.metrics;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import java.util.ArrayList;
+import java.util.List;
+import jetbrains.buildServer.commitPublisher.CommitStatusPublisherFeature;
+import jetbrains.buildServer.serverSide.auth.Permission;
+import jetbrains.buildServer.serverSide.auth.SecurityContext;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * Shows the slowest of the recently processed publishing events with the time spent in each stage
+ */
+@RestController
+@RequestMapping(path = CommitStatusPublisherFeature.TYPE)
+public class CommitStatusPublisherTracesController {
+  private static final int DEFAULT_LIMIT = 50;
+  private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
+
+  private final SecurityContext mySecurityContext;
+  private final PublishingTraces myTraces;
+
+  public CommitStatusPublisherTracesController(@NotNull SecurityContext securityContext,
+                                               @NotNull PublishingTraces traces) {
+    mySecurityContext = securityContext;
+    myTraces = traces;
+  }
+
+  @RequestMapping(method = RequestMethod.GET, path = "/traces")
+  public ResponseEntity<String> traces(@RequestParam(name = "buildType", required = false) @Nullable String buildTypeId,
+                                       @RequestParam(name = "host", required = false) @Nullable String host,
+                                       @RequestParam(name = "limit", required = false, defaultValue = "" + DEFAULT_LIMIT) int limit) {
+    if (!mySecurityContext.getAuthorityHolder().isPermissionGrantedGlobally(Permission.VIEW_SERVER_SETTINGS)) {
+      throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Not enough permissions to view commit status publishing traces");
+    }
+    final List<TraceBean> result = new ArrayList<>();
+    for (PublishingTrace trace : myTraces.getSlowest(buildTypeId, host, Math.max(0, limit))) {
+      result.add(new TraceBean(trace));
+    }
+    return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(GSON.toJson(result));
+  }
+
+  private static class TraceBean {
+    private final String event;
+    private final String buildTypeId;
+    private final long promotionId;
+    private final long startTime;
+    private final long durationMs;
+    private final List<String> hosts;
+    private final List<StageBean> stages = new ArrayList<>();
+
+    TraceBean(@NotNull PublishingTrace trace) {
+      event = trace.getEvent();
+      buildTypeId = trace.getBuildTypeId();
+      promotionId = trace.getPromotionId();
+      startTime = trace.getStartTime();
+      durationMs = trace.getDurationMs();
+      hosts = new ArrayList<>(trace.getHosts());
+      long previous = startTime;
+      for (PublishingTrace.Stage stage : trace.getStages()) {
+        stages.add(new StageBean(stage.getName(), stage.getTimestamp() - startTime, stage.getTimestamp() - previous));
+        previous = stage.getTimestamp();
+      }
+    }
+  }
+
+  private static class StageBean {
+    private final String name;
+    private final long offsetMs;
+    private final long durationMs;
+
+    StageBean(@NotNull String name, long offsetMs, long durationMs) {
+      this.name = name;
+      this.offsetMs = offsetMs;
+      this.durationMs = durationMs;
+    }
+  }
+}
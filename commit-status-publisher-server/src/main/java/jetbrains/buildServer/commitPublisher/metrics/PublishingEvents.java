@@ -0,0 +1,160 @@
+/*
+ * Copyright 2000-2024 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jetbrains.buildServer.commitPublisher.metrics;
+
+import jetbrains.buildServer.commitPublisher.PublishingContext;
+import jetbrains.buildServer.serverSide.TeamCityProperties;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import static jetbrains.buildServer.commitPublisher.LoggerUtil.LOG;
+
+/**
+ * Emits JDK Flight Recorder events for the publishing stages, so that publishing latency can be correlated
+ * with GC pauses and lock contention in a single recording.
+ * Events are created only while a recording with them enabled is running; on JVMs without JFR all methods are no-ops.
+ * <p>
+ * Spans opened on the same thread are nested: a nested span inherits event type and publisher id from the enclosing one,
+ * and the host reported by {@link #host(String)} is attributed to all open spans of the current thread.
+ * The open span is a part of the {@link PublishingContext}, so spans opened by tasks run on behalf of the publishing thread are nested as well.
+ */
+public class PublishingEvents {
+  static final String JFR_EVENTS_ENABLED_PARAMETER = "teamcity.commitStatusPublisher.jfr.enabled";
+  private static final String JFR_EVENT_FACTORY_CLASS = "jetbrains.buildServer.commitPublisher.metrics.JfrEventFactory";
+
+  public enum Kind {
+    EVENT_ACCEPTED, STATUS_CACHE_LOOKUP, STATUS_READ, STATUS_POST, RETRY_SCHEDULED
+  }
+
+  private static final EventFactory ourFactory = createFactory();
+
+  private PublishingEvents() {
+  }
+
+  /**
+   * Opens a span bound to the current thread, it must be ended by the same thread
+   */
+  @NotNull
+  public static Span begin(@NotNull Kind kind, @Nullable String eventType, @Nullable String publisherId) {
+    final Span parent = PublishingContext.current().getSpan();
+    final Span span = create(kind,
+                             eventType != null || parent == null ? eventType : parent.myEventType,
+                             publisherId != null || parent == null ? publisherId : parent.myPublisherId,
+                             parent);
+    if (span != Span.NONE) {
+      PublishingContext.setSpan(span);
+    }
+    return span;
+  }
+
+  /**
+   * Opens a span which is not bound to any thread, e.g. the one ended once an accepted event is picked up by a worker thread
+   */
+  @NotNull
+  public static Span beginDetached(@NotNull Kind kind, @Nullable String eventType, @Nullable String publisherId) {
+    return create(kind, eventType, publisherId, null);
+  }
+
+  /**
+   * Emits an event without duration
+   */
+  public static void instant(@NotNull Kind kind, @Nullable String outcome) {
+    begin(kind, null, null).end(outcome);
+  }
+
+  /**
+   * Attributes the host of the completed request to the open spans of the current thread
+   */
+  public static void host(@NotNull String host) {
+    for (Span span = PublishingContext.current().getSpan(); span != null; span = span.myParent) {
+      if (span.myHost == null) {
+        span.myHost = host;
+      }
+    }
+  }
+
+  @NotNull
+  private static Span create(@NotNull Kind kind, @Nullable String eventType, @Nullable String publisherId, @Nullable Span parent) {
+    if (ourFactory == null || !TeamCityProperties.getBooleanOrTrue(JFR_EVENTS_ENABLED_PARAMETER)) return Span.NONE;
+    final EventHandle handle = ourFactory.begin(kind);
+    if (handle == null) return Span.NONE;
+    return new Span(handle, eventType, publisherId, parent);
+  }
+
+  @Nullable
+  private static EventFactory createFactory() {
+    try {
+      Class.forName("jdk.jfr.Event");
+    } catch (Throwable e) {
+      LOG.debug("JDK Flight Recorder is not available, publishing events will not be recorded");
+      return null;
+    }
+    try {
+      // compiled separately against a JDK with the jdk.jfr API, must not be referenced directly
+      return Class.forName(JFR_EVENT_FACTORY_CLASS).asSubclass(EventFactory.class).getDeclaredConstructor().newInstance();
+    } catch (Throwable e) {
+      LOG.warnAndDebugDetails("Failed to initialize JDK Flight Recorder publishing events", e);
+      return null;
+    }
+  }
+
+  public static class Span {
+    private static final Span NONE = new Span(null, null, null, null);
+
+    private final EventHandle myHandle;
+    private final String myEventType;
+    private final String myPublisherId;
+    private final Span myParent;
+    private volatile String myHost;
+    private String myOutcome;
+
+    private Span(@Nullable EventHandle handle, @Nullable String eventType, @Nullable String publisherId, @Nullable Span parent) {
+      myHandle = handle;
+      myEventType = eventType;
+      myPublisherId = publisherId;
+      myParent = parent;
+    }
+
+    public void setOutcome(@Nullable String outcome) {
+      myOutcome = outcome;
+    }
+
+    public void end() {
+      end(myOutcome);
+    }
+
+    public void end(@Nullable String outcome) {
+      if (myHandle == null) return;
+      if (PublishingContext.current().getSpan() == this) {
+        PublishingContext.setSpan(myParent);
+      }
+      myHandle.finish(myEventType, myPublisherId, myHost, outcome);
+    }
+  }
+
+  interface EventFactory {
+    /**
+     * @return handle of the started event or null if the event is not enabled in any running recording
+     */
+    @Nullable
+    EventHandle begin(@NotNull Kind kind);
+  }
+
+  interface EventHandle {
+    void finish(@Nullable String eventType, @Nullable String publisherId, @Nullable String host, @Nullable String outcome);
+  }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2000-2024 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jetbrains.buildServer.commitPublisher.metrics;
+
+import java.util.*;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Timestamps of the stages a single publishing event went through on the current node.
+ * A trace is filled by the thread processing the event and by the threads performing parts of the processing on its behalf,
+ * so it is synchronized.
+ */
+public class PublishingTrace {
+  private final String myEvent;
+  private final String myBuildTypeId;
+  private final long myPromotionId;
+  private final long myStartTime;
+  private final List<Stage> myStages = new ArrayList<>();
+  private final Set<String> myHosts = new TreeSet<>();
+  private long myFinishTime = -1;
+
+  PublishingTrace(@NotNull String event, @Nullable String buildTypeId, long promotionId, long startTime) {
+    myEvent = event;
+    myBuildTypeId = buildTypeId;
+    myPromotionId = promotionId;
+    myStartTime = startTime;
+  }
+
+  public void stage(@NotNull String name) {
+    stage(name, System.currentTimeMillis());
+  }
+
+  synchronized void stage(@NotNull String name, long timestamp) {
+    myStages.add(new Stage(name, timestamp));
+  }
+
+  public synchronized void host(@NotNull String host) {
+    myHosts.add(host);
+  }
+
+  synchronized void finish() {
+    myFinishTime = System.currentTimeMillis();
+  }
+
+  @NotNull
+  public String getEvent() {
+    return myEvent;
+  }
+
+  @Nullable
+  public String getBuildTypeId() {
+    return myBuildTypeId;
+  }
+
+  public long getPromotionId() {
+    return myPromotionId;
+  }
+
+  public long getStartTime() {
+    return myStartTime;
+  }
+
+  public synchronized long getDurationMs() {
+    return (myFinishTime < 0 ? System.currentTimeMillis() : myFinishTime) - myStartTime;
+  }
+
+  @NotNull
+  public synchronized Set<String> getHosts() {
+    return Collections.unmodifiableSet(new TreeSet<>(myHosts));
+  }
+
+  @NotNull
+  public synchronized List<Stage> getStages() {
+    return Collections.unmodifiableList(new ArrayList<>(myStages));
+  }
+
+  public static class Stage {
+    private final String myName;
+    private final long myTimestamp;
+
+    Stage(@NotNull String name, long timestamp) {
+      myName = name;
+      myTimestamp = timestamp;
+    }
+
+    @NotNull
+    public String getName() {
+      return myName;
+    }
+
+    public long getTimestamp() {
+      return myTimestamp;
+    }
+  }
+}
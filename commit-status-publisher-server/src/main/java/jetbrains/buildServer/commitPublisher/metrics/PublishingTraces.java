@@ -0,0 +1,120 @@
+/*
+ * Copyright 2000-2024 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jetbrains.buildServer.commitPublisher.metrics;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.stream.Collectors;
+import jetbrains.buildServer.commitPublisher.PublishingContext;
+import jetbrains.buildServer.serverSide.TeamCityProperties;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Keeps traces of the recently processed publishing events in a fixed-size lock-free ring buffer.
+ * The buffer is a Spring bean, it is sized once the plugin is loaded and is dropped together with the plugin.
+ * The trace of the event being processed by the current thread is a part of the {@link PublishingContext} and is available via {@link #current()},
+ * so that code deep in the publishing stack can add stages without passing the trace around.
+ */
+public class PublishingTraces {
+  static final String TRACES_ENABLED_PARAMETER = "teamcity.commitStatusPublisher.traces.enabled";
+  static final String TRACES_BUFFER_SIZE_PARAMETER = "teamcity.commitStatusPublisher.traces.bufferSize";
+  private static final int TRACES_BUFFER_SIZE_DEFAULT_VALUE = 1000;
+
+  private final AtomicReferenceArray<PublishingTrace> myBuffer;
+  private final AtomicLong myNextIndex = new AtomicLong();
+
+  public PublishingTraces() {
+    this(TeamCityProperties.getInteger(TRACES_BUFFER_SIZE_PARAMETER, TRACES_BUFFER_SIZE_DEFAULT_VALUE));
+  }
+
+  PublishingTraces(int bufferSize) {
+    myBuffer = new AtomicReferenceArray<>(Math.max(1, bufferSize));
+  }
+
+  /**
+   * Starts a new trace
+   * @param submitTime time when the event was submitted for processing, it is considered the start of the trace
+   * @return new trace or null if tracing is disabled
+   */
+  @Nullable
+  public PublishingTrace start(@NotNull String event, @Nullable String buildTypeId, long promotionId, long submitTime) {
+    if (!TeamCityProperties.getBooleanOrTrue(TRACES_ENABLED_PARAMETER)) return null;
+    final PublishingTrace trace = new PublishingTrace(event, buildTypeId, promotionId, submitTime);
+    trace.stage("submitted", submitTime);
+    return trace;
+  }
+
+  /**
+   * Runs the action with the trace being current for the calling thread, the trace is completed and stored afterwards
+   */
+  public void run(@Nullable PublishingTrace trace, @NotNull Runnable action) {
+    if (trace == null) {
+      action.run();
+      return;
+    }
+    trace.stage("started");
+    try {
+      PublishingContext.current().withTrace(trace).run(action);
+    } finally {
+      trace.stage("completed");
+      trace.finish();
+      add(trace);
+    }
+  }
+
+  void add(@NotNull PublishingTrace trace) {
+    myBuffer.set((int)(myNextIndex.getAndIncrement() % myBuffer.length()), trace);
+  }
+
+  /**
+   * @return the slowest of the recently completed traces, the slowest first
+   */
+  @NotNull
+  public List<PublishingTrace> getSlowest(@Nullable String buildTypeId, @Nullable String host, int limit) {
+    final List<PublishingTrace> result = new ArrayList<>();
+    for (int i = 0; i < myBuffer.length(); i++) {
+      final PublishingTrace trace = myBuffer.get(i);
+      if (trace == null) continue;
+      if (buildTypeId != null && !buildTypeId.equals(trace.getBuildTypeId())) continue;
+      if (host != null && !trace.getHosts().contains(host)) continue;
+      result.add(trace);
+    }
+    return result.stream()
+                 .sorted(Comparator.comparingLong(PublishingTrace::getDurationMs).reversed())
+                 .limit(limit)
+                 .collect(Collectors.toList());
+  }
+
+  @Nullable
+  public static PublishingTrace current() {
+    return PublishingContext.current().getTrace();
+  }
+
+  /**
+   * Adds the stage to the trace of the event being processed by the current thread, if any
+   */
+  public static void stage(@NotNull String name) {
+    final PublishingTrace trace = current();
+    if (trace != null) {
+      trace.stage(name);
+    }
+  }
+}
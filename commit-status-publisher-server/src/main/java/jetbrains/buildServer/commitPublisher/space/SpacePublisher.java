@@ -57,8 +57,9 @@ public class SpacePublisher extends HttpBasedCommitStatusPublisher<SpaceBuildSta
                  @NotNull CommitStatusPublisherProblems problems,
                  @NotNull SpaceConnectDescriber spaceConnector,
                  @NotNull CommitStatusesCache<SpaceBuildStatusInfo> statusesCache,
-                 boolean hasBuildFeature) {
-    super(settings, buildType, buildFeatureId, params, problems, links);
+                 boolean hasBuildFeature,
+                 @NotNull HostConcurrencyLimiter concurrencyLimiter) {
+    super(settings, buildType, buildFeatureId, params, problems, links, concurrencyLimiter);
     mySpaceConnector = spaceConnector;
     myStatusesCache = statusesCache;
     myHasBuildFeature = hasBuildFeature;
@@ -315,12 +316,13 @@ public class SpacePublisher extends HttpBasedCommitStatusPublisher<SpaceBuildSta
 
   @NotNull
   private SpaceToken requestToken(String vcsRootName, String description) throws PublisherException {
+    final int timeout = getConnectionTimeout();
     try {
       return SpaceToken.requestToken(
         mySpaceConnector.getServiceId(),
         mySpaceConnector.getServiceSecret(),
         mySpaceConnector.getFullAddress(),
-        getConnectionTimeout(),
+        timeout,
         myGson,
         getSettings().trustStore()
       );
@@ -26,6 +26,7 @@ import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import jetbrains.buildServer.commitPublisher.*;
 import jetbrains.buildServer.commitPublisher.CommitStatusPublisher.Event;
+import jetbrains.buildServer.commitPublisher.metrics.CommitStatusPublisherMetrics;
 import jetbrains.buildServer.commitPublisher.space.data.SpaceBuildStatusInfo;
 import jetbrains.buildServer.serverSide.*;
 import jetbrains.buildServer.serverSide.auth.AuthUtil;
@@ -64,6 +65,7 @@ public class SpaceSettings extends BasePublisherSettings implements CommitStatus
   @NotNull private final SpaceApplicationInformationManager myApplicationInformationManager;
 
   @NotNull private final CommitStatusesCache<SpaceBuildStatusInfo> myStatusesCache;
+  @NotNull private final HostConcurrencyLimiter myConcurrencyLimiter;
 
   private static final Set<Event> mySupportedEvents = new HashSet<Event>() {{
     add(Event.STARTED);
@@ -85,13 +87,16 @@ public class SpaceSettings extends BasePublisherSettings implements CommitStatus
                        @NotNull SSLTrustStoreProvider trustStoreProvider,
                        @NotNull OAuthConnectionsManager oAuthConnectionsManager,
                        @NotNull SecurityContext securityContext,
-                       @NotNull SpaceApplicationInformationManager applicationInformationManager) {
+                       @NotNull SpaceApplicationInformationManager applicationInformationManager,
+                       @NotNull HostConcurrencyLimiter concurrencyLimiter,
+                       @NotNull CommitStatusPublisherMetrics metrics) {
     super(descriptor, links, problems, trustStoreProvider);
     myOAuthConnectionManager = oAuthConnectionsManager;
     mySecurityContext = securityContext;
     myApplicationInformationManager = applicationInformationManager;
+    myConcurrencyLimiter = concurrencyLimiter;
 
-    myStatusesCache = new CommitStatusesCache<>();
+    myStatusesCache = new CommitStatusesCache<>(metrics);
   }
 
   @NotNull
@@ -116,7 +121,7 @@ public class SpaceSettings extends BasePublisherSettings implements CommitStatus
   @Override
   public CommitStatusPublisher createPublisher(@NotNull SBuildType buildType, @NotNull String buildFeatureId, @NotNull Map<String, String> params) {
     SpaceConnectDescriber connector = SpaceUtils.getConnectionData(params, myOAuthConnectionManager, buildType.getProject());
-    return new SpacePublisher(this, buildType, buildFeatureId, myLinks, params, myProblems, connector, myStatusesCache, true);
+    return new SpacePublisher(this, buildType, buildFeatureId, myLinks, params, myProblems, connector, myStatusesCache, true, myConcurrencyLimiter);
   }
 
   @Override
@@ -165,7 +170,7 @@ public class SpaceSettings extends BasePublisherSettings implements CommitStatus
     );
     final String buildFeatureId = String.format(Constants.SPACE_UNCONDITIONAL_FEATURE_FORMAT, buildType.getInternalId(), vcsRoot.getId());
 
-    return new SpacePublisher(this, buildType, buildFeatureId, myLinks, params, myProblems, spaceConnection, myStatusesCache, false);
+    return new SpacePublisher(this, buildType, buildFeatureId, myLinks, params, myProblems, spaceConnection, myStatusesCache, false, myConcurrencyLimiter);
   }
 
   @NotNull
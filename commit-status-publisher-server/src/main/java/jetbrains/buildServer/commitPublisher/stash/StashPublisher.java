@@ -27,6 +27,7 @@ import java.util.regex.Pattern;
 import jetbrains.buildServer.commitPublisher.*;
 import jetbrains.buildServer.commitPublisher.stash.data.DeprecatedJsonStashBuildStatuses;
 import jetbrains.buildServer.commitPublisher.stash.data.JsonStashBuildStatus;
+import jetbrains.buildServer.pullRequests.PullRequestManager;
 import jetbrains.buildServer.serverSide.*;
 import jetbrains.buildServer.serverSide.impl.LogUtil;
 import jetbrains.buildServer.users.User;
@@ -52,6 +53,8 @@ class StashPublisher extends HttpBasedCommitStatusPublisher<StashBuildStatus> {
   private final Gson myGson = new Gson();
   private final CommitStatusesCache<JsonStashBuildStatus> myStatusesCache;
   private final StatusPublisherBuildNameProvider myBuildNameProvider;
+  private final StashPullRequestsCache myPullRequestsCache;
+  @Nullable private final PullRequestManager myPullRequestManager;
 
   private BitbucketEndpoint myBitbucketEndpoint = null;
 
@@ -62,11 +65,29 @@ class StashPublisher extends HttpBasedCommitStatusPublisher<StashBuildStatus> {
                  @NotNull Map<String, String> params,
                  @NotNull CommitStatusPublisherProblems problems,
                  @NotNull CommitStatusesCache<JsonStashBuildStatus> statusesCache,
-                 @NotNull StatusPublisherBuildNameProvider buildNameProvider
+                 @NotNull StatusPublisherBuildNameProvider buildNameProvider,
+                 @NotNull HostConcurrencyLimiter concurrencyLimiter
   ) {
-    super(settings, buildType, buildFeatureId, params, problems, links);
+    this(settings, buildType, buildFeatureId, links, params, problems, statusesCache, buildNameProvider, new StashPullRequestsCache(), null, concurrencyLimiter);
+  }
+
+  StashPublisher(@NotNull CommitStatusPublisherSettings settings,
+                 @NotNull SBuildType buildType,
+                 @NotNull String buildFeatureId,
+                 @NotNull WebLinks links,
+                 @NotNull Map<String, String> params,
+                 @NotNull CommitStatusPublisherProblems problems,
+                 @NotNull CommitStatusesCache<JsonStashBuildStatus> statusesCache,
+                 @NotNull StatusPublisherBuildNameProvider buildNameProvider,
+                 @NotNull StashPullRequestsCache pullRequestsCache,
+                 @Nullable PullRequestManager pullRequestManager,
+                 @NotNull HostConcurrencyLimiter concurrencyLimiter
+  ) {
+    super(settings, buildType, buildFeatureId, params, problems, links, concurrencyLimiter);
     myStatusesCache = statusesCache;
     myBuildNameProvider = buildNameProvider;
+    myPullRequestsCache = pullRequestsCache;
+    myPullRequestManager = pullRequestManager;
   }
 
   @NotNull
@@ -160,16 +181,22 @@ class StashPublisher extends HttpBasedCommitStatusPublisher<StashBuildStatus> {
 
   private JsonStashBuildStatus getBuildStatus(BuildRevision revision, BuildPromotion promotion) throws PublisherException {
     AtomicReference<PublisherException> exception = new AtomicReference<>(null);
+    BitbucketEndpoint endpoint = getEndpoint(revision.getRoot().getProperty("url"));
+    final boolean lookupByKey = endpoint.isStatusLookupByKeySupported() && isStatusLookupByKeyPreferred(promotion);
 
     JsonStashBuildStatus statusFromCache = myStatusesCache.getStatusFromCache(revision, promotion.getBuildTypeExternalId(), () -> {
       StatusRequestData requestData = new SBuildPromotionRequestData(promotion, revision);
       try {
-        return getEndpoint(revision.getRoot().getProperty("url")).getCommitBuildStatuses(requestData, LogUtil.describe(promotion));
+        if (lookupByKey) {
+          JsonStashBuildStatus buildStatus = endpoint.getCommitBuildStatus(requestData, LogUtil.describe(promotion));
+          return buildStatus == null ? Collections.emptyList() : Collections.singletonList(buildStatus);
+        }
+        return endpoint.getCommitBuildStatuses(requestData, LogUtil.describe(promotion));
       } catch (PublisherException e) {
         exception.set(e);
         return Collections.emptyList();
       }
-    }, buildStatus -> buildStatus.key);
+    }, buildStatus -> buildStatus.key, lookupByKey);
 
     if (exception.get() != null)
       throw exception.get();
@@ -242,11 +269,18 @@ class StashPublisher extends HttpBasedCommitStatusPublisher<StashBuildStatus> {
     if (revisionVcsBranch == null || !PULL_REQUEST_BRANCH_PATTERN.matcher(revisionVcsBranch).matches()) {
       return revisionVcsBranch;
     }
-    PullRequest pullRequest = getEndpoint(revision.getRoot().getProperty("url")).getPullRequest(revision, buildDescription);
-    if (pullRequest == null) {
-      return revisionVcsBranch;
+    if (myPullRequestManager != null) {
+      // pull requests collected by TeamCity are used when possible, so that the source branch does not have to be requested on every publishing
+      Optional<String> sourceBranch = myPullRequestManager.getCachedPullRequests(revision.getRoot(), myBuildType, revisionVcsBranch).stream()
+                                                          .map(pullRequest -> pullRequest.getSourceBranchRef())
+                                                          .filter(Objects::nonNull)
+                                                          .findFirst();
+      if (sourceBranch.isPresent()) {
+        return sourceBranch.get();
+      }
     }
-    return pullRequest.fromRef.id;
+    String sourceBranch = getEndpoint(revision.getRoot().getProperty("url")).getPullRequestSourceBranch(revision, buildDescription);
+    return sourceBranch == null ? revisionVcsBranch : sourceBranch;
   }
 
   @Override
@@ -407,12 +441,12 @@ class StashPublisher extends HttpBasedCommitStatusPublisher<StashBuildStatus> {
   private class SBuildData extends BaseBuildData implements StatusData {
 
     private final SBuild myBuild;
-    private final BuildStatistics myBuildStatistics;
+    private final BuildEventPayload myPayload;
 
     SBuildData(@NotNull SBuild build, @NotNull BuildRevision revision, @NotNull StashBuildStatus status, @NotNull String description, @Nullable String vcsBranch) {
       super(revision, status, description, vcsBranch);
       myBuild = build;
-      myBuildStatistics = myBuild.getBuildStatistics(BuildStatisticsOptions.ALL_TESTS_NO_DETAILS);
+      myPayload = BuildEventPayload.of(build);
     }
 
     @NotNull
@@ -424,7 +458,7 @@ class StashPublisher extends HttpBasedCommitStatusPublisher<StashBuildStatus> {
     @NotNull
     @Override
     public String getName() {
-      return myBuildNameProvider.getBuildName(myBuild.getBuildPromotion());
+      return myPayload.getBuildName(myBuildNameProvider);
     }
 
     @NotNull
@@ -441,12 +475,12 @@ class StashPublisher extends HttpBasedCommitStatusPublisher<StashBuildStatus> {
 
     @Override
     public long getBuildDurationMs() {
-      return myBuild.getDuration() * 1000;
+      return myPayload.getDurationMs();
     }
 
     @Override
     public BuildStatistics getBuildStatistics() {
-      return myBuildStatistics;
+      return myPayload.getStatistics();
     }
   }
 
@@ -496,9 +530,17 @@ class StashPublisher extends HttpBasedCommitStatusPublisher<StashBuildStatus> {
 
   private interface BitbucketEndpoint {
     void publishBuildStatus(@NotNull StatusData data, @NotNull String buildDescription) throws PublisherException;
-    PullRequest getPullRequest(@NotNull BuildRevision revision, @NotNull String buildDescriptor);
+    @Nullable
+    String getPullRequestSourceBranch(@NotNull BuildRevision revision, @NotNull String buildDescriptor);
     JsonStashBuildStatus getCommitBuildStatus(@NotNull StatusRequestData data, @NotNull String buildDescription) throws PublisherException;
     Collection<JsonStashBuildStatus> getCommitBuildStatuses(@NotNull StatusRequestData data, @NotNull String buildDescription) throws PublisherException;
+
+    /**
+     * @return true if {@link #getCommitBuildStatus} requests the status by its key, rather than scans all statuses of the commit
+     */
+    default boolean isStatusLookupByKeySupported() {
+      return false;
+    }
   }
 
   private abstract class BaseBitbucketEndpoint implements BitbucketEndpoint {
@@ -521,34 +563,50 @@ class StashPublisher extends HttpBasedCommitStatusPublisher<StashBuildStatus> {
     }
 
     @Override
-    public PullRequest getPullRequest(BuildRevision revision, @NotNull String buildDescriptor) {
-      AtomicReference<PullRequest> result = new AtomicReference<>(null);
+    public String getPullRequestSourceBranch(@NotNull BuildRevision revision, @NotNull String buildDescriptor) {
       try {
         String url = getPullRequestEndpointUrl(revision);
         if (url == null) {
           LOG.warn("No endpoint URL is provided to get pull requests for revision " + revision.getRevision());
           return null;
         }
-        LoggerUtil.logRequest(getId(), HttpMethod.GET, url, null);
-        IOGuard.allowNetworkCall(() -> HttpHelper.get(url, getCredentials(revision.getRoot()), null, DEFAULT_CONNECTION_TIMEOUT, getSettings().trustStore(), new DefaultHttpResponseProcessor() {
-          @Override
-          public void processResponse(HttpHelper.HttpResponse response) throws HttpPublisherException, IOException {
-            super.processResponse(response);
-            final String json = response.getContent();
-            if (null == json) {
-              throw new HttpPublisherException("Stash publisher has received no response");
-            }
-            PullRequest pullRequest = myGson.fromJson(json, PullRequest.class);
-            if (null == pullRequest) {
-              throw new HttpPublisherException("Stash publisher has received a malformed response");
-            }
-            result.set(pullRequest);
+        return myPullRequestsCache.getSourceBranch(url, () -> {
+          PullRequest pullRequest = loadPullRequest(url, revision);
+          if (pullRequest.fromRef == null || pullRequest.fromRef.id == null) {
+            throw new PublisherException("Stash publisher has received a pull request without source branch: " + url);
           }
-        }));
+          return pullRequest.fromRef.id;
+        });
       } catch (Exception e) {
         myProblems.reportProblem("Can not get pull request", StashPublisher.this, buildDescriptor, null, e, LOG);
       }
-      return result.get();
+      return null;
+    }
+
+    @NotNull
+    private PullRequest loadPullRequest(@NotNull String url, @NotNull BuildRevision revision) throws Exception {
+      AtomicReference<PullRequest> result = new AtomicReference<>(null);
+      LoggerUtil.logRequest(getId(), HttpMethod.GET, url, null);
+      IOGuard.allowNetworkCall(() -> HttpHelper.get(url, getCredentials(revision.getRoot()), null, DEFAULT_CONNECTION_TIMEOUT, getSettings().trustStore(), new DefaultHttpResponseProcessor() {
+        @Override
+        public void processResponse(HttpHelper.HttpResponse response) throws HttpPublisherException, IOException {
+          super.processResponse(response);
+          final String json = response.getContent();
+          if (null == json) {
+            throw new HttpPublisherException("Stash publisher has received no response");
+          }
+          PullRequest pullRequest = myGson.fromJson(json, PullRequest.class);
+          if (null == pullRequest) {
+            throw new HttpPublisherException("Stash publisher has received a malformed response");
+          }
+          result.set(pullRequest);
+        }
+      }));
+      PullRequest pullRequest = result.get();
+      if (pullRequest == null) {
+        throw new PublisherException("Stash publisher has received no pull request: " + url);
+      }
+      return pullRequest;
     }
 
     @Override
@@ -734,30 +792,30 @@ class StashPublisher extends HttpBasedCommitStatusPublisher<StashBuildStatus> {
   private class ExtendedApiEndpoint extends CoreApiEndpoint {
 
     @Override
-    public JsonStashBuildStatus getCommitBuildStatus(@NotNull StatusRequestData data, @NotNull String buildDescription) {
-      try {
-        String buildEndpointUrl = getBuildWithKeyEndpointUrl(data);
-        ResponseEntityProcessor<JsonStashBuildStatus> processor = new ResponseEntityProcessor<JsonStashBuildStatus>(JsonStashBuildStatus.class) {
-          @Override
-          protected boolean handleError(@NotNull HttpHelper.HttpResponse response) throws HttpPublisherException {
-            int statusCode = response.getStatusCode();
-            if (statusCode >= 400) {
-              if (statusCode == 404) return false;
-              throw new HttpPublisherException(statusCode, response.getStatusText(), "HTTP response error");
-            }
-            return true;
+    public boolean isStatusLookupByKeySupported() {
+      return true;
+    }
+
+    @Override
+    public JsonStashBuildStatus getCommitBuildStatus(@NotNull StatusRequestData data, @NotNull String buildDescription) throws PublisherException {
+      String buildEndpointUrl = getBuildWithKeyEndpointUrl(data);
+      ResponseEntityProcessor<JsonStashBuildStatus> processor = new ResponseEntityProcessor<JsonStashBuildStatus>(JsonStashBuildStatus.class) {
+        @Override
+        protected boolean handleError(@NotNull HttpHelper.HttpResponse response) throws HttpPublisherException {
+          int statusCode = response.getStatusCode();
+          if (statusCode >= 400) {
+            if (statusCode == 404) return false;
+            throw new HttpPublisherException(statusCode, response.getStatusText(), "HTTP response error");
           }
-        };
-        return get(buildEndpointUrl, getCredentials(data.getVcsRootInstance()), null, processor);
-      } catch (PublisherException ex) {
-        myProblems.reportProblem("Commit Status Publisher has failed to prepare a request", StashPublisher.this, buildDescription, null, ex, LOG);
-      }
-      return null;
+          return true;
+        }
+      };
+      return get(buildEndpointUrl, getCredentials(data.getVcsRootInstance()), null, processor);
     }
 
     protected String getBuildWithKeyEndpointUrl(StatusRequestData data) throws PublisherException {
       String buildEndpointUrl = getBuildEndpointUrl(data);
-      return buildEndpointUrl + "?key=" + data.getKey();
+      return buildEndpointUrl + "?" + encodeParameter("key", data.getKey());
     }
 
   }
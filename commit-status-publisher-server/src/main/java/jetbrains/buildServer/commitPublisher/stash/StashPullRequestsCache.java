@@ -0,0 +1,66 @@
+/*
+ * Copyright 2000-2024 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jetbrains.buildServer.commitPublisher.stash;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import jetbrains.buildServer.commitPublisher.PublisherException;
+import jetbrains.buildServer.serverSide.TeamCityProperties;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Keeps source branches of Bitbucket Server pull requests, so that every status published for a <code>refs/pull-requests/N/from</code> branch
+ * does not request the pull request again. Pull requests are keyed by their REST API URL, i.e. by server URL, project, repository and id.
+ * Source branch of a pull request does not change, but the pull request may be declined and reopened, so entries are kept for a short time only.
+ */
+class StashPullRequestsCache {
+  static final String TTL_PARAMETER = "teamcity.commitStatusPublisher.stash.pullRequestCache.ttl";
+  private static final long TTL_DEFAULT_VALUE_MS = 60_000L;
+  private static final int MAX_SIZE = 10_000;
+
+  private final Cache<String, String> mySourceBranches;
+
+  StashPullRequestsCache() {
+    mySourceBranches = CacheBuilder.newBuilder()
+                                   .maximumSize(MAX_SIZE)
+                                   .expireAfterWrite(TeamCityProperties.getIntervalMilliseconds(TTL_PARAMETER, TTL_DEFAULT_VALUE_MS), TimeUnit.MILLISECONDS)
+                                   .build();
+  }
+
+  /**
+   * Returns the source branch of the pull request, loading it on cache miss.
+   * Concurrent calls for the same pull request wait for a single load, failed loads are not cached.
+   * @param pullRequestUrl REST API URL of the pull request
+   * @param loader loads the source branch of the pull request
+   */
+  @NotNull
+  String getSourceBranch(@NotNull String pullRequestUrl, @NotNull Callable<String> loader) throws PublisherException {
+    try {
+      return mySourceBranches.get(pullRequestUrl, loader);
+    } catch (ExecutionException | UncheckedExecutionException e) {
+      final Throwable cause = e.getCause();
+      if (cause instanceof PublisherException) {
+        throw (PublisherException)cause;
+      }
+      throw new PublisherException("Failed to get pull request " + pullRequestUrl, cause != null ? cause : e);
+    }
+  }
+}
@@ -19,17 +19,22 @@
 package jetbrains.buildServer.commitPublisher.stash;
 
 import com.google.common.collect.ImmutableMap;
+import java.io.File;
 import java.io.IOException;
 import java.util.*;
 import java.util.stream.Collectors;
+import jetbrains.buildServer.ServiceLocator;
 import jetbrains.buildServer.commitPublisher.*;
 import jetbrains.buildServer.commitPublisher.CommitStatusPublisher.Event;
+import jetbrains.buildServer.commitPublisher.metrics.CommitStatusPublisherMetrics;
 import jetbrains.buildServer.commitPublisher.stash.data.JsonStashBuildStatus;
 import jetbrains.buildServer.commitPublisher.stash.data.StashError;
 import jetbrains.buildServer.commitPublisher.stash.data.StashRepoInfo;
 import jetbrains.buildServer.commitPublisher.stash.data.StashServerInfo;
+import jetbrains.buildServer.pullRequests.PullRequestManager;
 import jetbrains.buildServer.serverSide.*;
 import jetbrains.buildServer.serverSide.auth.SecurityContext;
+import jetbrains.buildServer.serverSide.executors.ExecutorServices;
 import jetbrains.buildServer.serverSide.oauth.OAuthConnectionDescriptor;
 import jetbrains.buildServer.serverSide.oauth.OAuthConnectionsManager;
 import jetbrains.buildServer.serverSide.oauth.OAuthTokensStorage;
@@ -56,6 +61,7 @@ import static jetbrains.buildServer.commitPublisher.stash.StashPublisher.PROP_PU
 public class StashSettings extends AuthTypeAwareSettings implements CommitStatusPublisherSettings {
 
   static final String DEFAULT_AUTH_TYPE = Constants.PASSWORD;
+  static final String SERVER_VERSIONS_FILE = "commitStatusPublisher/bitbucketServerVersions.json";
   static final GitRepositoryParser VCS_URL_PARSER = new GitRepositoryParser();
 
   private static final Set<Event> mySupportedEvents = new HashSet<Event>() {{
@@ -79,6 +85,12 @@ public class StashSettings extends AuthTypeAwareSettings implements CommitStatus
   private final ProjectManager myProjectManager;
   @NotNull
   private final StatusPublisherBuildNameProvider myBuildNameProvider;
+  @NotNull
+  private final StashPullRequestsCache myPullRequestsCache = new StashPullRequestsCache();
+  @NotNull
+  private final ServiceLocator myServiceLocator;
+
+  private final HostConcurrencyLimiter myConcurrencyLimiter;
 
   public StashSettings(@NotNull PluginDescriptor descriptor,
                        @NotNull WebLinks links,
@@ -89,12 +101,22 @@ public class StashSettings extends AuthTypeAwareSettings implements CommitStatus
                        @NotNull UserModel userModel,
                        @NotNull SecurityContext securityContext,
                        @NotNull ProjectManager projectManager,
-                       @NotNull StashBuildNameProvider buildNameProvider
+                       @NotNull StashBuildNameProvider buildNameProvider,
+                       @NotNull ServerPaths serverPaths,
+                       @NotNull ServiceLocator serviceLocator,
+                       @NotNull ExecutorServices executorServices,
+                       @NotNull HostConcurrencyLimiter concurrencyLimiter,
+                       @NotNull CommitStatusPublisherMetrics metrics
   ) {
     super(descriptor, links, problems, trustStoreProvider, oAuthTokensStorage, userModel, oAuthConnectionsManager, securityContext);
     myProjectManager = projectManager;
-    myStatusesCache = new CommitStatusesCache<>();
+    myStatusesCache = new CommitStatusesCache<>(metrics);
     myBuildNameProvider = buildNameProvider;
+    myServiceLocator = serviceLocator;
+    myConcurrencyLimiter = concurrencyLimiter;
+    // Bitbucket Server version defines the REST API used for publishing, so that it should be known right after the server start
+    persistServerVersions(new File(serverPaths.getPluginDataDirectory(), SERVER_VERSIONS_FILE));
+    refreshServerVersionsInBackground(executorServices);
   }
 
   @NotNull
@@ -114,7 +136,8 @@ public class StashSettings extends AuthTypeAwareSettings implements CommitStatus
 
   @Nullable
   public CommitStatusPublisher createPublisher(@NotNull SBuildType buildType, @NotNull String buildFeatureId, @NotNull Map<String, String> params) {
-    return new StashPublisher(this, buildType, buildFeatureId, myLinks, params, myProblems, myStatusesCache, myBuildNameProvider);
+    return new StashPublisher(this, buildType, buildFeatureId, myLinks, params, myProblems, myStatusesCache, myBuildNameProvider, myPullRequestsCache,
+                              myServiceLocator.findSingletonService(PullRequestManager.class), myConcurrencyLimiter);
   }
 
   @NotNull
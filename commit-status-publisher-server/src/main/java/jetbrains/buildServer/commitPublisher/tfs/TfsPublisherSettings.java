@@ -22,8 +22,10 @@ import java.util.*;
 import java.util.stream.Collectors;
 import jetbrains.buildServer.commitPublisher.*;
 import jetbrains.buildServer.commitPublisher.CommitStatusPublisher.Event;
+import jetbrains.buildServer.commitPublisher.metrics.CommitStatusPublisherMetrics;
 import jetbrains.buildServer.serverSide.*;
 import jetbrains.buildServer.serverSide.auth.SecurityContext;
+import jetbrains.buildServer.serverSide.executors.ExecutorServices;
 import jetbrains.buildServer.serverSide.oauth.OAuthConnectionDescriptor;
 import jetbrains.buildServer.serverSide.oauth.OAuthConnectionsManager;
 import jetbrains.buildServer.serverSide.oauth.OAuthToken;
@@ -36,6 +38,7 @@ import jetbrains.buildServer.users.UserModel;
 import jetbrains.buildServer.util.StringUtil;
 import jetbrains.buildServer.util.ssl.SSLTrustStoreProvider;
 import jetbrains.buildServer.vcs.VcsException;
+import jetbrains.buildServer.vcs.VcsModificationHistoryEx;
 import jetbrains.buildServer.vcs.VcsRoot;
 import jetbrains.buildServer.vcs.VcsRootInstance;
 import jetbrains.buildServer.vcshostings.http.credentials.HttpCredentials;
@@ -65,6 +68,10 @@ public class TfsPublisherSettings extends AuthTypeAwareSettings implements Commi
 
   private final CommitStatusesCache<TfsStatusPublisher.CommitStatus> myStatusesCache;
   private final TfsBuildNameProvider myBuildNameProvider;
+  private final TfsPullRequestsCache myPullRequestsCache;
+  private final VcsModificationHistoryEx myVcsModificationHistory;
+  private final ExecutorServices myExecutorServices;
+  private final HostConcurrencyLimiter myConcurrencyLimiter;
 
   public TfsPublisherSettings(@NotNull PluginDescriptor descriptor,
                               @NotNull WebLinks links,
@@ -74,11 +81,19 @@ public class TfsPublisherSettings extends AuthTypeAwareSettings implements Commi
                               @NotNull SecurityContext securityContext,
                               @NotNull UserModel userModel,
                               @NotNull SSLTrustStoreProvider trustStoreProvider,
-                              @NotNull TfsBuildNameProvider buildNameProvider
+                              @NotNull TfsBuildNameProvider buildNameProvider,
+                              @NotNull VcsModificationHistoryEx vcsModificationHistory,
+                              @NotNull ExecutorServices executorServices,
+                              @NotNull HostConcurrencyLimiter concurrencyLimiter,
+                              @NotNull CommitStatusPublisherMetrics metrics
   ) {
     super(descriptor, links, problems, trustStoreProvider, oauthTokensStorage, userModel, oauthConnectionsManager, securityContext);
-    myStatusesCache = new CommitStatusesCache<>();
+    myStatusesCache = new CommitStatusesCache<>(metrics);
     myBuildNameProvider = buildNameProvider;
+    myPullRequestsCache = new TfsPullRequestsCache();
+    myVcsModificationHistory = vcsModificationHistory;
+    myExecutorServices = executorServices;
+    myConcurrencyLimiter = concurrencyLimiter;
   }
 
   @NotNull
@@ -133,7 +148,8 @@ public class TfsPublisherSettings extends AuthTypeAwareSettings implements Commi
 
   @Nullable
   public CommitStatusPublisher createPublisher(@NotNull SBuildType buildType, @NotNull String buildFeatureId, @NotNull Map<String, String> params) {
-    return new TfsStatusPublisher(this, buildType, buildFeatureId, myLinks, params, myProblems, myStatusesCache, myBuildNameProvider);
+    return new TfsStatusPublisher(this, buildType, buildFeatureId, myLinks, params, myProblems, myStatusesCache, myBuildNameProvider,
+                                  myPullRequestsCache, myVcsModificationHistory, myExecutorServices, myConcurrencyLimiter);
   }
 
   @NotNull
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2000-2024 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jetbrains.buildServer.commitPublisher.tfs;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import jetbrains.buildServer.serverSide.TeamCityProperties;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Keeps data required to find the pull request iteration to publish statuses of <code>refs/pull/N/merge</code> builds to,
+ * so that every publishing event of such builds does not request the merge commit and all iterations of the pull request again.
+ * Parents of a commit never change, so the known part of the commit graph of every repository is kept as long as it is used,
+ * while iterations are added to a pull request whenever its source branch is updated,
+ * so they are reloaded once the cached ones do not contain the iteration of the merge commit being published.
+ */
+class TfsPullRequestsCache {
+  static final String ITERATIONS_TTL_PARAMETER = "teamcity.commitStatusPublisher.tfs.pullRequestIterationsCache.ttl";
+  private static final long ITERATIONS_TTL_DEFAULT_VALUE_MS = TimeUnit.HOURS.toMillis(1);
+  private static final int MAX_SIZE = 10_000;
+
+  private final Cache<String, List<String>> myCommitParents = CacheBuilder.newBuilder()
+                                                                          .maximumSize(MAX_SIZE)
+                                                                          .expireAfterAccess(1, TimeUnit.DAYS)
+                                                                          .build();
+  private final Cache<String, List<TfsStatusPublisher.Iteration>> myIterations;
+
+  TfsPullRequestsCache() {
+    myIterations = CacheBuilder.newBuilder()
+                               .maximumSize(MAX_SIZE)
+                               .expireAfterWrite(TeamCityProperties.getIntervalMilliseconds(ITERATIONS_TTL_PARAMETER, ITERATIONS_TTL_DEFAULT_VALUE_MS), TimeUnit.MILLISECONDS)
+                               .build();
+  }
+
+  /**
+   * @param commitUrl REST API URL of the commit
+   * @return parents of the commit, or null if they are not known
+   */
+  @Nullable
+  List<String> getCommitParents(@NotNull String commitUrl) {
+    return myCommitParents.getIfPresent(commitUrl);
+  }
+
+  void putCommitParents(@NotNull String commitUrl, @NotNull Collection<String> parents) {
+    myCommitParents.put(commitUrl, Collections.unmodifiableList(new ArrayList<>(parents)));
+  }
+
+  /**
+   * @param iterationsUrl REST API URL of the pull request iterations
+   * @return iterations of the pull request, or null if they are not known
+   */
+  @Nullable
+  List<TfsStatusPublisher.Iteration> getIterations(@NotNull String iterationsUrl) {
+    return myIterations.getIfPresent(iterationsUrl);
+  }
+
+  void putIterations(@NotNull String iterationsUrl, @NotNull List<TfsStatusPublisher.Iteration> iterations) {
+    myIterations.put(iterationsUrl, Collections.unmodifiableList(new ArrayList<>(iterations)));
+  }
+}
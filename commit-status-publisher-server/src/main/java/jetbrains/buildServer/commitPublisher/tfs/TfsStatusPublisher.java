@@ -26,6 +26,10 @@ import java.io.IOException;
 import java.security.KeyStore;
 import java.text.MessageFormat;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Function;
 import java.util.regex.Matcher;
@@ -34,10 +38,14 @@ import java.util.stream.Collectors;
 import jetbrains.buildServer.commitPublisher.*;
 import jetbrains.buildServer.messages.Status;
 import jetbrains.buildServer.serverSide.*;
+import jetbrains.buildServer.serverSide.executors.ExecutorServices;
 import jetbrains.buildServer.serverSide.impl.LogUtil;
 import jetbrains.buildServer.util.StringUtil;
 import jetbrains.buildServer.util.http.HttpMethod;
+import jetbrains.buildServer.vcs.SVcsModification;
+import jetbrains.buildServer.vcs.VcsModificationHistoryEx;
 import jetbrains.buildServer.vcs.VcsRoot;
+import jetbrains.buildServer.vcs.VcsRootInstance;
 import jetbrains.buildServer.vcshostings.http.HttpHelper;
 import jetbrains.buildServer.vcshostings.http.credentials.HttpCredentials;
 import org.apache.http.entity.ContentType;
@@ -59,6 +67,7 @@ class TfsStatusPublisher extends HttpBasedCommitStatusPublisher<TfsStatusPublish
   private static final String PULL_REQUEST_STATUS_URL_FORMAT = "{0}/{1}/_apis/git/repositories/{2}/pullRequests/{3}/statuses?api-version=3.0-preview";
   private static final String ERROR_AUTHORIZATION = "Check access token value and verify that it has Code (status) and Code (read) scopes";
   private static final String FAILED_TO_TEST_CONNECTION_TO_REPOSITORY = "Azure DevOps publisher has failed to test connection to repository ";
+  static final String CONCURRENT_PULL_REQUEST_STATUS_PARAMETER = "teamcity.commitStatusPublisher.tfs.concurrentPullRequestStatus.enabled";
   private static final Gson myGson = new GsonBuilder()
                                           .setDateFormat("yyyy-MM-dd'T'HH:mm:ssZ")
                                           .create();
@@ -68,6 +77,9 @@ class TfsStatusPublisher extends HttpBasedCommitStatusPublisher<TfsStatusPublish
 
   private final CommitStatusesCache<CommitStatus> myStatusesCache;
   private final StatusPublisherBuildNameProvider myBuildNameProvider;
+  private final TfsPullRequestsCache myPullRequestsCache;
+  @Nullable private final VcsModificationHistoryEx myVcsModificationHistory;
+  @Nullable private final ExecutorServices myExecutorServices;
 
   TfsStatusPublisher(@NotNull final CommitStatusPublisherSettings settings,
                      @NotNull final SBuildType buildType,
@@ -76,11 +88,31 @@ class TfsStatusPublisher extends HttpBasedCommitStatusPublisher<TfsStatusPublish
                      @NotNull final Map<String, String> params,
                      @NotNull final CommitStatusPublisherProblems problems,
                      @NotNull CommitStatusesCache<CommitStatus> statusesCache,
-                     @NotNull StatusPublisherBuildNameProvider buildNameProvider
+                     @NotNull StatusPublisherBuildNameProvider buildNameProvider,
+                     @NotNull HostConcurrencyLimiter concurrencyLimiter
   ) {
-    super(settings, buildType, buildFeatureId, params, problems, webLinks);
+    this(settings, buildType, buildFeatureId, webLinks, params, problems, statusesCache, buildNameProvider, new TfsPullRequestsCache(), null, null, concurrencyLimiter);
+  }
+
+  TfsStatusPublisher(@NotNull final CommitStatusPublisherSettings settings,
+                     @NotNull final SBuildType buildType,
+                     @NotNull final String buildFeatureId,
+                     @NotNull final WebLinks webLinks,
+                     @NotNull final Map<String, String> params,
+                     @NotNull final CommitStatusPublisherProblems problems,
+                     @NotNull CommitStatusesCache<CommitStatus> statusesCache,
+                     @NotNull StatusPublisherBuildNameProvider buildNameProvider,
+                     @NotNull TfsPullRequestsCache pullRequestsCache,
+                     @Nullable VcsModificationHistoryEx vcsModificationHistory,
+                     @Nullable ExecutorServices executorServices,
+                     @NotNull HostConcurrencyLimiter concurrencyLimiter
+  ) {
+    super(settings, buildType, buildFeatureId, params, problems, webLinks, concurrencyLimiter);
     myStatusesCache = statusesCache;
     myBuildNameProvider = buildNameProvider;
+    myPullRequestsCache = pullRequestsCache;
+    myVcsModificationHistory = vcsModificationHistory;
+    myExecutorServices = executorServices;
   }
 
   @NotNull
@@ -291,8 +323,20 @@ class TfsStatusPublisher extends HttpBasedCommitStatusPublisher<TfsStatusPublish
   private Set<String> getParentCommits( @NotNull final TfsRepositoryInfo info,
                                         @NotNull final String parentCommitId,
                                         @NotNull final Map<String, String> params,
-                                        @NotNull VcsRoot root) throws PublisherException {
+                                        @NotNull VcsRootInstance root) throws PublisherException {
+    if (myVcsModificationHistory != null) {
+      // the merge commit is usually collected by TeamCity already, so its parents are known without a request
+      final SVcsModification modification = myVcsModificationHistory.findModificationByVersion(root, parentCommitId);
+      if (modification != null && !modification.getParentRevisions().isEmpty()) {
+        return new HashSet<>(modification.getParentRevisions());
+      }
+    }
+
     final String url = MessageFormat.format(COMMIT_URL_FORMAT, info.getServer(), info.getProject(), info.getRepository(), parentCommitId);
+    final List<String> cachedParents = myPullRequestsCache.getCommitParents(url);
+    if (cachedParents != null) {
+      return new HashSet<>(cachedParents);
+    }
     Commit commit;
     try {
       commit = get(url, getCredentials(root, params), Collections.singletonMap("Accept", "application/json"), new TfsResponseEntityProcessor<>(Commit.class));
@@ -307,6 +351,7 @@ class TfsStatusPublisher extends HttpBasedCommitStatusPublisher<TfsStatusPublish
     if (commit.parents == null) {
       return Collections.emptySet();
     }
+    myPullRequestsCache.putCommitParents(url, commit.parents);
     return new HashSet<>(commit.parents);
   }
 
@@ -319,6 +364,15 @@ class TfsStatusPublisher extends HttpBasedCommitStatusPublisher<TfsStatusPublish
     final String url = MessageFormat.format(PULL_REQUEST_ITERATIONS_URL_FORMAT,
       info.getServer(), info.getProject(), info.getRepository(), pullRequestId);
 
+    final List<Iteration> cachedIterations = myPullRequestsCache.getIterations(url);
+    if (cachedIterations != null) {
+      final Iteration iteration = findIteration(cachedIterations, parentCommits, true);
+      if (iteration != null) {
+        return iteration;
+      }
+      // the source branch has probably been updated since the iterations were loaded, so that a new iteration has been added
+    }
+
     IterationsList iterations;
 
     try {
@@ -332,8 +386,21 @@ class TfsStatusPublisher extends HttpBasedCommitStatusPublisher<TfsStatusPublish
       LOG.debug("No iterations are available in repository " + info);
       return null;
     }
+    myPullRequestsCache.putIterations(url, iterations.value);
 
-    ListIterator<Iteration> iterationsIt = iterations.value.listIterator(iterations.value.size());
+    final Iteration iteration = findIteration(iterations.value, parentCommits, false);
+    if (iteration == null) {
+      LOG.debug("Iteration was not found " + info);
+    }
+    return iteration;
+  }
+
+  /**
+   * @param exactOnly if false, the latest iteration with the source commit among parents is returned when no iteration matches both parents
+   */
+  @Nullable
+  private static Iteration findIteration(@NotNull List<Iteration> iterations, @NotNull Set<String> parentCommits, boolean exactOnly) {
+    ListIterator<Iteration> iterationsIt = iterations.listIterator(iterations.size());
     Iteration likelyIteration = null;
     // iterate iterations from the last one, because it's the latest one
     while (iterationsIt.hasPrevious()) {
@@ -350,12 +417,10 @@ class TfsStatusPublisher extends HttpBasedCommitStatusPublisher<TfsStatusPublish
         likelyIteration = it;
     }
 
-    if (likelyIteration != null) {
-      LOG.debug("Matching iteration was not found among parents. Assuming most likely iteration by sourceRefCommit. " + info);
+    if (likelyIteration != null && !exactOnly) {
+      LOG.debug("Matching iteration was not found among parents. Assuming most likely iteration by sourceRefCommit, iteration " + likelyIteration.id);
       return likelyIteration;
     }
-
-    LOG.debug("Iteration was not found " + info);
     return null;
   }
 
@@ -445,12 +510,8 @@ class TfsStatusPublisher extends HttpBasedCommitStatusPublisher<TfsStatusPublish
     }
     final String description = LogUtil.describe(buildPromotion);
     final String data = myGson.toJson(status);
-    final String commitId = publishPullRequestStatus(info, revision, data, description);
-    boolean published = publishCommitStatus(info, data, commitId, description, revision.getRoot());
-    if (published) {
-      myStatusesCache.removeStatusFromCache(revision, status.context.name);
-    }
-    return published;
+    publishStatuses(info, revision, data, description, status.context.name);
+    return true;
   }
 
   private TfsRepositoryInfo getReposioryInfo(BuildRevision revision) throws PublisherException {
@@ -463,7 +524,7 @@ class TfsStatusPublisher extends HttpBasedCommitStatusPublisher<TfsStatusPublish
     return getServerAndProject(root, myParams);
   }
 
-  private boolean publishCommitStatus(TfsRepositoryInfo info, String data, String commitId, String description, VcsRoot root) throws PublisherException {
+  private void publishCommitStatus(TfsRepositoryInfo info, String data, String commitId, String description, VcsRoot root) throws PublisherException {
     final String commitStatusUrl = MessageFormat.format(COMMIT_STATUS_URL_FORMAT,
                                                         info.getServer(), info.getProject(), info.getRepository(), commitId);
 
@@ -477,32 +538,32 @@ class TfsStatusPublisher extends HttpBasedCommitStatusPublisher<TfsStatusPublish
       final String message = String.format("Failed to publish status to commit %s in repository %s", commitId, info);
       throw new PublisherException(message, e);
     }
-    return true;
   }
 
-  @NotNull
-  private String publishPullRequestStatus(@NotNull TfsRepositoryInfo info,
-                                           @NotNull BuildRevision revision,
-                                           @NotNull String data,
-                                           @NotNull String description) throws PublisherException {
+  /**
+   * @return where the status of the pull request build should be published to, or null if it is not a pull request build
+   */
+  @Nullable
+  private PullRequestStatusTarget getPullRequestStatusTarget(@NotNull TfsRepositoryInfo info,
+                                                             @NotNull BuildRevision revision) throws PublisherException {
     // Check whether pull requests status publishing enabled
     String commitId = revision.getRevision();
     final String publishPullRequest = StringUtil.emptyIfNull(myParams.get(TfsConstants.PUBLISH_PULL_REQUESTS)).trim();
     if (!Boolean.parseBoolean(publishPullRequest)) {
-      return commitId;
+      return null;
     }
 
     // Get branch and try to find pull request id
     final String branch = revision.getRepositoryVersion().getVcsBranch();
     if (StringUtil.isEmptyOrSpaces(branch)) {
       LOG.debug(String.format("Branch was not specified for commit %s, pull request status would not be published", commitId));
-      return commitId;
+      return null;
     }
 
     final Matcher matcher = TFS_GIT_PULL_REQUEST_PATTERN.matcher(branch);
     if (!matcher.find()) {
       LOG.debug(String.format("Branch %s for commit %s does not contain info about pull request, status would not be published", branch, commitId));
-      return commitId;
+      return null;
     }
 
     final String pullRequestId = matcher.group(1);
@@ -524,18 +585,24 @@ class TfsStatusPublisher extends HttpBasedCommitStatusPublisher<TfsStatusPublish
       pullRequestStatusUrl = MessageFormat.format(PULL_REQUEST_ITERATION_STATUS_URL_FORMAT,
                                                   info.getServer(), info.getProject(), info.getRepository(), pullRequestId, iteration.id);
     }
+    return new PullRequestStatusTarget(pullRequestId, pullRequestStatusUrl, commitId);
+  }
 
+  private void publishPullRequestStatus(@NotNull TfsRepositoryInfo info,
+                                        @NotNull PullRequestStatusTarget pullRequest,
+                                        @NotNull VcsRoot root,
+                                        @NotNull String data,
+                                        @NotNull String description) throws PublisherException {
     try {
-      postJson(pullRequestStatusUrl, getCredentials(revision.getRoot(), myParams),
+      postJson(pullRequest.myStatusUrl, getCredentials(root, myParams),
                data,
                Collections.singletonMap("Accept", "application/json"),
                description
       );
     } catch (PublisherException e) {
-      final String message = String.format("Failed to publish status to pull request %s in repository %s", pullRequestId, info);
+      final String message = String.format("Failed to publish status to pull request %s in repository %s", pullRequest.myPullRequestId, info);
       throw new PublisherException(message, e);
     }
-    return commitId;
   }
 
   private void updateBuildStatus(@NotNull SBuild build, @NotNull BuildRevision revision, boolean isStarting) throws PublisherException {
@@ -546,10 +613,78 @@ class TfsStatusPublisher extends HttpBasedCommitStatusPublisher<TfsStatusPublish
     final CommitStatus status = getCommitStatus(build, isStarting);
     final String description = LogUtil.describe(build);
     final String data = myGson.toJson(status);
-    final String commitId = publishPullRequestStatus(info, revision, data, description);
-    boolean published = publishCommitStatus(info, data, commitId, description, revision.getRoot());
-    if (published) {
-      myStatusesCache.removeStatusFromCache(revision, status.context.name);
+    publishStatuses(info, revision, data, description, status.context.name);
+  }
+
+  /**
+   * Publishes the status to the commit and, for pull request builds, to the pull request iteration.
+   * The two requests do not depend on each other, so the pull request status is posted in parallel with the commit one.
+   * Both requests are always completed, and the publishing fails if any of them fails.
+   */
+  private void publishStatuses(@NotNull TfsRepositoryInfo info,
+                               @NotNull BuildRevision revision,
+                               @NotNull String data,
+                               @NotNull String description,
+                               @NotNull String statusContext) throws PublisherException {
+    final PullRequestStatusTarget pullRequest = getPullRequestStatusTarget(info, revision);
+    if (pullRequest == null) {
+      publishCommitStatus(info, data, revision.getRevision(), description, revision.getRoot());
+      myStatusesCache.removeStatusFromCache(revision, statusContext);
+      return;
+    }
+
+    if (myExecutorServices == null || !TeamCityProperties.getBooleanOrTrue(CONCURRENT_PULL_REQUEST_STATUS_PARAMETER)) {
+      publishPullRequestStatus(info, pullRequest, revision.getRoot(), data, description);
+      publishCommitStatus(info, data, pullRequest.myCommitId, description, revision.getRoot());
+      myStatusesCache.removeStatusFromCache(revision, statusContext);
+      return;
+    }
+
+    final Future<?> pullRequestStatus = myExecutorServices.getNormalExecutorService().submit(PublishingContext.bind(() -> {
+      publishPullRequestStatus(info, pullRequest, revision.getRoot(), data, description);
+      return null;
+    }));
+    PublisherException commitStatusError = null;
+    try {
+      publishCommitStatus(info, data, pullRequest.myCommitId, description, revision.getRoot());
+      myStatusesCache.removeStatusFromCache(revision, statusContext);
+    } catch (PublisherException e) {
+      commitStatusError = e;
+    }
+    final PublisherException pullRequestStatusError = waitForPullRequestStatus(pullRequestStatus, pullRequest, info);
+
+    if (commitStatusError != null && pullRequestStatusError != null) {
+      final PublisherException e = new PublisherException(String.format("Failed to publish status to commit %s and to pull request %s in repository %s",
+                                                                        pullRequest.myCommitId, pullRequest.myPullRequestId, info), commitStatusError);
+      e.addSuppressed(pullRequestStatusError);
+      if (pullRequestStatusError.shouldRetry()) {
+        e.setShouldRetry();
+      }
+      throw e;
+    }
+    if (commitStatusError != null) throw commitStatusError;
+    if (pullRequestStatusError != null) throw pullRequestStatusError;
+  }
+
+  @Nullable
+  private PublisherException waitForPullRequestStatus(@NotNull Future<?> pullRequestStatus,
+                                                      @NotNull PullRequestStatusTarget pullRequest,
+                                                      @NotNull TfsRepositoryInfo info) {
+    try {
+      pullRequestStatus.get(getDeadline().getRemainingMs(), TimeUnit.MILLISECONDS);
+      return null;
+    } catch (ExecutionException e) {
+      final Throwable cause = e.getCause();
+      if (cause instanceof PublisherException) return (PublisherException)cause;
+      return new PublisherException(String.format("Failed to publish status to pull request %s in repository %s: %s", pullRequest.myPullRequestId, info, cause), cause);
+    } catch (TimeoutException e) {
+      // the thread of the shared executor is not interrupted, the request is bounded by the publishing deadline
+      pullRequestStatus.cancel(false);
+      return new PublisherException(String.format("Timed out publishing status to pull request %s in repository %s", pullRequest.myPullRequestId, info)).setShouldRetry();
+    } catch (InterruptedException e) {
+      pullRequestStatus.cancel(false);
+      Thread.currentThread().interrupt();
+      return new PublisherException(String.format("Interrupted while publishing status to pull request %s in repository %s", pullRequest.myPullRequestId, info), e);
     }
   }
 
@@ -704,4 +839,19 @@ class TfsStatusPublisher extends HttpBasedCommitStatusPublisher<TfsStatusPublish
   static class IterationCommit {
     String commitId;
   }
+
+  private static class PullRequestStatusTarget {
+    private final String myPullRequestId;
+    private final String myStatusUrl;
+    /**
+     * Commit to publish the status to along with the pull request, it is the source commit of the pull request iteration if it is known
+     */
+    private final String myCommitId;
+
+    PullRequestStatusTarget(@NotNull String pullRequestId, @NotNull String statusUrl, @NotNull String commitId) {
+      myPullRequestId = pullRequestId;
+      myStatusUrl = statusUrl;
+      myCommitId = commitId;
+    }
+  }
 }
\ No newline at end of file
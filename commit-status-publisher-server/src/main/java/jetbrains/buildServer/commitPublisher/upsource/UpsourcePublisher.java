@@ -46,8 +46,9 @@ class UpsourcePublisher extends HttpBasedCommitStatusPublisher<UpsourceStatus> {
                     @NotNull SBuildType buildType, @NotNull String buildFeatureId,
                     @NotNull VcsModificationHistory vcsHistory,
                     @NotNull WebLinks links, @NotNull Map<String, String> params,
-                    @NotNull CommitStatusPublisherProblems problems) {
-    super(settings, buildType, buildFeatureId, params, problems, links);
+                    @NotNull CommitStatusPublisherProblems problems,
+                    @NotNull HostConcurrencyLimiter concurrencyLimiter) {
+    super(settings, buildType, buildFeatureId, params, problems, links, concurrencyLimiter);
     myVcsHistory = vcsHistory;
   }
 
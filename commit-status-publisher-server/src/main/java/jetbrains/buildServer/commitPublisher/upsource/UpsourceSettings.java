@@ -56,6 +56,7 @@ public class UpsourceSettings extends BasePublisherSettings implements CommitSta
 
 
   private final VcsModificationHistory myVcsHistory;
+  private final HostConcurrencyLimiter myConcurrencyLimiter;
   private static final Set<Event> mySupportedEvents = new HashSet<Event>() {{
     add(Event.STARTED);
     add(Event.FINISHED);
@@ -68,9 +69,11 @@ public class UpsourceSettings extends BasePublisherSettings implements CommitSta
                           @NotNull PluginDescriptor descriptor,
                           @NotNull WebLinks links,
                           @NotNull CommitStatusPublisherProblems problems,
-                          @NotNull SSLTrustStoreProvider trustStoreProvider) {
+                          @NotNull SSLTrustStoreProvider trustStoreProvider,
+                          @NotNull HostConcurrencyLimiter concurrencyLimiter) {
     super(descriptor, links, problems, trustStoreProvider);
     myVcsHistory = vcsHistory;
+    myConcurrencyLimiter = concurrencyLimiter;
   }
 
   @NotNull
@@ -90,7 +93,7 @@ public class UpsourceSettings extends BasePublisherSettings implements CommitSta
 
   @Nullable
   public CommitStatusPublisher createPublisher(@NotNull SBuildType buildType, @NotNull String buildFeatureId, @NotNull Map<String, String> params) {
-    return new UpsourcePublisher(this, buildType, buildFeatureId, myVcsHistory, myLinks, params, myProblems);
+    return new UpsourcePublisher(this, buildType, buildFeatureId, myVcsHistory, myLinks, params, myProblems, myConcurrencyLimiter);
   }
 
   @NotNull
@@ -20,6 +20,7 @@ import com.github.benmanes.caffeine.cache.Cache;
 import com.github.benmanes.caffeine.cache.Caffeine;
 import com.google.common.annotations.VisibleForTesting;
 import java.util.*;
+import jetbrains.buildServer.commitPublisher.CachingSSLTrustStoreProvider;
 import jetbrains.buildServer.commitPublisher.CommitStatusPublisherFeature;
 import jetbrains.buildServer.serverSide.*;
 import jetbrains.buildServer.swarm.commitPublisher.SwarmPublisherSettings;
@@ -51,7 +52,7 @@ public class SwarmClientManager {
 
   public SwarmClientManager(@NotNull RelativeWebLinks webLinks, @NotNull SSLTrustStoreProvider trustStoreProvider, @NotNull ResetCacheRegister cacheReset) {
     myWebLinks = webLinks;
-    myTrustStoreProvider = trustStoreProvider;
+    myTrustStoreProvider = CachingSSLTrustStoreProvider.cached(trustStoreProvider);
     cacheReset.registerHandler(new SwarmResetCacheHandler());
   }
 
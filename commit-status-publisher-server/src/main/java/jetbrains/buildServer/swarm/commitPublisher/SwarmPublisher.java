@@ -52,8 +52,9 @@ class SwarmPublisher extends HttpBasedCommitStatusPublisher<String> {
                         @NotNull CommitStatusPublisherProblems problems,
                         @NotNull WebLinks links,
                         @NotNull SwarmClient swarmClient,
-                        @NotNull Set<Event> commentOnEvents) {
-    super(swarmPublisherSettings, buildType, buildFeatureId, params, problems, links);
+                        @NotNull Set<Event> commentOnEvents,
+                        @NotNull HostConcurrencyLimiter concurrencyLimiter) {
+    super(swarmPublisherSettings, buildType, buildFeatureId, params, problems, links, concurrencyLimiter);
     myShouldCreateTestRuns = StringUtil.isTrue(params.get(SwarmPublisherSettings.PARAM_CREATE_SWARM_TEST));
 
     mySwarmClient = swarmClient;
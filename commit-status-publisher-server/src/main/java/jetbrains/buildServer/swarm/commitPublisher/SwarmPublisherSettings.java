@@ -22,6 +22,7 @@ import java.util.*;
 import jetbrains.buildServer.commitPublisher.BasePublisherSettings;
 import jetbrains.buildServer.commitPublisher.CommitStatusPublisher;
 import jetbrains.buildServer.commitPublisher.CommitStatusPublisherProblems;
+import jetbrains.buildServer.commitPublisher.HostConcurrencyLimiter;
 import jetbrains.buildServer.commitPublisher.PublisherException;
 import jetbrains.buildServer.serverSide.*;
 import jetbrains.buildServer.serverSide.impl.LogUtil;
@@ -62,14 +63,17 @@ public class SwarmPublisherSettings extends BasePublisherSettings {
   }};
 
   private final SwarmClientManager myClientManager;
+  private final HostConcurrencyLimiter myConcurrencyLimiter;
 
   public SwarmPublisherSettings(@NotNull PluginDescriptor descriptor,
                                 @NotNull WebLinks links,
                                 @NotNull CommitStatusPublisherProblems problems,
                                 @NotNull SSLTrustStoreProvider trustStoreProvider,
-                                @NotNull SwarmClientManager clientManager) {
+                                @NotNull SwarmClientManager clientManager,
+                                @NotNull HostConcurrencyLimiter concurrencyLimiter) {
     super(descriptor, links, problems, trustStoreProvider);
     myClientManager = clientManager;
+    myConcurrencyLimiter = concurrencyLimiter;
   }
 
   @NotNull
@@ -101,7 +105,7 @@ public class SwarmPublisherSettings extends BasePublisherSettings {
                                                @NotNull String buildFeatureId,
                                                @NotNull Map<String, String> params) {
     final Set<CommitStatusPublisher.Event> commentOnEvents = commentOnEvents(buildType, params);
-    return new SwarmPublisher(this, buildType, buildFeatureId, params, myProblems, myLinks, myClientManager.getSwarmClient(params), commentOnEvents);
+    return new SwarmPublisher(this, buildType, buildFeatureId, params, myProblems, myLinks, myClientManager.getSwarmClient(params), commentOnEvents, myConcurrencyLimiter);
   }
 
   @NotNull
@@ -0,0 +1,33 @@
+<%--
+  ~ Copyright 2000-2024 JetBrains s.r.o.
+  ~
+  ~ Licensed under the Apache License, Version 2.0 (the "License");
+  ~ you may not use this file except in compliance with the License.
+  ~ You may obtain a copy of the License at
+  ~
+  ~ http://www.apache.org/licenses/LICENSE-2.0
+  ~
+  ~ Unless required by applicable law or agreed to in writing, software
+  ~ distributed under the License is distributed on an "AS IS" BASIS,
+  ~ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  ~ See the License for the specific language governing permissions and
+  ~ limitations under the License.
+  --%>
+
+<%@include file="/include-internal.jsp"%>
+<%@ taglib prefix="c" uri="http://java.sun.com/jsp/jstl/core" %>
+<%@ taglib prefix="fmt" uri="http://java.sun.com/jsp/jstl/fmt" %>
+
+
+<div>
+    GitHub API rate limit budget (<c:out value="${resource}"/>) of the credentials <c:out value="${credentialsId}"/>&hellip; used for
+    <strong><c:out value="${serverUrl}"/></strong> has <c:out value="${remaining}"/> of <c:out value="${limit}"/> requests left
+    until <fmt:formatDate value="${resetTime}" type="both" dateStyle="short" timeStyle="short"/>.
+    <c:if test="${not empty exhaustionTime}">
+        At the current rate of about <c:out value="${consumptionPerHour}"/> requests per hour it will run out at
+        <fmt:formatDate value="${exhaustionTime}" type="both" dateStyle="short" timeStyle="short"/>.
+    </c:if>
+    <c:if test="${queuedStatusesSkipped}">
+        Queued build statuses are not published while the budget is forecast to run out before it is reset.
+    </c:if>
+</div>
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2000-2024 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jetbrains.buildServer.commitPublisher;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+import jetbrains.buildServer.BaseTestCase;
+import jetbrains.buildServer.serverSide.BuildStatistics;
+import jetbrains.buildServer.serverSide.BuildStatisticsOptions;
+import jetbrains.buildServer.serverSide.SBuild;
+import org.mockito.Mockito;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import static org.assertj.core.api.BDDAssertions.then;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@Test
+public class BuildEventPayloadTest extends BaseTestCase {
+  private SBuild myBuild;
+  private BuildStatistics myStatistics;
+
+  @Override
+  @BeforeMethod
+  public void setUp() throws Exception {
+    super.setUp();
+    myBuild = build(1L);
+    myStatistics = Mockito.mock(BuildStatistics.class);
+    when(myBuild.getBuildStatistics(any(BuildStatisticsOptions.class))).thenReturn(myStatistics);
+    when(myBuild.getDuration()).thenReturn(42L);
+  }
+
+  public void should_compute_data_lazily_once_per_event() {
+    runEvent(myBuild, () -> {
+      verify(myBuild, never()).getBuildStatistics(any(BuildStatisticsOptions.class));
+
+      then(BuildEventPayload.of(myBuild).getStatistics()).isSameAs(myStatistics);
+      then(BuildEventPayload.of(myBuild).getStatistics()).isSameAs(myStatistics);
+      then(BuildEventPayload.of(myBuild).getDurationMs()).isEqualTo(42_000L);
+      then(BuildEventPayload.of(myBuild).getDurationMs()).isEqualTo(42_000L);
+    });
+    verify(myBuild, times(1)).getBuildStatistics(any(BuildStatisticsOptions.class));
+    verify(myBuild, times(1)).getDuration();
+  }
+
+  public void should_not_share_data_outside_of_event() {
+    final AtomicReference<BuildEventPayload> eventPayload = new AtomicReference<>();
+    runEvent(myBuild, () -> {
+      eventPayload.set(BuildEventPayload.of(myBuild));
+      then(BuildEventPayload.of(build(2L))).isNotSameAs(eventPayload.get());
+    });
+    then(BuildEventPayload.of(myBuild)).isNotSameAs(eventPayload.get());
+    then(BuildEventPayload.of(myBuild)).isNotSameAs(BuildEventPayload.of(myBuild));
+  }
+
+  public void should_compute_build_name_per_provider() {
+    final StatusPublisherBuildNameProvider provider1 = Mockito.mock(StatusPublisherBuildNameProvider.class);
+    final StatusPublisherBuildNameProvider provider2 = Mockito.mock(StatusPublisherBuildNameProvider.class);
+    when(provider1.getBuildName(any())).thenReturn("name1");
+    when(provider2.getBuildName(any())).thenReturn("name2");
+    runEvent(myBuild, () -> {
+      then(BuildEventPayload.of(myBuild).getBuildName(provider1)).isEqualTo("name1");
+      then(BuildEventPayload.of(myBuild).getBuildName(provider2)).isEqualTo("name2");
+      then(BuildEventPayload.of(myBuild).getBuildName(provider1)).isEqualTo("name1");
+    });
+    verify(provider1, times(1)).getBuildName(any());
+    verify(provider2, times(1)).getBuildName(any());
+  }
+
+  public void should_share_data_with_tasks_run_on_behalf_of_event() throws Exception {
+    final ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      runEvent(myBuild, () -> {
+        try {
+          final BuildEventPayload payload = BuildEventPayload.of(myBuild);
+          then(executor.submit(PublishingContext.bind(() -> BuildEventPayload.of(myBuild))).get()).isSameAs(payload);
+          then(executor.submit(() -> BuildEventPayload.of(myBuild)).get()).isNotSameAs(payload);
+        } catch (Exception e) {
+          throw new RuntimeException(e);
+        }
+      });
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private static void runEvent(SBuild build, Runnable action) {
+    PublishingContext.current().withPayload(new BuildEventPayload(build)).run(action);
+  }
+
+  private static SBuild build(long id) {
+    final SBuild build = Mockito.mock(SBuild.class);
+    when(build.getBuildId()).thenReturn(id);
+    return build;
+  }
+}
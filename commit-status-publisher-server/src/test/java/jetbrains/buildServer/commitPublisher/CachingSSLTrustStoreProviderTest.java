@@ -0,0 +1,73 @@
+/*
+ * Copyright 2000-2024 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jetbrains.buildServer.commitPublisher;
+
+import java.security.KeyStore;
+import java.util.concurrent.atomic.AtomicInteger;
+import jetbrains.buildServer.BaseTestCase;
+import jetbrains.buildServer.util.ssl.SSLTrustStoreProvider;
+import org.testng.annotations.Test;
+
+import static org.assertj.core.api.BDDAssertions.then;
+
+@Test
+public class CachingSSLTrustStoreProviderTest extends BaseTestCase {
+
+  public void should_load_trust_store_once_within_ttl() throws Exception {
+    KeyStore keyStore = KeyStore.getInstance(KeyStore.getDefaultType());
+    AtomicInteger loads = new AtomicInteger();
+    SSLTrustStoreProvider provider = CachingSSLTrustStoreProvider.cached(() -> {
+      loads.incrementAndGet();
+      return keyStore;
+    });
+
+    then(provider.getTrustStore()).isSameAs(keyStore);
+    then(provider.getTrustStore()).isSameAs(keyStore);
+    then(loads.get()).isEqualTo(1);
+    then(CachingSSLTrustStoreProvider.cached(provider)).isSameAs(provider);
+  }
+
+  public void should_share_trust_store_between_wrappers_of_same_provider() throws Exception {
+    KeyStore keyStore = KeyStore.getInstance(KeyStore.getDefaultType());
+    AtomicInteger loads = new AtomicInteger();
+    SSLTrustStoreProvider serverProvider = () -> {
+      loads.incrementAndGet();
+      return keyStore;
+    };
+
+    SSLTrustStoreProvider settingsProvider = CachingSSLTrustStoreProvider.cached(serverProvider);
+    SSLTrustStoreProvider clientProvider = CachingSSLTrustStoreProvider.cached(serverProvider);
+
+    then(clientProvider).isSameAs(settingsProvider);
+    then(settingsProvider.getTrustStore()).isSameAs(keyStore);
+    then(clientProvider.getTrustStore()).isSameAs(keyStore);
+    then(loads.get()).isEqualTo(1);
+  }
+
+  public void should_not_cache_when_ttl_is_disabled() {
+    setInternalProperty(CachingSSLTrustStoreProvider.TRUST_STORE_CACHE_TTL_PARAMETER, "0");
+    AtomicInteger loads = new AtomicInteger();
+    SSLTrustStoreProvider provider = CachingSSLTrustStoreProvider.cached(() -> {
+      loads.incrementAndGet();
+      return null;
+    });
+
+    then(provider.getTrustStore()).isNull();
+    then(provider.getTrustStore()).isNull();
+    then(loads.get()).isEqualTo(2);
+  }
+}
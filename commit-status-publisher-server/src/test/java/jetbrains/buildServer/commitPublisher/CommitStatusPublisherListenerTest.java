@@ -27,6 +27,8 @@ import jetbrains.buildServer.BuildAgent;
 import jetbrains.buildServer.QueuedBuild;
 import jetbrains.buildServer.buildTriggers.vcs.ModificationDataBuilder;
 import jetbrains.buildServer.commitPublisher.CommitStatusPublisher.Event;
+import jetbrains.buildServer.commitPublisher.metrics.CommitStatusPublisherMetrics;
+import jetbrains.buildServer.commitPublisher.metrics.PublishingTraces;
 import jetbrains.buildServer.commitPublisher.processor.DefaultFavoriteBuildProcessor;
 import jetbrains.buildServer.commitPublisher.processor.FavoriteBuildProcessor;
 import jetbrains.buildServer.commitPublisher.processor.strategy.BuildOwnerSupplier;
@@ -101,7 +103,8 @@ public class CommitStatusPublisherListenerTest extends CommitStatusPublisherTest
     myListener = new CommitStatusPublisherListener(myFixture.getEventDispatcher(), new PublisherManager(myServer), myFixture.getHistory(), myBuildsManager, myFixture.getBuildPromotionManager(), myProblems,
                                                    myFixture.getServerResponsibility(), myFixture.getSingletonService(ExecutorServices.class),
                                                    myFixture.getSingletonService(ProjectManager.class), myFixture.getSingletonService(TeamCityNodes.class),
-                                                   myFixture.getSingletonService(UserModel.class), myMultiNodeTasks, myFavoriteBuildProcessor, myBuildOwnerSupplier);
+                                                   myFixture.getSingletonService(UserModel.class), myMultiNodeTasks, myFavoriteBuildProcessor, myBuildOwnerSupplier,
+                                                   new CommitStatusPublisherMetrics(), new PublishingTraces());
     myListener.setEventProcessedCallback(myEventProcessedCallback);
     myPublisher = new MockPublisher(myPublisherSettings, MockPublisherSettings.PUBLISHER_ID, myBuildType, myFeatureDescriptor.getId(),
                                     Collections.emptyMap(), myProblems, myLogger, myWebLinks);
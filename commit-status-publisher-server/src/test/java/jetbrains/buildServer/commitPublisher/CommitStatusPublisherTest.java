@@ -25,6 +25,8 @@ import java.util.regex.Pattern;
 import jetbrains.buildServer.BuildAgent;
 import jetbrains.buildServer.BuildProblemData;
 import jetbrains.buildServer.commitPublisher.CommitStatusPublisher.Event;
+import jetbrains.buildServer.commitPublisher.metrics.CommitStatusPublisherMetrics;
+import jetbrains.buildServer.commitPublisher.metrics.PublishingTraces;
 import jetbrains.buildServer.commitPublisher.processor.FavoriteBuildProcessor;
 import jetbrains.buildServer.commitPublisher.processor.strategy.BuildOwnerSupplier;
 import jetbrains.buildServer.messages.ErrorData;
@@ -83,6 +85,7 @@ public abstract class CommitStatusPublisherTest extends BaseServerTestCase {
   protected OAuthConnectionsManager myOAuthConnectionsManager;
   protected OAuthTokensStorage myOAuthTokenStorage;
   protected SSLTrustStoreProvider myTrustStoreProvider;
+  protected HostConcurrencyLimiter myConcurrencyLimiter;
 
   protected enum EventToTest {
     QUEUED(Event.QUEUED), REMOVED(Event.REMOVED_FROM_QUEUE),
@@ -124,6 +127,7 @@ public abstract class CommitStatusPublisherTest extends BaseServerTestCase {
         return null;
       }
     };
+    myConcurrencyLimiter = new HostConcurrencyLimiter(new CommitStatusPublisherMetrics());
     setInternalProperty(BuildSettingsOptionsImpl.FREEZE_CURRENT_SETTINGS, true);
     StartBuildPrecondition startBuildPrecondition = new StartBuildPrecondition() {
 
@@ -297,7 +301,8 @@ public abstract class CommitStatusPublisherTest extends BaseServerTestCase {
                                                                                myFixture.getServerResponsibility(), myFixture.getSingletonService(ExecutorServices.class),
                                                                                myFixture.getSingletonService(ProjectManager.class), myFixture.getSingletonService(TeamCityNodes.class),
                                                                                myFixture.getSingletonService(UserModel.class), myFixture.getMultiNodeTasks(),
-                                                                               Mockito.mock(FavoriteBuildProcessor.class), Mockito.mock(BuildOwnerSupplier.class));
+                                                                               Mockito.mock(FavoriteBuildProcessor.class), Mockito.mock(BuildOwnerSupplier.class),
+                                                                               new CommitStatusPublisherMetrics(), new PublishingTraces());
 
     VcsRootInstance vcsRootInstance = myBuildType.getVcsRootInstances().stream().filter(root -> root.getParent().getId() == myVcsRoot.getId()).findFirst().get();
     setUpFeature();
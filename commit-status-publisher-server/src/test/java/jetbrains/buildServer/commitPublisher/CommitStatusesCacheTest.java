@@ -21,6 +21,7 @@ import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Function;
 import java.util.function.Supplier;
 import jetbrains.buildServer.BaseTestCase;
+import jetbrains.buildServer.commitPublisher.metrics.CommitStatusPublisherMetrics;
 import jetbrains.buildServer.serverSide.BuildRevision;
 import jetbrains.buildServer.vcs.VcsRootInstance;
 import org.jetbrains.annotations.NotNull;
@@ -48,7 +49,7 @@ public class CommitStatusesCacheTest extends BaseTestCase {
   public void setUp() throws Exception {
     super.setUp();
     if (myRevision == null) myRevision = mockBuildRevision();
-    myStatusesCache = new CommitStatusesCache<>();
+    myStatusesCache = new CommitStatusesCache<>(new CommitStatusPublisherMetrics());
     myBatchLoaderCallsCounter = new AtomicInteger(0);
   }
 
@@ -93,6 +94,23 @@ public class CommitStatusesCacheTest extends BaseTestCase {
     Assert.assertEquals(myBatchLoaderCallsCounter.get(), 1, "Missing unknown value should be taken from cahce without reloading");
   }
 
+  public void should_not_treat_missing_filtered_status_as_missing_for_all() {
+    Supplier<Collection<TestStatus>> batchStatusLoader = getBatchStatusLoader();
+    TestStatus statusFromCache = myStatusesCache.getStatusFromCache(myRevision, DEFAULT_PREFIX, batchStatusLoader, PREFIX_PROVIDER, true);
+    Assert.assertNull(statusFromCache);
+    Assert.assertEquals(myBatchLoaderCallsCounter.get(), 1);
+
+    statusFromCache = myStatusesCache.getStatusFromCache(myRevision, DEFAULT_PREFIX, batchStatusLoader, PREFIX_PROVIDER, true);
+    Assert.assertNull(statusFromCache);
+    Assert.assertEquals(myBatchLoaderCallsCounter.get(), 1, "Missing already requested value should be taken from cahce without reloading");
+
+    TestStatus anotherStatus = new TestStatus(DEFAULT_PREFIX + 2, "2");
+    batchStatusLoader = getBatchStatusLoader(anotherStatus);
+    statusFromCache = myStatusesCache.getStatusFromCache(myRevision, DEFAULT_PREFIX + 2, batchStatusLoader, PREFIX_PROVIDER, true);
+    Assert.assertEquals(myBatchLoaderCallsCounter.get(), 2, "Status with another prefix should be loaded");
+    Assert.assertEquals(statusFromCache, anotherStatus);
+  }
+
   public void should_expire_entries() throws Exception {
     forceCacheCleanupToHappen();
     Supplier<Collection<TestStatus>> batchStatusLoader = getBatchStatusLoader(DEFAULT_STATUS);
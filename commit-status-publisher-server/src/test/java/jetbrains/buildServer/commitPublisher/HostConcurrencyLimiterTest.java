@@ -0,0 +1,168 @@
+/*
+ * Copyright 2000-2024 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jetbrains.buildServer.commitPublisher;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.List;
+import jetbrains.buildServer.BaseTestCase;
+import jetbrains.buildServer.commitPublisher.metrics.CommitStatusPublisherMetrics;
+import jetbrains.buildServer.util.http.HttpMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import static org.assertj.core.api.BDDAssertions.then;
+
+@Test
+public class HostConcurrencyLimiterTest extends BaseTestCase {
+  private static final String URL = "https://github.example.com:8443/api/v3/repos/owner/project/statuses/abc";
+  private static final String HOST = "github.example.com:8443";
+
+  private CommitStatusPublisherMetrics myMetrics;
+  private HostConcurrencyLimiter myLimiter;
+
+  @Override
+  @BeforeMethod
+  public void setUp() throws Exception {
+    super.setUp();
+    setInternalProperty(HostConcurrencyLimiter.INITIAL_LIMIT_PARAMETER, "4");
+    setInternalProperty(HostConcurrencyLimiter.MAX_LIMIT_PARAMETER, "6");
+    myMetrics = new CommitStatusPublisherMetrics();
+    myLimiter = new HostConcurrencyLimiter(myMetrics);
+  }
+
+  public void should_reject_requests_above_limit() throws PublisherException {
+    List<HostConcurrencyLimiter.Permit> permits = new ArrayList<>();
+    for (int i = 0; i < 4; i++) {
+      permits.add(myLimiter.acquire(URL, HttpMethod.POST, PublishingDeadline.unlimited()));
+    }
+    then(myLimiter.getInFlight()).containsEntry(HOST, 4);
+
+    try {
+      myLimiter.acquire(URL, HttpMethod.POST, PublishingDeadline.after(50));
+      fail("Request above the limit should not be allowed");
+    } catch (PublisherException e) {
+      then(e.shouldRetry()).isTrue();
+    }
+
+    permits.forEach(permit -> permit.release(null));
+    then(myLimiter.getInFlight()).containsEntry(HOST, 0);
+  }
+
+  public void should_back_off_on_overload() throws PublisherException {
+    myLimiter.acquire(URL, HttpMethod.POST, PublishingDeadline.unlimited()).release(new HttpPublisherException(503, "Service Unavailable"));
+    then(myLimiter.getLimits()).containsEntry(HOST, 2);
+
+    myLimiter.acquire(URL, HttpMethod.POST, PublishingDeadline.unlimited()).release(new HttpPublisherException(503, "Service Unavailable"));
+    myLimiter.acquire(URL, HttpMethod.POST, PublishingDeadline.unlimited()).release(new HttpPublisherException(503, "Service Unavailable"));
+    then(myLimiter.getLimits()).containsEntry(HOST, 1);
+  }
+
+  public void should_grow_when_limit_is_used_and_host_is_healthy() throws PublisherException {
+    for (int round = 0; round < 20; round++) {
+      List<HostConcurrencyLimiter.Permit> permits = new ArrayList<>();
+      int limit = myLimiter.getLimits().getOrDefault(HOST, 4);
+      for (int i = 0; i < limit; i++) {
+        permits.add(myLimiter.acquire(URL, HttpMethod.POST, PublishingDeadline.unlimited()));
+      }
+      permits.forEach(permit -> permit.release(null));
+    }
+    then(myLimiter.getLimits()).containsEntry(HOST, 6);
+  }
+
+  public void should_not_measure_not_modified_responses() throws Exception {
+    HostConcurrencyLimiter.Permit notModified = myLimiter.acquire(URL, HttpMethod.GET, PublishingDeadline.unlimited());
+    notModified.responseReceived(304);
+    notModified.release(null);
+    then(myLimiter.getInFlight()).containsEntry(HOST, 0);
+
+    HostConcurrencyLimiter.Permit full = myLimiter.acquire(URL, HttpMethod.GET, PublishingDeadline.unlimited());
+    Thread.sleep(300);
+    full.responseReceived(200);
+    full.release(null);
+    then(myLimiter.getLimits()).containsEntry(HOST, 4);
+  }
+
+  public void should_compare_latency_with_requests_of_same_method() {
+    HostConcurrencyLimiter.HostLimit hostLimit = new HostConcurrencyLimiter.HostLimit();
+    // fast conditional reads do not make regular status updates look slow
+    for (int i = 0; i < 10; i++) {
+      then(hostLimit.tryAcquire(0)).isTrue();
+      hostLimit.release(HttpMethod.GET, 5, false);
+    }
+    for (int i = 0; i < 10; i++) {
+      then(hostLimit.tryAcquire(0)).isTrue();
+      hostLimit.release(HttpMethod.POST, 400, false);
+    }
+    then(hostLimit.getLimit()).isEqualTo(4);
+
+    then(hostLimit.tryAcquire(0)).isTrue();
+    hostLimit.release(HttpMethod.POST, 2_000, false);
+    then(hostLimit.getLimit()).isEqualTo(3);
+  }
+
+  public void should_not_throttle_by_default() throws PublisherException {
+    System.clearProperty(HostConcurrencyLimiter.INITIAL_LIMIT_PARAMETER);
+    System.clearProperty(HostConcurrencyLimiter.MAX_LIMIT_PARAMETER);
+    HostConcurrencyLimiter limiter = new HostConcurrencyLimiter(new CommitStatusPublisherMetrics());
+    for (int i = 0; i < 32; i++) {
+      limiter.acquire(URL, HttpMethod.POST, PublishingDeadline.after(50));
+    }
+    then(limiter.getInFlight()).containsEntry(HOST, 32);
+  }
+
+  public void should_not_limit_when_disabled() throws PublisherException {
+    setInternalProperty(HostConcurrencyLimiter.ENABLED_PARAMETER, "false");
+    for (int i = 0; i < 10; i++) {
+      myLimiter.acquire(URL, HttpMethod.POST, PublishingDeadline.unlimited());
+    }
+    then(myLimiter.getLimits()).isEmpty();
+  }
+
+  public void should_count_responses_when_disabled() throws PublisherException {
+    setInternalProperty(HostConcurrencyLimiter.ENABLED_PARAMETER, "false");
+    HostConcurrencyLimiter.Permit permit = myLimiter.acquire(URL, HttpMethod.POST, PublishingDeadline.unlimited());
+    permit.responseReceived(201);
+    permit.release(null);
+
+    then(myMetrics.render()).contains("commit_status_publisher_http_responses_total{code=\"201\"} 1\n");
+  }
+
+  public void should_treat_only_host_failures_as_overload() {
+    final PublishingDeadline deadline = PublishingDeadline.unlimited();
+    then(HostConcurrencyLimiter.isOverloadSignal(-1, null, deadline)).isFalse();
+    then(HostConcurrencyLimiter.isOverloadSignal(200, null, deadline)).isFalse();
+    then(HostConcurrencyLimiter.isOverloadSignal(403, new PublisherException("forbidden"), deadline)).isFalse();
+    then(HostConcurrencyLimiter.isOverloadSignal(429, new PublisherException("throttled").setShouldRetry(), deadline)).isTrue();
+    then(HostConcurrencyLimiter.isOverloadSignal(-1, new PublisherException("failed", new HttpPublisherException(502, "Bad Gateway")), deadline)).isTrue();
+    then(HostConcurrencyLimiter.isOverloadSignal(-1, new PublisherException("failed", new HttpPublisherException(404, "Not Found")), deadline)).isFalse();
+    then(HostConcurrencyLimiter.isOverloadSignal(-1, new ConnectException("connection refused"), deadline)).isTrue();
+    then(HostConcurrencyLimiter.isOverloadSignal(-1, new SocketTimeoutException("read timed out"), deadline)).isTrue();
+    then(HostConcurrencyLimiter.isOverloadSignal(-1, new IOException("connection reset"), deadline)).isFalse();
+  }
+
+  public void should_not_treat_own_failures_as_overload() throws Exception {
+    then(HostConcurrencyLimiter.isOverloadSignal(-1, new PublisherException("deadline reached").setShouldRetry(), PublishingDeadline.unlimited())).isFalse();
+
+    // the timeout has been shortened to fit the deadline
+    final PublishingDeadline deadline = PublishingDeadline.after(1);
+    waitFor(deadline::isExpired, 1000);
+    then(HostConcurrencyLimiter.isOverloadSignal(-1, new SocketTimeoutException("read timed out"), deadline)).isFalse();
+  }
+}
@@ -237,7 +237,8 @@ public abstract class HttpPublisherTest extends CommitStatusPublisherTest {
   @Override
   protected void setUp() throws Exception {
 
-    myRequests = new ArrayList<>();
+    // requests may be sent concurrently by a publisher
+    myRequests = Collections.synchronizedList(new ArrayList<>());
     myLastAgent = null;
     myDoNotRespond = false;
     myResponseStatusCode = 0;
@@ -0,0 +1,76 @@
+/*
+ * Copyright 2000-2024 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jetbrains.buildServer.commitPublisher;
+
+import jetbrains.buildServer.BaseTestCase;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import static org.assertj.core.api.BDDAssertions.then;
+
+@Test
+public class HttpValidatorCacheTest extends BaseTestCase {
+  private static final String URL = "http://localhost/repos/owner/project/pulls/1";
+
+  private HttpValidatorCache myCache;
+  private String myFingerprint;
+
+  @Override
+  @BeforeMethod
+  public void setUp() throws Exception {
+    super.setUp();
+    myCache = new HttpValidatorCache();
+    myFingerprint = HttpValidatorCache.fingerprint("user", "secret");
+  }
+
+  public void should_return_cached_validator_and_body() {
+    myCache.put(URL, myFingerprint, "\"etag1\"", "body");
+
+    HttpValidatorCache.CachedResponse<String> cached = myCache.get(URL, myFingerprint, String.class);
+    then(cached).isNotNull();
+    then(cached.getETag()).isEqualTo("\"etag1\"");
+    then(cached.getBody()).isEqualTo("body");
+  }
+
+  public void should_not_share_entries_between_credentials() {
+    myCache.put(URL, myFingerprint, "\"etag1\"", "body");
+
+    then(myCache.get(URL, HttpValidatorCache.fingerprint("user", "another secret"), String.class)).isNull();
+    then(HttpValidatorCache.fingerprint("user", "secret")).doesNotContain("secret");
+  }
+
+  public void should_not_keep_responses_without_validator() {
+    myCache.put(URL, myFingerprint, "\"etag1\"", "body");
+    myCache.put(URL, myFingerprint, null, "new body");
+
+    then(myCache.get(URL, myFingerprint, String.class)).isNull();
+  }
+
+  public void should_ignore_body_of_unexpected_type() {
+    myCache.put(URL, myFingerprint, "\"etag1\"", "body");
+
+    then(myCache.get(URL, myFingerprint, Integer.class)).isNull();
+  }
+
+  public void should_not_cache_when_disabled() {
+    setInternalProperty(HttpValidatorCache.CACHE_FEATURE_TOGGLE_PARAMETER, "false");
+    myCache.put(URL, myFingerprint, "\"etag1\"", "body");
+    setInternalProperty(HttpValidatorCache.CACHE_FEATURE_TOGGLE_PARAMETER, "true");
+
+    then(myCache.get(URL, myFingerprint, String.class)).isNull();
+  }
+}
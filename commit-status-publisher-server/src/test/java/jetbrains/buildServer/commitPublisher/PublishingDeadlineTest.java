@@ -0,0 +1,87 @@
+/*
+ * Copyright 2000-2024 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jetbrains.buildServer.commitPublisher;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import jetbrains.buildServer.BaseTestCase;
+import org.testng.annotations.Test;
+
+import static org.assertj.core.api.BDDAssertions.then;
+
+@Test
+public class PublishingDeadlineTest extends BaseTestCase {
+
+  public void unlimited_deadline_keeps_timeouts() throws PublisherException {
+    PublishingDeadline deadline = PublishingDeadline.after(0);
+
+    then(deadline.isUnlimited()).isTrue();
+    then(deadline.isExpired()).isFalse();
+    then(deadline.limitTimeout(10_000, "test")).isEqualTo(10_000);
+    deadline.check("test");
+  }
+
+  public void timeout_is_limited_by_remaining_time() throws PublisherException {
+    PublishingDeadline deadline = PublishingDeadline.after(5_000);
+
+    then(deadline.isUnlimited()).isFalse();
+    then(deadline.limitTimeout(10_000, "test")).isBetween(1, 5_000);
+    then(deadline.limitTimeout(100, "test")).isEqualTo(100);
+  }
+
+  public void expired_deadline_requests_retry() throws InterruptedException {
+    PublishingDeadline deadline = PublishingDeadline.after(1);
+    Thread.sleep(10);
+
+    then(deadline.isExpired()).isTrue();
+    try {
+      deadline.check("test");
+      fail("Expired deadline should not allow further requests");
+    } catch (PublisherException e) {
+      then(e.shouldRetry()).isTrue();
+    }
+    try {
+      deadline.limitTimeout(10_000, "test");
+      fail("Expired deadline should not provide a timeout for further requests");
+    } catch (PublisherException e) {
+      then(e.shouldRetry()).isTrue();
+    }
+  }
+
+  public void deadline_is_applied_only_within_call() {
+    then(PublishingContext.current().getDeadline().isUnlimited()).isTrue();
+
+    PublishingDeadline deadline = PublishingDeadline.after(5_000);
+    PublishingDeadline applied = PublishingContext.current().withDeadline(deadline).call(() -> PublishingContext.current().getDeadline());
+
+    then(applied).isSameAs(deadline);
+    then(PublishingContext.current().getDeadline().isUnlimited()).isTrue();
+  }
+
+  public void bound_task_uses_deadline_in_another_thread() throws Exception {
+    PublishingDeadline deadline = PublishingDeadline.after(5_000);
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      Callable<PublishingDeadline> task = PublishingContext.current().withDeadline(deadline).call(() -> PublishingContext.bind(() -> PublishingContext.current().getDeadline()));
+      then(executor.submit(task).get()).isSameAs(deadline);
+      then(executor.submit(() -> PublishingContext.current().getDeadline()).get().isUnlimited()).isTrue();
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright 2000-2024 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jetbrains.buildServer.commitPublisher;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicReference;
+import jetbrains.buildServer.BaseTestCase;
+import jetbrains.buildServer.serverSide.SProject;
+import jetbrains.buildServer.serverSide.executors.ExecutorServices;
+import jetbrains.buildServer.serverSide.oauth.OAuthToken;
+import jetbrains.buildServer.serverSide.oauth.OAuthTokensStorage;
+import org.mockito.Mockito;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import static org.assertj.core.api.BDDAssertions.then;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@Test
+public class StoredTokenCacheTest extends BaseTestCase {
+  private static final String TOKEN_ID = "tc_token_id:1";
+
+  private OAuthTokensStorage myStorage;
+  private SProject myProject;
+  private StoredTokenCache myCache;
+  private List<Runnable> myBackgroundTasks;
+
+  @Override
+  @BeforeMethod
+  public void setUp() throws Exception {
+    super.setUp();
+    myStorage = Mockito.mock(OAuthTokensStorage.class);
+    myProject = Mockito.mock(SProject.class);
+    when(myProject.getProjectId()).thenReturn("project1");
+    myBackgroundTasks = new ArrayList<>();
+    final ExecutorService executor = Mockito.mock(ExecutorService.class);
+    doAnswer(invocation -> myBackgroundTasks.add(invocation.getArgument(0))).when(executor).execute(any(Runnable.class));
+    final ExecutorServices executorServices = Mockito.mock(ExecutorServices.class);
+    when(executorServices.getLowPriorityExecutorService()).thenReturn(executor);
+    myCache = new StoredTokenCache(myStorage, executorServices);
+  }
+
+  public void should_reuse_valid_token() {
+    final OAuthToken token = token("token1", 3600, System.currentTimeMillis());
+    when(myStorage.getToken(eq(myProject), eq(TOKEN_ID), anyBoolean(), anyBoolean())).thenReturn(token);
+
+    then(myCache.getToken(myProject, TOKEN_ID)).isSameAs(token);
+    then(myCache.getToken(myProject, TOKEN_ID)).isSameAs(token);
+
+    verify(myStorage, times(1)).getToken(eq(myProject), eq(TOKEN_ID), anyBoolean(), anyBoolean());
+  }
+
+  public void should_reuse_token_until_renewal_margin() {
+    final OAuthToken expiring = token("token1", 3600, System.currentTimeMillis() - 3000_000);
+    when(myStorage.getToken(eq(myProject), eq(TOKEN_ID), anyBoolean(), anyBoolean())).thenReturn(expiring);
+
+    then(myCache.getToken(myProject, TOKEN_ID)).isSameAs(expiring);
+    then(myCache.getToken(myProject, TOKEN_ID)).isSameAs(expiring);
+
+    verify(myStorage, times(1)).getToken(eq(myProject), eq(TOKEN_ID), anyBoolean(), anyBoolean());
+  }
+
+  public void should_renew_token_in_background_shortly_before_it_expires() {
+    final OAuthToken expiring = token("token1", 3600, System.currentTimeMillis() - 3300_000);
+    final OAuthToken renewed = token("token2", 3600, System.currentTimeMillis());
+    when(myStorage.getToken(eq(myProject), eq(TOKEN_ID), anyBoolean(), anyBoolean())).thenReturn(expiring, renewed);
+
+    then(myCache.getToken(myProject, TOKEN_ID)).isSameAs(expiring);
+    then(myCache.getToken(myProject, TOKEN_ID)).isSameAs(expiring);
+    then(myBackgroundTasks).hasSize(1);
+    verify(myStorage, times(1)).getToken(eq(myProject), eq(TOKEN_ID), anyBoolean(), anyBoolean());
+
+    myBackgroundTasks.get(0).run();
+
+    then(myCache.getToken(myProject, TOKEN_ID)).isSameAs(renewed);
+    verify(myStorage, times(2)).getToken(eq(myProject), eq(TOKEN_ID), anyBoolean(), anyBoolean());
+  }
+
+  public void should_keep_token_not_renewed_by_storage_until_it_expires() {
+    final OAuthToken expiring = token("token1", 3600, System.currentTimeMillis() - 3300_000);
+    when(myStorage.getToken(eq(myProject), eq(TOKEN_ID), anyBoolean(), anyBoolean())).thenReturn(expiring);
+
+    then(myCache.getToken(myProject, TOKEN_ID)).isSameAs(expiring);
+    myBackgroundTasks.get(0).run();
+    then(myCache.getToken(myProject, TOKEN_ID)).isSameAs(expiring);
+    then(myCache.getToken(myProject, TOKEN_ID)).isSameAs(expiring);
+
+    then(myBackgroundTasks).hasSize(1);
+    verify(myStorage, times(2)).getToken(eq(myProject), eq(TOKEN_ID), anyBoolean(), anyBoolean());
+  }
+
+  public void should_renew_token_by_larger_of_min_margin_and_lifetime_share() {
+    then(StoredTokenCache.getRenewalMargin(300_000)).isEqualTo(60_000);
+    then(StoredTokenCache.getRenewalMargin(3600_000)).isEqualTo(360_000);
+
+    setInternalProperty(StoredTokenCache.MIN_RENEWAL_MARGIN_PARAMETER, "0");
+    setInternalProperty(StoredTokenCache.RENEWAL_MARGIN_PERCENT_PARAMETER, "5");
+    then(StoredTokenCache.getRenewalMargin(300_000)).isEqualTo(15_000);
+  }
+
+  public void should_load_expired_token_again() {
+    final OAuthToken expired = token("token1", 60, System.currentTimeMillis() - 120_000);
+    final OAuthToken renewed = token("token2", 3600, System.currentTimeMillis());
+    when(myStorage.getToken(eq(myProject), eq(TOKEN_ID), anyBoolean(), anyBoolean())).thenReturn(expired, renewed);
+
+    then(myCache.getToken(myProject, TOKEN_ID)).isSameAs(expired);
+    then(myCache.getToken(myProject, TOKEN_ID)).isSameAs(renewed);
+    then(myCache.getToken(myProject, TOKEN_ID)).isSameAs(renewed);
+    then(myBackgroundTasks).isEmpty();
+  }
+
+  public void should_load_token_once_for_concurrent_requests() throws Exception {
+    final OAuthToken token = token("token1", 3600, System.currentTimeMillis());
+    final CountDownLatch loadStarted = new CountDownLatch(1);
+    final CountDownLatch releaseLoad = new CountDownLatch(1);
+    when(myStorage.getToken(eq(myProject), eq(TOKEN_ID), anyBoolean(), anyBoolean())).thenAnswer(invocation -> {
+      loadStarted.countDown();
+      releaseLoad.await();
+      return token;
+    });
+
+    final AtomicReference<OAuthToken> first = new AtomicReference<>();
+    final AtomicReference<OAuthToken> second = new AtomicReference<>();
+    final Thread loading = new Thread(() -> first.set(myCache.getToken(myProject, TOKEN_ID)));
+    final Thread waiting = new Thread(() -> second.set(myCache.getToken(myProject, TOKEN_ID)));
+    loading.start();
+    loadStarted.await();
+    waiting.start();
+    waitFor(() -> waiting.getState() == Thread.State.BLOCKED, 5000);
+    releaseLoad.countDown();
+    loading.join();
+    waiting.join();
+
+    then(first.get()).isSameAs(token);
+    then(second.get()).isSameAs(token);
+    verify(myStorage, times(1)).getToken(eq(myProject), eq(TOKEN_ID), anyBoolean(), anyBoolean());
+  }
+
+  public void should_not_cache_missing_token() {
+    final OAuthToken token = token("token1", 3600, System.currentTimeMillis());
+    when(myStorage.getToken(eq(myProject), eq(TOKEN_ID), anyBoolean(), anyBoolean())).thenReturn(null, token);
+
+    then(myCache.getToken(myProject, TOKEN_ID)).isNull();
+    then(myCache.getToken(myProject, TOKEN_ID)).isSameAs(token);
+  }
+
+  public void should_not_cache_when_disabled() {
+    setInternalProperty(StoredTokenCache.ENABLED_PARAMETER, "false");
+    final OAuthToken token = token("token1", 3600, System.currentTimeMillis());
+    when(myStorage.getToken(eq(myProject), eq(TOKEN_ID), anyBoolean(), anyBoolean())).thenReturn(token);
+
+    myCache.getToken(myProject, TOKEN_ID);
+    myCache.getToken(myProject, TOKEN_ID);
+
+    verify(myStorage, times(2)).getToken(eq(myProject), eq(TOKEN_ID), anyBoolean(), anyBoolean());
+  }
+
+  private static OAuthToken token(String value, long expiresInSec, long createDate) {
+    return new OAuthToken(value, "repo", "login", expiresInSec, -1, createDate);
+  }
+}
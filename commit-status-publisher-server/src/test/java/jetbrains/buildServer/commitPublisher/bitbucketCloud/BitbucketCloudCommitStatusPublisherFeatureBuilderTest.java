@@ -2,7 +2,9 @@ package jetbrains.buildServer.commitPublisher.bitbucketCloud;
 
 import jetbrains.buildServer.commitPublisher.CommitStatusPublisherProblems;
 import jetbrains.buildServer.commitPublisher.CommitStatusPublisherSettings;
+import jetbrains.buildServer.commitPublisher.HostConcurrencyLimiter;
 import jetbrains.buildServer.commitPublisher.MockPluginDescriptor;
+import jetbrains.buildServer.commitPublisher.metrics.CommitStatusPublisherMetrics;
 import jetbrains.buildServer.serverSide.impl.BaseServerTestCase;
 import jetbrains.buildServer.serverSide.oauth.OAuthConnectionsManager;
 import jetbrains.buildServer.serverSide.oauth.OAuthTokensStorage;
@@ -37,7 +39,9 @@ public class BitbucketCloudCommitStatusPublisherFeatureBuilderTest extends BaseS
        getUserModelEx(),
        myFixture.getSecurityContext(),
        myFixture.getProjectManager(),
-       new BitbucketCloudBuildNameProvider()
+       new BitbucketCloudBuildNameProvider(),
+       new HostConcurrencyLimiter(new CommitStatusPublisherMetrics()),
+       new CommitStatusPublisherMetrics()
     );
     myBitbucketCloudFeatureBuilder = new BitbucketCloudCommitStatusPublisherFeatureBuilder(settings);
   }
@@ -25,11 +25,13 @@ import jetbrains.buildServer.commitPublisher.*;
 import jetbrains.buildServer.commitPublisher.bitbucketCloud.data.BitbucketCloudBuildStatuses;
 import jetbrains.buildServer.commitPublisher.bitbucketCloud.data.BitbucketCloudCommitBuildStatus;
 import jetbrains.buildServer.commitPublisher.bitbucketCloud.data.BitbucketCloudRepoInfo;
+import jetbrains.buildServer.commitPublisher.metrics.CommitStatusPublisherMetrics;
 import jetbrains.buildServer.messages.Status;
 import jetbrains.buildServer.pullRequests.VcsAuthType;
 import jetbrains.buildServer.serverSide.BuildPromotion;
 import jetbrains.buildServer.serverSide.BuildPromotionEx;
 import jetbrains.buildServer.serverSide.BuildRevision;
+import jetbrains.buildServer.serverSide.SFinishedBuild;
 import jetbrains.buildServer.serverSide.SimpleParameter;
 import jetbrains.buildServer.vcs.SVcsRoot;
 import jetbrains.buildServer.vcs.VcsRootInstance;
@@ -98,6 +100,10 @@ public class BitbucketCloudPublisherTest extends HttpPublisherTest {
     }
   }
 
+  public void should_encode_status_key_as_url_path_segment() {
+    then(BitbucketCloudPublisher.encodePathSegment("My Build/1 #2+3")).isEqualTo("My%20Build%2F1%20%232%2B3");
+  }
+
   public void shoudld_calculate_correct_revision_status() {
     BuildPromotion promotion = new MockBuildPromotion();
     BitbucketCloudPublisher publisher = (BitbucketCloudPublisher)myPublisher;
@@ -128,10 +134,35 @@ public class BitbucketCloudPublisherTest extends HttpPublisherTest {
     assertFalse(publisher.getRevisionStatus(removedBuild, new BitbucketCloudCommitBuildStatus("anotherBuildType", BitbucketCloudBuildStatus.INPROGRESS.name(), null, DefaultStatusMessages.BUILD_QUEUED, "http://localhost:8111/viewQueued.html?itemId=321")).isEventAllowed(CommitStatusPublisher.Event.REMOVED_FROM_QUEUE, Long.MAX_VALUE));
   }
 
+  public void should_request_status_by_key() throws Exception {
+    setInternalProperty("teamcity.commitStatusPublisher.statusCache.enabled", "true");
+    SFinishedBuild build = myFixture.createBuild(myBuildType, Status.NORMAL);
+    myPublisher.buildStarted(build, myRevision);
+    int requests = countRequests();
+
+    RevisionStatus revisionStatus = myPublisher.getRevisionStatus(build.getBuildPromotion(), myRevision);
+    then(countRequests()).isEqualTo(requests + 1);
+    then(getRequestAsString()).contains("/statuses/build/" + myBuildType.getBuildTypeId());
+    then(revisionStatus).isNotNull();
+    then(revisionStatus.getTriggeredEvent()).isEqualTo(CommitStatusPublisher.Event.STARTED);
+  }
+
+  public void should_load_all_statuses_when_lookup_by_key_disabled() throws Exception {
+    setInternalProperty("teamcity.commitStatusPublisher.statusCache.enabled", "true");
+    setInternalProperty(Constants.STATUS_LOOKUP_BY_KEY_TOGGLE, "false");
+    SFinishedBuild build = myFixture.createBuild(myBuildType, Status.NORMAL);
+    myPublisher.buildStarted(build, myRevision);
+
+    RevisionStatus revisionStatus = myPublisher.getRevisionStatus(build.getBuildPromotion(), myRevision);
+    then(getRequestAsString()).contains("/statuses?pagelen=");
+    then(revisionStatus).isNotNull();
+    then(revisionStatus.getTriggeredEvent()).isEqualTo(CommitStatusPublisher.Event.STARTED);
+  }
+
   @Override
   protected boolean respondToGet(String url, HttpResponse httpResponse) {
     if (url.contains("/statuses/build/")) {
-      responsWithStatus(httpResponse);
+      responsWithStatus(url, httpResponse);
     } else if (url.contains("/statuses")) {
       respondWithStatuses(url, httpResponse);
     }  else if (url.endsWith("/repositories/" + OWNER + "/" + CORRECT_REPO)) {
@@ -153,9 +184,19 @@ public class BitbucketCloudPublisherTest extends HttpPublisherTest {
     httpResponse.setEntity(new StringEntity(json, StandardCharsets.UTF_8));
   }
 
-  private void responsWithStatus(HttpResponse httpResponse) {
-    BitbucketCloudCommitBuildStatus status = new BitbucketCloudCommitBuildStatus("", BitbucketCloudBuildStatus.INPROGRESS.name(),
-                                                                                 "My Default Test Project / My Default Test Build Type", DefaultStatusMessages.BUILD_QUEUED, "");
+  private void responsWithStatus(String url, HttpResponse httpResponse) {
+    String revision = getRevision(url, "/2.0/repositories/owner/project/commit/");
+    String key = url.substring(url.lastIndexOf("/statuses/build/") + "/statuses/build/".length());
+    BitbucketCloudCommitBuildStatus status = null;
+    for (BitbucketCloudCommitBuildStatus publishedStatus : myRevisionToStatus.getOrDefault(revision, Collections.emptyList())) {
+      if (key.equals(publishedStatus.key)) {
+        status = publishedStatus;
+      }
+    }
+    if (status == null) {
+      respondWithError(httpResponse, 404, "Status not found");
+      return;
+    }
     String json = gson.toJson(status);
     httpResponse.setEntity(new StringEntity(json, StandardCharsets.UTF_8));
   }
@@ -222,13 +263,15 @@ public class BitbucketCloudPublisherTest extends HttpPublisherTest {
        myFixture.getUserModel(),
        myFixture.getSecurityContext(),
        myFixture.getProjectManager(),
-       myBuildNameProvider
+       myBuildNameProvider,
+       myConcurrencyLimiter,
+       new CommitStatusPublisherMetrics()
     );
     BitbucketCloudSettings publisherSettingsSpy = spy(publisherSettings);
     doReturn(apiUrl).when(publisherSettingsSpy).getDefaultApiUrl();
     myPublisherSettings = publisherSettingsSpy;
 
-    BitbucketCloudPublisher publisher = new BitbucketCloudPublisher(myPublisherSettings, myBuildType, FEATURE_ID, myWebLinks, params, myProblems, new CommitStatusesCache<>(), myBuildNameProvider);
+    BitbucketCloudPublisher publisher = new BitbucketCloudPublisher(myPublisherSettings, myBuildType, FEATURE_ID, myWebLinks, params, myProblems, new CommitStatusesCache<>(new CommitStatusPublisherMetrics()), myBuildNameProvider, myConcurrencyLimiter);
     BitbucketCloudPublisher publisherSpy = spy(publisher);
     doReturn(apiUrl).when(publisherSpy).getBaseUrl();
     myPublisher = publisherSpy;
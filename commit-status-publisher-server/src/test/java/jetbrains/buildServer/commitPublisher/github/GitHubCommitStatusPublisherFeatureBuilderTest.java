@@ -2,9 +2,15 @@ package jetbrains.buildServer.commitPublisher.github;
 
 import com.google.common.collect.ImmutableMap;
 import jetbrains.buildServer.commitPublisher.CommitStatusPublisherProblems;
+import jetbrains.buildServer.commitPublisher.HostConcurrencyLimiter;
 import jetbrains.buildServer.commitPublisher.MockPluginDescriptor;
+import jetbrains.buildServer.commitPublisher.StoredTokenCache;
 import jetbrains.buildServer.commitPublisher.github.api.impl.GitHubApiFactoryImpl;
+import jetbrains.buildServer.commitPublisher.github.api.impl.GitHubPermissionsCache;
+import jetbrains.buildServer.commitPublisher.github.api.impl.GitHubRateLimits;
 import jetbrains.buildServer.commitPublisher.github.api.impl.HttpClientWrapperImpl;
+import jetbrains.buildServer.commitPublisher.metrics.CommitStatusPublisherMetrics;
+import jetbrains.buildServer.serverSide.executors.ExecutorServices;
 import jetbrains.buildServer.serverSide.impl.BaseServerTestCase;
 import jetbrains.buildServer.serverSide.oauth.OAuthConnectionsManager;
 import jetbrains.buildServer.serverSide.oauth.OAuthTokensStorage;
@@ -29,11 +35,16 @@ public class GitHubCommitStatusPublisherFeatureBuilderTest extends BaseServerTes
   public void setUp() throws Exception {
     super.setUp();
 
+    final GitHubPermissionsCache permissionsCache = new GitHubPermissionsCache();
     @SuppressWarnings("deprecation") final ChangeStatusUpdater changeStatusUpdater =
       new ChangeStatusUpdater(new GitHubApiFactoryImpl(new HttpClientWrapperImpl(new HTTPRequestBuilder.ApacheClient43RequestHandler(), () -> null),
                                                        myFixture.getSingletonService(OAuthTokensStorage.class),
                                                        myFixture.getSingletonService(OAuthConnectionsManager.class),
-                                                       myFixture.getProjectManager()), myFixture.getVcsHistory());
+                                                       myFixture.getProjectManager(),
+                                                       new HostConcurrencyLimiter(new CommitStatusPublisherMetrics()),
+                                                       permissionsCache,
+                                                       new GitHubRateLimits(),
+                                                       new StoredTokenCache(myFixture.getSingletonService(OAuthTokensStorage.class), myFixture.getSingletonService(ExecutorServices.class))), myFixture.getVcsHistory());
 
     final CommitStatusPublisherProblems problems = new CommitStatusPublisherProblems(myFixture.getSingletonService(BuildProblemsTicketManager.class));
 
@@ -46,7 +57,9 @@ public class GitHubCommitStatusPublisherFeatureBuilderTest extends BaseServerTes
                                                                                         myFixture.getSingletonService(OAuthTokensStorage.class),
                                                                                         myFixture.getSecurityContext(),
                                                                                         trustStoreProvider,
-                                                                                        buildNameProvider);
+                                                                                        buildNameProvider,
+                                                                                        permissionsCache,
+                                                                                        new CommitStatusPublisherMetrics());
 
     myGitHubFeatureBuilder = new GitHubCommitStatusPublisherFeatureBuilder(settings);
   }
@@ -20,22 +20,34 @@ package jetbrains.buildServer.commitPublisher.github;
 
 import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import jetbrains.buildServer.MockBuildPromotion;
 import jetbrains.buildServer.commitPublisher.*;
 import jetbrains.buildServer.commitPublisher.github.api.GitHubChangeState;
 import jetbrains.buildServer.commitPublisher.github.api.impl.GitHubApiFactoryImpl;
+import jetbrains.buildServer.commitPublisher.github.api.impl.GitHubPermissionsCache;
+import jetbrains.buildServer.commitPublisher.github.api.impl.GitHubRateLimits;
 import jetbrains.buildServer.commitPublisher.github.api.impl.HttpClientWrapperImpl;
 import jetbrains.buildServer.commitPublisher.github.api.impl.data.CombinedCommitStatus;
 import jetbrains.buildServer.commitPublisher.github.api.impl.data.CommitStatus;
 import jetbrains.buildServer.commitPublisher.github.api.impl.data.Permissions;
+import jetbrains.buildServer.commitPublisher.github.api.impl.data.PullRequestInfo;
 import jetbrains.buildServer.commitPublisher.github.api.impl.data.RepoInfo;
+import jetbrains.buildServer.commitPublisher.github.api.impl.data.RepoRefInfo;
+import jetbrains.buildServer.commitPublisher.metrics.CommitStatusPublisherMetrics;
 import jetbrains.buildServer.messages.Status;
 import jetbrains.buildServer.serverSide.*;
+import jetbrains.buildServer.serverSide.executors.ExecutorServices;
 import jetbrains.buildServer.serverSide.impl.PipelineViewImpl;
 import jetbrains.buildServer.serverSide.impl.ProjectEx;
 import jetbrains.buildServer.serverSide.oauth.OAuthConnectionsManager;
 import jetbrains.buildServer.serverSide.oauth.OAuthTokensStorage;
 import jetbrains.buildServer.util.HTTPRequestBuilder;
+import jetbrains.buildServer.vcs.RepositoryVersion;
+import jetbrains.buildServer.vcs.SVcsModification;
+import jetbrains.buildServer.vcs.VcsModificationHistory;
+import jetbrains.buildServer.vcs.VcsModificationOrder;
 import jetbrains.buildServer.vcs.VcsRootInstance;
 import org.apache.http.HttpRequest;
 import org.apache.http.HttpResponse;
@@ -46,6 +58,7 @@ import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
 import static org.assertj.core.api.BDDAssertions.then;
+import static org.mockito.Mockito.*;
 
 /**
  * @author anton.zamolotskikh, 05/10/16.
@@ -53,7 +66,14 @@ import static org.assertj.core.api.BDDAssertions.then;
 @Test
 public class GitHubPublisherTest extends HttpPublisherTest {
 
+  private static final String PULL_REQUEST_BRANCH = "refs/pull/1/merge";
+  private static final String PULL_REQUEST_BASE = "5c5d3cde0d7ebeea6ddd6ee2ae5bb9e6a1b8bc1a";
+  private static final String PULL_REQUEST_HEAD = "7a3c5b4f1e0b2c6d8f9a0e1d2c3b4a5968778695";
+  private static final Pattern PULL_REQUEST_REQUEST = Pattern.compile("GET /repos/owner/project/pulls/1 .*");
+  private static final Pattern HEAD_STATUS_REQUEST = Pattern.compile("GET /repos/owner/project/commits/" + PULL_REQUEST_HEAD + "/status.*");
+
   private ChangeStatusUpdater myChangeStatusUpdater;
+  private GitHubPermissionsCache myPermissionsCache;
   private Map<String, List<CommitStatus>> myRevisionToCommitStatus = new HashMap<>();
   private GitHubBuildContextProvider myBuildNameProvider = new GitHubBuildContextProvider();
 
@@ -82,7 +102,7 @@ public class GitHubPublisherTest extends HttpPublisherTest {
     myVcsRoot.setProperties(Collections.singletonMap("url", "https://url.com/subdir/owner/project"));
     VcsRootInstance vcsRootInstance = myBuildType.getVcsRootInstanceForParent(myVcsRoot);
     myRevision = new BuildRevision(vcsRootInstance, REVISION, "", REVISION);
-    myPublisher = new GitHubPublisher(myPublisherSettings, myBuildType, FEATURE_ID, myChangeStatusUpdater, params, myProblems, myWebLinks, myBuildNameProvider, new CommitStatusesCache<>());
+    myPublisher = new GitHubPublisher(myPublisherSettings, myBuildType, FEATURE_ID, myChangeStatusUpdater, params, myProblems, myWebLinks, myBuildNameProvider, new CommitStatusesCache<>(new CommitStatusPublisherMetrics()));
     test_buildFinished_Successfully();
   }
 
@@ -93,11 +113,21 @@ public class GitHubPublisherTest extends HttpPublisherTest {
     myVcsRoot.setProperties(Collections.singletonMap("url", "https://url.com/subdir/owner/project"));
     VcsRootInstance vcsRootInstance = myBuildType.getVcsRootInstanceForParent(myVcsRoot);
     myRevision = new BuildRevision(vcsRootInstance, REVISION, "", REVISION);
-    myPublisher = new GitHubPublisher(myPublisherSettings, myBuildType, FEATURE_ID, myChangeStatusUpdater, params, myProblems, myWebLinks, myBuildNameProvider, new CommitStatusesCache<>());
+    myPublisher = new GitHubPublisher(myPublisherSettings, myBuildType, FEATURE_ID, myChangeStatusUpdater, params, myProblems, myWebLinks, myBuildNameProvider, new CommitStatusesCache<>(new CommitStatusPublisherMetrics()));
     test_buildFinished_Successfully();
   }
 
 
+  public void should_not_repeat_recent_repository_permissions_check() throws Exception {
+    myPublisherSettings.testConnection(myBuildType, myVcsRoot, getPublisherParams());
+    final int requestsCount = countRequests();
+    then(requestsCount).isPositive();
+
+    myPublisherSettings.testConnection(myBuildType, myVcsRoot, getPublisherParams());
+
+    then(countRequests()).isEqualTo(requestsCount);
+  }
+
   public void should_fail_with_error_on_wrong_vcs_url() {
     myVcsRoot.setProperties(Collections.singletonMap("url", "wrong://url.com"));
     VcsRootInstance vcsRootInstance = myBuildType.getVcsRootInstanceForParent(myVcsRoot);
@@ -148,6 +178,126 @@ public class GitHubPublisherTest extends HttpPublisherTest {
     assertFalse(publisher.getRevisionStatus(removedBuild, new CommitStatus(GitHubChangeState.Pending.getState(), "http://localhost:8111/viewQueued.html?itemId=321", DefaultStatusMessages.BUILD_QUEUED, "custom context")).isEventAllowed(CommitStatusPublisher.Event.REMOVED_FROM_QUEUE, Long.MAX_VALUE));
   }
 
+  public void should_not_check_order_of_pull_request_head_parent_of_known_merge_commit() throws Exception {
+    VcsModificationHistory history = mock(VcsModificationHistory.class);
+    SVcsModification mergeCommit = mock(SVcsModification.class);
+    when(mergeCommit.getParentRevisions()).thenReturn(Arrays.asList(PULL_REQUEST_BASE, PULL_REQUEST_HEAD));
+    when(history.findModificationByVersion(any(VcsRootInstance.class), eq(REVISION))).thenReturn(mergeCommit);
+    ChangeStatusUpdater.Handler handler = createChangeStatusUpdater(history).getHandler(myVcsRoot, getPublisherParams(), (GitHubPublisher)myPublisher);
+
+    handler.getStatus(getPullRequestRevision(REVISION));
+    handler.getStatus(getPullRequestRevision(REVISION));
+
+    // the head is validated against the pull request once, then reused for the same merge commit
+    then(getMatchingRequestsOrderNumbers(PULL_REQUEST_REQUEST)).hasSize(1);
+    then(getMatchingRequestsOrderNumbers(HEAD_STATUS_REQUEST)).hasSize(2);
+    // the head is the parent of the merge commit, no need to check the order of the commits
+    verify(history, never()).getModificationsOrder(any(VcsRootInstance.class), any(), any());
+  }
+
+  public void should_skip_status_of_merge_commit_with_superseded_pull_request_head() throws Exception {
+    final String supersededHead = "1e2d3c4b5a69788796a5b4c3d2e1f00f1e2d3c4b";
+    VcsModificationHistory history = mock(VcsModificationHistory.class);
+    SVcsModification mergeCommit = mock(SVcsModification.class);
+    when(mergeCommit.getParentRevisions()).thenReturn(Arrays.asList(PULL_REQUEST_BASE, supersededHead));
+    when(history.findModificationByVersion(any(VcsRootInstance.class), eq(REVISION))).thenReturn(mergeCommit);
+    ChangeStatusUpdater.Handler handler = createChangeStatusUpdater(history).getHandler(myVcsRoot, getPublisherParams(), (GitHubPublisher)myPublisher);
+
+    then(handler.getStatus(getPullRequestRevision(REVISION))).isNull();
+    then(handler.getStatus(getPullRequestRevision(REVISION))).isNull();
+
+    // the pull request has got new commits since the merge commit, statuses of neither head are read
+    then(getMatchingRequestsOrderNumbers(PULL_REQUEST_REQUEST)).hasSize(1);
+    then(getMatchingRequestsOrderNumbers(HEAD_STATUS_REQUEST)).isEmpty();
+    then(getMatchingRequestsOrderNumbers(Pattern.compile("GET /repos/owner/project/commits/" + supersededHead + "/status.*"))).isEmpty();
+  }
+
+  public void should_reuse_pull_request_head_resolved_via_api() throws Exception {
+    VcsModificationHistory history = mock(VcsModificationHistory.class);
+    when(history.getModificationsOrder(any(VcsRootInstance.class), eq(PULL_REQUEST_HEAD), eq(REVISION))).thenReturn(VcsModificationOrder.BEFORE);
+    ChangeStatusUpdater.Handler handler = createChangeStatusUpdater(history).getHandler(myVcsRoot, getPublisherParams(), (GitHubPublisher)myPublisher);
+
+    handler.getStatus(getPullRequestRevision(REVISION));
+    handler.getStatus(getPullRequestRevision(REVISION));
+
+    then(getMatchingRequestsOrderNumbers(PULL_REQUEST_REQUEST)).hasSize(1);
+    then(getMatchingRequestsOrderNumbers(HEAD_STATUS_REQUEST)).hasSize(2);
+    verify(history, times(1)).getModificationsOrder(any(VcsRootInstance.class), eq(PULL_REQUEST_HEAD), eq(REVISION));
+  }
+
+  public void should_request_pull_request_head_again_for_new_merge_commit() throws Exception {
+    final String newMergeRevision = "9d8c7b6a5f4e3d2c1b0a99887766554433221100";
+    VcsModificationHistory history = mock(VcsModificationHistory.class);
+    when(history.getModificationsOrder(any(VcsRootInstance.class), eq(PULL_REQUEST_HEAD), any())).thenReturn(VcsModificationOrder.BEFORE);
+    ChangeStatusUpdater.Handler handler = createChangeStatusUpdater(history).getHandler(myVcsRoot, getPublisherParams(), (GitHubPublisher)myPublisher);
+
+    handler.getStatus(getPullRequestRevision(REVISION));
+    handler.getStatus(getPullRequestRevision(newMergeRevision));
+
+    then(getMatchingRequestsOrderNumbers(PULL_REQUEST_REQUEST)).hasSize(2);
+  }
+
+  public void should_request_pull_request_head_again_when_expired() throws Exception {
+    setInternalProperty(ChangeStatusUpdater.PULL_REQUEST_HEAD_CACHE_TTL_PARAMETER, "50");
+    VcsModificationHistory history = mock(VcsModificationHistory.class);
+    when(history.getModificationsOrder(any(VcsRootInstance.class), eq(PULL_REQUEST_HEAD), eq(REVISION))).thenReturn(VcsModificationOrder.BEFORE);
+    ChangeStatusUpdater.Handler handler = createChangeStatusUpdater(history).getHandler(myVcsRoot, getPublisherParams(), (GitHubPublisher)myPublisher);
+
+    handler.getStatus(getPullRequestRevision(REVISION));
+    Thread.sleep(100);
+    handler.getStatus(getPullRequestRevision(REVISION));
+
+    then(getMatchingRequestsOrderNumbers(PULL_REQUEST_REQUEST)).hasSize(2);
+    // the order of the commits does not change, so it is still not checked again
+    verify(history, times(1)).getModificationsOrder(any(VcsRootInstance.class), eq(PULL_REQUEST_HEAD), eq(REVISION));
+  }
+
+  public void should_read_all_status_pages_to_find_status() throws Exception {
+    List<CommitStatus> statuses = new ArrayList<>();
+    for (int i = 0; i < 250; i++) {
+      statuses.add(new CommitStatus(GitHubChangeState.Success.getState(), null, DefaultStatusMessages.BUILD_FINISHED, "other context " + i));
+    }
+    statuses.set(240, new CommitStatus(GitHubChangeState.Pending.getState(), null, DefaultStatusMessages.BUILD_STARTED, "continuous-integration/teamcity"));
+    myRevisionToCommitStatus.put(REVISION, statuses);
+    ChangeStatusUpdater.Handler handler = myChangeStatusUpdater.getHandler(myVcsRoot, getPublisherParams(), (GitHubPublisher)myPublisher);
+
+    CommitStatus status = handler.getStatus(myRevision);
+
+    then(status).isNotNull();
+    then(status.context).isEqualTo("continuous-integration/teamcity");
+    then(getMatchingRequestsOrderNumbers(Pattern.compile("GET /repos/owner/project/commits/" + REVISION + "/status\\?per_page=100&page=\\d .*"))).hasSize(3);
+  }
+
+  public void should_stop_reading_status_pages_at_threshold_for_all_statuses() throws Exception {
+    setInternalProperty(Constants.STATUSES_TO_LOAD_THRESHOLD_PROPERTY, "150");
+    List<CommitStatus> statuses = new ArrayList<>();
+    for (int i = 0; i < 450; i++) {
+      statuses.add(new CommitStatus(GitHubChangeState.Success.getState(), null, DefaultStatusMessages.BUILD_FINISHED, "other context " + i));
+    }
+    myRevisionToCommitStatus.put(REVISION, statuses);
+    ChangeStatusUpdater.Handler handler = myChangeStatusUpdater.getHandler(myVcsRoot, getPublisherParams(), (GitHubPublisher)myPublisher);
+
+    then(handler.getStatuses(myRevision)).hasSize(200);
+    then(getMatchingRequestsOrderNumbers(Pattern.compile("GET /repos/owner/project/commits/" + REVISION + "/status.*"))).hasSize(2);
+  }
+
+  @NotNull
+  private BuildRevision getPullRequestRevision(@NotNull String mergeRevision) {
+    return new BuildRevision(myRevision.getEntry(), new RepositoryVersion(mergeRevision, mergeRevision, PULL_REQUEST_BRANCH));
+  }
+
+  @NotNull
+  private ChangeStatusUpdater createChangeStatusUpdater(@NotNull VcsModificationHistory history) {
+    return new ChangeStatusUpdater(new GitHubApiFactoryImpl(new HttpClientWrapperImpl(new HTTPRequestBuilder.ApacheClient43RequestHandler(), () -> null),
+                                                            myFixture.getSingletonService(OAuthTokensStorage.class),
+                                                            myFixture.getSingletonService(OAuthConnectionsManager.class),
+                                                            myFixture.getProjectManager(),
+                                                            myConcurrencyLimiter,
+                                                            myPermissionsCache,
+                                                            new GitHubRateLimits(),
+                                                            new StoredTokenCache(myFixture.getSingletonService(OAuthTokensStorage.class), myFixture.getSingletonService(ExecutorServices.class))), history);
+  }
+
   @Override
   protected boolean isStatusCacheNotImplemented() {
     return false;
@@ -159,19 +309,17 @@ public class GitHubPublisherTest extends HttpPublisherTest {
     setExpectedApiPath("");
     setExpectedEndpointPrefix("/repos/" + OWNER + "/" + CORRECT_REPO);
     super.setUp();
+    myPermissionsCache = new GitHubPermissionsCache();
 
     Map<String, String> params = getPublisherParams();
     myBuildType.getProject().addParameter(new SimpleParameter("teamcity.commitStatusPublisher.publishQueuedBuildStatus", "true"));
 
-    myChangeStatusUpdater = new ChangeStatusUpdater(new GitHubApiFactoryImpl(new HttpClientWrapperImpl(new HTTPRequestBuilder.ApacheClient43RequestHandler(), () -> null),
-                                                                             myFixture.getSingletonService(OAuthTokensStorage.class),
-                                                                             myFixture.getSingletonService(OAuthConnectionsManager.class),
-                                                                             myFixture.getProjectManager()), myFixture.getVcsHistory());
+    myChangeStatusUpdater = createChangeStatusUpdater(myFixture.getVcsHistory());
 
     myPublisherSettings = new GitHubSettings(myChangeStatusUpdater, new MockPluginDescriptor(), myWebLinks, myProblems,
                                              myOAuthConnectionsManager, myOAuthTokenStorage, myFixture.getSecurityContext(),
-                                             myTrustStoreProvider, myBuildNameProvider);
-    myPublisher = new GitHubPublisher(myPublisherSettings, myBuildType, FEATURE_ID, myChangeStatusUpdater, params, myProblems, myWebLinks, myBuildNameProvider, new CommitStatusesCache<>());
+                                             myTrustStoreProvider, myBuildNameProvider, myPermissionsCache, new CommitStatusPublisherMetrics());
+    myPublisher = new GitHubPublisher(myPublisherSettings, myBuildType, FEATURE_ID, myChangeStatusUpdater, params, myProblems, myWebLinks, myBuildNameProvider, new CommitStatusesCache<>(new CommitStatusPublisherMetrics()));
   }
 
   @Override
@@ -192,7 +340,9 @@ public class GitHubPublisherTest extends HttpPublisherTest {
   protected boolean respondToGet(String url, HttpResponse httpResponse) {
     if (url.contains("/repos" +  "/" + OWNER + "/" + CORRECT_REPO + "/commits")) {
       String revision = getRevision(url, "/repos/owner/project/commits/");
-      respondWithCommitsInfo(httpResponse, revision);
+      respondWithCommitsInfo(httpResponse, revision, url);
+    } else if (url.contains("/repos" +  "/" + OWNER + "/" + CORRECT_REPO + "/pulls/1")) {
+      respondWithPullRequestInfo(httpResponse);
     } else if (url.contains("/repos" +  "/" + OWNER + "/" + CORRECT_REPO)) {
       respondWithRepoInfo(httpResponse, CORRECT_REPO, true);
     } else if (url.contains("/repos"  + "/" + OWNER + "/" +  READ_ONLY_REPO)) {
@@ -204,10 +354,18 @@ public class GitHubPublisherTest extends HttpPublisherTest {
     return true;
   }
 
-  private void respondWithCommitsInfo(@NotNull HttpResponse httpResponse, String revision) {
+  private void respondWithCommitsInfo(@NotNull HttpResponse httpResponse, String revision, @NotNull String url) {
     CombinedCommitStatus status = new CombinedCommitStatus();
-    status.statuses = myRevisionToCommitStatus.getOrDefault(revision, Collections.emptyList());
-    status.total_count = status.statuses.size();
+    List<CommitStatus> statuses = myRevisionToCommitStatus.getOrDefault(revision, Collections.emptyList());
+    Matcher paging = Pattern.compile(".*per_page=(\\d+)&page=(\\d+).*").matcher(url);
+    if (paging.matches()) {
+      int perPage = Integer.parseInt(paging.group(1));
+      int from = Math.min(statuses.size(), perPage * (Integer.parseInt(paging.group(2)) - 1));
+      status.statuses = statuses.subList(from, Math.min(statuses.size(), from + perPage));
+    } else {
+      status.statuses = statuses;
+    }
+    status.total_count = statuses.size();
     String jsonResponse = gson.toJson(status);
     httpResponse.setEntity(new StringEntity(jsonResponse, StandardCharsets.UTF_8));
   }
@@ -222,6 +380,13 @@ public class GitHubPublisherTest extends HttpPublisherTest {
     return isUrlExpected(url, httpResponse);
   }
 
+  private void respondWithPullRequestInfo(@NotNull HttpResponse httpResponse) {
+    PullRequestInfo pullRequestInfo = new PullRequestInfo();
+    pullRequestInfo.head = new RepoRefInfo();
+    pullRequestInfo.head.sha = PULL_REQUEST_HEAD;
+    httpResponse.setEntity(new StringEntity(gson.toJson(pullRequestInfo), StandardCharsets.UTF_8));
+  }
+
   private void respondWithRepoInfo(HttpResponse httpResponse, String repoName, boolean isPushPermitted) {
     RepoInfo repoInfo = new RepoInfo();
     repoInfo.name = repoName;
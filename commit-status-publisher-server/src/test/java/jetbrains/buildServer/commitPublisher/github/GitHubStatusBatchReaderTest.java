@@ -0,0 +1,88 @@
+/*
+ * Copyright 2000-2024 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jetbrains.buildServer.commitPublisher.github;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import jetbrains.buildServer.BaseTestCase;
+import jetbrains.buildServer.commitPublisher.PublisherException;
+import jetbrains.buildServer.commitPublisher.PublishingDeadline;
+import jetbrains.buildServer.commitPublisher.Repository;
+import jetbrains.buildServer.commitPublisher.github.api.GitHubApi;
+import jetbrains.buildServer.commitPublisher.github.api.impl.data.CommitStatus;
+import org.testng.annotations.Test;
+
+import static org.assertj.core.api.BDDAssertions.then;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@Test
+public class GitHubStatusBatchReaderTest extends BaseTestCase {
+  private static final Repository REPO = new Repository("https://github.com/owner/repo", "owner", "repo");
+
+  public void should_read_concurrent_requests_with_single_query() throws Exception {
+    setInternalProperty(GitHubStatusBatchReader.BATCH_WINDOW_PARAMETER, "500");
+    final AtomicInteger queries = new AtomicInteger();
+    final GitHubApi api = mock(GitHubApi.class);
+    when(api.readCommitsStatuses(eq("owner"), eq("repo"), anyCollection(), any())).thenAnswer(invocation -> {
+      queries.incrementAndGet();
+      final Map<String, Collection<CommitStatus>> result = new HashMap<>();
+      for (Object hash : invocation.<Collection<?>>getArgument(2)) {
+        result.put((String)hash, Collections.singletonList(new CommitStatus("success", null, null, "context-" + hash)));
+      }
+      return result;
+    });
+
+    final GitHubStatusBatchReader reader = new GitHubStatusBatchReader();
+    final ExecutorService executor = Executors.newFixedThreadPool(5);
+    try {
+      final List<Future<Collection<CommitStatus>>> futures = new ArrayList<>();
+      for (int i = 0; i < 5; i++) {
+        final String hash = "hash" + i;
+        futures.add(executor.submit(() -> reader.read(api, REPO, hash, PublishingDeadline.after(10_000))));
+      }
+      for (int i = 0; i < 5; i++) {
+        then(futures.get(i).get(10, TimeUnit.SECONDS).iterator().next().context).isEqualTo("context-hash" + i);
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+    then(queries.get()).isEqualTo(1);
+  }
+
+  public void should_split_batches_by_size() throws Exception {
+    setInternalProperty(GitHubStatusBatchReader.BATCH_WINDOW_PARAMETER, "0");
+    setInternalProperty(GitHubStatusBatchReader.BATCH_SIZE_PARAMETER, "1");
+    final GitHubApi api = mock(GitHubApi.class);
+    when(api.readCommitsStatuses(anyString(), anyString(), anyCollection(), any())).thenReturn(Collections.emptyMap());
+
+    final GitHubStatusBatchReader reader = new GitHubStatusBatchReader();
+    then(reader.read(api, REPO, "hash1", PublishingDeadline.unlimited())).isEmpty();
+    then(reader.read(api, REPO, "hash2", PublishingDeadline.unlimited())).isEmpty();
+  }
+
+  @Test(expectedExceptions = PublisherException.class)
+  public void should_propagate_query_failure() throws Exception {
+    setInternalProperty(GitHubStatusBatchReader.BATCH_WINDOW_PARAMETER, "0");
+    final GitHubApi api = mock(GitHubApi.class);
+    when(api.readCommitsStatuses(anyString(), anyString(), anyCollection(), any())).thenThrow(new PublisherException("GraphQL is not supported"));
+
+    new GitHubStatusBatchReader().read(api, REPO, "hash1", PublishingDeadline.unlimited());
+  }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2000-2024 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jetbrains.buildServer.commitPublisher.github.api.impl;
+
+import jetbrains.buildServer.BaseTestCase;
+import jetbrains.buildServer.commitPublisher.PublisherException;
+import jetbrains.buildServer.commitPublisher.PublishingDeadline;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import static org.assertj.core.api.BDDAssertions.then;
+
+@Test
+public class ContentCreationPacerTest extends BaseTestCase {
+  private static final String TOKEN = "https://api.github.com\u0000token1";
+  private static final String ANOTHER_TOKEN = "https://api.github.com\u0000token2";
+
+  private ContentCreationPacer myPacer;
+
+  @Override
+  @BeforeMethod
+  public void setUp() throws Exception {
+    super.setUp();
+    setInternalProperty(ContentCreationPacer.MIN_INTERVAL_PARAMETER, "0");
+    myPacer = new ContentCreationPacer();
+  }
+
+  public void should_send_one_request_at_a_time_per_token() throws PublisherException {
+    ContentCreationPacer.Permit permit = myPacer.acquire(TOKEN, PublishingDeadline.unlimited());
+    try {
+      myPacer.acquire(TOKEN, PublishingDeadline.after(50));
+      fail("Concurrent request with the same token should not be allowed");
+    } catch (PublisherException e) {
+      then(e.shouldRetry()).isTrue();
+    }
+    myPacer.acquire(ANOTHER_TOKEN, PublishingDeadline.after(50)).release();
+
+    permit.release();
+    myPacer.acquire(TOKEN, PublishingDeadline.after(50)).release();
+  }
+
+  public void should_keep_minimum_interval_between_requests() throws PublisherException {
+    setInternalProperty(ContentCreationPacer.MIN_INTERVAL_PARAMETER, "300");
+    myPacer = new ContentCreationPacer();
+
+    myPacer.acquire(TOKEN, PublishingDeadline.unlimited()).release();
+    final long start = System.currentTimeMillis();
+    myPacer.acquire(TOKEN, PublishingDeadline.unlimited()).release();
+    then(System.currentTimeMillis() - start).isGreaterThanOrEqualTo(250);
+  }
+
+  public void should_fail_fast_while_token_is_limited() throws PublisherException {
+    ContentCreationPacer.Permit permit = myPacer.acquire(TOKEN, PublishingDeadline.unlimited());
+    permit.limited(60_000);
+    permit.release();
+
+    final long start = System.currentTimeMillis();
+    try {
+      myPacer.acquire(TOKEN, PublishingDeadline.after(5_000));
+      fail("Request should not be sent while the token is limited");
+    } catch (PublisherException e) {
+      then(e.shouldRetry()).isTrue();
+    }
+    then(System.currentTimeMillis() - start).isLessThan(1_000);
+
+    myPacer.acquire(ANOTHER_TOKEN, PublishingDeadline.after(50)).release();
+  }
+
+  public void should_not_pace_when_disabled() throws PublisherException {
+    setInternalProperty(ContentCreationPacer.ENABLED_PARAMETER, "false");
+    ContentCreationPacer.Permit permit = myPacer.acquire(TOKEN, PublishingDeadline.unlimited());
+    permit.limited(60_000);
+    permit.release();
+    myPacer.acquire(TOKEN, PublishingDeadline.after(50)).release();
+  }
+}
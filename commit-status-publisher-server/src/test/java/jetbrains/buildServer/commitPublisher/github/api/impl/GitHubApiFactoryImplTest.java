@@ -0,0 +1,69 @@
+/*
+ * Copyright 2000-2024 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jetbrains.buildServer.commitPublisher.github.api.impl;
+
+import jetbrains.buildServer.commitPublisher.HostConcurrencyLimiter;
+import jetbrains.buildServer.commitPublisher.StoredTokenCache;
+import jetbrains.buildServer.commitPublisher.metrics.CommitStatusPublisherMetrics;
+import jetbrains.buildServer.serverSide.executors.ExecutorServices;
+import jetbrains.buildServer.serverSide.impl.BaseServerTestCase;
+import jetbrains.buildServer.serverSide.oauth.OAuthConnectionsManager;
+import jetbrains.buildServer.serverSide.oauth.OAuthTokensStorage;
+import jetbrains.buildServer.util.HTTPRequestBuilder;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import static org.assertj.core.api.BDDAssertions.then;
+
+@Test
+public class GitHubApiFactoryImplTest extends BaseServerTestCase {
+  private static final String URL = "https://api.github.com";
+
+  private GitHubApiFactoryImpl myFactory;
+
+  @BeforeMethod
+  @Override
+  public void setUp() throws Exception {
+    super.setUp();
+    myFactory = new GitHubApiFactoryImpl(new HttpClientWrapperImpl(new HTTPRequestBuilder.ApacheClient43RequestHandler(), () -> null),
+                                         myFixture.getSingletonService(OAuthTokensStorage.class),
+                                         myFixture.getSingletonService(OAuthConnectionsManager.class),
+                                         myFixture.getProjectManager(),
+                                         new HostConcurrencyLimiter(new CommitStatusPublisherMetrics()),
+                                         new GitHubPermissionsCache(),
+                                         new GitHubRateLimits(),
+                                         new StoredTokenCache(myFixture.getSingletonService(OAuthTokensStorage.class), myFixture.getSingletonService(ExecutorServices.class)));
+  }
+
+  public void should_reuse_api_for_same_credentials() {
+    then(myFactory.openGitHubForToken(URL, "token")).isSameAs(myFactory.openGitHubForToken(URL, "token"));
+    then(myFactory.openGitHubForUser(URL, "user", "pass")).isSameAs(myFactory.openGitHubForUser(URL, "user", "pass"));
+    then(myFactory.openGitHubForStoredToken(URL, "tc_token_id:1", myProject)).isSameAs(myFactory.openGitHubForStoredToken(URL, "tc_token_id:1", myProject));
+  }
+
+  public void should_not_share_api_between_credentials_and_servers() {
+    then(myFactory.openGitHubForToken(URL, "token")).isNotSameAs(myFactory.openGitHubForToken(URL, "another token"));
+    then(myFactory.openGitHubForToken(URL, "token")).isNotSameAs(myFactory.openGitHubForToken("https://github.example.com/api/v3", "token"));
+    then(myFactory.openGitHubForUser(URL, "user", "pass")).isNotSameAs(myFactory.openGitHubForUser(URL, "user", "another pass"));
+    then(myFactory.openGitHubForStoredToken(URL, "tc_token_id:1", myProject)).isNotSameAs(myFactory.openGitHubForStoredToken(URL, "tc_token_id:2", myProject));
+  }
+
+  public void should_create_new_api_when_cache_disabled() {
+    setInternalProperty(GitHubApiFactoryImpl.API_CACHE_TOGGLE_PARAMETER, "false");
+    then(myFactory.openGitHubForToken(URL, "token")).isNotSameAs(myFactory.openGitHubForToken(URL, "token"));
+  }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2000-2024 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jetbrains.buildServer.commitPublisher.github.api.impl;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import jetbrains.buildServer.BaseTestCase;
+import jetbrains.buildServer.commitPublisher.PublisherException;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import static org.assertj.core.api.BDDAssertions.then;
+
+@Test
+public class GitHubPermissionsCacheTest extends BaseTestCase {
+  private static final String URL = "https://api.github.com";
+  private static final String REPO = "https://github.com/owner/project";
+
+  private GitHubPermissionsCache myCache;
+  private AtomicInteger myChecks;
+
+  @Override
+  @BeforeMethod
+  public void setUp() throws Exception {
+    super.setUp();
+    myCache = new GitHubPermissionsCache();
+    myChecks = new AtomicInteger();
+  }
+
+  public void should_reuse_successful_check() throws PublisherException {
+    myCache.checkRepository(URL, REPO, "token1", myChecks::incrementAndGet);
+    myCache.checkRepository(URL, REPO, "token1", myChecks::incrementAndGet);
+    then(myChecks.get()).isEqualTo(1);
+
+    myCache.checkRepository(URL, REPO, "token2", myChecks::incrementAndGet);
+    myCache.checkRepository(URL, "https://github.com/owner/another", "token1", myChecks::incrementAndGet);
+    then(myChecks.get()).isEqualTo(3);
+  }
+
+  public void should_reuse_permission_failure() {
+    for (int i = 0; i < 2; i++) {
+      try {
+        myCache.checkRepository(URL, REPO, "token1", () -> {
+          myChecks.incrementAndGet();
+          throw new PublisherException("There is no push access to the repository");
+        });
+        fail("Permission check failure is expected");
+      } catch (PublisherException e) {
+        then(e.getMessage()).isEqualTo("There is no push access to the repository");
+      }
+    }
+    then(myChecks.get()).isEqualTo(1);
+  }
+
+  public void should_not_keep_failures_to_be_retried() {
+    for (int i = 0; i < 2; i++) {
+      try {
+        myCache.checkRepository(URL, REPO, "token1", () -> {
+          myChecks.incrementAndGet();
+          throw new PublisherException("Connection refused").setShouldRetry();
+        });
+        fail("Check failure is expected");
+      } catch (PublisherException e) {
+        then(e.shouldRetry()).isTrue();
+      }
+    }
+    then(myChecks.get()).isEqualTo(2);
+  }
+
+  public void should_expire_results() throws PublisherException {
+    setInternalProperty(GitHubPermissionsCache.TTL_PARAMETER, "0");
+    myCache.checkRepository(URL, REPO, "token1", myChecks::incrementAndGet);
+    myCache.checkRepository(URL, REPO, "token1", myChecks::incrementAndGet);
+    then(myChecks.get()).isEqualTo(2);
+  }
+
+  public void should_keep_token_availability_per_project() {
+    then(myCache.isTokenAvailable("project1", "token1")).isNull();
+    myCache.tokenChecked("project1", "token1", true);
+    myCache.tokenChecked("project2", "token1", false);
+
+    then(myCache.isTokenAvailable("project1", "token1")).isTrue();
+    then(myCache.isTokenAvailable("project2", "token1")).isFalse();
+  }
+}
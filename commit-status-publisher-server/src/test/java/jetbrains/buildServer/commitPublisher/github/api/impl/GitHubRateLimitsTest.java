@@ -0,0 +1,96 @@
+/*
+ * Copyright 2000-2024 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jetbrains.buildServer.commitPublisher.github.api.impl;
+
+import java.util.List;
+import jetbrains.buildServer.BaseTestCase;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import static org.assertj.core.api.BDDAssertions.then;
+
+@Test
+public class GitHubRateLimitsTest extends BaseTestCase {
+  private static final String URL = "https://api.github.com";
+  private static final String CREDENTIALS = "fingerprint";
+  private static final long MINUTE = 60_000;
+
+  private GitHubRateLimits myRateLimits;
+  private long myNow;
+
+  @Override
+  @BeforeMethod
+  public void setUp() throws Exception {
+    super.setUp();
+    myRateLimits = new GitHubRateLimits();
+    myNow = System.currentTimeMillis();
+  }
+
+  public void should_not_report_risk_for_slow_consumption() {
+    final long resetAt = myNow + 30 * MINUTE;
+    myRateLimits.record(URL, CREDENTIALS, GitHubRateLimits.CORE_RESOURCE, 5000, 4000, resetAt, myNow);
+    myRateLimits.record(URL, CREDENTIALS, GitHubRateLimits.CORE_RESOURCE, 5000, 3990, resetAt, myNow + MINUTE);
+
+    final GitHubRateLimits.Budget budget = getSingleBudget();
+    then(budget.getRemaining()).isEqualTo(3990);
+    then(budget.getConsumptionPerHour()).isEqualTo(600);
+    then(budget.isAtRisk(myNow + MINUTE)).isFalse();
+  }
+
+  public void should_forecast_exhaustion_before_reset() {
+    final long resetAt = myNow + 30 * MINUTE;
+    myRateLimits.record(URL, CREDENTIALS, GitHubRateLimits.CORE_RESOURCE, 5000, 4000, resetAt, myNow);
+    myRateLimits.record(URL, CREDENTIALS, GitHubRateLimits.CORE_RESOURCE, 5000, 3000, resetAt, myNow + MINUTE);
+
+    final GitHubRateLimits.Budget budget = getSingleBudget();
+    then(budget.getForecastExhaustionTime()).isGreaterThan(myNow + 4 * MINUTE - 1000).isLessThan(myNow + 4 * MINUTE + 1000);
+    then(budget.isAtRisk(myNow + MINUTE)).isTrue();
+    then(budget.isAtRisk(resetAt)).isFalse();
+  }
+
+  public void should_report_risk_when_reserve_is_reached() {
+    myRateLimits.record(URL, CREDENTIALS, GitHubRateLimits.CORE_RESOURCE, 5000, 100, myNow + 30 * MINUTE, myNow);
+
+    then(getSingleBudget().isAtRisk(myNow)).isTrue();
+    then(myRateLimits.isAtRisk(URL, CREDENTIALS)).isTrue();
+    then(myRateLimits.isAtRisk(URL, "another fingerprint")).isFalse();
+  }
+
+  public void should_track_resources_separately() {
+    myRateLimits.record(URL, CREDENTIALS, "graphql", 5000, 100, myNow + 30 * MINUTE, myNow);
+    myRateLimits.record(URL, CREDENTIALS, GitHubRateLimits.CORE_RESOURCE, 5000, 4900, myNow + 30 * MINUTE, myNow);
+
+    then(myRateLimits.getBudgets()).hasSize(2);
+    then(myRateLimits.isAtRisk(URL, CREDENTIALS)).isFalse();
+  }
+
+  public void should_not_report_stale_budgets() {
+    myRateLimits.record(URL, "renewed token", GitHubRateLimits.CORE_RESOURCE, 5000, 4900, myNow - 60 * MINUTE, myNow - 90 * MINUTE);
+    then(myRateLimits.getBudgets()).isEmpty();
+    then(myRateLimits.isAtRisk(URL, "renewed token")).isFalse();
+
+    myRateLimits.record(URL, CREDENTIALS, GitHubRateLimits.CORE_RESOURCE, 5000, 4900, myNow + 30 * MINUTE, myNow);
+
+    then(getSingleBudget().getCredentialsId()).isEqualTo(CREDENTIALS);
+  }
+
+  private GitHubRateLimits.Budget getSingleBudget() {
+    final List<GitHubRateLimits.Budget> budgets = myRateLimits.getBudgets();
+    then(budgets).hasSize(1);
+    return budgets.get(0);
+  }
+}
@@ -3,7 +3,10 @@ package jetbrains.buildServer.commitPublisher.gitlab;
 import com.google.common.collect.ImmutableMap;
 import jetbrains.buildServer.commitPublisher.CommitStatusPublisherProblems;
 import jetbrains.buildServer.commitPublisher.CommitStatusPublisherSettings;
+import jetbrains.buildServer.commitPublisher.HostConcurrencyLimiter;
 import jetbrains.buildServer.commitPublisher.MockPluginDescriptor;
+import jetbrains.buildServer.commitPublisher.metrics.CommitStatusPublisherMetrics;
+import jetbrains.buildServer.serverSide.executors.ExecutorServices;
 import jetbrains.buildServer.serverSide.impl.BaseServerTestCase;
 import jetbrains.buildServer.serverSide.oauth.OAuthConnectionsManager;
 import jetbrains.buildServer.serverSide.oauth.OAuthTokensStorage;
@@ -42,7 +45,10 @@ public class GitLabCommitStatusPublisherFeatureBuilderTest extends BaseServerTes
                          getUserModelEx(),
                          myFixture.getSecurityContext(),
                          myFixture,
-                         new GitLabBuildNameProvider()
+                         new GitLabBuildNameProvider(),
+                         myFixture.getSingletonService(ExecutorServices.class),
+                         new HostConcurrencyLimiter(new CommitStatusPublisherMetrics()),
+                         new CommitStatusPublisherMetrics()
       );
     myGitLabFeatureBuilder = new GitLabCommitStatusPublisherFeatureBuilder(settings);
   }
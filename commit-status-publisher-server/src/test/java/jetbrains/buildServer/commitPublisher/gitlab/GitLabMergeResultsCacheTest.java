@@ -0,0 +1,75 @@
+/*
+ * Copyright 2000-2024 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jetbrains.buildServer.commitPublisher.gitlab;
+
+import java.util.Collections;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import jetbrains.buildServer.BaseTestCase;
+import jetbrains.buildServer.commitPublisher.gitlab.data.GitLabMergeRequest;
+import jetbrains.buildServer.serverSide.executors.ExecutorServices;
+import org.testng.annotations.Test;
+
+import static org.assertj.core.api.BDDAssertions.then;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@Test
+public class GitLabMergeResultsCacheTest extends BaseTestCase {
+  private static final String MR_URL = "http://localhost/api/v4/projects/owner%2Fproject/merge_requests/1";
+
+  public void should_keep_status_commit_per_merge_revision() {
+    final GitLabMergeResultsCache cache = new GitLabMergeResultsCache(null);
+    then(cache.getStatusCommit(MR_URL, "merge1")).isNull();
+
+    cache.putStatusCommit(MR_URL, "merge1", "head1");
+    then(cache.getStatusCommit(MR_URL, "merge1")).isEqualTo("head1");
+    then(cache.getStatusCommit(MR_URL, "merge2")).isNull();
+    then(cache.getStatusCommit(MR_URL.replace("/1", "/2"), "merge1")).isNull();
+  }
+
+  public void should_keep_merge_requests_and_branches() {
+    final GitLabMergeResultsCache cache = new GitLabMergeResultsCache(null);
+    final GitLabMergeRequest mergeRequest = new GitLabMergeRequest();
+    cache.putMergeRequest(MR_URL, mergeRequest);
+    cache.putCommitBranches("refs", Collections.singleton("feature"));
+    then(cache.getMergeRequest(MR_URL)).isSameAs(mergeRequest);
+    then(cache.getCommitBranches("refs")).containsOnly("feature");
+    then(cache.getMergeRequest(MR_URL.replace("/1", "/2"))).isNull();
+    then(cache.getCommitBranches("another")).isNull();
+  }
+
+  public void should_run_parent_checks_in_parallel_only_when_enabled() throws Exception {
+    final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+    try {
+      final ExecutorServices executorServices = mock(ExecutorServices.class);
+      when(executorServices.getNormalExecutorService()).thenReturn(executor);
+      final GitLabMergeResultsCache cache = new GitLabMergeResultsCache(executorServices);
+      then(cache.isParallelParentChecksEnabled()).isTrue();
+      then(cache.submitParentCheck(() -> Boolean.TRUE).get()).isTrue();
+
+      setInternalProperty(GitLabMergeResultsCache.PARALLEL_PARENT_CHECKS_PARAMETER, "1");
+      then(cache.isParallelParentChecksEnabled()).isFalse();
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  public void should_not_run_parent_checks_in_parallel_without_executors() {
+    then(new GitLabMergeResultsCache(null).isParallelParentChecksEnabled()).isFalse();
+  }
+}
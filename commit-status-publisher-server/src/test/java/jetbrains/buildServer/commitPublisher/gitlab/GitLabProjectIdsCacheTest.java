@@ -0,0 +1,76 @@
+/*
+ * Copyright 2000-2024 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jetbrains.buildServer.commitPublisher.gitlab;
+
+import jetbrains.buildServer.BaseTestCase;
+import org.testng.annotations.Test;
+
+import static org.assertj.core.api.BDDAssertions.then;
+
+@Test
+public class GitLabProjectIdsCacheTest extends BaseTestCase {
+  private static final String API_URL = "https://gitlab.com/api/v4";
+
+  public void should_keep_numeric_ids_by_path() {
+    final GitLabProjectIdsCache cache = new GitLabProjectIdsCache();
+    then(cache.getProjectId(API_URL, "group/subgroup", "project")).isNull();
+
+    cache.putProjectId(API_URL, "group/subgroup", "project", "42");
+    then(cache.getProjectId(API_URL, "group/subgroup", "project")).isEqualTo("42");
+    then(cache.getProjectId(API_URL, "group", "project")).isNull();
+    then(cache.getProjectId("https://gitlab.example.com/api/v4", "group/subgroup", "project")).isNull();
+    then(GitLabProjectIdsCache.getProjectUrl(API_URL, "42")).isEqualTo(API_URL + "/projects/42");
+
+    cache.invalidate(API_URL, "group/subgroup", "project");
+    then(cache.getProjectId(API_URL, "group/subgroup", "project")).isNull();
+  }
+
+  public void should_ignore_non_numeric_ids() {
+    final GitLabProjectIdsCache cache = new GitLabProjectIdsCache();
+    cache.putProjectId(API_URL, "owner", "project", "owner/project");
+    cache.putProjectId(API_URL, "owner", "another", null);
+    then(cache.getProjectId(API_URL, "owner", "project")).isNull();
+    then(cache.getProjectId(API_URL, "owner", "another")).isNull();
+  }
+
+  public void should_verify_ids_once_per_interval() {
+    final GitLabProjectIdsCache cache = new GitLabProjectIdsCache();
+    then(cache.claimVerification(API_URL, "owner", "project")).isFalse();
+
+    cache.putProjectId(API_URL, "owner", "project", "42");
+    then(cache.claimVerification(API_URL, "owner", "project")).isFalse();
+
+    setInternalProperty(GitLabProjectIdsCache.VERIFICATION_INTERVAL_PARAMETER, "0");
+    cache.putProjectId(API_URL, "owner", "another", "43");
+    then(cache.claimVerification(API_URL, "owner", "another")).isTrue();
+  }
+
+  public void should_match_project_path() {
+    then(GitLabProjectIdsCache.isAtPath("group/subgroup/project", "group/subgroup", "project")).isTrue();
+    then(GitLabProjectIdsCache.isAtPath("Group/Project", "group", "project")).isTrue();
+    then(GitLabProjectIdsCache.isAtPath(null, "group", "project")).isTrue();
+    then(GitLabProjectIdsCache.isAtPath("another-group/project", "group", "project")).isFalse();
+  }
+
+  public void should_not_be_used_when_disabled() {
+    final GitLabProjectIdsCache cache = new GitLabProjectIdsCache();
+    cache.putProjectId(API_URL, "owner", "project", "42");
+    setInternalProperty(GitLabProjectIdsCache.ENABLED_PARAMETER, "false");
+    then(cache.isEnabled()).isFalse();
+    then(cache.getProjectId(API_URL, "owner", "project")).isNull();
+  }
+}
@@ -22,12 +22,16 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 import jetbrains.buildServer.MockBuildPromotion;
 import jetbrains.buildServer.commitPublisher.*;
 import jetbrains.buildServer.commitPublisher.gitlab.data.*;
+import jetbrains.buildServer.commitPublisher.metrics.CommitStatusPublisherMetrics;
 import jetbrains.buildServer.messages.Status;
 import jetbrains.buildServer.serverSide.*;
+import jetbrains.buildServer.serverSide.executors.ExecutorServices;
 import jetbrains.buildServer.serverSide.impl.PipelineViewImpl;
 import jetbrains.buildServer.vcs.CheckoutRules;
 import jetbrains.buildServer.vcs.VcsModificationHistoryEx;
@@ -57,27 +61,31 @@ public class GitlabPublisherTest extends HttpPublisherTest {
   protected final static String TRANSITIVE_REPO_CORRECT = TRANSITIVE_REPO + "_correct";
   protected final static String TRANSITIVE_REPO_EMPTY = TRANSITIVE_REPO + "_empty";
   private static final String MERGE_RESULT_COMMIT = "31337";
+  private static final String MISSING_COMMIT = "404404";
+  private static final String PROJECT_ID = "111";
+  private static final String OTHER_PROJECT_ID = "112";
   private final Map<String, List<GitLabPublishCommitStatus>> myRevisionToStatuses = new HashMap<>();
   private final GitLabBuildNameProvider myBuildNameProvider = new GitLabBuildNameProvider();
 
   private VcsModificationHistoryEx myVcsModificationHistory;
+  private String myProjectId;
 
   public GitlabPublisherTest() {
-    myExpectedRegExps.put(EventToTest.QUEUED, String.format(".*/projects/owner%%2Fproject/statuses/%s.*ENTITY:.*pending.*%s.*", REVISION, DefaultStatusMessages.BUILD_QUEUED));
-    myExpectedRegExps.put(EventToTest.REMOVED, String.format(".*/projects/owner%%2Fproject/statuses/%s.*ENTITY:.*canceled.*%s\".*", REVISION, DefaultStatusMessages.BUILD_REMOVED_FROM_QUEUE));
-    myExpectedRegExps.put(EventToTest.STARTED, String.format(".*/projects/owner%%2Fproject/statuses/%s.*ENTITY:.*running.*%s.*", REVISION, DefaultStatusMessages.BUILD_STARTED));
-    myExpectedRegExps.put(EventToTest.FINISHED, String.format(".*/projects/owner%%2Fproject/statuses/%s.*ENTITY:.*success.*Success.*", REVISION));
-    myExpectedRegExps.put(EventToTest.FAILED, String.format(".*/projects/owner%%2Fproject/statuses/%s.*ENTITY:.*failed.*Failure.*", REVISION));
+    myExpectedRegExps.put(EventToTest.QUEUED, String.format(".*/projects/%s/statuses/%s.*ENTITY:.*pending.*%s.*", PROJECT_ID, REVISION, DefaultStatusMessages.BUILD_QUEUED));
+    myExpectedRegExps.put(EventToTest.REMOVED, String.format(".*/projects/%s/statuses/%s.*ENTITY:.*canceled.*%s\".*", PROJECT_ID, REVISION, DefaultStatusMessages.BUILD_REMOVED_FROM_QUEUE));
+    myExpectedRegExps.put(EventToTest.STARTED, String.format(".*/projects/%s/statuses/%s.*ENTITY:.*running.*%s.*", PROJECT_ID, REVISION, DefaultStatusMessages.BUILD_STARTED));
+    myExpectedRegExps.put(EventToTest.FINISHED, String.format(".*/projects/%s/statuses/%s.*ENTITY:.*success.*Success.*", PROJECT_ID, REVISION));
+    myExpectedRegExps.put(EventToTest.FAILED, String.format(".*/projects/%s/statuses/%s.*ENTITY:.*failed.*Failure.*", PROJECT_ID, REVISION));
     myExpectedRegExps.put(EventToTest.COMMENTED_SUCCESS, null); // not to be tested
     myExpectedRegExps.put(EventToTest.COMMENTED_FAILED, null); // not to be tested
     myExpectedRegExps.put(EventToTest.COMMENTED_INPROGRESS, null); // not to be tested
     myExpectedRegExps.put(EventToTest.COMMENTED_INPROGRESS_FAILED, null); // not to be tested
-    myExpectedRegExps.put(EventToTest.INTERRUPTED, String.format(".*/projects/owner%%2Fproject/statuses/%s.*ENTITY:.*canceled.*%s.*", REVISION, PROBLEM_DESCR));
-    myExpectedRegExps.put(EventToTest.FAILURE_DETECTED, String.format(".*/projects/owner%%2Fproject/statuses/%s.*ENTITY:.*failed.*%s.*", REVISION, PROBLEM_DESCR));
-    myExpectedRegExps.put(EventToTest.MARKED_SUCCESSFUL, String.format(".*/projects/owner%%2Fproject/statuses/%s.*ENTITY:.*success.*%s.*", REVISION, DefaultStatusMessages.BUILD_MARKED_SUCCESSFULL));
-    myExpectedRegExps.put(EventToTest.MARKED_RUNNING_SUCCESSFUL, String.format(".*/projects/owner%%2Fproject/statuses/%s.*ENTITY:.*running.*%s.*", REVISION, DefaultStatusMessages.BUILD_MARKED_SUCCESSFULL));
+    myExpectedRegExps.put(EventToTest.INTERRUPTED, String.format(".*/projects/%s/statuses/%s.*ENTITY:.*canceled.*%s.*", PROJECT_ID, REVISION, PROBLEM_DESCR));
+    myExpectedRegExps.put(EventToTest.FAILURE_DETECTED, String.format(".*/projects/%s/statuses/%s.*ENTITY:.*failed.*%s.*", PROJECT_ID, REVISION, PROBLEM_DESCR));
+    myExpectedRegExps.put(EventToTest.MARKED_SUCCESSFUL, String.format(".*/projects/%s/statuses/%s.*ENTITY:.*success.*%s.*", PROJECT_ID, REVISION, DefaultStatusMessages.BUILD_MARKED_SUCCESSFULL));
+    myExpectedRegExps.put(EventToTest.MARKED_RUNNING_SUCCESSFUL, String.format(".*/projects/%s/statuses/%s.*ENTITY:.*running.*%s.*", PROJECT_ID, REVISION, DefaultStatusMessages.BUILD_MARKED_SUCCESSFULL));
     myExpectedRegExps.put(EventToTest.TEST_CONNECTION, ".*/projects/owner%2Fproject .*");
-    myExpectedRegExps.put(EventToTest.PAYLOAD_ESCAPED, String.format(".*/projects/owner%%2Fproject/statuses/%s.*ENTITY:.*failed.*%s.*Failure.*", REVISION, BT_NAME_ESCAPED_REGEXP));
+    myExpectedRegExps.put(EventToTest.PAYLOAD_ESCAPED, String.format(".*/projects/%s/statuses/%s.*ENTITY:.*failed.*%s.*Failure.*", PROJECT_ID, REVISION, BT_NAME_ESCAPED_REGEXP));
   }
 
   public void test_buildFinishedSuccessfully_server_url_with_subdir() throws Exception {
@@ -87,7 +95,7 @@ public class GitlabPublisherTest extends HttpPublisherTest {
     myVcsRoot.setProperties(Collections.singletonMap("url", "https://url.com/subdir/owner/project"));
     VcsRootInstance vcsRootInstance = myBuildType.getVcsRootInstanceForParent(myVcsRoot);
     myRevision = new BuildRevision(vcsRootInstance, REVISION, "", REVISION);
-    myPublisher = new GitlabPublisher(myPublisherSettings, myBuildType, FEATURE_ID, myWebLinks, params, myProblems, new CommitStatusesCache<>(), myVcsModificationHistory, null, myBuildNameProvider);
+    myPublisher = new GitlabPublisher(myPublisherSettings, myBuildType, FEATURE_ID, myWebLinks, params, myProblems, new CommitStatusesCache<>(new CommitStatusPublisherMetrics()), myVcsModificationHistory, null, myBuildNameProvider, myConcurrencyLimiter);
     test_buildFinished_Successfully();
   }
 
@@ -98,7 +106,7 @@ public class GitlabPublisherTest extends HttpPublisherTest {
     myVcsRoot.setProperties(Collections.singletonMap("url", "https://url.com/subdir/owner/project"));
     VcsRootInstance vcsRootInstance = myBuildType.getVcsRootInstanceForParent(myVcsRoot);
     myRevision = new BuildRevision(vcsRootInstance, REVISION, "", REVISION);
-    myPublisher = new GitlabPublisher(myPublisherSettings, myBuildType, FEATURE_ID, myWebLinks, params, myProblems, new CommitStatusesCache<>(), myVcsModificationHistory, null, myBuildNameProvider);
+    myPublisher = new GitlabPublisher(myPublisherSettings, myBuildType, FEATURE_ID, myWebLinks, params, myProblems, new CommitStatusesCache<>(new CommitStatusPublisherMetrics()), myVcsModificationHistory, null, myBuildNameProvider, myConcurrencyLimiter);
     test_buildFinished_Successfully();
   }
 
@@ -211,6 +219,37 @@ public class GitlabPublisherTest extends HttpPublisherTest {
     assertFalse(publisher.getRevisionStatus(removedBuild, new GitLabReceiveCommitStatus(null, GitlabBuildStatus.PENDING.getName(), DefaultStatusMessages.BUILD_QUEUED, "anotherTypeFullName", "http://localhost:8111/viewQueued.html?itemId=321")).isEventAllowed(CommitStatusPublisher.Event.REMOVED_FROM_QUEUE, Long.MAX_VALUE));
   }
 
+  public void should_detect_transitions_rejected_by_gitlab() {
+    then(GitlabPublisher.isRejectedTransition(null, publishStatus(GitlabBuildStatus.PENDING, "main"))).isFalse();
+    then(GitlabPublisher.isRejectedTransition(receivedStatus(GitlabBuildStatus.PENDING, "main"), publishStatus(GitlabBuildStatus.PENDING, "main"))).isTrue();
+    then(GitlabPublisher.isRejectedTransition(receivedStatus(GitlabBuildStatus.RUNNING, "main"), publishStatus(GitlabBuildStatus.PENDING, "main"))).isTrue();
+    then(GitlabPublisher.isRejectedTransition(receivedStatus(GitlabBuildStatus.RUNNING, "main"), publishStatus(GitlabBuildStatus.RUNNING, "main"))).isTrue();
+    then(GitlabPublisher.isRejectedTransition(receivedStatus(GitlabBuildStatus.PENDING, "main"), publishStatus(GitlabBuildStatus.RUNNING, "main"))).isFalse();
+    then(GitlabPublisher.isRejectedTransition(receivedStatus(GitlabBuildStatus.RUNNING, "main"), publishStatus(GitlabBuildStatus.SUCCESS, "main"))).isFalse();
+    then(GitlabPublisher.isRejectedTransition(receivedStatus(GitlabBuildStatus.SUCCESS, "main"), publishStatus(GitlabBuildStatus.PENDING, "main"))).isFalse();
+    then(GitlabPublisher.isRejectedTransition(receivedStatus(GitlabBuildStatus.RUNNING, "main"), publishStatus(GitlabBuildStatus.RUNNING, "feature"))).isFalse();
+
+    setInternalProperty(GitlabPublisher.SKIP_REJECTED_TRANSITIONS_PARAMETER, "false");
+    then(GitlabPublisher.isRejectedTransition(receivedStatus(GitlabBuildStatus.RUNNING, "main"), publishStatus(GitlabBuildStatus.RUNNING, "main"))).isFalse();
+  }
+
+  public void should_not_publish_rejected_transition() throws Exception {
+    myPublisher.buildStarted(startBuildInCurrentBranch(myBuildType), myRevision);
+    then(getRequestAsString()).isNotNull().matches(myExpectedRegExps.get(EventToTest.STARTED));
+    final int requests = countRequests();
+
+    myPublisher.buildStarted(startBuildInCurrentBranch(myBuildType), myRevision);
+    then(countRequests()).isEqualTo(requests);
+  }
+
+  private static GitLabPublishCommitStatus publishStatus(@NotNull GitlabBuildStatus status, @NotNull String ref) {
+    return new GitLabPublishCommitStatus(status.getName(), "description", "name", "http://localhost:8111/viewLog.html?buildId=1", ref);
+  }
+
+  private static GitLabReceiveCommitStatus receivedStatus(@NotNull GitlabBuildStatus status, @NotNull String ref) {
+    return new GitLabReceiveCommitStatus(1L, status.getName(), "description", "name", "http://localhost:8111/viewLog.html?buildId=1", ref);
+  }
+
   public void buildFinishedSuccessfully_on_merge_result_ref() throws Exception {
     setInternalProperty("teamcity.internal." + Constants.GITLAB_FEATURE_TOGGLE_MERGE_RESULTS, true);
     final String mergeResultRevision = MERGE_RESULT_COMMIT;
@@ -223,37 +262,118 @@ public class GitlabPublisherTest extends HttpPublisherTest {
     final VcsRootInstanceEntry rootEntry = new VcsRootInstanceEntry(vcsRootInstance, CheckoutRules.createOn(""));
     final RepositoryVersion repositoryVersion = new RepositoryVersion(mergeResultRevision, mergeResultRevision, mergeResultRef);
     myRevision = new BuildRevision(rootEntry, repositoryVersion);
-    myPublisher = new GitlabPublisher(myPublisherSettings, myBuildType, FEATURE_ID, myWebLinks, params, myProblems, new CommitStatusesCache<>(), myVcsModificationHistory, null, myBuildNameProvider);
+    myPublisher = new GitlabPublisher(myPublisherSettings, myBuildType, FEATURE_ID, myWebLinks, params, myProblems, new CommitStatusesCache<>(new CommitStatusPublisherMetrics()), myVcsModificationHistory, null, myBuildNameProvider, myConcurrencyLimiter);
     myFixture.addModification(modification().in(vcsRootInstance).version(mergeResultRevision).parentVersions("100000", REVISION));
 
     test_buildFinished_Successfully();
   }
 
+  public void should_publish_merge_result_status_to_first_parent_only_in_source_branch() throws Exception {
+    final String anotherSourceBranchCommit = "271828";
+    myVcsRoot.setProperties(Collections.singletonMap("url", "https://url.com/owner/project"));
+    final VcsRootInstance vcsRootInstance = myBuildType.getVcsRootInstanceForParent(myVcsRoot);
+    final VcsRootInstanceEntry rootEntry = new VcsRootInstanceEntry(vcsRootInstance, CheckoutRules.createOn(""));
+    myRevision = new BuildRevision(rootEntry, new RepositoryVersion(MERGE_RESULT_COMMIT, MERGE_RESULT_COMMIT, "refs/merge-requests/1/merge"));
+    // the first parent is in both branches, the other two are only in the source branch and are checked in parallel
+    myFixture.addModification(modification().in(vcsRootInstance).version(MERGE_RESULT_COMMIT).parentVersions("100000", REVISION, anotherSourceBranchCommit));
+    myPublisher = myPublisherSettings.createPublisher(myBuildType, FEATURE_ID, getPublisherParams());
+    final Pattern mergeRequestRequest = Pattern.compile("GET .*/merge_requests/1 .*");
+    final Pattern branchesRequest = Pattern.compile("GET .*/repository/commits/.*/refs\\?type=branch .*");
+
+    myPublisher.buildStarted(startBuildInCurrentBranch(myBuildType), myRevision);
+    then(getRequestAsString()).isNotNull().matches(myExpectedRegExps.get(EventToTest.STARTED));
+    then(getMatchingRequestsOrderNumbers(mergeRequestRequest)).hasSize(1);
+    then(getMatchingRequestsOrderNumbers(Pattern.compile("GET .*/repository/commits/100000/refs.*"))).hasSize(1);
+    then(getMatchingRequestsOrderNumbers(Pattern.compile("GET .*/repository/commits/" + REVISION + "/refs.*"))).hasSize(1);
+    // the last parent may or may not have been checked before the check of the preceding one completed
+    then(getMatchingRequestsOrderNumbers(branchesRequest).size()).isBetween(2, 3);
+    then(getMatchingRequestsOrderNumbers(Pattern.compile(".*/statuses/" + anotherSourceBranchCommit + ".*"))).isEmpty();
+    final int branchesRequests = getMatchingRequestsOrderNumbers(branchesRequest).size();
+
+    myPublisher.buildFinished(createBuildInCurrentBranch(myBuildType, Status.NORMAL), myRevision);
+    then(getRequestAsString()).isNotNull().matches(myExpectedRegExps.get(EventToTest.FINISHED));
+    then(getMatchingRequestsOrderNumbers(mergeRequestRequest)).hasSize(1);
+    then(getMatchingRequestsOrderNumbers(branchesRequest)).hasSize(branchesRequests);
+  }
+
+  public void should_not_reuse_statuses_of_commit_loaded_for_another_branch() throws Exception {
+    setInternalProperty("teamcity.commitStatusPubliser.checkStatus.enabled", "true");
+    final VcsRootInstance vcsRootInstance = myBuildType.getVcsRootInstanceForParent(myVcsRoot);
+    final VcsRootInstanceEntry rootEntry = new VcsRootInstanceEntry(vcsRootInstance, CheckoutRules.createOn(""));
+    final BuildRevision featureRevision = new BuildRevision(rootEntry, new RepositoryVersion(REVISION, REVISION, "refs/heads/feature"));
+    final BuildRevision mainRevision = new BuildRevision(rootEntry, new RepositoryVersion(REVISION, REVISION, "refs/heads/main"));
+    final SFinishedBuild build = myFixture.createBuild(myBuildType, Status.NORMAL);
+    final Pattern featureStatusesRequest = Pattern.compile("GET .*/statuses\\?.*ref=feature.*");
+    final Pattern mainStatusesRequest = Pattern.compile("GET .*/statuses\\?.*ref=main.*");
+
+    myPublisher.buildStarted(build, featureRevision);
+    then(myPublisher.getRevisionStatus(build.getBuildPromotion(), mainRevision)).isNull();
+    then(getMatchingRequestsOrderNumbers(mainStatusesRequest)).hasSize(1);
+
+    final RevisionStatus featureStatus = myPublisher.getRevisionStatus(build.getBuildPromotion(), featureRevision);
+    then(featureStatus).isNotNull();
+    then(featureStatus.getTriggeredEvent()).isEqualTo(CommitStatusPublisher.Event.STARTED);
+    then(getMatchingRequestsOrderNumbers(featureStatusesRequest)).hasSize(1);
+
+    // the commit status loaded for the feature branch is cached, but not for the main one
+    then(myPublisher.getRevisionStatus(build.getBuildPromotion(), featureRevision)).isNotNull();
+    then(myPublisher.getRevisionStatus(build.getBuildPromotion(), mainRevision)).isNull();
+    then(getMatchingRequestsOrderNumbers(featureStatusesRequest)).hasSize(1);
+  }
+
+  public void should_resolve_project_id_again_when_project_is_not_found_by_id() throws Exception {
+    myPublisher.buildStarted(startBuildInCurrentBranch(myBuildType), myRevision);
+    then(getRequestAsString()).isNotNull().matches(myExpectedRegExps.get(EventToTest.STARTED));
+
+    // the project has been recreated or imported again under the same path
+    myProjectId = "113";
+    myPublisher.buildFinished(createBuildInCurrentBranch(myBuildType, Status.NORMAL), myRevision);
+    then(getRequestAsString()).isNotNull().matches(String.format(".*/projects/113/statuses/%s.*ENTITY:.*success.*", REVISION));
+    then(getMatchingRequestsOrderNumbers(Pattern.compile("GET .*/projects/" + PROJECT_ID + " .*"))).hasSize(1);
+    then(getMatchingRequestsOrderNumbers(Pattern.compile("GET .*/projects/owner%2Fproject .*"))).hasSize(2);
+  }
+
+  public void should_not_resolve_project_id_again_when_other_resource_is_not_found() throws Exception {
+    myPublisher.buildStarted(startBuildInCurrentBranch(myBuildType), myRevision);
+    then(getRequestAsString()).isNotNull().matches(myExpectedRegExps.get(EventToTest.STARTED));
+
+    final BuildRevision missingRevision = new BuildRevision(myBuildType.getVcsRootInstanceForParent(myVcsRoot), MISSING_COMMIT, "", MISSING_COMMIT);
+    try {
+      myPublisher.buildFinished(createBuildInCurrentBranch(myBuildType, Status.NORMAL), missingRevision);
+      fail("PublisherException expected");
+    } catch (PublisherException ignored) {
+    }
+    // the project is still found by its id, so the id is neither resolved again nor the status is published once more
+    then(getMatchingRequestsOrderNumbers(Pattern.compile("POST .*/projects/" + PROJECT_ID + "/statuses/" + MISSING_COMMIT + " .*"))).hasSize(1);
+    then(getMatchingRequestsOrderNumbers(Pattern.compile("GET .*/projects/" + PROJECT_ID + " .*"))).hasSize(1);
+    then(getMatchingRequestsOrderNumbers(Pattern.compile("GET .*/projects/owner%2Fproject .*"))).hasSize(1);
+  }
+
   public void url_guessing_test() {
     Map<String, String> params = getPublisherParams();
     myVcsRoot.setProperties(Collections.singletonMap("url", "https://url.com/owner/project"));
-    myPublisher = new GitlabPublisher(myPublisherSettings, myBuildType, FEATURE_ID, myWebLinks, params, myProblems, new CommitStatusesCache<>(), myVcsModificationHistory, null, myBuildNameProvider);
+    myPublisher = new GitlabPublisher(myPublisherSettings, myBuildType, FEATURE_ID, myWebLinks, params, myProblems, new CommitStatusesCache<>(new CommitStatusPublisherMetrics()), myVcsModificationHistory, null, myBuildNameProvider, myConcurrencyLimiter);
     assertEquals("https://url.com/api/v4", myPublisherSettings.guessApiURL(myVcsRoot.getProperty("url")));
   }
 
   public void url_guessing__port_test() {
     Map<String, String> params = getPublisherParams();
     myVcsRoot.setProperties(Collections.singletonMap("url", "https://url.com:1234/owner/project"));
-    myPublisher = new GitlabPublisher(myPublisherSettings, myBuildType, FEATURE_ID, myWebLinks, params, myProblems, new CommitStatusesCache<>(), myVcsModificationHistory, null, myBuildNameProvider);
+    myPublisher = new GitlabPublisher(myPublisherSettings, myBuildType, FEATURE_ID, myWebLinks, params, myProblems, new CommitStatusesCache<>(new CommitStatusPublisherMetrics()), myVcsModificationHistory, null, myBuildNameProvider, myConcurrencyLimiter);
     assertEquals("https://url.com:1234/api/v4", myPublisherSettings.guessApiURL(myVcsRoot.getProperty("url")));
   }
 
   public void url_guessing_test_http() {
     Map<String, String> params = getPublisherParams();
     myVcsRoot.setProperties(Collections.singletonMap("url", "http://url.com/owner/project"));
-    myPublisher = new GitlabPublisher(myPublisherSettings, myBuildType, FEATURE_ID, myWebLinks, params, myProblems, new CommitStatusesCache<>(), myVcsModificationHistory, null, myBuildNameProvider);
+    myPublisher = new GitlabPublisher(myPublisherSettings, myBuildType, FEATURE_ID, myWebLinks, params, myProblems, new CommitStatusesCache<>(new CommitStatusPublisherMetrics()), myVcsModificationHistory, null, myBuildNameProvider, myConcurrencyLimiter);
     assertEquals("http://url.com/api/v4", myPublisherSettings.guessApiURL(myVcsRoot.getProperty("url")));
   }
 
   public void url_guessing_test_git() {
     Map<String, String> params = getPublisherParams();
     myVcsRoot.setProperties(Collections.singletonMap("url", "git@url.com:owner/project.git"));
-    myPublisher = new GitlabPublisher(myPublisherSettings, myBuildType, FEATURE_ID, myWebLinks, params, myProblems, new CommitStatusesCache<>(), myVcsModificationHistory, null, myBuildNameProvider);
+    myPublisher = new GitlabPublisher(myPublisherSettings, myBuildType, FEATURE_ID, myWebLinks, params, myProblems, new CommitStatusesCache<>(new CommitStatusPublisherMetrics()), myVcsModificationHistory, null, myBuildNameProvider, myConcurrencyLimiter);
     assertEquals("https://url.com/api/v4", myPublisherSettings.guessApiURL(myVcsRoot.getProperty("url")));
   }
 
@@ -261,7 +381,7 @@ public class GitlabPublisherTest extends HttpPublisherTest {
     Map<String, String> params = getPublisherParams();
     params.remove(Constants.GITLAB_API_URL);
     myVcsRoot.setProperties(Collections.singletonMap("url", "git@url.com:owner/some_/path/project.git"));
-    myPublisher = new GitlabPublisher(myPublisherSettings, myBuildType, FEATURE_ID, myWebLinks, params, myProblems, new CommitStatusesCache<>(), myVcsModificationHistory, null, myBuildNameProvider);
+    myPublisher = new GitlabPublisher(myPublisherSettings, myBuildType, FEATURE_ID, myWebLinks, params, myProblems, new CommitStatusesCache<>(new CommitStatusPublisherMetrics()), myVcsModificationHistory, null, myBuildNameProvider, myConcurrencyLimiter);
     assertEquals("https://url.com/api/v4", ((GitlabPublisher)myPublisher).getApiUrl(myVcsRoot.getProperty("url")));
   }
 
@@ -276,11 +396,13 @@ public class GitlabPublisherTest extends HttpPublisherTest {
     setExpectedApiPath("/api/v4");
     setExpectedEndpointPrefix("/projects/" + OWNER + "%2F" + CORRECT_REPO);
     super.setUp();
+    myProjectId = PROJECT_ID;
     myVcsModificationHistory = myFixture.getVcsHistory();
     myPublisherSettings = new GitlabSettings(new MockPluginDescriptor(), myWebLinks, myProblems, myTrustStoreProvider, myVcsModificationHistory, myOAuthConnectionsManager, myOAuthTokenStorage, getUserModelEx(),
-                                             myFixture.getSecurityContext(), myFixture, myBuildNameProvider);
+                                             myFixture.getSecurityContext(), myFixture, myBuildNameProvider, myFixture.getSingletonService(ExecutorServices.class), myConcurrencyLimiter,
+                                             new CommitStatusPublisherMetrics());
     Map<String, String> params = getPublisherParams();
-    myPublisher = new GitlabPublisher(myPublisherSettings, myBuildType, FEATURE_ID, myWebLinks, params, myProblems, new CommitStatusesCache<>(), myVcsModificationHistory, null, myBuildNameProvider);
+    myPublisher = new GitlabPublisher(myPublisherSettings, myBuildType, FEATURE_ID, myWebLinks, params, myProblems, new CommitStatusesCache<>(new CommitStatusPublisherMetrics()), myVcsModificationHistory, null, myBuildNameProvider, myConcurrencyLimiter);
     myBuildType.getProject().addParameter(new SimpleParameter("teamcity.commitStatusPublisher.publishQueuedBuildStatus", "true"));
   }
 
@@ -300,15 +422,29 @@ public class GitlabPublisherTest extends HttpPublisherTest {
     }};
   }
 
+  @Override
+  protected boolean requiresInitialRequest() {
+    // the project id is resolved before the first request to the project
+    return true;
+  }
+
+  /**
+   * The mock server knows the correct repository both by its path and by its current numeric id
+   */
+  private String toProjectPathUrl(String url) {
+    return url.replaceFirst("/projects/" + myProjectId + "(?=[/?]|$)", "/projects/" + OWNER + "%2F" + CORRECT_REPO);
+  }
+
   @Override
   protected boolean respondToGet(String url, HttpResponse httpResponse) {
+    url = toProjectPathUrl(url);
     if (url.contains("/projects/" + OWNER + "%2F" + CORRECT_REPO + "/repository/commits")) {
       if (url.endsWith("/refs?type=branch")) {               // /api/v4/projects/test%2Fspring-template/repository/commits/4071e1f3606ea74964146499a165b163b5f11821/refs
         final String[] tokens = url.split("/");
         respondWithCommitRefs(httpResponse, tokens[tokens.length - 2]);
       } else {
         String revision = getRevision(url, "/api/v4/projects/owner%2Fproject/repository/commits/");
-        respondWithCommits(httpResponse, revision);
+        respondWithCommits(httpResponse, revision, getQueryParameter(url, "ref"));
       }
     } else if (url.contains("/projects/" + OWNER + "%2F" + CORRECT_REPO + "/merge_requests")) {
       respondWithMergeRequest(httpResponse);
@@ -333,12 +469,20 @@ public class GitlabPublisherTest extends HttpPublisherTest {
     return true;
   }
 
-  private void respondWithCommits(HttpResponse httpResponse, String revision) {
+  private void respondWithCommits(HttpResponse httpResponse, String revision, String ref) {
     List<GitLabPublishCommitStatus> statuses = myRevisionToStatuses.getOrDefault(revision, new ArrayList<>());
-    String json = gson.toJson(statuses.stream().map(s -> new GitLabReceiveCommitStatus(0L, s.state, s.description, s.name, s.target_url)).collect(Collectors.toList()));
+    String json = gson.toJson(statuses.stream()
+                                      .filter(s -> ref == null || ref.equals(s.ref))
+                                      .map(s -> new GitLabReceiveCommitStatus(0L, s.state, s.description, s.name, s.target_url, s.ref))
+                                      .collect(Collectors.toList()));
     httpResponse.setEntity(new StringEntity(json, StandardCharsets.UTF_8));
   }
 
+  private static String getQueryParameter(String url, String name) {
+    final Matcher matcher = Pattern.compile("[?&]" + name + "=([^&]*)").matcher(url);
+    return matcher.find() ? matcher.group(1) : null;
+  }
+
   private void respondWithMergeRequest(HttpResponse httpResponse) {
     respondFromResource(httpResponse, "/gitlab/mergeRequest.json");
   }
@@ -361,7 +505,12 @@ public class GitlabPublisherTest extends HttpPublisherTest {
 
   @Override
   protected boolean respondToPost(String url, String requestData, final HttpRequest httpRequest, HttpResponse httpResponse) {
+    url = toProjectPathUrl(url);
     String revision = getRevision(url, "/api/v4/projects/owner%2Fproject/statuses/");
+    if (MISSING_COMMIT.equals(revision)) {
+      respondWithError(httpResponse, 404, "Commit Not Found");
+      return false;
+    }
     if (revision != null) {
       GitLabPublishCommitStatus status = gson.fromJson(requestData, GitLabPublishCommitStatus.class);
       myRevisionToStatuses.computeIfAbsent(revision, k -> new ArrayList<>()).add(status);
@@ -371,7 +520,7 @@ public class GitlabPublisherTest extends HttpPublisherTest {
 
 
   private void respondWithRepoInfo(HttpResponse httpResponse, String repoName, boolean isGroupRepo, boolean isPushPermitted, boolean hasTransitiveRights) {
-    GitLabRepoInfo repoInfo = new GitLabRepoInfo("111", new GitLabPermissions());
+    GitLabRepoInfo repoInfo = new GitLabRepoInfo(CORRECT_REPO.equals(repoName) ? myProjectId : OTHER_PROJECT_ID, new GitLabPermissions());
     GitLabAccessLevel accessLevel = new GitLabAccessLevel();
     accessLevel.access_level = isPushPermitted ? 30 : 20;
     if (isGroupRepo) {
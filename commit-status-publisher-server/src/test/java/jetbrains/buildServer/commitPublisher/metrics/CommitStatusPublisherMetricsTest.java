@@ -0,0 +1,77 @@
+/*
+ * Copyright 2000-2024 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jetbrains.buildServer.commitPublisher.metrics;
+
+import java.util.Collections;
+import jetbrains.buildServer.BaseTestCase;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import static org.assertj.core.api.BDDAssertions.then;
+
+@Test
+public class CommitStatusPublisherMetricsTest extends BaseTestCase {
+  private CommitStatusPublisherMetrics myMetrics;
+
+  @Override
+  @BeforeMethod
+  public void setUp() throws Exception {
+    super.setUp();
+    myMetrics = new CommitStatusPublisherMetrics();
+  }
+
+  public void should_render_counters() {
+    myMetrics.increment(CommitStatusPublisherMetrics.EVENTS_RECEIVED, "event", "buildStarted");
+    myMetrics.increment(CommitStatusPublisherMetrics.EVENTS_RECEIVED, "event", "buildStarted");
+    myMetrics.increment(CommitStatusPublisherMetrics.EVENTS_RECEIVED, "event", "buildFinished");
+
+    then(myMetrics.render())
+      .contains("# TYPE commit_status_publisher_events_received counter\n")
+      .contains("commit_status_publisher_events_received_total{event=\"buildStarted\"} 2\n")
+      .contains("commit_status_publisher_events_received_total{event=\"buildFinished\"} 1\n")
+      .endsWith("# EOF\n");
+  }
+
+  public void should_render_cumulative_histogram_buckets() {
+    myMetrics.observe(CommitStatusPublisherMetrics.PUBLISH_DURATION, 7, "publisher", "githubStatusPublisher", "host", "api.github.com");
+    myMetrics.observe(CommitStatusPublisherMetrics.PUBLISH_DURATION, 3_000, "publisher", "githubStatusPublisher", "host", "api.github.com");
+
+    then(myMetrics.render())
+      .contains("commit_status_publisher_publish_duration_seconds_bucket{publisher=\"githubStatusPublisher\",host=\"api.github.com\",le=\"0.005\"} 0\n")
+      .contains("commit_status_publisher_publish_duration_seconds_bucket{publisher=\"githubStatusPublisher\",host=\"api.github.com\",le=\"0.01\"} 1\n")
+      .contains("commit_status_publisher_publish_duration_seconds_bucket{publisher=\"githubStatusPublisher\",host=\"api.github.com\",le=\"5.0\"} 2\n")
+      .contains("commit_status_publisher_publish_duration_seconds_bucket{publisher=\"githubStatusPublisher\",host=\"api.github.com\",le=\"+Inf\"} 2\n")
+      .contains("commit_status_publisher_publish_duration_seconds_count{publisher=\"githubStatusPublisher\",host=\"api.github.com\"} 2\n")
+      .contains("commit_status_publisher_publish_duration_seconds_sum{publisher=\"githubStatusPublisher\",host=\"api.github.com\"} 3.007\n");
+  }
+
+  public void should_render_gauges_and_escape_labels() {
+    myMetrics.registerGauge(CommitStatusPublisherMetrics.CONCURRENCY_LIMIT, "host", () -> Collections.singletonMap("my\"host", 5));
+    myMetrics.registerGauge(CommitStatusPublisherMetrics.QUEUE_DEPTH, "", () -> Collections.singletonMap("", 3));
+
+    then(myMetrics.render())
+      .contains("commit_status_publisher_concurrency_limit{host=\"my\\\"host\"} 5\n")
+      .contains("commit_status_publisher_queue_depth 3\n");
+  }
+
+  public void should_not_collect_when_disabled() {
+    setInternalProperty(CommitStatusPublisherMetrics.METRICS_ENABLED_PARAMETER, "false");
+    myMetrics.increment(CommitStatusPublisherMetrics.EVENTS_RECEIVED, "event", "buildStarted");
+
+    then(myMetrics.render()).doesNotContain("commit_status_publisher_events_received_total");
+  }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2000-2024 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jetbrains.buildServer.commitPublisher.metrics;
+
+import java.io.File;
+import java.util.List;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import jetbrains.buildServer.BaseTestCase;
+import org.testng.annotations.Test;
+
+import static org.assertj.core.api.BDDAssertions.then;
+
+@Test
+public class PublishingEventsTest extends BaseTestCase {
+
+  public void should_be_noop_without_recording() {
+    PublishingEvents.Span span = PublishingEvents.begin(PublishingEvents.Kind.STATUS_POST, "buildStarted", "githubStatusPublisher");
+    PublishingEvents.host("api.github.com");
+    span.end("success");
+  }
+
+  public void should_record_nested_spans() throws Exception {
+    File file = createTempFile();
+    try (Recording recording = new Recording()) {
+      recording.enable("jetbrains.teamcity.commitStatusPublisher.StatusPost");
+      recording.enable("jetbrains.teamcity.commitStatusPublisher.StatusCacheLookup");
+      recording.start();
+
+      PublishingEvents.Span post = PublishingEvents.begin(PublishingEvents.Kind.STATUS_POST, "buildStarted", "githubStatusPublisher");
+      PublishingEvents.Span lookup = PublishingEvents.begin(PublishingEvents.Kind.STATUS_CACHE_LOOKUP, null, null);
+      PublishingEvents.host("api.github.com");
+      lookup.end("miss");
+      post.end("success");
+
+      recording.stop();
+      recording.dump(file.toPath());
+    }
+
+    List<RecordedEvent> events = RecordingFile.readAllEvents(file.toPath());
+    then(events).hasSize(2);
+    RecordedEvent lookup = events.stream().filter(e -> e.getEventType().getName().endsWith("StatusCacheLookup")).findFirst().get();
+    then(lookup.getString("eventType")).isEqualTo("buildStarted");
+    then(lookup.getString("publisherId")).isEqualTo("githubStatusPublisher");
+    then(lookup.getString("host")).isEqualTo("api.github.com");
+    then(lookup.getString("outcome")).isEqualTo("miss");
+    RecordedEvent post = events.stream().filter(e -> e.getEventType().getName().endsWith("StatusPost")).findFirst().get();
+    then(post.getString("host")).isEqualTo("api.github.com");
+    then(post.getString("outcome")).isEqualTo("success");
+  }
+
+  public void should_record_outcome_set_before_end() throws Exception {
+    File file = createTempFile();
+    try (Recording recording = new Recording()) {
+      recording.enable("jetbrains.teamcity.commitStatusPublisher.StatusCacheLookup");
+      recording.start();
+
+      PublishingEvents.Span lookup = PublishingEvents.begin(PublishingEvents.Kind.STATUS_CACHE_LOOKUP, "buildStarted", "githubStatusPublisher");
+      lookup.setOutcome("hit");
+      lookup.end();
+
+      recording.stop();
+      recording.dump(file.toPath());
+    }
+
+    List<RecordedEvent> events = RecordingFile.readAllEvents(file.toPath());
+    then(events).hasSize(1);
+    then(events.get(0).getString("outcome")).isEqualTo("hit");
+  }
+
+  public void should_not_record_when_disabled() throws Exception {
+    setInternalProperty(PublishingEvents.JFR_EVENTS_ENABLED_PARAMETER, "false");
+    File file = createTempFile();
+    try (Recording recording = new Recording()) {
+      recording.enable("jetbrains.teamcity.commitStatusPublisher.StatusPost");
+      recording.start();
+      PublishingEvents.begin(PublishingEvents.Kind.STATUS_POST, "buildStarted", "githubStatusPublisher").end("success");
+      recording.stop();
+      recording.dump(file.toPath());
+    }
+    then(RecordingFile.readAllEvents(file.toPath())).isEmpty();
+  }
+}
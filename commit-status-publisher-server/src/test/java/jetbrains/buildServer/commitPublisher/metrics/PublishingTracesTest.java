@@ -0,0 +1,119 @@
+/*
+ * Copyright 2000-2024 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jetbrains.buildServer.commitPublisher.metrics;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+import jetbrains.buildServer.BaseTestCase;
+import jetbrains.buildServer.commitPublisher.PublishingContext;
+import org.testng.annotations.Test;
+
+import static org.assertj.core.api.BDDAssertions.then;
+
+@Test
+public class PublishingTracesTest extends BaseTestCase {
+
+  public void should_keep_only_the_latest_traces() {
+    PublishingTraces traces = new PublishingTraces(2);
+    traces.add(trace("bt1", 1, 100));
+    traces.add(trace("bt1", 2, 200));
+    traces.add(trace("bt1", 3, 300));
+
+    then(promotionIds(traces.getSlowest(null, null, 10))).containsOnly(2L, 3L);
+  }
+
+  public void should_return_the_slowest_traces_first() {
+    PublishingTraces traces = new PublishingTraces(10);
+    traces.add(trace("bt1", 1, 100));
+    traces.add(trace("bt1", 2, 500));
+    traces.add(trace("bt1", 3, 300));
+
+    then(promotionIds(traces.getSlowest(null, null, 2))).containsExactly(2L, 3L);
+  }
+
+  public void should_filter_by_build_type_and_host() {
+    PublishingTraces traces = new PublishingTraces(10);
+    PublishingTrace github = trace("bt1", 1, 100);
+    github.host("api.github.com");
+    PublishingTrace gitlab = trace("bt2", 2, 100);
+    gitlab.host("gitlab.com");
+    traces.add(github);
+    traces.add(gitlab);
+
+    then(promotionIds(traces.getSlowest("bt2", null, 10))).containsExactly(2L);
+    then(promotionIds(traces.getSlowest(null, "api.github.com", 10))).containsExactly(1L);
+    then(traces.getSlowest("bt1", "gitlab.com", 10)).isEmpty();
+  }
+
+  public void should_make_trace_current_while_running() {
+    PublishingTraces traces = new PublishingTraces(10);
+    PublishingTrace trace = traces.start("buildStarted", "bt1", 1, System.currentTimeMillis());
+    then(trace).isNotNull();
+
+    traces.run(trace, () -> {
+      then(PublishingTraces.current()).isSameAs(trace);
+      PublishingTraces.stage("custom");
+    });
+
+    then(PublishingTraces.current()).isNull();
+    then(trace.getStages().stream().map(PublishingTrace.Stage::getName).collect(Collectors.toList()))
+      .containsExactly("submitted", "started", "custom", "completed");
+    then(traces.getSlowest(null, null, 10)).containsExactly(trace);
+  }
+
+  public void should_add_stages_of_tasks_run_by_other_threads() throws Exception {
+    PublishingTraces traces = new PublishingTraces(10);
+    PublishingTrace trace = traces.start("buildStarted", "bt1", 1, System.currentTimeMillis());
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      traces.run(trace, () -> {
+        try {
+          executor.submit(PublishingContext.bind(() -> {
+            PublishingTraces.stage("page loaded");
+            return null;
+          })).get();
+        } catch (Exception e) {
+          throw new RuntimeException(e);
+        }
+      });
+      then(executor.submit(PublishingTraces::current).get()).isNull();
+    } finally {
+      executor.shutdownNow();
+    }
+
+    then(trace.getStages().stream().map(PublishingTrace.Stage::getName).collect(Collectors.toList()))
+      .containsExactly("submitted", "started", "page loaded", "completed");
+  }
+
+  public void should_not_trace_when_disabled() {
+    setInternalProperty(PublishingTraces.TRACES_ENABLED_PARAMETER, "false");
+    then(new PublishingTraces(10).start("buildStarted", "bt1", 1, System.currentTimeMillis())).isNull();
+  }
+
+  private static PublishingTrace trace(String buildTypeId, long promotionId, long durationMs) {
+    long now = System.currentTimeMillis();
+    PublishingTrace trace = new PublishingTrace("buildStarted", buildTypeId, promotionId, now - durationMs);
+    trace.finish();
+    return trace;
+  }
+
+  private static List<Long> promotionIds(List<PublishingTrace> traces) {
+    return traces.stream().map(PublishingTrace::getPromotionId).collect(Collectors.toList());
+  }
+}
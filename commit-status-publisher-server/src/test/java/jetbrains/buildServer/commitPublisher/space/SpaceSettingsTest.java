@@ -22,7 +22,9 @@ import java.util.function.Function;
 import java.util.stream.Collectors;
 import jetbrains.buildServer.commitPublisher.CommitStatusPublisher;
 import jetbrains.buildServer.commitPublisher.CommitStatusPublisherTestBase;
+import jetbrains.buildServer.commitPublisher.HostConcurrencyLimiter;
 import jetbrains.buildServer.commitPublisher.MockPluginDescriptor;
+import jetbrains.buildServer.commitPublisher.metrics.CommitStatusPublisherMetrics;
 import jetbrains.buildServer.serverSide.BuildTypeEx;
 import jetbrains.buildServer.serverSide.impl.ProjectEx;
 import jetbrains.buildServer.serverSide.impl.auth.SecurityContextImpl;
@@ -85,7 +87,9 @@ public class SpaceSettingsTest extends CommitStatusPublisherTestBase {
                                    trustStoreProvider,
                                    myConnectionsManager,
                                    securityContext,
-                                   myMockApplicationInformationManager);
+                                   myMockApplicationInformationManager,
+                                   new HostConcurrencyLimiter(new CommitStatusPublisherMetrics()),
+                                   new CommitStatusPublisherMetrics());
   }
 
   @Test
@@ -22,16 +22,20 @@ import java.nio.charset.StandardCharsets;
 import java.util.*;
 import jetbrains.BuildServerCreator;
 import jetbrains.buildServer.commitPublisher.*;
+import jetbrains.buildServer.commitPublisher.metrics.CommitStatusPublisherMetrics;
 import jetbrains.buildServer.commitPublisher.stash.data.DeprecatedJsonStashBuildStatuses;
 import jetbrains.buildServer.commitPublisher.stash.data.JsonStashBuildStatus;
 import jetbrains.buildServer.commitPublisher.stash.data.StashRepoInfo;
 import jetbrains.buildServer.commitPublisher.stash.data.StashServerInfo;
 import jetbrains.buildServer.serverSide.BuildRevision;
+import jetbrains.buildServer.serverSide.ServerPaths;
 import jetbrains.buildServer.serverSide.SimpleParameter;
+import jetbrains.buildServer.serverSide.executors.ExecutorServices;
 import jetbrains.buildServer.vcs.VcsRootInstance;
 import org.apache.http.HttpRequest;
 import org.apache.http.HttpResponse;
 import org.apache.http.entity.StringEntity;
+import org.jetbrains.annotations.NotNull;
 import org.testng.annotations.BeforeMethod;
 
 public abstract class BaseStashPublisherTest extends HttpPublisherTest {
@@ -45,7 +49,14 @@ public abstract class BaseStashPublisherTest extends HttpPublisherTest {
   protected void setUp() throws Exception {
     super.setUp();
     Map<String, String> params = getPublisherParams();
-    myPublisherSettings = new StashSettings(
+    myPublisherSettings = createSettings();
+    myPublisher = new StashPublisher(myPublisherSettings, myBuildType, FEATURE_ID, myWebLinks, params, myProblems, new CommitStatusesCache<>(new CommitStatusPublisherMetrics()), myBuildNameProvider, myConcurrencyLimiter);
+    myBuildType.getProject().addParameter(new SimpleParameter("teamcity.commitStatusPublisher.publishQueuedBuildStatus", "true"));
+  }
+
+  @NotNull
+  protected StashSettings createSettings() {
+    return new StashSettings(
       new MockPluginDescriptor(),
       myWebLinks,
       myProblems,
@@ -55,10 +66,13 @@ public abstract class BaseStashPublisherTest extends HttpPublisherTest {
       myFixture.getUserModel(),
       myFixture.getSecurityContext(),
       myFixture.getProjectManager(),
-      myBuildNameProvider
+      myBuildNameProvider,
+      myFixture.getSingletonService(ServerPaths.class),
+      myFixture,
+      myFixture.getSingletonService(ExecutorServices.class),
+      myConcurrencyLimiter,
+      new CommitStatusPublisherMetrics()
     );
-    myPublisher = new StashPublisher(myPublisherSettings, myBuildType, FEATURE_ID, myWebLinks, params, myProblems, new CommitStatusesCache<>(), myBuildNameProvider);
-    myBuildType.getProject().addParameter(new SimpleParameter("teamcity.commitStatusPublisher.publishQueuedBuildStatus", "true"));
   }
 
   @Override
@@ -73,7 +87,7 @@ public abstract class BaseStashPublisherTest extends HttpPublisherTest {
     myVcsRoot.setProperties(Collections.singletonMap("url", "https://url.com/subdir/owner/project"));
     VcsRootInstance vcsRootInstance = myBuildType.getVcsRootInstanceForParent(myVcsRoot);
     myRevision = new BuildRevision(vcsRootInstance, REVISION, "", REVISION);
-    myPublisher = new StashPublisher(myPublisherSettings, myBuildType, FEATURE_ID, myWebLinks, params, myProblems, new CommitStatusesCache<>(), myBuildNameProvider);
+    myPublisher = new StashPublisher(myPublisherSettings, myBuildType, FEATURE_ID, myWebLinks, params, myProblems, new CommitStatusesCache<>(new CommitStatusPublisherMetrics()), myBuildNameProvider, myConcurrencyLimiter);
     test_buildFinished_Successfully();
   }
 
@@ -84,7 +98,7 @@ public abstract class BaseStashPublisherTest extends HttpPublisherTest {
     myVcsRoot.setProperties(Collections.singletonMap("url", "https://url.com/subdir/owner/project"));
     VcsRootInstance vcsRootInstance = myBuildType.getVcsRootInstanceForParent(myVcsRoot);
     myRevision = new BuildRevision(vcsRootInstance, REVISION, "", REVISION);
-    myPublisher = new StashPublisher(myPublisherSettings, myBuildType, FEATURE_ID, myWebLinks, params, myProblems, new CommitStatusesCache<>(), myBuildNameProvider);
+    myPublisher = new StashPublisher(myPublisherSettings, myBuildType, FEATURE_ID, myWebLinks, params, myProblems, new CommitStatusesCache<>(new CommitStatusPublisherMetrics()), myBuildNameProvider, myConcurrencyLimiter);
     test_buildFinished_Successfully();
   }
 
@@ -105,7 +119,7 @@ public abstract class BaseStashPublisherTest extends HttpPublisherTest {
       info.displayName = "Bitbucket Server";
       httpResponse.setEntity(new StringEntity(gson.toJson(info), StandardCharsets.UTF_8));
     } else if (url.contains("/rest/api/1.0/projects/" + OWNER + "/repos/" + CORRECT_REPO + "/commits/")) {
-      responseWithSingleCommitStatus(httpResponse);
+      responseWithSingleCommitStatus(url, httpResponse);
     } else if (url.contains("/rest/build-status/1.0/commits/")) {
       String revision = getRevision(url, "/rest/build-status/1.0/commits/");
       responseWithCommitStatuses(httpResponse, revision);
@@ -120,9 +134,21 @@ public abstract class BaseStashPublisherTest extends HttpPublisherTest {
     return true;
   }
 
-  private void responseWithSingleCommitStatus(HttpResponse httpResponse) {
-    JsonStashBuildStatus status = new JsonStashBuildStatus(null, DefaultStatusMessages.BUILD_QUEUED, BuildServerCreator.DEFAULT_TEST_PROJECT_EXT_ID, null, "My Default Test Project / My Default Test Build Type", null, null, StashBuildStatus.INPROGRESS.name(), null, null);
-    String json = gson.toJson(Collections.singleton(status));
+  private void responseWithSingleCommitStatus(String url, HttpResponse httpResponse) {
+    String revision = getRevision(url, getPostStatusPrefix());
+    int keyIdx = url.indexOf("key=");
+    String key = keyIdx < 0 ? BuildServerCreator.DEFAULT_TEST_PROJECT_EXT_ID : url.substring(keyIdx + "key=".length());
+    DeprecatedJsonStashBuildStatuses.Status status = null;
+    for (DeprecatedJsonStashBuildStatuses.Status publishedStatus : myRevisionToStatus.getOrDefault(revision, Collections.emptyList())) {
+      if (key.equals(publishedStatus.key)) {
+        status = publishedStatus;
+      }
+    }
+    if (status == null) {
+      respondWithError(httpResponse, 404, "Status not found");
+      return;
+    }
+    String json = gson.toJson(new JsonStashBuildStatus(status));
     httpResponse.setEntity(new StringEntity(json, StandardCharsets.UTF_8));
   }
 
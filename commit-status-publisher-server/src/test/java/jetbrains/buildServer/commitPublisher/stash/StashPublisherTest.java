@@ -18,16 +18,21 @@
 
 package jetbrains.buildServer.commitPublisher.stash;
 
+import java.io.File;
 import java.util.Collections;
 import java.util.Map;
 import jetbrains.buildServer.MockBuildPromotion;
 import jetbrains.buildServer.commitPublisher.*;
+import jetbrains.buildServer.commitPublisher.metrics.CommitStatusPublisherMetrics;
 import jetbrains.buildServer.commitPublisher.stash.data.JsonStashBuildStatus;
 import jetbrains.buildServer.serverSide.BuildPromotion;
+import jetbrains.buildServer.serverSide.ServerPaths;
 import org.jmock.Mock;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
+import static org.assertj.core.api.BDDAssertions.then;
+
 @Test
 public class StashPublisherTest extends BaseStashPublisherTest {
 
@@ -63,6 +68,17 @@ public class StashPublisherTest extends BaseStashPublisherTest {
     return "/rest/build-status/1.0/commits/";
   }
 
+  public void should_keep_server_version_across_restarts() throws Exception {
+    final File versionsFile = new File(myFixture.getSingletonService(ServerPaths.class).getPluginDataDirectory(), StashSettings.SERVER_VERSIONS_FILE);
+    then(createSettings().getServerVersion(getServerUrl())).isEqualTo("6.0");
+    // the versions are saved in background
+    waitFor(() -> versionsFile.exists(), 5000);
+    final int requests = countRequests();
+
+    then(createSettings().getServerVersion(getServerUrl())).isEqualTo("6.0");
+    then(countRequests()).isEqualTo(requests);
+  }
+
   public void shoudld_calculate_correct_revision_status() {
     BuildPromotion promotion = new MockBuildPromotion();
     StashPublisher publisher = (StashPublisher)myPublisher;
@@ -93,7 +109,7 @@ public class StashPublisherTest extends BaseStashPublisherTest {
   public void url_guessing_test_git() {
     Map<String, String> params = getPublisherParams();
     myVcsRoot.setProperties(Collections.singletonMap("url", "git@url.com:owner/some_/path/project.git"));
-    myPublisher = new StashPublisher(myPublisherSettings, myBuildType, FEATURE_ID, myWebLinks, params, myProblems, new CommitStatusesCache<>(), myBuildNameProvider);
+    myPublisher = new StashPublisher(myPublisherSettings, myBuildType, FEATURE_ID, myWebLinks, params, myProblems, new CommitStatusesCache<>(new CommitStatusPublisherMetrics()), myBuildNameProvider, myConcurrencyLimiter);
     assertEquals("https://url.com", myPublisherSettings.guessApiURL(myVcsRoot.getProperty("url")));
   }
 
@@ -101,7 +117,7 @@ public class StashPublisherTest extends BaseStashPublisherTest {
     Map<String, String> params = getPublisherParams();
     params.remove(Constants.STASH_BASE_URL);
     myVcsRoot.setProperties(Collections.singletonMap("url", "git@url.com:owner/some_/path/project.git"));
-    myPublisher = new StashPublisher(myPublisherSettings, myBuildType, FEATURE_ID, myWebLinks, params, myProblems, new CommitStatusesCache<>(), myBuildNameProvider);
+    myPublisher = new StashPublisher(myPublisherSettings, myBuildType, FEATURE_ID, myWebLinks, params, myProblems, new CommitStatusesCache<>(new CommitStatusPublisherMetrics()), myBuildNameProvider, myConcurrencyLimiter);
     assertEquals("https://url.com", ((StashPublisher)myPublisher).getBaseUrl(myVcsRoot.getProperty("url")));
   }
 }
\ No newline at end of file
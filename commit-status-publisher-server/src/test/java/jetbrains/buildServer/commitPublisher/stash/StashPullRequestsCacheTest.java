@@ -0,0 +1,79 @@
+/*
+ * Copyright 2000-2024 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jetbrains.buildServer.commitPublisher.stash;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import jetbrains.buildServer.BaseTestCase;
+import jetbrains.buildServer.commitPublisher.PublisherException;
+import org.testng.annotations.Test;
+
+import static org.assertj.core.api.BDDAssertions.then;
+
+@Test
+public class StashPullRequestsCacheTest extends BaseTestCase {
+  private static final String PR_URL = "http://localhost/rest/api/1.0/projects/owner/repos/project/pull-requests/1";
+
+  public void should_load_pull_request_once() throws Exception {
+    final StashPullRequestsCache cache = new StashPullRequestsCache();
+    final AtomicInteger loads = new AtomicInteger();
+    then(cache.getSourceBranch(PR_URL, () -> { loads.incrementAndGet(); return "refs/heads/feature"; })).isEqualTo("refs/heads/feature");
+    then(cache.getSourceBranch(PR_URL, () -> { loads.incrementAndGet(); return "refs/heads/another"; })).isEqualTo("refs/heads/feature");
+    then(loads.get()).isEqualTo(1);
+    then(cache.getSourceBranch(PR_URL.replace("/1", "/2"), () -> { loads.incrementAndGet(); return "refs/heads/another"; })).isEqualTo("refs/heads/another");
+    then(loads.get()).isEqualTo(2);
+  }
+
+  public void should_collapse_concurrent_loads() throws Exception {
+    final StashPullRequestsCache cache = new StashPullRequestsCache();
+    final AtomicInteger loads = new AtomicInteger();
+    final CountDownLatch loadStarted = new CountDownLatch(1);
+    final CountDownLatch loadAllowed = new CountDownLatch(1);
+    final Callable<String> loader = () -> {
+      loads.incrementAndGet();
+      loadStarted.countDown();
+      loadAllowed.await(10, TimeUnit.SECONDS);
+      return "refs/heads/feature";
+    };
+
+    final FutureTask<String> first = new FutureTask<>(() -> cache.getSourceBranch(PR_URL, loader));
+    final FutureTask<String> second = new FutureTask<>(() -> cache.getSourceBranch(PR_URL, loader));
+    final Thread loading = new Thread(first);
+    final Thread waiting = new Thread(second);
+    loading.start();
+    then(loadStarted.await(10, TimeUnit.SECONDS)).isTrue();
+    waiting.start();
+    // the second caller waits for the load started by the first one
+    waitFor(() -> waiting.getState() == Thread.State.WAITING, 5000);
+    loadAllowed.countDown();
+
+    then(first.get(10, TimeUnit.SECONDS)).isEqualTo("refs/heads/feature");
+    then(second.get(10, TimeUnit.SECONDS)).isEqualTo("refs/heads/feature");
+    then(loads.get()).isEqualTo(1);
+  }
+
+  public void should_not_cache_failed_loads() throws Exception {
+    final StashPullRequestsCache cache = new StashPullRequestsCache();
+    try {
+      cache.getSourceBranch(PR_URL, () -> { throw new PublisherException("failure"); });
+      fail("Exception expected");
+    } catch (PublisherException e) {
+      then(e.getMessage()).isEqualTo("failure");
+    }
+    then(cache.getSourceBranch(PR_URL, () -> "refs/heads/feature")).isEqualTo("refs/heads/feature");
+  }
+}
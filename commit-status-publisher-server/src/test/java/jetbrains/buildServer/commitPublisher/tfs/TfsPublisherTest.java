@@ -24,8 +24,10 @@ import java.util.*;
 import java.util.regex.Pattern;
 import jetbrains.buildServer.MockBuildPromotion;
 import jetbrains.buildServer.commitPublisher.*;
+import jetbrains.buildServer.commitPublisher.metrics.CommitStatusPublisherMetrics;
 import jetbrains.buildServer.messages.Status;
 import jetbrains.buildServer.serverSide.*;
+import jetbrains.buildServer.serverSide.executors.ExecutorServices;
 import jetbrains.buildServer.util.TestFor;
 import jetbrains.buildServer.vcs.VcsRootInstance;
 import org.apache.http.HttpRequest;
@@ -50,6 +52,7 @@ public class TfsPublisherTest extends HttpPublisherTest {
   private final Map<String, String> myParams = getPublisherParams();
   private final Map<String, List<TfsStatusPublisher.CommitStatus>> myRevisionToStatuses = new HashMap<>();
   private final TfsBuildNameProvider myBuildNameProvider = new TfsBuildNameProvider();
+  private volatile boolean myRejectPullRequestStatuses;
 
   private static final String NO_PERMISSIONS_REPO = "no_permissions_repo";
 
@@ -76,8 +79,10 @@ public class TfsPublisherTest extends HttpPublisherTest {
   protected void setUp() throws Exception {
     super.setUp();
     myPublisherSettings = new TfsPublisherSettings(new MockPluginDescriptor(), myWebLinks, myProblems, myOAuthConnectionsManager, myOAuthTokenStorage,
-                                                   myFixture.getSecurityContext(), myFixture.getUserModel(), myTrustStoreProvider, myBuildNameProvider);
-    myPublisher = new TfsStatusPublisher(myPublisherSettings, myBuildType, FEATURE_ID, myWebLinks, myParams, myProblems, new CommitStatusesCache<>(), myBuildNameProvider);
+                                                   myFixture.getSecurityContext(), myFixture.getUserModel(), myTrustStoreProvider, myBuildNameProvider,
+                                                   myFixture.getVcsHistory(), myFixture.getSingletonService(ExecutorServices.class), myConcurrencyLimiter,
+                                                   new CommitStatusPublisherMetrics());
+    myPublisher = new TfsStatusPublisher(myPublisherSettings, myBuildType, FEATURE_ID, myWebLinks, myParams, myProblems, new CommitStatusesCache<>(new CommitStatusPublisherMetrics()), myBuildNameProvider, myConcurrencyLimiter);
     myVcsURL = getServerUrl() + "/_git/" + CORRECT_REPO;
     myReadOnlyVcsURL = getServerUrl()  + "/_git/" + READ_ONLY_REPO;
     myVcsRoot.setProperties(Collections.singletonMap("url", myVcsURL));
@@ -231,6 +236,11 @@ public class TfsPublisherTest extends HttpPublisherTest {
       httpResponse.setEntity(new StringEntity("{'message': 'error'}", StandardCharsets.UTF_8));
       return false;
     }
+    if (myRejectPullRequestStatuses && url.contains("/pullRequests/")) {
+      httpResponse.setStatusCode(403);
+      httpResponse.setEntity(new StringEntity("{'message': 'error'}", StandardCharsets.UTF_8));
+      return false;
+    }
     String revision = getRevision(url, "/project/_apis/git/repositories/project/commits/");
     if (revision != null) {
       TfsStatusPublisher.CommitStatus status = gson.fromJson(requestData, TfsStatusPublisher.CommitStatus.class);
@@ -261,12 +271,40 @@ public class TfsPublisherTest extends HttpPublisherTest {
     BuildPromotionEx promotion = createPromotionWithDesiredBranch(myBuildType, myBranch);
     BuildRevision revision = new BuildRevision(myRevision.getEntry(), new RepositoryVersion(REVISION, REVISION, myBranch));
     myPublisher.buildQueued(promotion, revision, new AdditionalTaskInfo(promotion, null, null));
-    waitFor(() -> {
-      int countRequests = countRequests();
-      if (countRequests < 4) return false;
-      Set<Integer> matchingRequestsOrderNumbers = getMatchingRequestsOrderNumbers(Pattern.compile("POST.+\\/pullRequests\\/42/iterations/3.+"));
-      if (matchingRequestsOrderNumbers.isEmpty()) return false;
-      return matchingRequestsOrderNumbers.contains((countRequests - 1) - 1);  // last but one, counting from 0
-    }, 3000);
+    // pull request and commit statuses are posted concurrently, so the order of the requests is not defined
+    waitFor(() -> countRequests() >= 4
+                  && !getMatchingRequestsOrderNumbers(Pattern.compile("POST.+\\/pullRequests\\/42/iterations/3.+")).isEmpty()
+                  && !getMatchingRequestsOrderNumbers(Pattern.compile("POST.+/commits/f0adfd81352412ec91254943230c13c4c95c9f9f/statuses.+")).isEmpty(), 3000);
+  }
+
+  public void should_publish_commit_status_when_pull_request_status_fails() throws Exception {
+    myParams.put(TfsConstants.PUBLISH_PULL_REQUESTS, "true");
+    myRejectPullRequestStatuses = true;
+    myPublisher = myPublisherSettings.createPublisher(myBuildType, FEATURE_ID, myParams);
+    myBranch = "refs/pull/42/merge";
+    BuildPromotionEx promotion = createPromotionWithDesiredBranch(myBuildType, myBranch);
+    BuildRevision revision = new BuildRevision(myRevision.getEntry(), new RepositoryVersion(REVISION, REVISION, myBranch));
+    try {
+      myPublisher.buildQueued(promotion, revision, new AdditionalTaskInfo(promotion, null, null));
+      fail("PublisherException expected");
+    } catch (PublisherException e) {
+      then(e.getMessage()).contains("pull request 42");
+    }
+    then(getMatchingRequestsOrderNumbers(Pattern.compile("POST.+/commits/f0adfd81352412ec91254943230c13c4c95c9f9f/statuses.+"))).hasSize(1);
+  }
+
+  public void should_not_reload_commit_and_iterations_for_pr() throws Exception {
+    myParams.put(TfsConstants.PUBLISH_PULL_REQUESTS, "true");
+    myPublisher = myPublisherSettings.createPublisher(myBuildType, FEATURE_ID, myParams);
+    myBranch = "refs/pull/42/merge";
+    BuildPromotionEx promotion = createPromotionWithDesiredBranch(myBuildType, myBranch);
+    BuildRevision revision = new BuildRevision(myRevision.getEntry(), new RepositoryVersion(REVISION, REVISION, myBranch));
+    myPublisher.buildQueued(promotion, revision, new AdditionalTaskInfo(promotion, null, null));
+    SRunningBuild build = myFixture.startBuild(myBuildType);
+    myPublisher.buildStarted(build, revision);
+
+    then(getMatchingRequestsOrderNumbers(Pattern.compile("POST.+/pullRequests/42/iterations/3/statuses.+"))).hasSize(2);
+    then(getMatchingRequestsOrderNumbers(Pattern.compile("GET.+/commits/" + REVISION + "\\?.+"))).hasSize(1);
+    then(getMatchingRequestsOrderNumbers(Pattern.compile("GET.+/pullRequests/42/iterations\\?.+"))).hasSize(1);
   }
 }
\ No newline at end of file
@@ -21,6 +21,8 @@ import java.util.Collections;
 import java.util.Set;
 import jetbrains.buildServer.commitPublisher.CommitStatusPublisher;
 import jetbrains.buildServer.commitPublisher.CommitStatusPublisherTestBase;
+import jetbrains.buildServer.commitPublisher.HostConcurrencyLimiter;
+import jetbrains.buildServer.commitPublisher.metrics.CommitStatusPublisherMetrics;
 import jetbrains.buildServer.serverSide.MockServerPluginDescriptior;
 import jetbrains.buildServer.swarm.SwarmClientManager;
 import jetbrains.buildServer.util.cache.ResetCacheRegisterImpl;
@@ -43,7 +45,8 @@ public class SwarmPublisherSettingsTest extends CommitStatusPublisherTestBase {
 
     final SSLTrustStoreProvider trustStoreProvider = () -> null;
     final SwarmClientManager clientManager = new SwarmClientManager(myWebLinks, trustStoreProvider, new ResetCacheRegisterImpl());
-    mySettings = new SwarmPublisherSettings(new MockServerPluginDescriptior(), myFixture.getWebLinks(), myProblems, trustStoreProvider, clientManager);
+    mySettings = new SwarmPublisherSettings(new MockServerPluginDescriptior(), myFixture.getWebLinks(), myProblems, trustStoreProvider, clientManager,
+                                            new HostConcurrencyLimiter(new CommitStatusPublisherMetrics()));
   }
 
   @Test
@@ -73,11 +73,11 @@ public class SwarmPublisherTest extends HttpPublisherTest {
     super.setUp();
 
     SwarmClientManager clientManager = new SwarmClientManager(myWebLinks, () -> null, new ResetCacheRegisterImpl());
-    myPublisherSettings = new SwarmPublisherSettings(new MockPluginDescriptor(), myWebLinks, myProblems, myTrustStoreProvider, clientManager);
+    myPublisherSettings = new SwarmPublisherSettings(new MockPluginDescriptor(), myWebLinks, myProblems, myTrustStoreProvider, clientManager, myConcurrencyLimiter);
 
     Map<String, String> params = getPublisherParams();
     myPublisher = new SwarmPublisher((SwarmPublisherSettings)myPublisherSettings, myBuildType, FEATURE_ID, params, myProblems, myWebLinks,
-                                     clientManager.getSwarmClient(params), EnumSet.allOf(CommitStatusPublisher.Event.class));
+                                     clientManager.getSwarmClient(params), EnumSet.allOf(CommitStatusPublisher.Event.class), myConcurrencyLimiter);
 
 
     addShelvedChangelistParameter(CHANGELIST);
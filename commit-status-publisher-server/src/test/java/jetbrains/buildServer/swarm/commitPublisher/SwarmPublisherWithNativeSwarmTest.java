@@ -96,7 +96,7 @@ public class SwarmPublisherWithNativeSwarmTest extends HttpPublisherTest {
     myReviewStatus = "needsReview";
 
     myClientManager = new SwarmClientManager(myWebLinks, () -> null, new ResetCacheRegisterImpl());
-    myPublisherSettings = new SwarmPublisherSettings(new MockPluginDescriptor(), myWebLinks, myProblems, myTrustStoreProvider, myClientManager);
+    myPublisherSettings = new SwarmPublisherSettings(new MockPluginDescriptor(), myWebLinks, myProblems, myTrustStoreProvider, myClientManager, myConcurrencyLimiter);
     myBuildType.addParameter(new SimpleParameter("vcsRoot." + myVcsRoot.getExternalId() + ".shelvedChangelist", CHANGELIST));
 
     recreateSwarmPublisher();
@@ -105,7 +105,7 @@ public class SwarmPublisherWithNativeSwarmTest extends HttpPublisherTest {
   private void recreateSwarmPublisher() {
     Map<String, String> params = getPublisherParams();
     myPublisher = new SwarmPublisher((SwarmPublisherSettings)myPublisherSettings, myBuildType, FEATURE_ID, params, myProblems, myWebLinks,
-                                     myClientManager.getSwarmClient(params), EnumSet.allOf(CommitStatusPublisher.Event.class));
+                                     myClientManager.getSwarmClient(params), EnumSet.allOf(CommitStatusPublisher.Event.class), myConcurrencyLimiter);
   }
 
   protected SRunningBuild startBuildInCurrentBranch(SBuildType buildType) {